@@ -0,0 +1,123 @@
+package edu.gemini.ags.api
+
+import edu.gemini.ags.api.AgsMagnitude.MagnitudeTable
+import edu.gemini.pot.ModelConverters._
+import edu.gemini.skycalc
+import edu.gemini.spModel.ags.AgsStrategyKey
+import edu.gemini.spModel.core.{Coordinates, SiderealTarget, Site}
+import edu.gemini.spModel.data.config.ISysConfig
+import edu.gemini.spModel.gemini.obscomp.SPSiteQuality.Conditions
+import edu.gemini.spModel.obs.SchedulingBlock
+import edu.gemini.spModel.obs.context.ObsContext
+import edu.gemini.spModel.telescope.{IssPort, PosAngleConstraint}
+import edu.gemini.shared.util.immutable.ScalaConverters._
+
+import scala.collection.JavaConverters._
+
+import scalaz._
+import Scalaz._
+
+/**
+ * AGS calculations for many observations at once, as needed when building
+ * the QPT and QV models for a whole queue.  Contexts are grouped by strategy,
+ * evaluated in parallel, and the analyses are remembered by a fingerprint of
+ * everything in the context they depend on so that refreshing the same
+ * queue only analyzes the observations that changed.
+ */
+object AgsBatch {
+  // For Java usage
+  val instance = this
+
+  /** Maximum number of analyses remembered. */
+  val MaxCachedAnalyses = 10000
+
+  /**
+   * The parts of a context that AGS analysis depends on.  Two contexts with
+   * the same fingerprint have the same analysis for the same strategy and
+   * magnitude table.
+   */
+  case class Fingerprint(
+    strategy:        AgsStrategyKey,
+    site:            Option[Site],
+    conditions:      Conditions,
+    base:            Option[Coordinates],
+    guideStars:      List[Option[SiderealTarget]],
+    positionAngle:   Double,
+    posAngle:        PosAngleConstraint,
+    port:            IssPort,
+    instrument:      Option[ISysConfig],
+    ao:              Option[ISysConfig],
+    offsets:         Set[skycalc.Offset],
+    schedulingBlock: Option[SchedulingBlock])
+
+  object Fingerprint {
+    def apply(s: AgsStrategy, ctx: ObsContext): Fingerprint = {
+      val guideStars = s.guideProbes.map { gp =>
+        for {
+          gpt   <- ctx.getTargets.getPrimaryGuideProbeTargets(gp).asScalaOpt
+          gStar <- gpt.getPrimary.asScalaOpt
+        } yield gStar.toNewModel
+      }
+
+      Fingerprint(
+        s.key,
+        ctx.getSite.asScalaOpt,
+        ctx.getConditions,
+        ctx.getBaseCoordinates.asScalaOpt.map(_.toNewModel),
+        guideStars,
+        ctx.getPositionAngle.toDegrees.getMagnitude,
+        ctx.getPosAngleConstraint,
+        ctx.getIssPort,
+        Option(ctx.getInstrument).flatMap(i => Option(i.getSysConfig)),
+        ctx.getAOComponent.asScalaOpt.flatMap(ao => Option(ao.getSysConfig)),
+        ctx.getSciencePositions.asScala.toSet,
+        ctx.getSchedulingBlock.asScalaOpt)
+    }
+  }
+
+  // Analyses by magnitude table and fingerprint, least recently used first.
+  // Access needs to be synchronized
+  private val analyses = new java.util.LinkedHashMap[(MagnitudeTable, Fingerprint), List[AgsAnalysis]](16, 0.75f, true) {
+    override def removeEldestEntry(e: java.util.Map.Entry[(MagnitudeTable, Fingerprint), List[AgsAnalysis]]): Boolean =
+      size > MaxCachedAnalyses
+  }
+
+  private def cached(k: (MagnitudeTable, Fingerprint)): Option[List[AgsAnalysis]] =
+    analyses.synchronized { Option(analyses.get(k)) }
+
+  private def cache(k: (MagnitudeTable, Fingerprint), as: List[AgsAnalysis]): Unit =
+    analyses.synchronized { analyses.put(k, as) }
+
+  /**
+   * Analyzes the guide stars of each context with its current strategy, as
+   * `AgsStrategy.analyze` would.  Contexts without a strategy have no
+   * analyses.  The results are in the same order as the contexts.
+   */
+  def analyze(ctxs: List[ObsContext], mt: MagnitudeTable): List[List[AgsAnalysis]] = {
+    val keys = ctxs.map { ctx =>
+      AgsRegistrar.currentStrategy(ctx).map(s => (s, ctx, (mt, Fingerprint(s, ctx))))
+    }
+
+    // Analyze each distinct fingerprint not already in the cache once, in
+    // parallel.
+    val missing = keys.flatten.groupBy(_._3).collect {
+      case (k, (s, ctx, _) :: _) if cached(k).isEmpty => (k, s, ctx)
+    }.toList
+
+    val computed = missing.par.map { case (k, s, ctx) =>
+      val as = s.analyze(ctx, mt)
+      cache(k, as)
+      k -> as
+    }.toList.toMap
+
+    keys.map(_.fold(List.empty[AgsAnalysis]) { case (s, ctx, k) =>
+      computed.get(k).orElse(cached(k)) | s.analyze(ctx, mt)
+    })
+  }
+
+  /**
+   * Java-friendly version of `analyze`.
+   */
+  def analyzeForJava(ctxs: java.util.List[ObsContext], mt: MagnitudeTable): java.util.List[java.util.List[AgsAnalysis]] =
+    analyze(ctxs.asScala.toList, mt).map(_.asJava).asJava
+}
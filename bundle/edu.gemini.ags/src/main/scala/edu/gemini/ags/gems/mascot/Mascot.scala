@@ -1,5 +1,6 @@
 package edu.gemini.ags.gems.mascot
 
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
 import java.util.logging.Logger
 
 import edu.gemini.ags.gems.mascot.util.AllPairsAndTriples
@@ -69,63 +70,109 @@ object Mascot {
     }
   }
 
-  case class AsterismSearchStage(stars: List[Strehl], count: Int, continue: Boolean)
-
   /**
    * Finds the best asterisms for the given list of stars.
+   *
+   * The asterisms are evaluated in the order triples, pairs, singles.  Triples containing a pair of stars that
+   * don't fit in the field together can't fit either, so they are skipped without computing the (expensive) full
+   * test or the Strehl.
+   *
+   * If `parallel` is set the asterisms are evaluated concurrently on the fork-join pool.  The progress function is
+   * still called for one asterism at a time, and if it returns false (or throws) no more asterisms are started.
+   * Without cancellation the result is the same as for a serial search.
+   *
    * @param starList unfiltered list of stars from a catalog query
    * @param factor multiply strehl min, max and average by this value (depends on instrument filter: See REL-426)
-   * @param filter a filter function that returns false if the Star should be excluded
    * @param progress a function(strehl, count, total) called for each asterism as it is calculated
+   * @param filter a filter function that returns false if the Star should be excluded
+   * @param parallel whether to evaluate the asterisms concurrently
    * @return a tuple: (list of stars actually used, list of asterisms found)
    */
   def findBestAsterism(starList: List[Star],
                        factor: Double = defaultFactor,
                        progress: ProgressFunction = defaultProgress,
-                       filter: Star => Boolean = defaultFilter)
+                       filter: Star => Boolean = defaultFilter,
+                       parallel: Boolean = false)
   : (List[Star], List[Strehl]) = {
     // sort by selected mag and select
     val sortedStarList = starList.sortWith((s1,s2) => s1.r < s2.r)
     val filteredStarList = selectStarsOnMag(sortedStarList).filter(filter)
 
-    val ns = filteredStarList.length
-    val trips = AllPairsAndTriples.allTrips(filteredStarList)
-    val pairs = AllPairsAndTriples.allPairs(filteredStarList)
-    val total = trips.length + pairs.length + ns
+    val stars = filteredStarList.toVector
+    val ns = stars.length
+    val ixs = stars.indices.toList
+    val candidates = (AllPairsAndTriples.allTrips(ixs) ++
+                      AllPairsAndTriples.allPairs(ixs).map(p => (p._1, p._2, none[Int])) ++
+                      ixs.map(i => (i, none[Int], none[Int]))).toVector
+    val total = candidates.length
 
     Log.info(s"Mascot.findBestAsterism: input stars: $ns, total asterisms: $total")
 
-    // Compute strehl for a sets of stars
-    @tailrec
-    def doStars(result: List[Strehl], count: Int, starSets: List[(Star, Option[Star], Option[Star])]):AsterismSearchStage = starSets match {
-      case Nil =>
-        AsterismSearchStage(result, count, continue = true)
-      case s :: Nil =>
-        val strehl = computeStrehl(factor, (StarTriple.apply _).tupled(s))
-        // check if we continue
-        val continue = strehl.map(progress(_, count, total))
-        AsterismSearchStage(strehl.map(_ :: result).getOrElse(result), count, continue.getOrElse(true))
-      case s :: tail =>
-        val strehl = computeStrehl(factor, (StarTriple.apply _).tupled(s))
-        // check if we continue
-        val continue = strehl.map(progress(_, count, total))
-        if (continue === false.some) {
-          AsterismSearchStage(strehl.map(_ :: result).getOrElse(result), count, continue = false)
-        } else {
-          // Continue if the position is skipped or if progress says continue
-          doStars(strehl.map(_ :: result).getOrElse(result), count + 1, tail)
-        }
+    // Which pairs of stars fit in the field together.
+    val pairFits = Array.tabulate(ns, ns)((i, j) => i != j && doesItFit(stars(i), stars(j)))
+
+    def pruned(c: (Int, Option[Int], Option[Int])): Boolean = c match {
+      case (i, Some(j), Some(k)) => !(pairFits(i)(j) && pairFits(i)(k) && pairFits(j)(k))
+      case _                     => false
     }
 
-    // Search each possible combination of triples, doubles and singles supporting cancellation
-    def go(): List[Strehl] = {
-      val triples = if (ns >= 3) doStars(Nil, 1, trips) else AsterismSearchStage(Nil, 1, continue = true)
-      val doubles = if (ns >= 2 && triples.continue) doStars(triples.stars, triples.count, pairs.map(t => (t._1, t._2, None))) else triples
-      val singles = if (ns >= 1 && doubles.continue) doStars(doubles.stars, doubles.count, filteredStarList.map(t => (t, None, None))) else doubles
-      singles.stars
+    def strehl(c: (Int, Option[Int], Option[Int])): Option[Strehl] =
+      if (pruned(c)) None
+      else computeStrehl(factor, StarTriple(stars(c._1), c._2.map(stars), c._3.map(stars)))
+
+    // Compute strehl for each candidate in turn, supporting cancellation
+    @tailrec
+    def goSerial(result: List[Strehl], ix: Int): List[Strehl] =
+      if (ix >= total) result
+      else {
+        val s = strehl(candidates(ix))
+        // Continue if the position is skipped or if progress says continue
+        val continue = s.forall(progress(_, ix + 1, total))
+        val res = s.map(_ :: result).getOrElse(result)
+        if (continue) goSerial(res, ix + 1) else res
+      }
+
+    // Compute strehl for the candidates concurrently.  Results are reported
+    // to the progress function one at a time, and ordered as in a serial
+    // search.
+    def goParallel(): List[Strehl] = {
+      val lock      = new Object
+      val count     = new AtomicInteger(0)
+      val cancelled = new AtomicBoolean(false)
+      var failure   = Option.empty[Throwable]
+
+      val results = candidates.indices.par.map { ix =>
+        val r: Option[(Int, Strehl)] =
+          if (cancelled.get) None
+          else strehl(candidates(ix)) match {
+            case None    =>
+              count.incrementAndGet()
+              None
+            case Some(s) =>
+              lock.synchronized {
+                if (cancelled.get) None
+                else {
+                  val continue = try {
+                    progress(s, count.incrementAndGet(), total)
+                  } catch {
+                    case t: Throwable =>
+                      failure = Some(t)
+                      false
+                  }
+                  if (!continue) cancelled.set(true)
+                  if (failure.isDefined) None else Some((ix, s))
+                }
+              }
+          }
+        r
+      }.seq.flatten
+
+      lock.synchronized { failure }.foreach(t => throw t)
+      results.sortBy(-_._1).map(_._2).toList
     }
 
-    (filteredStarList, sortBestAsterisms(go()))
+    val result = if (parallel) goParallel() else goSerial(Nil, 0)
+    (filteredStarList, sortBestAsterisms(result))
   }
 
   //func select_stars_on_mag(void)
@@ -43,16 +43,18 @@ object MascotCat {
    * @param factor multiply strehl min, max and average by this value (depends on instrument filter: See REL-426)
    * @param progress a function(strehl, count, total) called for each asterism as it is calculated
    * @param filter a filter function that returns false if the Star should be excluded
+   * @param parallel whether to evaluate the asterisms concurrently
    * @return a tuple: (list of stars actually used, list of asterisms found)
    */
   def findBestAsterism(list: List[SiderealTarget],
                        centerRA: Double, centerDec: Double,
                        factor: Double = Mascot.defaultFactor,
                        progress: ProgressFunction = defaultProgress,
-                       filter: Star => Boolean = Mascot.defaultFilter)
+                       filter: Star => Boolean = Mascot.defaultFilter,
+                       parallel: Boolean = false)
   : (List[Star], List[Strehl]) = {
     val starList = list.map(Star.makeStar(_, centerRA, centerDec))
-    Mascot.findBestAsterism(starList, factor, progress, filter)
+    Mascot.findBestAsterism(starList, factor, progress, filter, parallel)
   }
 
   case class StrehlResults(starList: List[Star], strehlList: List[Strehl])
@@ -81,7 +83,7 @@ object MascotCat {
       true
     }
 
-    val (starList, strehlList) = findBestAsterism(javaList, centerRA, centerDec, factor, progress, Mascot.defaultFilter)
+    val (starList, strehlList) = findBestAsterism(javaList, centerRA, centerDec, factor, progress, Mascot.defaultFilter, parallel = true)
     StrehlResults(starList, strehlList)
   }
 
@@ -105,7 +107,7 @@ object MascotCat {
       progressCheck(s, true)
     }
 
-    val (starList, strehlList) = findBestAsterism(javaList, centerRA, centerDec, factor, progress, Mascot.defaultFilter)
+    val (starList, strehlList) = findBestAsterism(javaList, centerRA, centerDec, factor, progress, Mascot.defaultFilter, parallel = true)
     StrehlResults(starList, strehlList)
   }
 
@@ -78,7 +78,16 @@ object Strehl {
 
   val nmodes = 5
   val sp = nullModesSpectra()
-  var spv = vibSpectra()
+  // Vibration spectra, limited to the upper frequency range for the spline.
+  // This is shared by all the calculations, which may run concurrently, so
+  // it is trimmed once here rather than on each call to optimize.
+  val spv = {
+    val v = vibSpectra()
+    if (v(::, 0).max > sampfreq) {
+      val tmp = where(v(::, 0), _ < sampfreq)
+      v(0 to tmp(tmp.length - 1), ::)
+    } else v
+  }
   val novibs = false
 
   //  func mascot_compute_strehl(void)
@@ -339,11 +348,6 @@ object Strehl {
     //  rmsvib(2) = sum((*tiltvibrms)^2.);
 
 
-    if (spv(::, 0).max > sampfreq) {
-      val tmp = where(spv(::, 0), _ < sampfreq)
-      val w = tmp(tmp.length - 1)
-      spv = spv(0 to w, ::)
-    }
     val freqv = spv(::, 0)
 
     val rmsvib = DenseVector.zeros[Double](2)
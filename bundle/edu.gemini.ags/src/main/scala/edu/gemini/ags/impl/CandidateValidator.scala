@@ -1,9 +1,12 @@
 package edu.gemini.ags.impl
 
+import java.awt.geom.{AffineTransform, Rectangle2D}
+
 import edu.gemini.ags.api.AgsMagnitude.MagnitudeTable
 import edu.gemini.spModel.core.Coordinates
 import edu.gemini.spModel.core.SiderealTarget
-import edu.gemini.spModel.guide.GuideStarValidation
+import edu.gemini.skycalc
+import edu.gemini.spModel.guide.{GuideStarValidation, PatrolField}
 import edu.gemini.spModel.obs.context.ObsContext
 import edu.gemini.spModel.target.SPTarget
 import edu.gemini.ags.api.AgsMagnitude
@@ -27,6 +30,15 @@ protected case class CandidateValidator(params: SingleProbeStrategyParams, mt: M
    */
   private def isValid(ctx: ObsContext): (SiderealTarget) => Boolean =
     ctx.getBaseCoordinates.asScalaOpt.fold((_: SiderealTarget) => false) { base =>
+      val usable = isUsable(ctx, base)
+      (st: SiderealTarget) => usable(st) && inProbeRange(ctx, st)
+    }
+
+  /**
+   * Produces a predicate for the parts of the validation that don't depend on
+   * the position angle.
+   */
+  private def isUsable(ctx: ObsContext, base: skycalc.Coordinates): (SiderealTarget) => Boolean = {
     val magLimits:Option[MagnitudeConstraints] = params.magnitudeCalc(ctx, mt).flatMap(AgsMagnitude.autoSearchConstraints(_, ctx.getConditions))
 
     (st: SiderealTarget) => {
@@ -42,16 +54,54 @@ protected case class CandidateValidator(params: SingleProbeStrategyParams, mt: M
       // Only keep candidates that fall within the magnitude limits.
       def brightnessOk = (magLimits |@| params.referenceMagnitude(st))(_ contains _) | false
 
-      // Only keep those that are in range of the guide probe.
-      def inProbeRange = params.validator(ctx).validate(new SPTarget(HmsDegTarget.fromSkyObject(st.toOldModel)), ctx) == GuideStarValidation.VALID
-
-      farEnough && brightnessOk && inProbeRange
+      farEnough && brightnessOk
     }
   }
 
+  // Only keep those that are in range of the guide probe.
+  private def inProbeRange(ctx: ObsContext, st: SiderealTarget): Boolean =
+    params.validator(ctx).validate(new SPTarget(HmsDegTarget.fromSkyObject(st.toOldModel)), ctx) == GuideStarValidation.VALID
+
   def filter(ctx: ObsContext): List[SiderealTarget]   = candidates.filter(isValid(ctx))
 
   def exists(ctx: ObsContext): Boolean                = candidates.exists(isValid(ctx))
 
   def select(ctx: ObsContext): Option[SiderealTarget] = params.brightest(filter(ctx))(identity)
+
+  /**
+   * Finds the position angles for which there is at least one valid
+   * candidate.  Equivalent to testing `exists` at each angle, but the
+   * candidates are indexed by offset from the base so that only those within
+   * the bounds of the patrol field at each angle are validated, and the
+   * angles are tested in parallel.
+   */
+  def validAngles(ctx: ObsContext, angles: List[skycalc.Angle]): List[skycalc.Angle] =
+    ctx.getBaseCoordinates.asScalaOpt.fold(List.empty[skycalc.Angle]) { base =>
+      val usable = candidates.filter(isUsable(ctx, base))
+      val index  = OffsetIndex(base, usable)
+
+      angles.par.filter { angle =>
+        val ctx0  = ctx.withPositionAngle(angle)
+        val inPf  = params.patrolField(ctx0).fold(usable)(pf => index.within(CandidateValidator.bounds(pf, ctx0)))
+        inPf.exists(inProbeRange(ctx0, _))
+      }.toList
+    }
+}
+
+protected object CandidateValidator {
+  // Allowance, in arcsecs, for differences in the way the offsets are
+  // calculated by the index and the validators.
+  private val Margin = 1.0
+
+  /**
+   * Bounds of the area of the patrol field that can contain valid guide
+   * stars in the given context, in the frame of the `OffsetIndex`.
+   */
+  def bounds(pf: PatrolField, ctx: ObsContext): Rectangle2D = {
+    val offsets = ctx.getSciencePositions
+    val area    = pf.offsetIntersection(offsets) <| { _.add(pf.safeOffsetIntersection(offsets)) }
+    area.transform(AffineTransform.getRotateInstance(-ctx.getPositionAngle.toRadians.getMagnitude))
+    val b       = area.getBounds2D
+    new Rectangle2D.Double(b.getX - Margin, b.getY - Margin, b.getWidth + 2 * Margin, b.getHeight + 2 * Margin)
+  }
 }
@@ -0,0 +1,77 @@
+package edu.gemini.ags.impl
+
+import java.awt.geom.Rectangle2D
+
+import edu.gemini.skycalc.{CoordinateDiff, Coordinates => SkycalcCoordinates}
+import edu.gemini.spModel.core.SiderealTarget
+
+import scala.collection.mutable.ListBuffer
+
+/**
+ * A 2-d tree of candidates indexed by their offset from the base position.
+ * Offsets are in arcsecs and in the same (-p, -q) frame used by the patrol
+ * fields, so that the candidates that may fall in a patrol field can be found
+ * with a range query on its bounds.  Offsets don't depend on the position
+ * angle so the same index serves all the angles in an estimate.
+ */
+protected final class OffsetIndex private (xs: Array[Double], ys: Array[Double], targets: Array[SiderealTarget]) {
+
+  def size: Int = targets.length
+
+  /**
+   * Candidates whose offset is within the given rectangle, boundaries
+   * included.
+   */
+  def within(r: Rectangle2D): List[SiderealTarget] = {
+    val (minX, maxX, minY, maxY) = (r.getMinX, r.getMaxX, r.getMinY, r.getMaxY)
+    val res = ListBuffer.empty[SiderealTarget]
+
+    // Nodes are stored in order, the root of each subtree in [lo, hi) is at
+    // the middle and splits on x at even depths and on y at odd ones.
+    def go(lo: Int, hi: Int, depth: Int): Unit =
+      if (lo < hi) {
+        val mid = (lo + hi) >>> 1
+        val x   = xs(mid)
+        val y   = ys(mid)
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY) res += targets(mid)
+
+        val (v, min, max) = if (depth % 2 == 0) (x, minX, maxX) else (y, minY, maxY)
+        if (min <= v) go(lo, mid, depth + 1)
+        if (v <= max) go(mid + 1, hi, depth + 1)
+      }
+
+    go(0, targets.length, 0)
+    res.toList
+  }
+}
+
+protected object OffsetIndex {
+
+  /**
+   * Offset of the candidate from the base in the patrol field frame,
+   * calculated as in `PatrolField.Validator`.
+   */
+  def offset(base: SkycalcCoordinates, st: SiderealTarget): (Double, Double) = {
+    val c   = new SkycalcCoordinates(st.coordinates.ra.toAngle.toDegrees, st.coordinates.dec.toDegrees)
+    val dis = new CoordinateDiff(base, c).getOffset
+    (-dis.p.toArcsecs.getMagnitude, -dis.q.toArcsecs.getMagnitude)
+  }
+
+  def apply(base: SkycalcCoordinates, candidates: List[SiderealTarget]): OffsetIndex = {
+    val entries = candidates.map(st => (offset(base, st), st)).toArray
+
+    // Sort each subtree by the split coordinate so its median becomes the
+    // root.
+    def build(lo: Int, hi: Int, depth: Int): Unit =
+      if (hi - lo > 1) {
+        val sorted = entries.slice(lo, hi).sortBy { case ((x, y), _) => if (depth % 2 == 0) x else y }
+        Array.copy(sorted, 0, entries, lo, sorted.length)
+        val mid = (lo + hi) >>> 1
+        build(lo, mid, depth + 1)
+        build(mid + 1, hi, depth + 1)
+      }
+
+    build(0, entries.length, 0)
+    new OffsetIndex(entries.map(_._1._1), entries.map(_._1._2), entries.map(_._2))
+  }
+}
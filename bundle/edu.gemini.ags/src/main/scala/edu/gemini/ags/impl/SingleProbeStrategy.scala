@@ -70,8 +70,8 @@ case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStrategyP
     // If we are unbounded and there are any candidates, we are guaranteed success.
     val pac   = ctx.getPosAngleConstraint(UNBOUNDED)
     val cv    = CandidateValidator(params, mt, candidates)
-    val steps = pac.steps(ctx.getPositionAngle, params.stepSize.toOldModel).toList.asScala
-    val anglesWithResults  = steps.filter { angle => cv.exists(ctx.withPositionAngle(angle)) }
+    val steps = pac.steps(ctx.getPositionAngle, params.stepSize.toOldModel).toList.asScala.toList
+    val anglesWithResults  = cv.validAngles(ctx, steps)
     val successProbability = anglesWithResults.size.toDouble / steps.size.toDouble
     AgsStrategy.Estimate.toEstimate(successProbability)
   }
@@ -92,15 +92,16 @@ case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStrategyP
 
     def selectMinVigetting(vprobe: VProbe, allValid: List[(ObsContext, List[SiderealTarget])]): Option[AgsStrategy.Selection] = {
 
-      // Analyze the candidates to get magnitude and quality.
-      val analyzed = allValid.map { case (ctx0, targets) =>
+      // Analyze the candidates to get magnitude and quality.  Each context is
+      // independent so they are analyzed in parallel.
+      val analyzed = allValid.par.map { case (ctx0, targets) =>
         val analyzedTargets = for {
           target    <- targets
           analysis  <- AgsAnalysis.analysis(ctx0, mt, vprobe, target, params.probeBands)
           magnitude <- params.referenceMagnitude(target)
         } yield (target, magnitude, analysis.quality)
         (ctx0, analyzedTargets)
-      }
+      }.toList
 
       // Now we don't care about anything but the best quality, even if it
       // vignettes more than a lower quality option.  Figure out what the
@@ -196,10 +197,12 @@ case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStrategyP
     }
   }
 
+  // Each candidate is validated at its own position angle, so they are
+  // validated in parallel.
   private def filterUnbounded(ctx: ObsContext, mt: MagnitudeTable, candidates: List[SiderealTarget]): List[(ObsContext, List[SiderealTarget])] = {
     for {
       base <- ctx.getBaseCoordinates.asScalaOpt.toList
-      so <- candidates
+      so <- candidates.par
       pa = SingleProbeStrategy.calculatePositionAngle(base.toNewModel, so)
       ctxSo = ctx.withPositionAngle(pa.toOldModel)
       if CandidateValidator(params, mt, List(so)).exists(ctxSo)
@@ -223,9 +226,9 @@ case class SingleProbeStrategy(key: AgsStrategyKey, params: SingleProbeStrategyP
         so   <- candidates
       } yield (SingleProbeStrategy.calculatePositionAngle(base.toNewModel, so), so)
 
-    pairs.filter {
+    pairs.par.filter {
       case (angle, st) => CandidateValidator(params, mt, List(st)).exists(ctx.withPositionAngle(angle.toOldModel))
-    }
+    }.toList
 
   }
 
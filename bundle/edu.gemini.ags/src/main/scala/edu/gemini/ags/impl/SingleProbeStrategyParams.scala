@@ -38,6 +38,10 @@ sealed trait SingleProbeStrategyParams {
 
   def validator(ctx: ObsContext): GuideStarValidator = guideProbe
 
+  // Patrol field that contains every guide star passed by the validator, if
+  // known.  Used to limit the candidates that need to be validated.
+  def patrolField(ctx: ObsContext): Option[PatrolField] = guideProbe.getCorrectedPatrolField(ctx).asScalaOpt
+
   def probeBands: BandsList = RBandsList
 
   // For a given target return a magnitude value that can be used to select a target
@@ -60,6 +64,10 @@ object SingleProbeStrategyParams {
     override val site        = Site.GN
     override def stepSize    = Angle.fromDegrees(90)
     override def minDistance = Some(Angle.zero)
+
+    // Altair validates the guide star position at the scheduling block time,
+    // so the catalog position doesn't bound it.
+    override def patrolField(ctx: ObsContext): Option[PatrolField] = None
   }
 
   case object Flamingos2OiwfsParams extends SingleProbeStrategyParams {
@@ -104,5 +112,8 @@ case class PwfsParams(site: Site, guideProbe: PwfsGuideProbe) extends SingleProb
   // We have a special validator for Pwfs.
   override def validator(ctx: ObsContext): GuideStarValidator =
     vignettingProofPatrolField(ctx).validator(ctx)
+
+  override def patrolField(ctx: ObsContext): Option[PatrolField] =
+    Some(vignettingProofPatrolField(ctx))
   }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package edu.gemini.ags.api
+
+import edu.gemini.ags.conf.ProbeLimitsTable
+import edu.gemini.shared.util.immutable.{None => JNone, Some => JSome}
+import edu.gemini.spModel.core._
+import edu.gemini.spModel.gemini.obscomp.SPSiteQuality
+import edu.gemini.spModel.gemini.phoenix.InstPhoenix
+import edu.gemini.spModel.obs.context.ObsContext
+import edu.gemini.spModel.target.SPTarget
+import edu.gemini.spModel.target.env.TargetEnvironment
+import org.specs2.mutable.Specification
+
+import scalaz._
+import Scalaz._
+
+class AgsBatchSpec extends Specification {
+  private val magTable = ProbeLimitsTable.loadOrThrow()
+
+  def context(ra: Double, dec: Double, posAngle: Double): ObsContext = {
+    val env  = TargetEnvironment.create(new SPTarget(ra, dec))
+    val inst = new InstPhoenix <| {_.setPosAngle(posAngle)}
+    ObsContext.create(env, inst, new JSome(Site.GS), SPSiteQuality.Conditions.NOMINAL, null, null, JNone.instance())
+  }
+
+  "AgsBatch" should {
+    "analyze as the current strategy does" in {
+      val ctxs     = List(context(86.84, -51.04, 0), context(86.84, -51.04, 0), context(86.84, -51.04, 90), context(120.0, -30.0, 0))
+      val expected = ctxs.map(ctx => AgsRegistrar.currentStrategy(ctx).foldMap(_.analyze(ctx, magTable)))
+      AgsBatch.analyze(ctxs, magTable) must beEqualTo(expected)
+      // Now from the cache
+      AgsBatch.analyze(ctxs, magTable) must beEqualTo(expected)
+    }
+  }
+}
@@ -1,7 +1,10 @@
 package edu.gemini.ags.gems.mascot
 
+import edu.gemini.catalog.api.UCAC4
+import edu.gemini.catalog.votable.{TargetsTable, VoTableParser}
 import edu.gemini.spModel.core._
-import org.junit.Test
+import jsky.coords.WorldCoords
+import org.junit.{Ignore, Test}
 import org.junit.Assert._
 import java.util.Date
 
@@ -100,6 +103,53 @@ class MascotTest {
 
   }
 
+  @Test def testParallelFindBestAsterism() {
+    val (serialStars, serialList) = Mascot.findBestAsterism(allStarList)
+    val (parallelStars, parallelList) = Mascot.findBestAsterism(allStarList, parallel = true)
+
+    assertEquals(serialStars, parallelStars)
+    assertEquals(serialList.map(_.stars), parallelList.map(_.stars))
+    assertEquals(serialList.map(_.avgstrehl), parallelList.map(_.avgstrehl))
+  }
+
+  @Test def testCancelFindBestAsterism() {
+    val stop: Mascot.ProgressFunction = (s: Strehl, count: Int, total: Int) => false
+    assertEquals(1, Mascot.findBestAsterism(allStarList, progress = stop)._2.size)
+    assertEquals(1, Mascot.findBestAsterism(allStarList, progress = stop, parallel = true)._2.size)
+  }
+
+  // === this is for performance trimming purposes, not an actual test case
+
+  @Ignore
+  @Test def timingTest() {
+    val catalogs = List(
+      ("/gems_TYC_8345_1155_1.xml", "17:25:27.529", "-48:27:24.02"),
+      ("/gems_sn1987A.xml",         "05:35:28.020", "-69:16:11.07"),
+      ("/gems_m6.xml",              "17:40:20.000", "-32:15:12.00"),
+      ("/gems_bpm_37093.xml",       "12:38:49.820", "-49:48:00.20"))
+
+    val quiet: Mascot.ProgressFunction = (s: Strehl, count: Int, total: Int) => true
+
+    def time[A](a: => A): (A, Long) = {
+      val t = System.currentTimeMillis()
+      val res = a
+      (res, System.currentTimeMillis() - t)
+    }
+
+    catalogs.foreach { case (file, ra, dec) =>
+      val targets = VoTableParser.parse(UCAC4, getClass.getResourceAsStream(file)).fold(
+        p => sys.error(s"Could not parse $file: $p"),
+        r => r.tables.flatMap(t => TargetsTable(t).rows))
+      val base = new WorldCoords(ra, dec)
+
+      val ((stars, serialList), serialMs) = time(MascotCat.findBestAsterism(targets, base.getRaDeg, base.getDecDeg, progress = quiet))
+      val ((_, parallelList), parallelMs) = time(MascotCat.findBestAsterism(targets, base.getRaDeg, base.getDecDeg, progress = quiet, parallel = true))
+      assertEquals(serialList.map(_.avgstrehl), parallelList.map(_.avgstrehl))
+
+      println(s"$file: ${targets.size} targets, ${stars.size} stars, ${serialList.size} asterisms, serial: ${serialMs}ms, parallel: ${parallelMs}ms")
+    }
+  }
+
   @Test def testSelectStarsOnMag() {
     val slist = Mascot.selectStarsOnMag(allStarList)
     assertEquals(7, slist.size)
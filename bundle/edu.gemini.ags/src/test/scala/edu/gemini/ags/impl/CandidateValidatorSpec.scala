@@ -0,0 +1,48 @@
+package edu.gemini.ags.impl
+
+import java.awt.geom.Rectangle2D
+
+import edu.gemini.ags.conf.ProbeLimitsTable
+import edu.gemini.skycalc.{Coordinates => SkycalcCoordinates}
+import edu.gemini.spModel.core._
+
+import org.specs2.mutable.Specification
+
+import scala.util.Random
+
+class CandidateValidatorSpec extends Specification {
+  private val magTable = ProbeLimitsTable.loadOrThrow()
+
+  "OffsetIndex" should {
+    "find the same candidates as a linear search" in {
+      val r     = new Random(42)
+      val base  = new SkycalcCoordinates(150.0, -30.0)
+      val cands = List.tabulate(500) { i =>
+        val c = Coordinates(RightAscension.fromDegrees(150.0 + (r.nextDouble() - 0.5) / 5), Declination.fromAngle(Angle.fromDegrees(-30.0 + (r.nextDouble() - 0.5) / 5)).getOrElse(Declination.zero))
+        SiderealTarget.empty.copy(name = s"t$i", coordinates = c)
+      }
+      val index = OffsetIndex(base, cands)
+
+      val rects = List.fill(50) {
+        new Rectangle2D.Double((r.nextDouble() - 0.5) * 600, (r.nextDouble() - 0.5) * 600, r.nextDouble() * 300, r.nextDouble() * 300)
+      }
+      rects.filterNot { rect =>
+        val expected = cands.filter { st =>
+          val (x, y) = OffsetIndex.offset(base, st)
+          x >= rect.getMinX && x <= rect.getMaxX && y >= rect.getMinY && y <= rect.getMaxY
+        }
+        index.within(rect).map(_.name).toSet == expected.map(_.name).toSet
+      } must beEmpty
+    }
+  }
+
+  "CandidateValidator" should {
+    "find the same valid angles as checking every angle" in {
+      val angles = SingleProbeStrategyBenchmark.angles(5.0)
+      SingleProbeStrategyBenchmark.cases(magTable).filterNot { c =>
+        val cv = CandidateValidator(c.params, magTable, c.candidates)
+        cv.validAngles(c.ctx, angles) == angles.filter(a => cv.exists(c.ctx.withPositionAngle(a)))
+      }.map(_.name) must beEmpty
+    }
+  }
+}
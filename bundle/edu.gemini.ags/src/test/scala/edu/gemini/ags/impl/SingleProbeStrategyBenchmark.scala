@@ -0,0 +1,101 @@
+package edu.gemini.ags.impl
+
+import edu.gemini.ags.api.AgsMagnitude.MagnitudeTable
+import edu.gemini.ags.conf.ProbeLimitsTable
+import edu.gemini.catalog.votable.TestVoTableBackend
+import edu.gemini.skycalc.{Angle => SkycalcAngle}
+import edu.gemini.spModel.ags.AgsStrategyKey
+import edu.gemini.spModel.ags.AgsStrategyKey._
+import edu.gemini.spModel.core._
+import edu.gemini.shared.util.immutable.{None => JNone, Some}
+import edu.gemini.spModel.gemini.flamingos2.Flamingos2
+import edu.gemini.spModel.gemini.gmos.InstGmosNorth
+import edu.gemini.spModel.gemini.obscomp.SPSiteQuality
+import edu.gemini.spModel.obs.context.ObsContext
+import edu.gemini.spModel.target.SPTarget
+import edu.gemini.spModel.target.env.TargetEnvironment
+import edu.gemini.spModel.target.obsComp.PwfsGuideProbe
+import edu.gemini.spModel.telescope.{PosAngleConstraint, PosAngleConstraintAware}
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+import scalaz._
+import Scalaz._
+
+/**
+ * Times the position angle sweep of `SingleProbeStrategy` estimates over
+ * canned catalogs for GMOS, Flamingos2 and PWFS, comparing the indexed
+ * parallel sweep with validating every candidate at every angle.
+ *
+ * <pre>
+ * SingleProbeStrategyBenchmark [iterations] [stepDegrees]
+ * </pre>
+ */
+object SingleProbeStrategyBenchmark {
+
+  case class Case(name: String, params: SingleProbeStrategyParams, ctx: ObsContext, candidates: List[SiderealTarget])
+
+  private def target(ra: Angle, dec: Declination): SPTarget =
+    new SPTarget(ra.toDegrees, dec.toDegrees)
+
+  private def unbounded[A <: PosAngleConstraintAware](inst: A): A =
+    inst <| {_.setPosAngleConstraint(PosAngleConstraint.UNBOUNDED)}
+
+  private def loadCase(mt: MagnitudeTable, name: String, key: AgsStrategyKey, params: SingleProbeStrategyParams, file: String, ctx: ObsContext): Case = {
+    val strategy   = SingleProbeStrategy(key, params, TestVoTableBackend(file))
+    val candidates = Await.result(strategy.candidates(ctx, mt), 10.seconds).flatMap(_._2)
+    Case(name, params, ctx, candidates)
+  }
+
+  // Same setups as the OCSADV-255 cases in SingleProbeStrategySpec, with an
+  // unbounded position angle.
+  def cases(mt: MagnitudeTable): List[Case] = {
+    // NGC 101
+    val ngc101 = target(Angle.fromHMS(0, 23, 54.614).getOrElse(Angle.zero), Declination.fromAngle(Angle.zero - Angle.fromDMS(32, 32, 10.34).getOrElse(Angle.zero)).getOrElse(Declination.zero))
+    // RMC 136
+    val rmc136 = target(Angle.fromHMS(5, 38, 42.396).getOrElse(Angle.zero), Declination.fromAngle(Angle.zero - Angle.fromDMS(69, 6, 3.36).getOrElse(Angle.zero)).getOrElse(Declination.zero))
+    // M1
+    val m1     = target(Angle.fromHMS(5, 34, 31.940).getOrElse(Angle.zero), Declination.fromAngle(Angle.fromDMS(22, 0, 52.20).getOrElse(Angle.zero)).getOrElse(Declination.zero))
+
+    val nominal = SPSiteQuality.Conditions.NOMINAL.sb(SPSiteQuality.SkyBackground.ANY)
+    val gmosCtx = ObsContext.create(TargetEnvironment.create(ngc101), unbounded(new InstGmosNorth), new Some(Site.GN), nominal, null, null, JNone.instance())
+    val f2Ctx   = ObsContext.create(TargetEnvironment.create(rmc136), unbounded(new Flamingos2), new Some(Site.GS), SPSiteQuality.Conditions.WORST, null, null, JNone.instance())
+    val pwfsCtx = ObsContext.create(TargetEnvironment.create(m1), unbounded(new InstGmosNorth), new Some(Site.GN), SPSiteQuality.Conditions.WORST, null, null, JNone.instance())
+
+    List(
+      loadCase(mt, "GMOS-N OIWFS", GmosNorthOiwfsKey, SingleProbeStrategyParams.GmosOiwfsParams(Site.GN), "/gmosn_oiwfs.xml", gmosCtx),
+      loadCase(mt, "F2 OIWFS", Flamingos2OiwfsKey, SingleProbeStrategyParams.Flamingos2OiwfsParams, "/f2_oiwfs.xml", f2Ctx),
+      loadCase(mt, "GMOS-N PWFS2", Pwfs2NorthKey, SingleProbeStrategyParams.PwfsParams(Site.GN, PwfsGuideProbe.pwfs2), "/gmosn_pwfs2.xml", pwfsCtx)
+    )
+  }
+
+  def angles(stepDegrees: Double): List[SkycalcAngle] =
+    (0 until (360.0 / stepDegrees).toInt).toList.map(i => SkycalcAngle.degrees(i * stepDegrees))
+
+  private def time[A](iterations: Int)(a: => A): (A, Double) = {
+    val start = System.nanoTime()
+    val r     = (1 until iterations).foldLeft(a)((_, _) => a)
+    (r, (System.nanoTime() - start) / 1000000.0 / iterations)
+  }
+
+  def main(args: Array[String]): Unit = {
+    val iterations = if (args.length > 0) args(0).toInt else 20
+    val step       = if (args.length > 1) args(1).toDouble else 1.0
+
+    val mt = ProbeLimitsTable.loadOrThrow()
+    val as = angles(step)
+
+    cases(mt).foreach { c =>
+      val cv = CandidateValidator(c.params, mt, c.candidates)
+      // Warm up
+      as.filter(a => cv.exists(c.ctx.withPositionAngle(a)))
+      cv.validAngles(c.ctx, as)
+
+      val (all, tAll)     = time(iterations)(as.filter(a => cv.exists(c.ctx.withPositionAngle(a))))
+      val (valid, tValid) = time(iterations)(cv.validAngles(c.ctx, as))
+
+      println(f"${c.name}%-14s ${c.candidates.size}%5d candidates ${as.size}%4d angles: sweep ${tAll}%9.2f ms, indexed ${tValid}%9.2f ms (${valid.size}/${all.size} angles)")
+    }
+  }
+}
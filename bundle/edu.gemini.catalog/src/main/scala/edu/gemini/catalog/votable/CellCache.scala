@@ -0,0 +1,199 @@
+package edu.gemini.catalog.votable
+
+import edu.gemini.catalog.api.{CatalogName, ConeSearchCatalogQuery}
+import edu.gemini.spModel.core.{Coordinates, SiderealTarget}
+
+import scala.collection.JavaConverters._
+
+/**
+ * A cell of the sky.  The sky is split in declination bands of equal height, and each band in cells of equal width
+ * in RA, chosen so that cells are roughly square.  Cells are identified by their band and index within the band.
+ */
+case class SkyCell(band: Int, ix: Int)
+
+object SkyCell {
+  /** Height of the declination bands, in degrees.  Cells must be small compared to the difference between a query
+    * and its widened version (see `CachedBackend.widen`) so that the cells of a query fit in the widened one. */
+  val BandHeight = 0.025
+
+  val Bands: Int = math.ceil(180.0 / BandHeight).toInt
+
+  private val cellsPerBand: Array[Int] = Array.tabulate(Bands) { b =>
+    val (lo, hi) = decRange(b)
+    val maxDec   = math.max(math.abs(lo), math.abs(hi))
+    math.max(1, math.floor(360.0 * math.cos(math.toRadians(maxDec)) / BandHeight).toInt)
+  }
+
+  /** Range of declinations covered by a band, in degrees. */
+  def decRange(band: Int): (Double, Double) =
+    (-90.0 + band * BandHeight, math.min(90.0, -90.0 + (band + 1) * BandHeight))
+
+  /** Width in RA of the cells of a band, in degrees. */
+  def raWidth(band: Int): Double = 360.0 / cellsPerBand(band)
+
+  private def bandOf(dec: Double): Int =
+    math.min(Bands - 1, math.max(0, math.floor((dec + 90.0) / BandHeight).toInt))
+
+  private def ixOf(band: Int, ra: Double): Int =
+    Math.floorMod(math.floor(ra / raWidth(band)).toInt, cellsPerBand(band))
+
+  /** The cell containing the given coordinates. */
+  def of(c: Coordinates): SkyCell = {
+    val band = bandOf(c.dec.toDegrees)
+    SkyCell(band, ixOf(band, c.ra.toAngle.toDegrees))
+  }
+
+  /**
+   * Cells that may contain points within `radius` degrees of `c`, in band and RA order.  This includes all the cells
+   * overlapping the bounding box of the cone, so it may include a few that don't actually overlap the cone.
+   */
+  def covering(c: Coordinates, radius: Double): List[SkyCell] = {
+    val ra         = c.ra.toAngle.toDegrees
+    val dec        = c.dec.toDegrees
+    val aroundPole = dec + radius >= 90.0 || dec - radius <= -90.0
+    val halfWidth  = if (aroundPole) 180.0 else math.toDegrees(math.asin(math.sin(math.toRadians(radius)) / math.cos(math.toRadians(dec))))
+
+    (for {
+      band <- bandOf(dec - radius) to bandOf(dec + radius)
+      ix   <- ixRange(band, ra, halfWidth)
+    } yield SkyCell(band, ix)).toList
+  }
+
+  /**
+   * Cells that contain points within `radius` degrees of `c`, in band and RA order.  Unlike `covering` this leaves
+   * out the cells in the corners of the bounding box that are too far away, using the distance to the cell center.
+   */
+  def intersecting(c: Coordinates, radius: Double): List[SkyCell] = {
+    val ra  = c.ra.toAngle.toDegrees
+    val dec = c.dec.toDegrees
+    covering(c, radius).filter { cell =>
+      val (cra, cdec) = center(cell)
+      distance(ra, dec, cra, cdec) - maxDistance(cra, cdec, cell) <= radius
+    }
+  }
+
+  // Coordinates of the center of a cell, in degrees
+  private def center(cell: SkyCell): (Double, Double) = {
+    val (lo, hi) = decRange(cell.band)
+    val w        = raWidth(cell.band)
+    (cell.ix * w + w / 2, (lo + hi) / 2)
+  }
+
+  private def ixRange(band: Int, ra: Double, halfWidth: Double): Seq[Int] = {
+    val n  = cellsPerBand(band)
+    val w  = raWidth(band)
+    val lo = math.floor((ra - halfWidth) / w).toInt
+    val hi = math.floor((ra + halfWidth) / w).toInt
+    if (hi - lo + 1 >= n) 0 until n else (lo to hi).map(Math.floorMod(_, n))
+  }
+
+  /**
+   * An upper bound of the distance in degrees from `c` to any point in the cell.
+   */
+  def maxDistance(c: Coordinates, cell: SkyCell): Double =
+    maxDistance(c.ra.toAngle.toDegrees, c.dec.toDegrees, cell)
+
+  private def maxDistance(ra: Double, dec: Double, cell: SkyCell): Double = {
+    val (lo, hi) = decRange(cell.band)
+    val w        = raWidth(cell.band)
+    val ra0      = cell.ix * w
+    val dra      = normalize(ra0 - ra)
+
+    if (dra >= -90.0 && dra + w <= 90.0) {
+      // Within 90 degrees of RA the distance grows with the RA difference and
+      // is largest at either end of the declination range, so it is largest
+      // at a corner.
+      (for {
+        r <- List(ra0, ra0 + w)
+        d <- List(lo, hi)
+      } yield distance(ra, dec, r, d)).max
+    } else {
+      // Otherwise go through the nearest pole.
+      if (lo + hi >= 0) (90.0 - dec) + (90.0 - lo) else (90.0 + dec) + (90.0 + hi)
+    }
+  }
+
+  // Normalizes an angle in degrees to [-180, 180)
+  private def normalize(a: Double): Double = {
+    val r = a % 360.0
+    if (r >= 180.0) r - 360.0 else if (r < -180.0) r + 360.0 else r
+  }
+
+  // Angular distance in degrees between two positions given in degrees
+  private def distance(ra1: Double, dec1: Double, ra2: Double, dec2: Double): Double = {
+    val dDec = math.toRadians(dec2 - dec1)
+    val dRa  = math.toRadians(ra2 - ra1)
+    val a    = math.pow(math.sin(dDec / 2), 2) + math.cos(math.toRadians(dec1)) * math.cos(math.toRadians(dec2)) * math.pow(math.sin(dRa / 2), 2)
+    math.toDegrees(2 * math.asin(math.min(1.0, math.sqrt(a))))
+  }
+}
+
+/**
+ * LRU cache of catalog targets by sky cell.  Each entry holds all the targets of a catalog within a cell, so a cone
+ * search can be answered from the cells covering it.  The total number of targets held is bounded by `maxTargets`,
+ * the least recently used cells are dropped to make room for new ones.
+ */
+class CellCache(maxTargets: Int) {
+  // Access needs to be synchronized
+  private val cells = new java.util.LinkedHashMap[(CatalogName, SkyCell), List[SiderealTarget]](16, 0.75f, true)
+  private var size  = 0
+
+  /**
+   * Gets the targets for those of the given cells that are in the cache.
+   */
+  def get(catalog: CatalogName, cs: List[SkyCell]): Map[SkyCell, List[SiderealTarget]] = synchronized {
+    cs.flatMap(c => Option(cells.get((catalog, c))).map(c -> _)).toMap
+  }
+
+  /**
+   * Adds the targets for the given cells, each of which must hold all the targets of the catalog in the cell.
+   */
+  def put(catalog: CatalogName, cs: Map[SkyCell, List[SiderealTarget]]): Unit = synchronized {
+    cs.foreach { case (c, ts) =>
+      Option(cells.put((catalog, c), ts)).foreach(old => size -= old.size)
+      size += ts.size
+    }
+
+    // Keep size constrained
+    val it = cells.values.iterator
+    while (size > maxTargets && it.hasNext) {
+      size -= it.next().size
+      it.remove()
+    }
+  }
+
+  /** The number of targets in the cache. */
+  def targetCount: Int = synchronized { size }
+
+  /** The cells in the cache for the given catalog. */
+  def cellsFor(catalog: CatalogName): Set[SkyCell] = synchronized {
+    cells.keySet.asScala.collect { case (`catalog`, c) => c }.toSet
+  }
+}
+
+/**
+ * LRU cache of the targets of whole cone searches.  A cell is only cached once a fetched cone contains it entirely,
+ * which never happens for the cells of queries of a few arcminutes, so those are answered from any cached cone
+ * containing them instead.  The cones must have no magnitude constraints.
+ */
+class ConeCache(maxEntries: Int) {
+  // Access needs to be synchronized
+  private val cones = new java.util.LinkedHashMap[ConeSearchCatalogQuery, List[SiderealTarget]](16, 0.75f, true) {
+    override def removeEldestEntry(e: java.util.Map.Entry[ConeSearchCatalogQuery, List[SiderealTarget]]): Boolean =
+      size > maxEntries
+  }
+
+  /**
+   * Gets the targets of a cached cone containing the given query, if any.
+   */
+  def get(q: ConeSearchCatalogQuery): Option[List[SiderealTarget]] = synchronized {
+    cones.keySet.asScala.find(_.isSuperSetOf(q)).map(cones.get)
+  }
+
+  /**
+   * Adds all the targets of the catalog within the given cone.
+   */
+  def put(cone: ConeSearchCatalogQuery, ts: List[SiderealTarget]): Unit = synchronized {
+    cones.put(cone, ts)
+  }
+}
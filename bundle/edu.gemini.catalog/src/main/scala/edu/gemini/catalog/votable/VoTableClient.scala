@@ -10,7 +10,6 @@ import edu.gemini.spModel.core.SiderealTarget
 import org.apache.commons.httpclient.{NameValuePair, HttpClient}
 import org.apache.commons.httpclient.methods.GetMethod
 
-import scala.annotation.tailrec
 import scala.concurrent.ExecutionContext.Implicits.global
 import scala.concurrent.{Promise, Future, future}
 import scala.util.{Failure, Success}
@@ -27,115 +26,82 @@ trait VoTableBackend {
 trait CachedBackend extends VoTableBackend {
   case class SearchKey(query: CatalogQuery, url: URL)
 
-  case class CacheEntry[K, V](k: K, v: V)
+  // Catalog targets by sky cell, shared by all the cone searches to this backend
+  // Note that this assumes all catalogues give the same result for a given query
+  private val cells = new CellCache(CachedBackend.MaxCachedTargets)
 
-  /**
-   * A function memoization strategy closely based on scalaz's Memo
-   */
-  sealed abstract class Cache[K, V] {
-    def apply(z: K => V): K => V
+  // Whole cones fetched for queries too small to be answered from the cells
+  private val cones = new ConeCache(CachedBackend.MaxCachedCones)
+
+  // Make the query wider increasing cache efficiency
+  protected def widen(q: CatalogQuery): CatalogQuery = q match {
+    case c: ConeSearchCatalogQuery =>
+      val widerLimit = min(c.radiusConstraint.maxLimit.toArcmins + 10, c.radiusConstraint.maxLimit.toArcmins * 1.5)
+      c.copy(radiusConstraint = RadiusConstraint.between(c.radiusConstraint.minLimit, Angle.fromArcmin(widerLimit)))
+    case x => x
   }
 
+  // Do a query to the appropriate backend
+  protected def query(e: SearchKey): QueryResult
+
   /**
-   * Cache for CatalogQueries. Key-based caching as in Memo doesn't fulfill the needs in this case as we can reuse queries
-   * done for different combinations of targets and radius even if the query 'key' doesn't match
-   * Instead we need a function that can traverse the cache finding matches to reuse the result
+   * Answers a cone search with the targets of the cells it intersects, or else with those of an earlier fetched cone
+   * containing it.  Otherwise the widened query is sent to the catalog, and the cells that lie entirely within it are
+   * cached.  If those cells don't cover the query, as happens for queries of a few arcminutes, the whole cone is cached
+   * as well.  The result is not filtered.
    */
-  object QueryCache {
+  private def cellQuery(q: ConeSearchCatalogQuery, url: URL): QueryResult = {
+    val needed = SkyCell.intersecting(q.base, q.radiusConstraint.maxLimit.toDegrees)
+    val cached = cells.get(q.catalog, needed)
 
-    // Container used internally on the cache, the type definition leaks into the client but that helps performance
-    // Vector was selected as it gives effective constant time for prepend, patch and dropRight
-    type CacheContainer[K, V] = Vector[CacheEntry[K, V]]
-    // Function provided by the caller to check if a value is on the cache
-    type FindFunction[K, V] = (CacheContainer[K, V], K) => Option[(Int, V)]
+    def fromCache: Option[List[SiderealTarget]] =
+      if (needed.forall(cached.contains)) Some(needed.flatMap(cached)) else cones.get(q)
 
-    // based on scalaz's Memo.memo function
-    private def cache[K, V](f: (K => V) => K => V): Cache[K, V] = new Cache[K, V] {
-      def apply(z: K => V) = f(z)
-    }
+    fromCache.map(ts => QueryResult(q, CatalogQueryResult(TargetsTable(ts), Nil))).getOrElse {
+      val wideRadius = widen(q) match {
+        case c: ConeSearchCatalogQuery => c.radiusConstraint.maxLimit.toDegrees
+        case _                         => q.radiusConstraint.maxLimit.toDegrees
+      }
 
-    // Build an LRU cache with a function that will traverse the cache finding suitable queries
-    private def lruCache[K, V](a: CacheContainer[K, V], findByKey: FindFunction[K, V], maxSize: Int = 100): Cache[K, V] = {
-      // Access needs to be synchronized
-      var m = a
-
-      cache[K, V](f => k => {
-        val value = a.synchronized {
-          val r = findByKey(m, k)
-          // Put it at the head if found
-          r.foreach {
-            case (pos, x) =>
-              // Remove it from its current position
-              val ce = m(pos)
-              m = m.patch(pos, Nil, 1)
-              // Move it to the front
-              m = ce +: m
-          }
-          r.map(_._2)
+      // Allow for the rounding of the center and radius in the query
+      val fetch = ConeSearchCatalogQuery(None, q.base, RadiusConstraint.between(Angle.zero, Angle.fromDegrees(wideRadius + CachedBackend.RoundingAllowance)), Nil, q.catalog)
+      val qr    = query(SearchKey(fetch, url))
+
+      // Don't cache incomplete results
+      if (!qr.result.containsError) {
+        val rows     = qr.result.targets.rows
+        val complete = SkyCell.covering(q.base, wideRadius).filter(SkyCell.maxDistance(q.base, _) <= wideRadius)
+        val byCell   = rows.groupBy(t => SkyCell.of(t.coordinates))
+        cells.put(q.catalog, complete.map(c => c -> byCell.getOrElse(c, Nil)).toMap)
+        if (!needed.forall(complete.contains)) {
+          cones.put(ConeSearchCatalogQuery(None, q.base, RadiusConstraint.between(Angle.zero, Angle.fromDegrees(wideRadius)), Nil, q.catalog), rows)
         }
-        value.getOrElse {
-          val r = f(k)
-          // Using smaller locks increases the chances to make multiple calls to f(k) but
-          // calling f(k) inside the lock notably reduces concurrency doing remote queries
-          a.synchronized {
-            // prepend the result at the beginning
-            m = CacheEntry(k, r) +: m
-            // Keep size constrained
-            if (m.size > maxSize) {
-              m = m.dropRight(1)
-            }
-          }
-          r
-        }
-      })
+      }
+      qr.copy(query = q)
     }
-
-    /**
-     * Builds a cache with a contains function to find cache hits
-     */
-    def buildCache[K, V](contains: FindFunction[K, V], maxSize: Int = 100) = lruCache(Vector.empty, contains, maxSize)
-
   }
 
-  private val cache:Cache[SearchKey, QueryResult] = {
-    // Find if a search is already in the cache
-    // Note that this assumes all catalogues give the same result for a given query
-    def contains(a: QueryCache.CacheContainer[SearchKey, QueryResult], k: SearchKey):Option[(Int, QueryResult)] = {
-      @tailrec
-      def go(pos: Int):Option[(Int, QueryResult)] =
-        a.lift(pos) match {
-          case Some(CacheEntry(SearchKey(query:ConeSearchCatalogQuery, _), v)) =>
-            // Note we need to compare against the widened query
-            if (widen(query).isSuperSetOf(k.query)) Some((pos, v)) else go(pos + 1)
-          case _                                                               => None // Not caching named queries so far
-        }
-      go(0)
+  protected [votable] def doQuery(query: CatalogQuery, url: URL): Future[QueryResult] = future {
+    val qr = query match {
+      case c: ConeSearchCatalogQuery => cellQuery(c, url)
+      case _                         => this.query(SearchKey(query, url)) // Not caching named queries so far
     }
-
-    QueryCache.buildCache(contains)
-  }
-
-  // Make the query wider increasing cache efficiency
-  protected def widen(q: CatalogQuery): CatalogQuery = q match {
-    case c: ConeSearchCatalogQuery =>
-      val widerLimit = min(c.radiusConstraint.maxLimit.toArcmins + 10, c.radiusConstraint.maxLimit.toArcmins * 1.5)
-      c.copy(radiusConstraint = RadiusConstraint.between(c.radiusConstraint.minLimit, Angle.fromArcmin(widerLimit)))
-    case x => x
+    // Filter on the query results
+    qr.copy(query = query, result = qr.result.filter(query))
   }
 
-  // Cache the query not the future so that failed queries are executed again
-  protected val cachedQuery = cache(query)
+}
 
-  // Do a query to the appropriate backend
-  protected def query(e: SearchKey): QueryResult
+object CachedBackend {
+  /** Maximum number of targets kept in the cache of each backend. */
+  val MaxCachedTargets = 200000
 
-  // Cache the query not the future so that failed queries are executed again
-  protected [votable] def doQuery(query: CatalogQuery, url: URL): Future[QueryResult] = future {
-    val qr = cachedQuery(SearchKey(query, url))
-    // Filter on the cached query results
-    qr.copy(query = query, result = qr.result.filter(query))
-  }
+  /** Maximum number of whole cones kept in the cache of each backend. */
+  val MaxCachedCones = 100
 
+  /** Degrees added to the radius of the queries sent to the catalog to make up for the rounding of the center and
+    * radius to 0.001 degrees in the query parameters. */
+  val RoundingAllowance = 0.002
 }
 
 /**
@@ -154,8 +120,7 @@ trait RemoteCallBackend {this: CachedBackend =>
 
   override protected def query(e: SearchKey): QueryResult = {
     val method = new GetMethod(queryUrl(e))
-    val widerQuery = widen(e.query)
-    val qs = queryParams(widerQuery)
+    val qs = queryParams(e.query)
     method.setQueryString(qs)
     Log.info(s"Catalog query to ${method.getURI}")
 
@@ -164,9 +129,11 @@ trait RemoteCallBackend {this: CachedBackend =>
 
     try {
       client.executeMethod(method)
-      VoTableParser.parse(e.query.catalog, method.getResponseBodyAsStream, validate) match {
-        case -\/(p) => QueryResult(widerQuery, CatalogQueryResult(TargetsTable.Zero, List(p)))
-        case \/-(y) => QueryResult(widerQuery, CatalogQueryResult(y))
+      // Targets are not filtered while parsing as the result is cached by sky cell and reused for other queries, each
+      // of them filtering it with its own constraints
+      VoTableParser.parseStream(e.query.catalog, method.getResponseBodyAsStream, checkValidity = validate) match {
+        case -\/(p) => QueryResult(e.query, CatalogQueryResult(TargetsTable.Zero, List(p)))
+        case \/-(r) => QueryResult(e.query, r)
       }
     } finally {
       method.releaseConnection()
@@ -177,7 +144,7 @@ trait RemoteCallBackend {this: CachedBackend =>
 case object ConeSearchBackend extends CachedBackend with RemoteCallBackend {
   val instance = this
   override val catalogUrls = NonEmptyList(new URL("http://gscatalog.gemini.edu"), new URL("http://gncatalog.gemini.edu"))
-  override val validate = true
+  override val validate = false // Our own servers, validating would need a copy of the whole response
 
   private def format(a: Angle)= f"${a.toDegrees}%4.03f"
 
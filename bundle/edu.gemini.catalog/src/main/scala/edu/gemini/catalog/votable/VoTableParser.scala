@@ -1,6 +1,10 @@
 package edu.gemini.catalog.votable
 
-import java.io.{ByteArrayInputStream, InputStream}
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, FilterInputStream, IOException, InputStream}
+import javax.xml.XMLConstants
+import javax.xml.stream.{XMLInputFactory, XMLStreamConstants, XMLStreamException, XMLStreamReader}
+import javax.xml.transform.stream.StreamSource
+import javax.xml.validation.{Schema, SchemaFactory}
 
 import edu.gemini.catalog.api.CatalogName
 import edu.gemini.spModel.core._
@@ -33,16 +37,17 @@ object VoTableParser extends VoTableParser {
 
   val xsd = "/votable-1.2.xsd"
   
-  private def validate(xmlText: String): Throwable \/ String = \/.fromTryCatch {
-    import javax.xml.transform.stream.StreamSource
-    import javax.xml.validation.SchemaFactory
+  // The compiled schema is thread safe and can be shared by all validations
+  private lazy val schema: Schema =
+    SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(getClass.getResourceAsStream(xsd)))
 
-    val schemaLang = "http://www.w3.org/2001/XMLSchema"
-    val factory = SchemaFactory.newInstance(schemaLang)
-    val schema = factory.newSchema(new StreamSource(getClass.getResourceAsStream(xsd)))
-    val validator = schema.newValidator()
+  private val inputFactory = XMLInputFactory.newInstance() <| { f =>
+    f.setProperty(XMLInputFactory.SUPPORT_DTD, java.lang.Boolean.FALSE)
+    f.setProperty(XMLInputFactory.IS_COALESCING, java.lang.Boolean.TRUE)
+  }
 
-    validator.validate(new StreamSource(new ByteArrayInputStream(xmlText.getBytes(java.nio.charset.Charset.forName("UTF-8")))))
+  private def validate(xmlText: String): Throwable \/ String = \/.fromTryCatch {
+    schema.newValidator().validate(new StreamSource(new ByteArrayInputStream(xmlText.getBytes(java.nio.charset.Charset.forName("UTF-8")))))
     xmlText
   }
 
@@ -59,6 +64,131 @@ object VoTableParser extends VoTableParser {
       case (_, \/-(r))     => \/.right(parse(XML.loadString(r)))
     }
   }
+
+  // Keeps a copy of the bytes read from the stream so that they can be
+  // validated once parsing is done.
+  private class CopyingInputStream(in: InputStream) extends FilterInputStream(in) {
+    val copy = new ByteArrayOutputStream()
+
+    override def read(): Int = {
+      val b = super.read()
+      if (b >= 0) copy.write(b)
+      b
+    }
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int = {
+      val n = super.read(b, off, len)
+      if (n > 0) copy.write(b, off, n)
+      n
+    }
+
+    override def markSupported(): Boolean = false
+  }
+
+  /**
+   * Parses the VoTable as it is read from the stream, without building the xml document in memory.  Each table row
+   * is converted to a target as soon as it has been read and it is kept only if it passes the `filter`, so the
+   * resulting table holds just the targets of interest.  Problems parsing individual rows are collected in the
+   * result as for `parse`.
+   *
+   * If `checkValidity` is set the document is validated against the VoTable schema after the rows have been parsed,
+   * and a `ValidationError` is returned if it isn't valid.  Validating requires a copy of the whole document, so
+   * backends that trust their server don't check it.  Failures reading the stream are reported as a `GenericError`.
+   */
+  def parseStream(catalog: CatalogName, is: InputStream, filter: SiderealTarget => Boolean = _ => true, checkValidity: Boolean = true): CatalogProblem \/ CatalogQueryResult = {
+    val in     = if (checkValidity) new CopyingInputStream(is) else is
+    val parsed = \/.fromTryCatch {
+      val reader = inputFactory.createXMLStreamReader(in)
+      try {
+        parseTables(reader, filter)
+      } finally {
+        reader.close()
+      }
+    }
+
+    def valid: Boolean = in match {
+      case c: CopyingInputStream => \/.fromTryCatch(schema.newValidator().validate(new StreamSource(new ByteArrayInputStream(c.copy.toByteArray)))).isRight
+      case _                     => true
+    }
+
+    parsed match {
+      case -\/(e) if isIoFailure(e) => \/.left(GenericError(s"Error reading response from ${catalog.displayName}: ${e.getMessage}"))
+      case -\/(e) if checkValidity  => \/.left(ValidationError(catalog))
+      case -\/(e)                   => \/.left(GenericError(s"Error parsing response from ${catalog.displayName}: ${e.getMessage}"))
+      case \/-(r) if !valid         => \/.left(ValidationError(catalog))
+      case \/-(r)                   => \/.right(r)
+    }
+  }
+
+  // StAX reports failures of the underlying stream as nested exceptions
+  private def isIoFailure(t: Throwable): Boolean = t match {
+    case _: IOException        => true
+    case e: XMLStreamException => Option(e.getNestedException).exists(isIoFailure)
+    case _                     => false
+  }
+
+  // Reads the rows of all the tables in the document.  As in parse(xml: Node)
+  // fields missing an ID, name or ucd are ignored and rows with a different
+  // number of cells than there are fields have no values.
+  private def parseTables(reader: XMLStreamReader, filter: SiderealTarget => Boolean): CatalogQueryResult = {
+    val targets  = List.newBuilder[SiderealTarget]
+    val problems = List.newBuilder[CatalogProblem]
+
+    var tableId   = Option.empty[String]
+    val fields    = List.newBuilder[FieldDescriptor]
+    var fieldList = List.empty[FieldDescriptor]
+    var inData    = false
+    var cells     = Vector.empty[String]
+    var cell      = Option.empty[StringBuilder]
+
+    while (reader.hasNext) {
+      reader.next() match {
+        case XMLStreamConstants.START_ELEMENT =>
+          reader.getLocalName match {
+            case "TABLE"     =>
+              tableId = Option(reader.getAttributeValue(null, "ID"))
+              fields.clear()
+            case "FIELD"     =>
+              for {
+                id   <- Option(reader.getAttributeValue(null, "ID"))
+                name <- Option(reader.getAttributeValue(null, "name"))
+                ucd  <- Option(reader.getAttributeValue(null, "ucd"))
+              } fields += FieldDescriptor(FieldId(id, Ucd(ucd)), name)
+            case "TABLEDATA" =>
+              inData    = true
+              fieldList = fields.result()
+            case "TR" if inData =>
+              cells = Vector.empty
+            case "TD" if inData =>
+              cell = Some(new StringBuilder)
+            case _           =>
+          }
+
+        case XMLStreamConstants.CHARACTERS | XMLStreamConstants.CDATA | XMLStreamConstants.SPACE =>
+          cell.foreach(_.append(reader.getText))
+
+        case XMLStreamConstants.END_ELEMENT =>
+          reader.getLocalName match {
+            case "TABLEDATA" =>
+              inData = false
+            case "TD" if inData =>
+              cells = cells :+ cell.map(_.toString).getOrElse("")
+              cell  = None
+            case "TR" if inData =>
+              val row = if (cells.length == fieldList.length) TableRow(fieldList.zip(cells).map((TableRowItem.apply _).tupled)) else TableRow(Nil)
+              tableRow2Target(tableId, fieldList)(row) match {
+                case \/-(t) => if (filter(t)) targets += t
+                case -\/(p) => problems += p
+              }
+            case _              =>
+          }
+
+        case _ =>
+      }
+    }
+
+    CatalogQueryResult(TargetsTable(targets.result()), problems.result())
+  }
 }
 
 // A CatalogAdapter improves parsing handling catalog-specific options like parsing magnitudes and selecting key fields
@@ -0,0 +1,119 @@
+package edu.gemini.catalog.votable
+
+import edu.gemini.catalog.api.{CatalogName, ConeSearchCatalogQuery, PPMXL, RadiusConstraint, UCAC4}
+import edu.gemini.spModel.core._
+import org.specs2.mutable.Specification
+
+import scala.util.Random
+
+class CellCacheSpec extends Specification {
+  def coordinates(ra: Double, dec: Double): Coordinates =
+    Coordinates(RightAscension.fromDegrees(ra), Declination.fromAngle(Angle.fromDegrees(dec)).getOrElse(Declination.zero))
+
+  def target(name: String, ra: Double, dec: Double): SiderealTarget =
+    SiderealTarget.empty.copy(name = name, coordinates = coordinates(ra, dec))
+
+  def distance(a: Coordinates, b: Coordinates): Double = {
+    val (ra1, dec1) = (math.toRadians(a.ra.toAngle.toDegrees), math.toRadians(a.dec.toDegrees))
+    val (ra2, dec2) = (math.toRadians(b.ra.toAngle.toDegrees), math.toRadians(b.dec.toDegrees))
+    math.toDegrees(math.acos(math.min(1.0, math.sin(dec1) * math.sin(dec2) + math.cos(dec1) * math.cos(dec2) * math.cos(ra1 - ra2))))
+  }
+
+  // Random points within radius degrees of the base
+  def pointsAround(base: Coordinates, radius: Double, n: Int): List[Coordinates] = {
+    val r      = new Random(42)
+    val maxDec = math.abs(base.dec.toDegrees) + radius
+    val raSpan = if (maxDec >= 89.0) 180.0 else radius / math.cos(math.toRadians(maxDec))
+    Stream.continually {
+      val dec = math.max(-90.0, math.min(90.0, base.dec.toDegrees + (r.nextDouble() * 2 - 1) * radius))
+      val ra  = base.ra.toAngle.toDegrees + (r.nextDouble() * 2 - 1) * raSpan
+      coordinates(ra, dec)
+    }.filter(distance(base, _) <= radius).take(n).toList
+  }
+
+  "SkyCell" should {
+    "cover all the points within the radius" in {
+      val bases = List(coordinates(10, 20), coordinates(359.99, -30), coordinates(0.01, 45), coordinates(180, 89.9), coordinates(90, -89.95), coordinates(270, 0))
+      bases.filterNot { b =>
+        val cells = SkyCell.covering(b, 0.2).toSet
+        pointsAround(b, 0.2, 200).forall(p => cells.contains(SkyCell.of(p)))
+      } must beEmpty
+    }
+    "bound the distance to the points of a cell" in {
+      val bases = List(coordinates(10, 20), coordinates(359.99, -30), coordinates(180, 89.9))
+      bases.filterNot { b =>
+        pointsAround(b, 0.3, 200).forall(p => SkyCell.maxDistance(b, SkyCell.of(p)) >= distance(b, p))
+      } must beEmpty
+    }
+    "intersect all the points within the radius" in {
+      val bases = List(coordinates(10, 20), coordinates(359.99, -30), coordinates(0.01, 45), coordinates(180, 89.9), coordinates(90, -89.95), coordinates(270, 0))
+      bases.filterNot { b =>
+        val cells = SkyCell.intersecting(b, 0.2).toSet
+        pointsAround(b, 0.2, 200).forall(p => cells.contains(SkyCell.of(p)))
+      } must beEmpty
+    }
+    "leave out the cells far from the cone" in {
+      val b = coordinates(10, 20)
+      SkyCell.intersecting(b, 0.2).size must beLessThan(SkyCell.covering(b, 0.2).size)
+    }
+    "not repeat cells" in {
+      val cells = SkyCell.covering(coordinates(180, 89.9), 0.5)
+      cells.distinct.size must beEqualTo(cells.size)
+    }
+  }
+
+  "CellCache" should {
+    val c1 = SkyCell.of(coordinates(10, 20))
+    val c2 = SkyCell.of(coordinates(20, 20))
+    val c3 = SkyCell.of(coordinates(30, 20))
+
+    "return only the cached cells" in {
+      val cache = new CellCache(100)
+      cache.put(UCAC4, Map(c1 -> List(target("a", 10, 20)), c2 -> Nil))
+      cache.get(UCAC4, List(c1, c2, c3)).keySet must beEqualTo(Set(c1, c2))
+      cache.get(PPMXL, List(c1, c2, c3)) must beEmpty
+    }
+    "evict the least recently used cells" in {
+      val cache = new CellCache(2)
+      cache.put(UCAC4, Map(c1 -> List(target("a", 10, 20))))
+      cache.put(UCAC4, Map(c2 -> List(target("b", 20, 20))))
+      // Use c1 so c2 becomes the eldest
+      cache.get(UCAC4, List(c1))
+      cache.put(UCAC4, Map(c3 -> List(target("c", 30, 20))))
+      cache.cellsFor(UCAC4) must beEqualTo(Set(c1, c3))
+      cache.targetCount must beEqualTo(2)
+    }
+    "replace the targets of a cell" in {
+      val cache = new CellCache(10)
+      cache.put(UCAC4, Map(c1 -> List(target("a", 10, 20), target("b", 10, 20))))
+      cache.put(UCAC4, Map(c1 -> List(target("c", 10, 20))))
+      cache.targetCount must beEqualTo(1)
+      cache.get(UCAC4, List(c1)).get(c1).map(_.map(_.name)) must beSome(List("c"))
+    }
+  }
+
+  "ConeCache" should {
+    def cone(ra: Double, radius: Double, catalog: CatalogName = UCAC4): ConeSearchCatalogQuery =
+      ConeSearchCatalogQuery(None, coordinates(ra, 20), RadiusConstraint.between(Angle.zero, Angle.fromArcmin(radius)), Nil, catalog)
+
+    "answer queries within a cached cone" in {
+      val cache = new ConeCache(10)
+      cache.put(cone(10, 1.5), List(target("a", 10, 20)))
+      cache.get(cone(10, 1)).map(_.map(_.name)) must beSome(List("a"))
+      cache.get(cone(10, 2)) must beNone
+      cache.get(cone(10.1, 1)) must beNone
+      cache.get(cone(10, 1, PPMXL)) must beNone
+    }
+    "evict the least recently used cones" in {
+      val cache = new ConeCache(2)
+      cache.put(cone(10, 1.5), Nil)
+      cache.put(cone(20, 1.5), Nil)
+      // Use the first one so the second becomes the eldest
+      cache.get(cone(10, 1))
+      cache.put(cone(30, 1.5), Nil)
+      cache.get(cone(10, 1)) must beSome
+      cache.get(cone(20, 1)) must beNone
+      cache.get(cone(30, 1)) must beSome
+    }
+  }
+}
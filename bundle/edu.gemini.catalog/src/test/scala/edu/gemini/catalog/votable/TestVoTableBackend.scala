@@ -12,6 +12,6 @@ case class TestVoTableBackend(file: String) extends VoTableBackend {
   override val catalogUrls = NonEmptyList(new URL(s"file://$file"))
 
   override def doQuery(query: CatalogQuery, url: URL) = future {
-    VoTableParser.parse(UCAC4, this.getClass.getResourceAsStream(file)).fold(p => QueryResult(query, CatalogQueryResult(TargetsTable.Zero, List(p))), y => QueryResult(query, CatalogQueryResult(y).filter(query)))
+    VoTableParser.parseStream(UCAC4, this.getClass.getResourceAsStream(file), query.filter).fold(p => QueryResult(query, CatalogQueryResult(TargetsTable.Zero, List(p))), r => QueryResult(query, r))
   }
 }
@@ -110,6 +110,41 @@ class VoTableClientSpec extends SpecificationWithJUnit with VoTableClient with N
       // Depending on timing it could hit all or less than all parallel urls
       counter.get() should be_<=(2 * countingBackend.catalogUrls.size)
     }
+    "never query a wider radius than the widened query" in {
+      val radii = new java.util.concurrent.ConcurrentLinkedQueue[Angle]()
+      val recordingBackend = new CountingCachedBackend(new AtomicInteger(0), "/votable-ucac4.xml") {
+        override protected def query(e: SearchKey) = {
+          e.query match {
+            case c: ConeSearchCatalogQuery => radii.add(c.radiusConstraint.maxLimit)
+            case _                         => // not a cone search
+          }
+          super.query(e)
+        }
+      }
+      // query2 partially overlaps the cells cached by the first one
+      val query2 = CatalogQuery(Coordinates(RightAscension.fromAngle(Angle.fromDegrees(10.2)), dec), RadiusConstraint.between(Angle.fromDegrees(0), Angle.fromDegrees(0.1)), noMagnitudeConstraint, UCAC4)
+      val r = for {
+          f1 <- VoTableClient.catalog(query, recordingBackend)
+          f2 <- VoTableClient.catalog(query2, recordingBackend)
+        } yield (f1, f2)
+      Await.result(r, 10.seconds)
+      // 0.1 degrees widened to 9 arcmin, plus the allowance for rounding
+      radii.isEmpty should beFalse
+      radii.toArray(Array.empty[Angle]).map(_.toDegrees).max should be_<=(0.15 + CachedBackend.RoundingAllowance + 1e-9)
+    }
+    "use the cache to skip repeated small queries" in {
+      val counter = new AtomicInteger(0)
+      val countingBackend = CountingCachedBackend(counter, "/votable-ucac4.xml")
+      // Smaller than a sky cell, as the GeMS Canopus and ODGW searches
+      val small = CatalogQuery(coordinates, RadiusConstraint.between(Angle.zero, Angle.fromArcmin(1)), noMagnitudeConstraint, UCAC4)
+      val r = for {
+          f1 <- VoTableClient.catalog(small, countingBackend)
+          f2 <- VoTableClient.catalog(small, countingBackend)
+        } yield (f1, f2)
+      val result = Await.result(r, 10.seconds)
+      result._1 should beEqualTo(result._2)
+      counter.get() should beEqualTo(1)
+    }
     "cache hits should preserve the queries" in {
       val counter = new AtomicInteger(0)
       val countingBackend = CountingCachedBackend(counter, "/votable-ucac4.xml")
@@ -0,0 +1,40 @@
+package edu.gemini.catalog.votable
+
+import edu.gemini.catalog.api._
+
+/**
+ * Reports the time taken by the document and the streaming parsers on the
+ * canned responses.
+ */
+object VoTableParserBenchmark {
+  val responses = List(UCAC4 -> "votable-ucac4.xml", PPMXL -> "votable-ppmxl.xml", UCAC4 -> "fmag.xml", UCAC4 -> "votable-unknown.xml", SIMBAD -> "simbad-vega.xml")
+
+  def parsed(catalog: CatalogName, xmlFile: String): Any =
+    VoTableParser.parse(catalog, getClass.getResourceAsStream(s"/$xmlFile"))
+
+  def streamed(catalog: CatalogName, xmlFile: String): Any =
+    VoTableParser.parseStream(catalog, getClass.getResourceAsStream(s"/$xmlFile"))
+
+  def streamedUnchecked(catalog: CatalogName, xmlFile: String): Any =
+    VoTableParser.parseStream(catalog, getClass.getResourceAsStream(s"/$xmlFile"), checkValidity = false)
+
+  def time(f: (CatalogName, String) => Any, rounds: Int): Long = {
+    val start = System.nanoTime()
+    for {
+      _                  <- 1 to rounds
+      (catalog, xmlFile) <- responses
+    } f(catalog, xmlFile)
+    (System.nanoTime() - start) / 1000000
+  }
+
+  def main(args: Array[String]): Unit = {
+    val rounds = args.headOption.map(_.toInt).getOrElse(20)
+    val parsers = List("parse" -> parsed _, "parseStream" -> streamed _, "parseStream (no validation)" -> streamedUnchecked _)
+
+    // Warm up
+    parsers.foreach { case (_, f) => time(f, rounds) }
+    parsers.foreach { case (name, f) =>
+      println(f"$name%-28s ${time(f, rounds)}%6d ms")
+    }
+  }
+}
@@ -2,11 +2,13 @@ package edu.gemini.catalog.votable
 
 import java.net.URL
 
-import edu.gemini.catalog.api.{SIMBAD, PPMXL, UCAC4}
+import edu.gemini.catalog.api._
 import edu.gemini.spModel.core._
 import org.specs2.mutable.SpecificationWithJUnit
 import squants.motion.KilometersPerSecond
 
+import scala.io.Source
+
 import scalaz._
 import Scalaz._
 
@@ -604,4 +606,43 @@ class VoTableParserSpec extends SpecificationWithJUnit with VoTableParser {
       result must beEqualTo(\/.right(ParsedVoResource(List())))
     }
   }
+
+  "The streaming VoTable Parser" should {
+    val responses = List(UCAC4 -> "votable-ucac4.xml", PPMXL -> "votable-ppmxl.xml", UCAC4 -> "fmag.xml", UCAC4 -> "votable-unknown.xml", SIMBAD -> "simbad-vega.xml")
+
+    def parsed(catalog: CatalogName, xmlFile: String) =
+      VoTableParser.parse(catalog, getClass.getResourceAsStream(s"/$xmlFile")).map(r => CatalogQueryResult(r))
+
+    def streamed(catalog: CatalogName, xmlFile: String) =
+      VoTableParser.parseStream(catalog, getClass.getResourceAsStream(s"/$xmlFile"))
+
+    "produce the same targets and problems as parse" in {
+      responses.filterNot { case (catalog, xmlFile) => streamed(catalog, xmlFile) == parsed(catalog, xmlFile) } must beEmpty
+    }
+    "filter targets while streaming" in {
+      val base  = Coordinates(RightAscension.fromAngle(Angle.fromDegrees(10)), Declination.fromAngle(Angle.fromDegrees(20)).getOrElse(Declination.zero))
+      val mc    = MagnitudeConstraints(SingleBand(MagnitudeBand.J), FaintnessConstraint(100), None)
+      val query = CatalogQuery(base, RadiusConstraint.between(Angle.fromDegrees(0.05), Angle.fromDegrees(0.1)), mc, UCAC4)
+      val result = VoTableParser.parseStream(UCAC4, getClass.getResourceAsStream("/votable-ucac4.xml"), query.filter)
+      result must beEqualTo(parsed(UCAC4, "votable-ucac4.xml").map(_.filter(query)))
+      result.map(_.targets.rows.size) must beEqualTo(\/.right(7))
+    }
+    "validate the response" in {
+      streamed(UCAC4, "votable-non-validating.xml") must beEqualTo(-\/(ValidationError(UCAC4)))
+    }
+    "skip validation if requested" in {
+      val result = VoTableParser.parseStream(SIMBAD, getClass.getResourceAsStream("/simbad-not-found.xml"), checkValidity = false)
+      result must beEqualTo(\/.right(CatalogQueryResult.Zero))
+    }
+    "report failures reading the response as such" in {
+      // The beginning of a response, then the connection breaks
+      val head    = new java.io.ByteArrayInputStream(Source.fromInputStream(getClass.getResourceAsStream("/votable-ucac4.xml"), "UTF-8").mkString.take(2000).getBytes("UTF-8"))
+      val broken  = new java.io.InputStream {
+        override def read(): Int = throw new java.io.IOException("Connection reset")
+      }
+      VoTableParser.parseStream(UCAC4, new java.io.SequenceInputStream(head, broken)) must beLike {
+        case -\/(GenericError(_)) => ok
+      }
+    }
+  }
 }
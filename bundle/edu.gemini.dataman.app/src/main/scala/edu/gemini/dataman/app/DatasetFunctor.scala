@@ -2,8 +2,8 @@ package edu.gemini.dataman.app
 
 import edu.gemini.dataman.core._
 import edu.gemini.pot.sp.{ISPObservation, ISPProgram, ISPNode}
-import edu.gemini.pot.spdb.{DBAbstractQueryFunctor, IDBDatabaseService}
-import edu.gemini.spModel.dataset.{DatasetRecord, DatasetExecRecord}
+import edu.gemini.pot.spdb.{DBAbstractQueryFunctor, IDBDatabaseService, IDBFunctor, IDBParallelQueryFunctor}
+import edu.gemini.spModel.dataset.{DataflowStatus, DatasetRecord, DatasetExecRecord}
 import edu.gemini.spModel.obslog.ObsLog
 
 import java.security.Principal
@@ -16,11 +16,18 @@ import scalaz._
 import Scalaz._
 
 /** A query for finding all DatasetExecRecords in the database that match a
-  * given condition, and then mapping them to the desired type.
+  * given condition, and then mapping them to the desired type.  Programs are
+  * searched in parallel.
   */
-final class DatasetFunctor[A](pf: PartialFunction[DatasetRecord, A]) extends DBAbstractQueryFunctor {
+final class DatasetFunctor[A](pf: PartialFunction[DatasetRecord, A]) extends DBAbstractQueryFunctor with IDBParallelQueryFunctor {
   private val matches = List.newBuilder[A]
 
+  def split(): IDBParallelQueryFunctor =
+    new DatasetFunctor(pf)
+
+  def mergeResults(fs: java.util.Collection[IDBFunctor]): Unit =
+    fs.asScala.foreach { f => matches ++= f.asInstanceOf[DatasetFunctor[A]].matches.result() }
+
   def execute(odb: IDBDatabaseService, n: ISPNode, ps: java.util.Set[Principal]): Unit = {
     def collect(p: ISPProgram)(pf: PartialFunction[DatasetRecord, A]): List[A] =
       p.getAllObservations.asScala.flatMap { o =>
@@ -47,4 +54,18 @@ object DatasetFunctor {
     collect(odb, user) {
       case dr if pf.isDefinedAt(dr.exec) => pf(dr.exec)
     }
+
+  /** Like `collect` but only considers datasets whose `DataflowStatus` is in
+    * `statuses`.  The candidates come from the database's dataset index so
+    * no programs are searched.
+    */
+  def lookup[A](odb: IDBDatabaseService, statuses: Set[DataflowStatus])(pf: PartialFunction[DatasetRecord, A]): TryDman[List[A]] =
+    tryOp {
+      odb.lookupDatasetRecords(statuses.asJava).asScala.toList.collect(pf)
+    }
+
+  def lookupExec[A](odb: IDBDatabaseService, statuses: Set[DataflowStatus])(pf: PartialFunction[DatasetExecRecord, A]): TryDman[List[A]] =
+    lookup(odb, statuses) {
+      case dr if pf.isDefinedAt(dr.exec) => pf(dr.exec)
+    }
 }
@@ -5,7 +5,7 @@ import edu.gemini.dataman.core.DmanId
 import edu.gemini.dataman.core.DmanId.Obs
 import edu.gemini.pot.spdb.IDBDatabaseService
 import edu.gemini.spModel.dataset.DataflowStatus.{Diverged, SummitOnly, UpdateInProgress, SyncPending}
-import edu.gemini.spModel.dataset.{DatasetLabel, DataflowStatus, DatasetRecord}
+import edu.gemini.spModel.dataset.{DatasetLabel, DataflowStatus}
 
 import java.security.Principal
 import java.util.logging.{Level, Logger}
@@ -13,7 +13,7 @@ import java.util.logging.{Level, Logger}
 import scalaz.Scalaz._
 import scalaz._
 
-/** A `Runnable` that scans the database looking for datasets for which updates
+/** A `Runnable` that looks up the datasets in the database for which updates
   * are expected and then asks the archive for a status update.
   */
 final class ObsRefreshRunnable(
@@ -24,18 +24,15 @@ final class ObsRefreshRunnable(
   private val Log = Logger.getLogger(getClass.getName)
 
   override def run(): Unit = {
-    def updateExpected(dr: DatasetRecord): Boolean =
-      DataflowStatus.derive(dr) match {
-        case SyncPending | UpdateInProgress | SummitOnly | Diverged => true
-        case _                                                      => false
-      }
+    val updateExpected: Set[DataflowStatus] =
+      Set(SyncPending, UpdateInProgress, SummitOnly, Diverged)
 
     def obsIds(labs: List[DatasetLabel]): List[DmanId.Obs] =
       labs.map(_.getObservationId).distinct.map(DmanId.Obs)
 
     Log.log(DetailLevel, "Dataman dataflow update.")
-    DatasetFunctor.collect(odb, user) {
-      case dr if updateExpected(dr) => dr.label
+    DatasetFunctor.lookup(odb, updateExpected) {
+      case dr => dr.label
     } match {
       case \/-(labs) =>
         if (labs.isEmpty) {
@@ -3,7 +3,7 @@ package edu.gemini.dataman.app
 import edu.gemini.dataman.core._
 import edu.gemini.gsa.query.QaRequest
 import edu.gemini.pot.sp.{ISPProgram, SPCompositeChange}
-import edu.gemini.pot.spdb.{ProgramEvent, ProgramEventListener, IDBTriggerAction, IDBTriggerCondition, IDBDatabaseService}
+import edu.gemini.pot.spdb.{ProgramEvent, ProgramEventListener, IDBTriggerAction, IDBTriggerCondition, IDBDatabaseService, TriggerFilter}
 import edu.gemini.spModel.dataset.{DatasetQaState, DatasetLabel}
 import edu.gemini.spModel.dataset.Implicits._
 import edu.gemini.spModel.obslog.ObsQaLog
@@ -81,6 +81,11 @@ object QaRequestTrigger {
     }.toList.map((QaRequest.apply _).tupled)
 
   object Condition extends IDBTriggerCondition {
+    private val filter: TriggerFilter =
+      TriggerFilter.forDataObject(classOf[ObsQaLog])
+
+    override def getFilter(): TriggerFilter = filter
+
     /** Returns a List[QaRequest] if the change matches and there are updates,
       * `null` otherwise (as required by the `IDBTriggerCondition` contract).
       *
@@ -5,7 +5,8 @@ import edu.gemini.pot.spdb.IDBDatabaseService
 import edu.gemini.spModel.dataset.Implicits._
 import edu.gemini.spModel.dataset.QaRequestStatus.Accepted
 import edu.gemini.spModel.dataset.SummitState.{ActiveRequest, Idle}
-import edu.gemini.spModel.dataset.{DatasetExecRecord, DatasetRecord, DatasetQaState, DatasetLabel}
+import edu.gemini.spModel.dataset.DataflowStatus.{NeedsQa, SyncPending, UpdateFailure, UpdateInProgress}
+import edu.gemini.spModel.dataset.{DataflowStatus, DatasetExecRecord, DatasetRecord, DatasetQaState, DatasetLabel}
 
 import java.security.Principal
 import java.util.UUID
@@ -32,6 +33,12 @@ object ResetOngoingAction {
        (ds.getLabel, uid.right[DatasetQaState])
     }
 
+    // The statuses of the datasets that failureCasePf can match.  Pending
+    // requests are NeedsQa or SyncPending, active ones are UpdateInProgress
+    // or UpdateFailure.
+    val Candidates: Set[DataflowStatus] =
+      Set(NeedsQa, SyncPending, UpdateInProgress, UpdateFailure)
+
     type IdlePair   = (DatasetLabel, DatasetQaState)
     type ActivePair = (DatasetLabel, UUID)
 
@@ -45,7 +52,7 @@ object ResetOngoingAction {
     val ola = new ObsLogActions(odb)
 
     for {
-      res       <- DatasetFunctor.collect(odb, user)(failureCasePf).liftDman
+      res       <- DatasetFunctor.lookup(odb, Candidates)(failureCasePf).liftDman
 
       (idle, active) = partition(res)
 
@@ -2,6 +2,7 @@ package edu.gemini.dataman.app
 
 import edu.gemini.dataman.DetailLevel
 import edu.gemini.pot.spdb.IDBDatabaseService
+import edu.gemini.spModel.dataset.DataflowStatus.UpdateFailure
 import edu.gemini.spModel.dataset.DatasetExecRecord
 import edu.gemini.spModel.dataset.QaRequestStatus.Failed
 import edu.gemini.spModel.dataset.SummitState.ActiveRequest
@@ -31,7 +32,7 @@ final class RetryFailedRunnable(
       Duration.between(i, Instant.now()).compareTo(minDelay) > 0
 
     Log.log(DetailLevel, "Dataman retry failed QA updates.")
-    DatasetFunctor.collectExec(odb, user) {
+    DatasetFunctor.lookupExec(odb, Set(UpdateFailure)) {
       case DatasetExecRecord(ds, ActiveRequest(_, _, id0, Failed(_), w, _), _) if oldEnough(w) => (ds.getLabel, id0)
     } match {
       case \/-(labs) =>
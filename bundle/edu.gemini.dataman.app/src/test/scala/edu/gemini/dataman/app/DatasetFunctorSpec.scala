@@ -1,6 +1,10 @@
 package edu.gemini.dataman.app
 
-import edu.gemini.spModel.dataset.{DatasetLabel, DatasetExecRecord, DatasetRecord}
+import edu.gemini.spModel.dataset.{DataflowStatus, DatasetLabel, DatasetExecRecord, DatasetRecord}
+import edu.gemini.spModel.dataset.DataflowStatus.{NeedsQa, SyncPending, UpdateFailure}
+import edu.gemini.spModel.obslog.ObsLog
+
+import scala.collection.JavaConverters._
 
 import scalaz.{-\/, \/-}
 
@@ -21,6 +25,35 @@ object DatasetFunctorSpec extends TestSupport {
                        false
       }
     }
+
+    "lookup datasets by status" ! forAllPrograms { (odb, progs) =>
+      val statuses: Set[DataflowStatus] = Set(NeedsQa, SyncPending, UpdateFailure)
+      val expected = allDatasets(progs).filter(dr => statuses(DataflowStatus.derive(dr))).map(_.label).toSet
+
+      DatasetFunctor.lookup(odb, statuses) { case dr => dr.label } match {
+        case \/-(a) => expected == a.toSet
+        case -\/(f) => println(f.explain)
+                       false
+      }
+    }
+
+    "follow changes to the obs log" ! forAllPrograms { (odb, progs) =>
+      // Build the index and then remove all the datasets.
+      odb.lookupDatasetRecords(DataflowStatus.All.toSet.asJava)
+
+      for {
+        p <- progs
+        o <- p.getAllObservations.asScala
+        l <- Option(ObsLog.getIfExists(o))
+      } {
+        l.getAllDatasetRecords.asScala.foreach { dr =>
+          l.execLogDataObject.getRecord.removeDatasetRecord(dr.label)
+        }
+        o.getObsExecLog.setDataObject(l.execLogDataObject)
+      }
+
+      odb.lookupDatasetRecords(DataflowStatus.All.toSet.asJava).isEmpty
+    }
   }
 
 }
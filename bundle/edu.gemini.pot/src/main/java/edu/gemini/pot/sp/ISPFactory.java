@@ -49,6 +49,18 @@ public interface ISPFactory {
      */
     ISPProgram copyWithSameKeys(ISPProgram program);
 
+    /**
+     * Creates a copy of the given <code>program</code> exactly like
+     * {@link #copyWithSameKeys}, except that the copy initially shares the
+     * data objects of the original rather than cloning them.  Data objects are
+     * only ever handed out and accepted as clones, so the sharing is invisible:
+     * updating a node of the copy replaces its data object without affecting
+     * the original.  This makes transactional updates that only touch a few
+     * nodes much cheaper for large programs.  The node structure itself is
+     * still duplicated.
+     */
+    ISPProgram copyWithSameKeysSharingData(ISPProgram program);
+
     /**
      * Creates a duplicate program with the same node keys as for
      * {@link #copyWithSameKeys}, but assigns a new LifecycleId.  This version
@@ -49,6 +49,22 @@ public interface ISPProgram extends ISPGroupContainer, ISPObservationContainer,
     VersionVector<LifespanId, Integer> getVersions(SPNodeKey key);
     void setVersions(SPNodeKey key, VersionVector<LifespanId, Integer> vv);
 
+    /**
+     * Gets a digest of the version information of the subtree rooted at the
+     * given node of this program.  The digest covers the keys and versions of
+     * all the nodes in the subtree and its structure, so if two copies of a
+     * subtree have the same digest they can be assumed to be identical.
+     * Digests are cached and only recomputed for modified nodes and their
+     * ancestors.
+     */
+    long getVersionDigest(ISPNode node);
+
+    /**
+     * Gets the largest observation number in use in the program (including
+     * template observations), or -1 if there are no observations.
+     */
+    int getMaxObservationNumber();
+
     /**
      * Renumbers the observations in this program to match those in
      * <code>that</code> program where a matching observation is determined by
@@ -1,42 +1,93 @@
 package edu.gemini.pot.sp;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Provides a low-level API for getting read/write locks associated with
- * SPNodeKeys.  Locks are created on demand but never removed.
+ * SPNodeKeys.  Locks are created on demand and removed again once no thread
+ * holds or is waiting for them.
+ *
+ * <p>Each registry entry counts the outstanding lock calls (held or waiting)
+ * for its key.  The count is adjusted atomically with the entry's presence in
+ * the map, so an entry is never discarded while a thread may still use its
+ * lock.  Since the map is a <code>ConcurrentHashMap</code>, threads locking
+ * different keys don't contend on a single monitor.
  */
 public enum SPNodeKeyLocks {
     instance;
 
-    private Map<SPNodeKey, ReentrantReadWriteLock> locks = new HashMap<SPNodeKey, ReentrantReadWriteLock>();
+    private static final class Entry {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        int refs; // guarded by the map bin, only modified in compute methods
+    }
+
+    private final ConcurrentHashMap<SPNodeKey, Entry> locks = new ConcurrentHashMap<>();
 
-    private synchronized ReentrantReadWriteLock getLock(SPNodeKey key) {
-        ReentrantReadWriteLock l = locks.get(key);
-        if (l == null) {
-            l = new ReentrantReadWriteLock();
-            locks.put(key, l);
+    private Entry acquire(SPNodeKey key) {
+        return locks.compute(key, (k, e) -> {
+            final Entry res = (e == null) ? new Entry() : e;
+            ++res.refs;
+            return res;
+        });
+    }
+
+    private void release(SPNodeKey key) {
+        locks.computeIfPresent(key, (k, e) -> (--e.refs == 0) ? null : e);
+    }
+
+    private Entry existing(SPNodeKey key) {
+        final Entry e = locks.get(key);
+        if (e == null) throw new IllegalMonitorStateException("Lock for " + key + " not held");
+        return e;
+    }
+
+    private void lock(SPNodeKey key, boolean write) {
+        final Entry e = acquire(key);
+        try {
+            (write ? e.lock.writeLock() : e.lock.readLock()).lock();
+        } catch (RuntimeException | Error ex) {
+            release(key);
+            throw ex;
         }
-        return l;
     }
 
-    private Lock getReadLock(SPNodeKey key)  { return getLock(key).readLock();  }
-    private Lock getWriteLock(SPNodeKey key) { return getLock(key).writeLock(); }
+    private void unlock(SPNodeKey key, boolean write) {
+        final ReentrantReadWriteLock rw = existing(key).lock;
+        final Lock l = write ? rw.writeLock() : rw.readLock();
+        l.unlock();   // throws, without releasing the entry, if not held
+        release(key);
+    }
 
-    public void readLock(SPNodeKey key)     { getReadLock(key).lock();   }
-    public void readUnlock(SPNodeKey key)   { getReadLock(key).unlock(); }
+    public void readLock(SPNodeKey key)     { lock(key, false);   }
+    public void readUnlock(SPNodeKey key)   { unlock(key, false); }
 
-    public void writeLock(SPNodeKey key)    { getWriteLock(key).lock();   }
-    public void writeUnlock(SPNodeKey key)  { getWriteLock(key).unlock(); }
+    public void writeLock(SPNodeKey key)    { lock(key, true);   }
+    public void writeUnlock(SPNodeKey key)  { unlock(key, true); }
 
     /**
      * Returns <code>true</code> if the current thread has a write lock for the
      * indicated program key.
      */
     public boolean isWriteLockHeld(SPNodeKey key) {
-        return getLock(key).isWriteLockedByCurrentThread();
+        final Entry e = locks.get(key);
+        return (e != null) && e.lock.isWriteLockedByCurrentThread();
+    }
+
+    /**
+     * Returns <code>true</code> if a lock for the indicated key is currently
+     * held or awaited by any thread.
+     */
+    public boolean isRegistered(SPNodeKey key) {
+        return locks.containsKey(key);
+    }
+
+    /**
+     * Returns the number of keys for which a lock is currently held or
+     * awaited.
+     */
+    public int size() {
+        return locks.size();
     }
 }
@@ -1,6 +1,10 @@
 package edu.gemini.pot.sp.memImpl;
 
+import edu.gemini.pot.sp.ISPContainerNode;
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPObservation;
 import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.ObservationIterator;
 import edu.gemini.pot.sp.version.JavaVersionMapOps;
 import edu.gemini.pot.sp.version.LifespanId;
 import edu.gemini.pot.spdb.Locking;
@@ -14,6 +18,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +41,18 @@ public class DocumentData implements Serializable {
     // The last modification timestamp.
     private long _lastModified;
 
+    // Cached digests of the version information of each subtree, see
+    // versionDigest.  Entries are discarded as the versions change.
+    private transient volatile Map<SPNodeKey, Long> _digests;
+
+    // Cached maximum observation number in use in the document (-1 if none),
+    // or null if it has to be recomputed after a structure change.
+    private transient volatile Integer _maxObsNumber;
+
+    // Set while a copy of another document is being constructed with this
+    // document data, when the copy should share the original's data objects.
+    private transient boolean _sharingDataObjects;
+
     DocumentData(SPNodeKey docKey, SPProgramID docId, UUID uuid, LifespanId lifespanId) {
         if (docKey == null) throw new IllegalArgumentException("docKey == null");
         if (uuid == null) throw new IllegalArgumentException("uuid == null");
@@ -101,6 +118,7 @@ public class DocumentData implements Serializable {
     }
 
     void markModified(MemAbstractBase node, VersionVector<LifespanId, Integer> newVersion) {
+        invalidateDigests(node);
         if (!newVersion.isEmpty()) {
             getProgramWriteLock();
             try {
@@ -125,6 +143,7 @@ public class DocumentData implements Serializable {
         getProgramWriteLock();
         try {
             this.versions = versions;
+            _digests = null;
         } finally {
             returnProgramWriteLock();
         }
@@ -152,6 +171,7 @@ public class DocumentData implements Serializable {
         getProgramWriteLock();
         try {
             versions = versions.updated(key, vv);
+            _digests = null;
         } finally {
             returnProgramWriteLock();
         }
@@ -165,6 +185,103 @@ public class DocumentData implements Serializable {
         return version(key, lifespanId);
     }
 
+    private Map<SPNodeKey, Long> digests() {
+        Map<SPNodeKey, Long> res = _digests;
+        if (res == null) {
+            synchronized (this) {
+                res = _digests;
+                if (res == null) {
+                    res = new ConcurrentHashMap<>();
+                    _digests = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Discards the cached digests of the given node and its ancestors, whose
+     * digests depend upon it.  Called with the write lock held.
+     */
+    private void invalidateDigests(MemAbstractBase node) {
+        final Map<SPNodeKey, Long> digests = _digests;
+        if (digests == null) return;
+        for (ISPNode n = node; n != null; n = n.getParent()) digests.remove(n.getNodeKey());
+    }
+
+    /**
+     * Computes a digest of the version information of the subtree rooted at
+     * the given node.  The digest combines the node key, its version vector
+     * and, in order, the digests of its children.  Two copies of a subtree
+     * with identical structure and versions have the same digest, so it can
+     * be used to skip over unchanged parts of a program when comparing two
+     * copies (a Merkle tree).
+     *
+     * <p>Digests are cached and only recomputed along the path from a
+     * modified node to the root.  Every edit to a node's data object or to a
+     * container's child list updates that node's version, so the version
+     * changes are enough to keep the cache valid.
+     */
+    long versionDigest(MemAbstractBase node) {
+        getProgramReadLock();
+        try {
+            final Map<SPNodeKey, Long> digests = digests();
+            final SPNodeKey key = node.getNodeKey();
+            final Long cached = digests.get(key);
+            if (cached != null) return cached;
+
+            long h = VersionDigest.node(key, versionVector(key));
+            if (node instanceof ISPContainerNode) {
+                for (ISPNode child : ((ISPContainerNode) node).getChildren()) {
+                    h = VersionDigest.combine(h, versionDigest((MemAbstractBase) child));
+                }
+            }
+            digests.put(key, h);
+            return h;
+        } finally {
+            returnProgramReadLock();
+        }
+    }
+
+    /**
+     * Discards the cached maximum observation number.  Called whenever a node
+     * is attached or detached or an observation is renumbered.
+     */
+    void structureChanged() {
+        _maxObsNumber = null;
+    }
+
+    /**
+     * Gets the largest observation number in use in the document rooted at
+     * <code>root</code>, or -1 if there are no observations.  The value is
+     * cached until the next structure change.
+     */
+    int maxObservationNumber(ISPNode root) {
+        getProgramReadLock();
+        try {
+            Integer res = _maxObsNumber;
+            if (res == null) {
+                int max = -1;
+                for (ISPObservation obs : new ObservationIterator(root)) {
+                    max = Math.max(max, obs.getObservationNumber());
+                }
+                res = max;
+                _maxObsNumber = res;
+            }
+            return res;
+        } finally {
+            returnProgramReadLock();
+        }
+    }
+
+    boolean isSharingDataObjects() {
+        return _sharingDataObjects;
+    }
+
+    void setSharingDataObjects(boolean share) {
+        _sharingDataObjects = share;
+    }
+
     Object getProgramClientData(Object key) {
         return _programClientData.get(key);
     }
@@ -77,10 +77,21 @@ public abstract class MemAbstractBase implements ISPNode, Serializable {
         this(docData, preserveKeys ? node.getNodeKey() : (node instanceof ISPRootNode ? docData.getDocumentKey() : new SPNodeKey()));
 
         // Copy the client data.  Clone the objects that are cloneable, add a
-        // reference to the ones that aren't.
+        // reference to the ones that aren't.  When sharing data objects, the
+        // original's stored data object is used directly.  That is safe since
+        // it is never handed out or accepted without being cloned.
+        final boolean share = docData.isSharingDataObjects() && (node instanceof MemAbstractBase);
         Set<String> nameSet = node.getClientDataKeys();
         if (nameSet != null) {
             for (String key : nameSet) {
+                if (share && DATA_OBJECT_KEY.equals(key)) {
+                    final Object dataObj = ((MemAbstractBase) node).getStoredClientData(key);
+                    if (!(dataObj instanceof ISPEventMonitor)) {
+                        _clientData.put(key, dataObj);
+                        continue;
+                    }
+                }
+
                 Object value = node.getClientData(key);
                 if (value instanceof ISPCloneable) {
                     value = ((ISPCloneable) value).clone();
@@ -211,6 +222,7 @@ public abstract class MemAbstractBase implements ISPNode, Serializable {
      */
     protected void attachTo(MemAbstractContainer node) throws SPNodeNotLocalException, SPTreeStateException {
         _setParent(node);
+        getDocumentData().structureChanged();
 //        markModified();  moving a child impacts the old and new parents, but not the child
         if (node != null) node.markModified();
 
@@ -240,6 +252,7 @@ public abstract class MemAbstractBase implements ISPNode, Serializable {
         if (!haveProgramWriteLock()) throw new IllegalStateException("Do not have program write lock.");
         if (_parent != node) throw new IllegalArgumentException("Cannot detach from a node other than the parent.");
         _parent = null;
+        getDocumentData().structureChanged();
         if (node != null) node.markModified();
 //        markModified(); moving a child impacts the old and new parents, but not the child
     }
@@ -460,6 +473,19 @@ public abstract class MemAbstractBase implements ISPNode, Serializable {
         }
     }
 
+    /**
+     * Gets the client data object itself, without copying it.  It must not be
+     * modified or handed out.
+     */
+    private Object getStoredClientData(String name) {
+        getProgramReadLock();
+        try {
+            return _clientData.get(name);
+        } finally {
+            returnProgramReadLock();
+        }
+    }
+
     public Object getClientData(String name) {
         getProgramReadLock();
         try {
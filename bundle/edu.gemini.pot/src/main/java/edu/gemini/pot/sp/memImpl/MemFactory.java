@@ -60,6 +60,12 @@ public class MemFactory extends SPAbstractFactory {
         return dup;
     }
 
+    public ISPProgram copyWithSameKeysSharingData(ISPProgram in) {
+        final MemProgram dup = MemProgram.copyWithSameKeysSharingData(in, uuid, this);
+        dup.setVersions(in.getVersions());
+        return dup;
+    }
+
     public ISPProgram copyWithNewLifespanId(ISPProgram in) {
         final MemProgram dup = MemProgram.copyWithNewLifespanId(in, uuid, this);
         dup.setVersions(in.getVersions());
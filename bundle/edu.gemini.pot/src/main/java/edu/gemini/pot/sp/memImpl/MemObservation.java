@@ -110,6 +110,7 @@ public final class MemObservation extends MemAbstractContainer implements ISPObs
 
     public void setObservationNumber(int number) {
         _obsNumber = number;
+        getDocumentData().structureChanged();
     }
 
     public SPObservationID getObservationID() {
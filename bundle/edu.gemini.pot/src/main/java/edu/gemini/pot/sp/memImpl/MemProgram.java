@@ -38,6 +38,21 @@ public final class MemProgram extends MemAbstractContainer implements ISPProgram
         return duplicate(that, databaseId, factory, that.getLifespanId());
     }
 
+    /**
+     * Creates a copy of the given program using the same keys and program id,
+     * sharing rather than cloning the data objects of the original.  See
+     * {@link ISPFactory#copyWithSameKeysSharingData}.
+     */
+    public static MemProgram copyWithSameKeysSharingData(ISPProgram that, UUID databaseId, ISPFactory factory) {
+        final ProgramData pd = new ProgramData(that.getNodeKey(), that.getProgramID(), databaseId, that.getLifespanId());
+        pd.setSharingDataObjects(true);
+        try {
+            return new MemProgram(pd, factory, that, true);
+        } finally {
+            pd.setSharingDataObjects(false);
+        }
+    }
+
     public static MemProgram copyWithNewLifespanId(ISPProgram that, UUID databaseId, ISPFactory factory) {
         return duplicate(that, databaseId, factory, LifespanId.random());
     }
@@ -136,6 +151,17 @@ public final class MemProgram extends MemAbstractContainer implements ISPProgram
         getDocumentData().setVersionVector(key, vv);
     }
 
+    public long getVersionDigest(ISPNode node) {
+        if (!(node instanceof MemAbstractBase) || !getProgramKey().equals(node.getProgramKey())) {
+            throw new IllegalArgumentException("Node " + node.getNodeKey() + " is not in program " + getProgramKey());
+        }
+        return getDocumentData().versionDigest((MemAbstractBase) node);
+    }
+
+    public int getMaxObservationNumber() {
+        return getDocumentData().maxObservationNumber(this);
+    }
+
     public long lastModified() {
         return getDocumentData().lastModified();
     }
@@ -41,6 +41,29 @@ public final class MemSerializer {
         return loadAndClose(new ClassLoaderObjectInputStream(getLoader(), new ByteArrayInputStream(blob)));
     }
 
+    /**
+     * Loads a program from the given stream, which is closed afterwards.
+     */
+    public MemAbstractBase load(InputStream is) throws IOException {
+        return loadAndClose(new ClassLoaderObjectInputStream(getLoader(), is));
+    }
+
+    /**
+     * Reads an arbitrary serialized object (not necessarily a program) from
+     * the given blob, resolving classes with the bundle's class loader.
+     */
+    public Object loadObject(byte[] blob) throws IOException {
+        final ObjectInputStream ois = new ClassLoaderObjectInputStream(getLoader(), new ByteArrayInputStream(blob));
+        try {
+            return ois.readObject();
+        } catch (ClassNotFoundException ex) {
+            LOG.log(Level.SEVERE, "Couldn't load object", ex);
+            throw new RuntimeException(ex);
+        } finally {
+            ois.close();
+        }
+    }
+
     private MemAbstractBase loadAndClose(ObjectInputStream ois) throws IOException {
         try { return load(ois); } finally { ois.close(); }
     }
@@ -0,0 +1,53 @@
+package edu.gemini.pot.sp.memImpl;
+
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.version.LifespanId;
+import edu.gemini.shared.util.VersionVector;
+import scala.Tuple2;
+
+import java.util.UUID;
+
+/**
+ * 64-bit hashing used to compute the subtree version digests maintained by
+ * {@link DocumentData#versionDigest}.  The digests are compared between two
+ * copies of a program that may live in different VMs, so the computation must
+ * not depend on anything but the node keys, the version vectors and the tree
+ * structure (in particular not on identity hash codes or on the iteration
+ * order of the version vector maps).
+ */
+final class VersionDigest {
+    private VersionDigest() {}
+
+    // The finalizer from SplitMix64, a good 64-bit mixing function.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long uuid(UUID u) {
+        return mix(u.getMostSignificantBits() ^ mix(u.getLeastSignificantBits()));
+    }
+
+    /**
+     * Digest of a single node, without its children.
+     */
+    static long node(SPNodeKey key, VersionVector<LifespanId, Integer> vv) {
+        // Sum the entries so that the result doesn't depend on map order.
+        long clocks = 0;
+        final scala.collection.Iterator<Tuple2<LifespanId, Integer>> it = vv.clocks().iterator();
+        while (it.hasNext()) {
+            final Tuple2<LifespanId, Integer> t = it.next();
+            clocks += mix(uuid(t._1().uuid()) + t._2());
+        }
+        return mix(uuid(key.uuid) ^ mix(clocks));
+    }
+
+    /**
+     * Folds the digest of the next child into a parent digest.  The result
+     * depends upon the order of the children.
+     */
+    static long combine(long parent, long child) {
+        return mix(parent * 31 + child);
+    }
+}
@@ -0,0 +1,43 @@
+package edu.gemini.pot.spdb;
+
+/**
+ * Controls how the program and plan files are loaded when a local database
+ * starts up.  By default files are read and deserialized one at a time on the
+ * loading thread.  A parallel configuration deserializes them concurrently on
+ * a fixed size pool and may optionally read them via memory-mapped buffers.
+ */
+public final class DBLoadConfig {
+
+    /** Loads one file at a time using ordinary file reads. */
+    public static final DBLoadConfig SEQUENTIAL = new DBLoadConfig(1, false);
+
+    /**
+     * Creates a configuration that loads files concurrently.
+     *
+     * @param threads maximum number of files to deserialize at once
+     * @param memoryMapped whether to read the files via memory-mapped buffers
+     */
+    public static DBLoadConfig parallel(int threads, boolean memoryMapped) {
+        return new DBLoadConfig(threads, memoryMapped);
+    }
+
+    /** Maximum number of files to deserialize concurrently. */
+    public final int threads;
+
+    /** Whether files are read via memory-mapped buffers. */
+    public final boolean memoryMapped;
+
+    private DBLoadConfig(int threads, boolean memoryMapped) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be > 0");
+        this.threads      = threads;
+        this.memoryMapped = memoryMapped;
+    }
+
+    public boolean isParallel() {
+        return threads > 1;
+    }
+
+    @Override public String toString() {
+        return String.format("DBLoadConfig(threads=%d, memoryMapped=%b)", threads, memoryMapped);
+    }
+}
@@ -11,11 +11,15 @@ import edu.gemini.pot.sp.*;
 import edu.gemini.spModel.core.OcsVersionUtil;
 import edu.gemini.spModel.core.SPProgramID;
 import edu.gemini.spModel.core.Version;
+import edu.gemini.spModel.dataset.DataflowStatus;
+import edu.gemini.spModel.dataset.DatasetLabel;
+import edu.gemini.spModel.dataset.DatasetRecord;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.security.Principal;
 import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.UUID;
@@ -32,10 +36,41 @@ public final class DBLocalDatabase implements IDBDatabaseService {
 
     private static final Logger LOG = Logger.getLogger(DBLocalDatabase.class.getName());
 
+    /**
+     * How programs are written to disk.  With <code>snapshot</code> the entire
+     * program is re-serialized whenever it changes.  With <code>journal</code>
+     * only the modified nodes are appended to a per-program journal which is
+     * periodically compacted into a new snapshot.
+     */
+    public enum Persistence {
+        snapshot,
+        journal;
+
+        public static final Persistence DEFAULT = snapshot;
+    }
+
     public static IDBDatabaseService create(final File dbRootDir) throws IOException {
+        return create(dbRootDir, Persistence.DEFAULT);
+    }
+
+    public static IDBDatabaseService create(final File dbRootDir, final Persistence persistence) throws IOException {
+        return create(dbRootDir, persistence, DBLoadConfig.SEQUENTIAL);
+    }
+
+    public static IDBDatabaseService create(final File dbRootDir, final Persistence persistence, final DBLoadConfig loadConfig) throws IOException {
         final File dbDir = getVersionedDatabaseDir(dbRootDir);
         initDbDir(dbDir);
-        return new DBLocalDatabase(loadUuid(dbRootDir), new FileManager(dbDir));
+
+        final IDBPersister persister;
+        switch (persistence) {
+            case journal:
+                persister = new JournalFileManager(dbDir, loadConfig);
+                break;
+            default:
+                persister = new FileManager(dbDir, loadConfig);
+                break;
+        }
+        return new DBLocalDatabase(loadUuid(dbRootDir), persister);
     }
 
     public static IDBDatabaseService createTransient() {
@@ -164,12 +199,7 @@ public final class DBLocalDatabase implements IDBDatabaseService {
         ISPProgram prog = lookupProgramByID(obsID.getProgramID());
         if (prog == null) return null;
 
-        for (ISPObservation obs : prog.getAllObservations()) {
-            if (obs.getObservationNumber() == obsID.getObservationNumber()) {
-                return obs;
-            }
-        }
-        return null;
+        return _dataMan.getObservationIndex().lookup(prog, obsID.getObservationNumber());
     }
 
     /**
@@ -190,6 +220,14 @@ public final class DBLocalDatabase implements IDBDatabaseService {
         return _dataMan.getProgramManager().lookupProgramByID(progID);
     }
 
+    public DatasetRecord lookupDatasetRecord(DatasetLabel label) {
+        return _dataMan.getDatasetIndex().lookup(label);
+    }
+
+    public List<DatasetRecord> lookupDatasetRecords(Set<DataflowStatus> statuses) {
+        return _dataMan.getDatasetIndex().lookup(statuses);
+    }
+
     public ISPProgram put(ISPProgram program) throws DBIDClashException {
         LOG.fine("DBDatabase.put(program)");
         return _dataMan.getProgramManager().putProgram(program);
@@ -12,6 +12,8 @@ import edu.gemini.pot.util.POTUtil;
 
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 
 /**
@@ -25,12 +27,17 @@ final class DatabaseManager {
     private final ProgramManager<ISPNightlyRecord> _planMan;
     private final StorageManager<ISPProgram> _progStoreMan;
     private final StorageManager<ISPNightlyRecord> _planStoreMan;
+    private final ObservationIndex _obsIndex;
+    private final DatasetIndex _datasetIndex;
 
     //private DBAdmin _admin;
     private final ISPFactory _fact;
 
     final FunctorLogger functorLogger;
 
+    /** Pool used to run parallel query functors. */
+    final ForkJoinPool queryPool;
+
     /**
      * Constructs with the database directory to use.
      *
@@ -39,6 +46,11 @@ final class DatabaseManager {
      */
     DatabaseManager(IDBPersister persister, UUID uuid) throws IOException {
         this.functorLogger = new FunctorLogger();
+        this.queryPool     = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("ODB Query " + t.getPoolIndex());
+            return t;
+        }, null, false);
 
         // Create the file manager and load the programs in the database.
         _persister = persister;
@@ -53,6 +65,12 @@ final class DatabaseManager {
         _progStoreMan = new StorageManager<ISPProgram>(_progMan, _persister);
         _planStoreMan = new StorageManager<ISPNightlyRecord>(_planMan, _persister);
 
+        // Keep an index of observations so they can be found by id quickly.
+        _obsIndex = new ObservationIndex(_progMan);
+
+        // And an index of datasets so they can be found by label or status.
+        _datasetIndex = new DatasetIndex(_progMan);
+
         _fact = POTUtil.createFactory(uuid);
     }
 
@@ -99,15 +117,32 @@ final class DatabaseManager {
         return _planStoreMan;
     }
 
+    /**
+     * Obtains a reference to the <code>ObservationIndex</code>.
+     */
+    ObservationIndex getObservationIndex() {
+        return _obsIndex;
+    }
+
+    /**
+     * Obtains a reference to the <code>DatasetIndex</code>.
+     */
+    DatasetIndex getDatasetIndex() {
+        return _datasetIndex;
+    }
+
     /**
      * Shuts down the database, storing any outstanding modifications.
      */
     void shutdown() {
         _progStoreMan.shutdown();
         _planStoreMan.shutdown();
+        _obsIndex.shutdown();
+        _datasetIndex.shutdown();
         _progMan.shutdown();
         _planMan.shutdown();
         functorLogger.cancel();
+        queryPool.shutdown();
     }
 
     /**
@@ -0,0 +1,279 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPObsExecLog;
+import edu.gemini.pot.sp.ISPObsQaLog;
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPCompositeChange;
+import edu.gemini.pot.sp.SPNestedChange;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.spModel.dataset.DataflowStatus;
+import edu.gemini.spModel.dataset.DataflowStatus$;
+import edu.gemini.spModel.dataset.DatasetLabel;
+import edu.gemini.spModel.dataset.DatasetRecord;
+import edu.gemini.spModel.obslog.ObsLog;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains a database-wide index of the dataset records in all the programs,
+ * by {@link DatasetLabel} and by {@link DataflowStatus}, so that finding
+ * datasets in a particular state doesn't require walking every observation in
+ * the database.
+ *
+ * <p>The index is built on the first lookup.  After that, changes to an
+ * observation's exec or QA log only mark the observation as needing to be
+ * reindexed, while structure changes and program add, replace and remove
+ * events mark the whole program.  Marked observations and programs are
+ * reindexed at the start of the next lookup, holding the program read lock.
+ * Change events are delivered while the program write lock is held, so the
+ * event handlers never take the index lock; only lookups do, before reading
+ * the programs.
+ */
+final class DatasetIndex implements ProgramEventListener<ISPProgram> {
+
+    // Listens for changes in a single program.
+    private final class Listener implements PropertyChangeListener {
+        final ISPProgram prog;
+
+        Listener(ISPProgram prog) {
+            this.prog = prog;
+        }
+
+        @Override public void propertyChange(PropertyChangeEvent evt) {
+            if (evt instanceof SPCompositeChange) {
+                final SPCompositeChange cc = (SPCompositeChange) evt;
+                final ISPNode node = cc.getModifiedNode();
+                if ((node instanceof ISPObsExecLog) || (node instanceof ISPObsQaLog)) {
+                    _markObservation(node.getContextObservation());
+                } else if (ISPNode.EVENTS_ACTIVATED.equals(cc.getPropertyName())) {
+                    _markProgram(prog.getProgramKey());
+                }
+            } else {
+                // A structure change.  Adding or removing an observation's
+                // logs only affects that observation.
+                final ISPNode parent = (evt instanceof SPNestedChange) ? ((SPNestedChange) evt).getModifiedNode() : null;
+                if (parent instanceof ISPObservation) {
+                    _markObservation((ISPObservation) parent);
+                } else {
+                    _markProgram(prog.getProgramKey());
+                }
+            }
+        }
+    }
+
+    private final ProgramManager<ISPProgram> _progMan;
+    private final Map<SPNodeKey, Listener> _listeners = new ConcurrentHashMap<>();
+
+    // Programs and observations that must be reindexed before the next lookup.
+    private final Set<SPNodeKey> _dirtyProgs = ConcurrentHashMap.newKeySet();
+    private final Map<SPNodeKey, ISPObservation> _dirtyObs = new ConcurrentHashMap<>();
+
+    // The index itself, guarded by this.
+    private boolean _built;
+    private final Map<SPNodeKey, Map<SPNodeKey, List<DatasetRecord>>> _byProgram = new HashMap<>();
+    private final Map<DatasetLabel, DatasetRecord> _byLabel = new HashMap<>();
+    private final Map<DataflowStatus, Set<DatasetLabel>> _byStatus = new HashMap<>();
+
+    DatasetIndex(ProgramManager<ISPProgram> progMan) {
+        _progMan = progMan;
+        progMan.addListener(this);
+        for (ISPProgram prog : progMan.getPrograms()) _track(prog);
+    }
+
+    private void _track(ISPProgram prog) {
+        final Listener l = new Listener(prog);
+        prog.addCompositeChangeListener(l);
+        prog.addStructureChangeListener(l);
+        final Listener old = _listeners.put(prog.getProgramKey(), l);
+        if (old != null) _removeListener(old);
+        _markProgram(prog.getProgramKey());
+    }
+
+    private void _untrack(ISPProgram prog) {
+        final Listener l = _listeners.get(prog.getProgramKey());
+        if ((l != null) && (l.prog == prog)) {
+            _listeners.remove(prog.getProgramKey());
+            _removeListener(l);
+        }
+        _markProgram(prog.getProgramKey());
+    }
+
+    private static void _removeListener(Listener l) {
+        l.prog.removeCompositeChangeListener(l);
+        l.prog.removeStructureChangeListener(l);
+    }
+
+    private void _markProgram(SPNodeKey progKey) {
+        _dirtyProgs.add(progKey);
+    }
+
+    private void _markObservation(ISPObservation obs) {
+        if (obs != null) _dirtyObs.put(obs.getNodeKey(), obs);
+    }
+
+    @Override public void programAdded(ProgramEvent<ISPProgram> pme) {
+        _track(pme.getNewProgram());
+    }
+
+    @Override public void programReplaced(ProgramEvent<ISPProgram> pme) {
+        _untrack(pme.getOldProgram());
+        _track(pme.getNewProgram());
+    }
+
+    @Override public void programRemoved(ProgramEvent<ISPProgram> pme) {
+        _untrack(pme.getOldProgram());
+    }
+
+    // Brings the index up to date with the marked programs and observations.
+    private void _refresh() {
+        if (!_built) {
+            for (ISPProgram prog : _progMan.getPrograms()) _markProgram(prog.getProgramKey());
+            _built = true;
+        }
+
+        final Set<SPNodeKey> reindexed = new HashSet<>();
+        for (Iterator<SPNodeKey> it = _dirtyProgs.iterator(); it.hasNext(); ) {
+            final SPNodeKey progKey = it.next();
+            it.remove();
+            reindexed.add(progKey);
+
+            _removeProgram(progKey);
+            final ISPProgram prog = _progMan.lookupProgram(progKey);
+            if (prog != null) _indexProgram(prog);
+        }
+
+        for (Iterator<Map.Entry<SPNodeKey, ISPObservation>> it = _dirtyObs.entrySet().iterator(); it.hasNext(); ) {
+            final ISPObservation obs = it.next().getValue();
+            it.remove();
+
+            final SPNodeKey progKey = obs.getProgramKey();
+            if (reindexed.contains(progKey)) continue;
+
+            // Skip observations in programs that are no longer in the
+            // database.
+            final ISPProgram prog = _progMan.lookupProgram(progKey);
+            if ((prog == null) || (prog != obs.getProgram())) continue;
+
+            // Hold the program read lock, as _indexProgram does, so that a
+            // log update isn't read half applied.
+            prog.getProgramReadLock();
+            try {
+                _indexObservation(progKey, obs);
+            } finally {
+                prog.returnProgramReadLock();
+            }
+        }
+    }
+
+    private void _indexProgram(ISPProgram prog) {
+        prog.getProgramReadLock();
+        try {
+            for (ISPObservation obs : prog.getAllObservations()) {
+                _indexObservation(prog.getProgramKey(), obs);
+            }
+        } finally {
+            prog.returnProgramReadLock();
+        }
+    }
+
+    private void _indexObservation(SPNodeKey progKey, ISPObservation obs) {
+        Map<SPNodeKey, List<DatasetRecord>> obsMap = _byProgram.get(progKey);
+        if (obsMap == null) {
+            obsMap = new HashMap<>();
+            _byProgram.put(progKey, obsMap);
+        }
+
+        final List<DatasetRecord> old = obsMap.remove(obs.getNodeKey());
+        if (old != null) for (DatasetRecord r : old) _remove(r);
+
+        final ObsLog log = ObsLog.getIfExists(obs);
+        if (log == null) return;
+
+        final List<DatasetRecord> recs = log.getAllDatasetRecords();
+        if (recs.isEmpty()) return;
+
+        obsMap.put(obs.getNodeKey(), recs);
+        for (DatasetRecord r : recs) _add(r);
+    }
+
+    private void _removeProgram(SPNodeKey progKey) {
+        final Map<SPNodeKey, List<DatasetRecord>> obsMap = _byProgram.remove(progKey);
+        if (obsMap == null) return;
+        for (List<DatasetRecord> recs : obsMap.values()) {
+            for (DatasetRecord r : recs) _remove(r);
+        }
+    }
+
+    private static DataflowStatus _status(DatasetRecord r) {
+        return DataflowStatus$.MODULE$.derive(r);
+    }
+
+    private void _add(DatasetRecord r) {
+        final DatasetRecord old = _byLabel.put(r.label(), r);
+        if (old != null) _removeStatus(old);
+
+        final DataflowStatus status = _status(r);
+        Set<DatasetLabel> labels = _byStatus.get(status);
+        if (labels == null) {
+            labels = new HashSet<>();
+            _byStatus.put(status, labels);
+        }
+        labels.add(r.label());
+    }
+
+    private void _remove(DatasetRecord r) {
+        if (_byLabel.remove(r.label(), r)) _removeStatus(r);
+    }
+
+    private void _removeStatus(DatasetRecord r) {
+        final DataflowStatus status = _status(r);
+        final Set<DatasetLabel> labels = _byStatus.get(status);
+        if (labels == null) return;
+        labels.remove(r.label());
+        if (labels.isEmpty()) _byStatus.remove(status);
+    }
+
+    /**
+     * Finds the dataset record with the given label.
+     *
+     * @return matching record, if any; <code>null</code> otherwise
+     */
+    synchronized DatasetRecord lookup(DatasetLabel label) {
+        _refresh();
+        return _byLabel.get(label);
+    }
+
+    /**
+     * Finds all the dataset records whose {@link DataflowStatus} is one of
+     * the given statuses.
+     *
+     * @return matching records, sorted by label
+     */
+    synchronized List<DatasetRecord> lookup(Set<DataflowStatus> statuses) {
+        _refresh();
+
+        final SortedSet<DatasetLabel> labels = new TreeSet<>();
+        for (DataflowStatus status : statuses) {
+            final Set<DatasetLabel> s = _byStatus.get(status);
+            if (s != null) labels.addAll(s);
+        }
+
+        final List<DatasetRecord> res = new ArrayList<>(labels.size());
+        for (DatasetLabel label : labels) res.add(_byLabel.get(label));
+        return res;
+    }
+
+    /**
+     * Stops tracking programs, removing all the listeners.
+     */
+    void shutdown() {
+        _progMan.removeListener(this);
+        for (Listener l : _listeners.values()) _removeListener(l);
+        _listeners.clear();
+    }
+}
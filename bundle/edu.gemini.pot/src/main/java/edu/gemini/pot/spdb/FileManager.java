@@ -6,7 +6,14 @@ import edu.gemini.shared.util.GeminiRuntimeException;
 import edu.gemini.spModel.core.SPProgramID;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 
 /**
@@ -17,6 +24,7 @@ import java.util.*;
  * <code>FileManager</code>.
  */
 final class FileManager implements IDBPersister {
+    private static final Logger LOG = Logger.getLogger(FileManager.class.getName());
 
     /** The file suffix that is appended to programs in the database. */
     public static final String PROGRAM_SUFFIX = ".sp";
@@ -50,6 +58,7 @@ final class FileManager implements IDBPersister {
 
     private final File _dbDir;
     private final MemSerializer _ser;
+    private final DBLoadConfig _loadConfig;
     private final Map<SPNodeKey, File> _fileMap = new HashMap<SPNodeKey, File>();
 
     /**
@@ -60,9 +69,21 @@ final class FileManager implements IDBPersister {
      * @throws IOException if <code>dbDir</code> is not valid
      */
     FileManager(final File dbDir) throws IOException {
+        this(dbDir, DBLoadConfig.SEQUENTIAL);
+    }
+
+    /**
+     * Constructs the <code>FileManager</code> with the database directory
+     * to use and the configuration that controls how program files are loaded
+     * at startup.
+     *
+     * @throws IOException if <code>dbDir</code> is not valid
+     */
+    FileManager(final File dbDir, final DBLoadConfig loadConfig) throws IOException {
         _setupDbDirectory(dbDir);
-        _dbDir = dbDir;
-        _ser   = new MemSerializer();
+        _dbDir      = dbDir;
+        _ser        = new MemSerializer();
+        _loadConfig = loadConfig;
     }
 
     /**
@@ -137,49 +158,204 @@ final class FileManager implements IDBPersister {
         return reload("plan", _planFilter);
     }
 
+    /**
+     * Accumulates the time spent in each phase of a reload.  The read and
+     * deserialize phases are summed over all the loading threads.
+     */
+    private static final class ReloadTimes {
+        final AtomicLong read        = new AtomicLong();
+        final AtomicLong deserialize = new AtomicLong();
+        long list;
+        long index;
+
+        private static long ms(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        String format(String name, int count, DBLoadConfig config, long wallNanos) {
+            return String.format("Finished loading %d %ss in %d ms (list %d ms, read %d ms, deserialize %d ms, index %d ms; %s)",
+                    count, name, ms(wallNanos), ms(list), ms(read.get()), ms(deserialize.get()), ms(index), config);
+        }
+    }
+
     private <T extends ISPRootNode> List<T> reload(final String name, final FileFilter filter) throws IOException {
-        System.out.println(String.format("Loading the %s database ...", name));
+        LOG.info(String.format("Loading the %s database ...", name));
 
-        final long time1      = System.currentTimeMillis();
-        final File[] fileA    = _dbDir.listFiles(filter);
-        final List<T> retList = new ArrayList<T>(fileA.length);
+        final ReloadTimes times = new ReloadTimes();
+        final long time0        = System.nanoTime();
 
-        // Try to load each file.
-        for (final File progFile : fileA) {
-
-            // Load the program file.
-            final T prog;
-            try {
-                prog = (T) _ser.load(progFile);
-                if (prog == null) continue;
-            } catch (Exception ex) {
-                String path = _getPath(progFile);
-                if (ex.getCause() instanceof InvalidClassException) {
-                    System.err.println("Warning: incompatible file: '" + path + "'. Please delete and reimport from XML");
-                } else {
-                    System.err.println("Problem reading program file `" + path + "': " + ex);
-                }
-                continue;
-            }
+        // Sort the files so that the choice among duplicate program files
+        // does not depend upon the directory listing order or the order in
+        // which the loading threads finish.
+        final File[] fileA = _dbDir.listFiles(filter);
+        Arrays.sort(fileA);
+        final long time1 = System.nanoTime();
+        times.list = time1 - time0;
+
+        final List<T> loaded = _loadConfig.isParallel() ?
+                this.<T>_loadParallel(fileA, times) :
+                this.<T>_loadSequential(fileA, times);
+
+        final long time2      = System.nanoTime();
+        final List<T> retList = new ArrayList<T>(fileA.length);
+        for (int i=0; i<fileA.length; ++i) {
+            final T prog = loaded.get(i);
+            if (prog == null) continue;
 
             // If there are two program files with the same program (i.e.,
             // with the same key), just skip the next one read.
             final SPNodeKey key = prog.getNodeKey();
             if (_fileMap.get(key) != null) {
-                System.out.println("Already loaded: " + key);
+                LOG.info("Already loaded: " + key);
                 continue; // already loaded
             }
-            _fileMap.put(key, progFile);
+            _fileMap.put(key, fileA[i]);
 
             retList.add(prog);
         }
 
-        final long time2 = System.currentTimeMillis();
+        final long time3 = System.nanoTime();
+        times.index = time3 - time2;
 
-        final String msg = String.format("Finished loading: %d ms, %d %ss", time2-time1, fileA.length, name);
-        System.out.println(msg);
+        LOG.info(times.format(name, fileA.length, _loadConfig, time3 - time0));
         return retList;
+    }
+
+    private <T extends ISPRootNode> List<T> _loadSequential(File[] fileA, ReloadTimes times) {
+        final List<T> res = new ArrayList<T>(fileA.length);
+        for (File progFile : fileA) res.add(this.<T>_load(progFile, times));
+        return res;
+    }
+
+    private <T extends ISPRootNode> List<T> _loadParallel(File[] fileA, final ReloadTimes times) throws IOException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(_loadConfig.threads, new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "ODB Loader " + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try {
+            final List<Future<T>> futures = new ArrayList<Future<T>>(fileA.length);
+            for (final File progFile : fileA) {
+                futures.add(pool.submit(new Callable<T>() {
+                    @Override public T call() {
+                        return FileManager.this.<T>_load(progFile, times);
+                    }
+                }));
+            }
+
+            // Collect the results in file order.
+            final List<T> res = new ArrayList<T>(fileA.length);
+            for (Future<T> f : futures) {
+                try {
+                    res.add(f.get());
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException("Interrupted while loading the database");
+                } catch (ExecutionException ex) {
+                    // _load handles exceptions, so this must be an Error.
+                    final Throwable t = ex.getCause();
+                    if (t instanceof Error) throw (Error) t;
+                    throw new RuntimeException(t);
+                }
+            }
+            return res;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads and deserializes the given program file, returning
+     * <code>null</code> if it cannot be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends ISPRootNode> T _load(File progFile, ReloadTimes times) {
+        try {
+            final long time0 = System.nanoTime();
+            final InputStream is = _loadConfig.memoryMapped ? _mapFile(progFile) : _readFile(progFile);
+            final long time1 = System.nanoTime();
+            final T prog = (T) _ser.load(is);
+            final long time2 = System.nanoTime();
+
+            times.read.addAndGet(time1 - time0);
+            times.deserialize.addAndGet(time2 - time1);
+            return prog;
+        } catch (Exception ex) {
+            String path = _getPath(progFile);
+            if (ex.getCause() instanceof InvalidClassException) {
+                System.err.println("Warning: incompatible file: '" + path + "'. Please delete and reimport from XML");
+            } else {
+                System.err.println("Problem reading program file `" + path + "': " + ex);
+            }
+            return null;
+        }
+    }
+
+    // Files larger than this can't be held in a byte array or a single mapped
+    // buffer, so they are deserialized straight from the file instead.
+    private static final long MAX_BUFFERED_SIZE = Integer.MAX_VALUE - 8;
+
+    private static InputStream _readFile(File f) throws IOException {
+        final long size = f.length();
+        if (size > MAX_BUFFERED_SIZE) return _streamFile(f);
+
+        final byte[] bytes = new byte[(int) size];
+        final DataInputStream dis = new DataInputStream(new FileInputStream(f));
+        try {
+            dis.readFully(bytes);
+        } finally {
+            dis.close();
+        }
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private static InputStream _mapFile(File f) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            final FileChannel ch = raf.getChannel();
+            final long size = ch.size();
+            if (size > MAX_BUFFERED_SIZE) return _streamFile(f);
+
+            final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.load();
+            return new ByteBufferInputStream(buf);
+        } finally {
+            raf.close();
+        }
+    }
 
+    private static InputStream _streamFile(File f) throws IOException {
+        return new BufferedInputStream(new FileInputStream(f));
+    }
+
+    /**
+     * An InputStream view of a (memory-mapped) ByteBuffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override public int read() {
+            return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+        }
+
+        @Override public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            final int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override public int available() {
+            return buf.remaining();
+        }
     }
 
     public void store(ISPRootNode mab) throws IOException {
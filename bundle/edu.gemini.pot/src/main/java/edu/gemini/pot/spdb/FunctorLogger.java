@@ -4,8 +4,15 @@
 
 package edu.gemini.pot.spdb;
 
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.spModel.core.SPProgramID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +52,25 @@ final class FunctorLogger {
     public static class Handback {
         private long startTime;
         private TimerTask task;
+        private final Queue<ProgramTime> programTimes = new ConcurrentLinkedQueue<>();
+    }
+
+    /** How many of the slowest programs to list for a parallel query. */
+    private static final int SLOWEST_PROGRAM_COUNT = 5;
+
+    private static final class ProgramTime {
+        final String id;
+        final long ms;
+
+        ProgramTime(ISPRootNode root, long ms) {
+            final SPProgramID progId = root.getProgramID();
+            this.id = (progId == null) ? root.getProgramKey().toString() : progId.toString();
+            this.ms = ms;
+        }
+
+        @Override public String toString() {
+            return id + " (" + ms + " ms)";
+        }
     }
 
     private static synchronized long getWarningThreshold() {
@@ -113,6 +139,14 @@ final class FunctorLogger {
         return hb;
     }
 
+    /**
+     * Records the time spent executing (part of) a query functor on a single
+     * program.  The times are summarized when the query ends.
+     */
+    void logProgramTime(Handback handback, ISPRootNode root, long ms) {
+        handback.programTimes.add(new ProgramTime(root, ms));
+    }
+
     void logEnd(IDBFunctor functor, Handback handback) {
         logEnd(functor, handback, false);
     }
@@ -132,6 +166,17 @@ final class FunctorLogger {
         if (threshold <= execTime) level = Level.WARNING;
 
         LOG.log(level, "Finished" + (query ? " query " : " ") + " functor " + functor.getClass().getName() + " in " + execTime + " ms on thread " + Thread.currentThread().getName());
+
+        if (!handback.programTimes.isEmpty() && LOG.isLoggable(level)) {
+            final List<ProgramTime> times = new ArrayList<>(handback.programTimes);
+            long total = 0;
+            for (ProgramTime pt : times) total += pt.ms;
+            times.sort((pt0, pt1) -> Long.compare(pt1.ms, pt0.ms));
+
+            LOG.log(level, "Functor " + functor.getClass().getName() + " ran on " + times.size() +
+                           " programs for a total of " + total + " ms, slowest: " +
+                           times.subList(0, Math.min(SLOWEST_PROGRAM_COUNT, times.size())));
+        }
     }
 
     void cancel() {
@@ -9,8 +9,12 @@ package edu.gemini.pot.spdb;
 
 import edu.gemini.pot.sp.*;
 import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.dataset.DataflowStatus;
+import edu.gemini.spModel.dataset.DatasetLabel;
+import edu.gemini.spModel.dataset.DatasetRecord;
 
 import java.security.Principal;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -199,7 +203,10 @@ public interface IDBDatabaseService {
     SPNodeKey lookupProgramKeyByID(SPProgramID programID);
 
     /**
-     * Fetches the observation by its id.
+     * Fetches the observation by its id.  Observations are indexed by the
+     * database so finding an indexed observation takes constant time.  Ids
+     * that aren't in the index, because there is no such observation or it
+     * has just been renumbered, take a pass over the program's observations.
      *
      * @return the observation with the given id, if any;
      *         <code>null</code> otherwise
@@ -240,6 +247,27 @@ public interface IDBDatabaseService {
      */
     ISPNightlyRecord lookupNightlyRecordByID(SPProgramID nightlyPlanID);
 
+    /**
+     * Fetches the record for the dataset with the given label.  Datasets are
+     * indexed by the database so this doesn't require a search.  The owning
+     * observation is identified by the label.
+     *
+     * @return the dataset record with the given label, if any;
+     *         <code>null</code> otherwise
+     */
+    DatasetRecord lookupDatasetRecord(DatasetLabel label);
+
+    /**
+     * Fetches the records of all datasets in the database whose
+     * {@link DataflowStatus} (as derived from their QA and exec records) is
+     * one of the given statuses.  Datasets are indexed by status, so the cost
+     * depends on the number of matching datasets rather than on the size of
+     * the database.
+     *
+     * @return matching dataset records, sorted by label
+     */
+    List<DatasetRecord> lookupDatasetRecords(Set<DataflowStatus> statuses);
+
     long fileSize(SPNodeKey key);
 }
 
@@ -0,0 +1,35 @@
+package edu.gemini.pot.spdb;
+
+import java.util.Collection;
+
+/**
+ * A query functor that may be run concurrently over the programs in the
+ * database.  When a query runner is given an <code>IDBParallelQueryFunctor</code>
+ * it calls {@link #split} once per program (or nightly plan) to obtain an
+ * independent functor that is applied to just the nodes of that program while
+ * holding the program read lock.  The parts are executed on a fork-join pool
+ * and then handed, in program order, to {@link #mergeResults} on the original
+ * functor.
+ *
+ * <p>The original functor sees <code>init</code>, <code>mergeResults</code>
+ * and finally <code>finished</code>.  Each part sees <code>init</code>,
+ * <code>isDone</code> and <code>execute</code> calls, but never
+ * <code>finished</code>.  Since parts run concurrently, they must not share
+ * mutable state with each other or with the original functor.
+ */
+public interface IDBParallelQueryFunctor extends IDBQueryFunctor {
+
+    /**
+     * Creates a new functor, with empty results, that will be applied to a
+     * subset of the nodes.
+     */
+    IDBParallelQueryFunctor split();
+
+    /**
+     * Merges the results contained in the collection of executed parts into
+     * this functor.
+     *
+     * @param functorCollection the parts created by {@link #split}
+     */
+    void mergeResults(Collection<IDBFunctor> functorCollection);
+}
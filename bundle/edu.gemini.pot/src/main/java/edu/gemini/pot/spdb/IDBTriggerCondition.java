@@ -34,4 +34,17 @@ public interface IDBTriggerCondition extends Serializable {
      * passed to the corresponding {@link IDBTriggerAction}
      */
     Object matches(SPCompositeChange change);
+
+    /**
+     * Gets a cheap filter that every change matched by this condition must
+     * pass.  The database skips calling {@link #matches} for changes that
+     * don't, so implementations should restrict the filter as much as
+     * possible.  The filter is obtained once, when the condition is
+     * registered.
+     *
+     * @return the filter, which by default accepts every change
+     */
+    default TriggerFilter getFilter() {
+        return TriggerFilter.ANY;
+    }
 }
@@ -0,0 +1,415 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.*;
+import edu.gemini.pot.sp.memImpl.MemSerializer;
+import edu.gemini.pot.sp.version.JavaVersionMapOps;
+import edu.gemini.pot.sp.version.LifespanId;
+import edu.gemini.shared.util.VersionVector;
+import edu.gemini.spModel.data.ISPDataObject;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link IDBPersister} that avoids rewriting the entire program file each
+ * time a node changes.  Programs are kept as a snapshot, written by a wrapped
+ * {@link FileManager}, plus an append-only journal of per-node change records.
+ * Each record holds the node key, its version vector and the node's data
+ * object and conflicts.  Storing a program whose structure is unchanged only
+ * appends records for the nodes whose version (or conflicts) changed since
+ * the last store.
+ *
+ * <p>Structural edits (nodes added, removed, moved or renumbered) are not
+ * journaled.  Instead they trigger a compaction: a fresh snapshot is written
+ * and the journal is discarded.  A compaction also happens whenever the
+ * journal grows large relative to the snapshot.
+ *
+ * <p>Each journal starts with the version map of the snapshot it applies to.
+ * Records hold the full state of a node, so replaying a journal over any
+ * other snapshot could revert changes.  If the journal couldn't be discarded
+ * after a compaction (for example because of a crash between writing the
+ * snapshot and deleting the journal) it no longer matches the snapshot and
+ * is ignored when replaying, and overwritten by the next append.
+ *
+ * <p>Nightly records are always written as plain snapshots.
+ */
+final class JournalFileManager implements IDBPersister {
+    private static final Logger LOG = Logger.getLogger(JournalFileManager.class.getName());
+
+    /** Subdirectory of the database directory that holds the journals. */
+    public static final String JOURNAL_DIR    = "journal";
+
+    /** The file suffix that is appended to program journals. */
+    public static final String JOURNAL_SUFFIX = ".jnl";
+
+    /**
+     * Journals smaller than this are never compacted unless the program
+     * structure changes.
+     */
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    /**
+     * Journals are compacted into a new snapshot when they grow larger than
+     * this fraction of the snapshot size.
+     */
+    private static final double COMPACTION_RATIO = 0.5;
+
+    /**
+     * A single journaled node change.
+     */
+    private static final class NodeRecord implements Serializable {
+        final SPNodeKey key;
+        final VersionVector<LifespanId, Integer> version;
+        final ISPDataObject dataObject;
+        final Conflicts conflicts;
+
+        NodeRecord(ISPNode node, VersionVector<LifespanId, Integer> version) {
+            this.key        = node.getNodeKey();
+            this.version    = version;
+            this.dataObject = node.getDataObject();
+            this.conflicts  = node.getConflicts();
+        }
+
+        void applyTo(ISPProgram prog, ISPNode node) {
+            if (dataObject != null) node.setDataObject(dataObject);
+            node.setConflicts(conflicts);
+            prog.setVersions(key, version);
+        }
+    }
+
+    /**
+     * What we last wrote for a program: its structure, flattened into a
+     * pre-order list of node keys, observation numbers and child counts, and
+     * a stamp (version vector and conflicts) for each node.
+     */
+    private static final class Persisted {
+        final List<Object> structure;
+        final Map<SPNodeKey, ISPNode> nodes;
+        final scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>> versions;
+        final Map<SPNodeKey, Conflicts> conflicts;
+
+        private Persisted(ISPProgram prog) {
+            structure = new ArrayList<Object>();
+            nodes     = new LinkedHashMap<SPNodeKey, ISPNode>();
+            versions  = prog.getVersions();
+            conflicts = new HashMap<SPNodeKey, Conflicts>();
+            _capture(prog);
+        }
+
+        private void _capture(ISPNode node) {
+            final SPNodeKey key = node.getNodeKey();
+            nodes.put(key, node);
+            conflicts.put(key, node.getConflicts());
+            structure.add(key);
+            if (node instanceof ISPObservation) {
+                structure.add(((ISPObservation) node).getObservationNumber());
+            }
+            if (node instanceof ISPContainerNode) {
+                final List<ISPNode> children = ((ISPContainerNode) node).getChildren();
+                structure.add(children.size());
+                for (ISPNode child : children) _capture(child);
+            }
+        }
+
+        /** Captures the current state of the program, which must be read locked. */
+        static Persisted capture(ISPProgram prog) {
+            return new Persisted(prog);
+        }
+
+        boolean sameStructure(Persisted that) {
+            return structure.equals(that.structure);
+        }
+
+        /**
+         * Determines which nodes have been modified in this state relative to
+         * <code>prev</code>, which must have the same structure.
+         */
+        List<NodeRecord> changedSince(Persisted prev) {
+            final List<NodeRecord> res = new ArrayList<NodeRecord>();
+            for (Map.Entry<SPNodeKey, ISPNode> me : nodes.entrySet()) {
+                final SPNodeKey key = me.getKey();
+                final VersionVector<LifespanId, Integer> vv = JavaVersionMapOps.getOrEmpty(versions, key);
+                final boolean modified =
+                        !vv.equals(JavaVersionMapOps.getOrEmpty(prev.versions, key)) ||
+                        !conflicts.get(key).equals(prev.conflicts.get(key));
+                if (modified) res.add(new NodeRecord(me.getValue(), vv));
+            }
+            return res;
+        }
+    }
+
+    private final FileManager _snapshots;
+    private final File _journalDir;
+    private final MemSerializer _ser = new MemSerializer();
+    private final Map<SPNodeKey, Persisted> _persisted = new HashMap<SPNodeKey, Persisted>();
+
+    // Version maps of the programs as stored in their snapshots
+    private final Map<SPNodeKey, scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>>> _snapshotVersions =
+            new HashMap<SPNodeKey, scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>>>();
+
+    // Programs whose journal file was started for their current snapshot
+    private final Set<SPNodeKey> _journaled = new HashSet<SPNodeKey>();
+
+    /**
+     * Constructs the <code>JournalFileManager</code> with the database
+     * directory to use.  Snapshots are kept in <code>dbDir</code> in the same
+     * format used by the {@link FileManager} and journals in a subdirectory.
+     * Snapshots are loaded according to the given <code>loadConfig</code>.
+     *
+     * @throws IOException if <code>dbDir</code> is not valid or the journal
+     * directory cannot be created
+     */
+    JournalFileManager(File dbDir, DBLoadConfig loadConfig) throws IOException {
+        _snapshots  = new FileManager(dbDir, loadConfig);
+        _journalDir = new File(dbDir, JOURNAL_DIR);
+        if (!(_journalDir.isDirectory() || _journalDir.mkdirs())) {
+            throw new IOException("Could not create the journal directory: " + _journalDir.getPath());
+        }
+    }
+
+    private File _journalFile(SPNodeKey key) {
+        return new File(_journalDir, key.toString() + JOURNAL_SUFFIX);
+    }
+
+    @Override public List<ISPProgram> reloadPrograms() throws IOException {
+        final List<ISPProgram> progs = _snapshots.reloadPrograms();
+
+        final long time1 = System.currentTimeMillis();
+        int count = 0;
+        for (ISPProgram prog : progs) {
+            final SPNodeKey key = prog.getProgramKey();
+            final scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>> versions = prog.getVersions();
+            final boolean replayed = _replay(prog);
+            if (replayed) ++count;
+            synchronized (this) {
+                _snapshotVersions.put(key, versions);
+                if (replayed) _journaled.add(key);
+                _persisted.put(key, _capture(prog));
+            }
+        }
+        final long time2 = System.currentTimeMillis();
+
+        LOG.info(String.format("Finished replaying journals: %d ms, %d journals", time2-time1, count));
+        return progs;
+    }
+
+    @Override public List<ISPNightlyRecord> reloadPlans() throws IOException {
+        return _snapshots.reloadPlans();
+    }
+
+    private static Persisted _capture(ISPProgram prog) {
+        final SPNodeKey key = prog.getProgramKey();
+        SPNodeKeyLocks.instance.readLock(key);
+        try {
+            return Persisted.capture(prog);
+        } finally {
+            SPNodeKeyLocks.instance.readUnlock(key);
+        }
+    }
+
+    /**
+     * Applies the journaled changes, if any, to the freshly loaded snapshot.
+     * A torn record at the end of the journal (for example, from a crash in
+     * the middle of an append) is discarded and the file truncated.  A
+     * journal that was started for another snapshot is discarded entirely.
+     *
+     * @return <code>true</code> if there was a journal to replay
+     */
+    private boolean _replay(ISPProgram prog) throws IOException {
+        final SPNodeKey key = prog.getProgramKey();
+        final File jnl      = _journalFile(key);
+        if (!jnl.exists()) return false;
+
+        final Map<SPNodeKey, ISPNode> nodes = _capture(prog).nodes;
+
+        long good = 0;
+        final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(jnl)));
+        try {
+            final byte[] header = _readEntry(dis);
+            if ((header == null) || !prog.getVersions().equals(_ser.loadObject(header))) {
+                LOG.warning("Discarding journal for " + key + " written for another snapshot");
+                dis.close();
+                if (!jnl.delete()) {
+                    throw new IOException("Couldn't remove the journal " + jnl.getPath());
+                }
+                return false;
+            }
+            good += 4 + 8 + header.length;
+
+            while (good < jnl.length()) {
+                final byte[] bs = _readEntry(dis);
+                if (bs == null) break;
+                final Object o = _ser.loadObject(bs);
+                if (!(o instanceof List)) {
+                    throw new IOException("Unexpected journal entry for " + key + ": " + ((o == null) ? "null" : o.getClass().getName()));
+                }
+                @SuppressWarnings("unchecked") final List<NodeRecord> records = (List<NodeRecord>) o;
+                good += 4 + 8 + bs.length;
+
+                for (NodeRecord r : records) {
+                    final ISPNode n = nodes.get(r.key);
+                    if (n == null) {
+                        LOG.warning("Journal for " + key + " references missing node " + r.key);
+                    } else {
+                        r.applyTo(prog, n);
+                    }
+                }
+            }
+        } finally {
+            dis.close();
+        }
+
+        if (good < jnl.length()) {
+            LOG.warning("Discarding torn journal tail for " + key + " at offset " + good);
+            final RandomAccessFile raf = new RandomAccessFile(jnl, "rw");
+            try {
+                raf.setLength(good);
+            } finally {
+                raf.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a length-prefixed, checksummed entry.
+     *
+     * @return the entry or <code>null</code> if it is torn
+     */
+    private static byte[] _readEntry(DataInputStream dis) throws IOException {
+        try {
+            final int len   = dis.readInt();
+            final long crc  = dis.readLong();
+            final byte[] bs = new byte[len];
+            dis.readFully(bs);
+            return (_checksum(bs) == crc) ? bs : null;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static void _writeEntry(DataOutputStream dos, Object o) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+            oos.writeObject(o);
+        } finally {
+            oos.close();
+        }
+        final byte[] bs = baos.toByteArray();
+
+        dos.writeInt(bs.length);
+        dos.writeLong(_checksum(bs));
+        dos.write(bs);
+    }
+
+    private static long _checksum(byte[] bs) {
+        final CRC32 crc = new CRC32();
+        crc.update(bs);
+        return crc.getValue();
+    }
+
+    @Override public void store(ISPRootNode node) throws IOException {
+        if (node instanceof ISPProgram) {
+            _storeProgram((ISPProgram) node);
+        } else {
+            _snapshots.store(node);
+        }
+    }
+
+    private synchronized void _storeProgram(ISPProgram prog) throws IOException {
+        final SPNodeKey key  = prog.getProgramKey();
+        final Persisted prev = _persisted.get(key);
+
+        final Persisted cur;
+        List<NodeRecord> records = null;
+        SPNodeKeyLocks.instance.readLock(key);
+        try {
+            cur = Persisted.capture(prog);
+            if ((prev == null) || !cur.sameStructure(prev) || _needsCompaction(key)) {
+                // Still holding the lock, so the snapshot has exactly the
+                // captured versions.
+                _compact(prog, cur.versions);
+            } else {
+                records = cur.changedSince(prev);
+            }
+        } finally {
+            SPNodeKeyLocks.instance.readUnlock(key);
+        }
+
+        if ((records != null) && !records.isEmpty()) {
+            _append(key, records);
+        }
+        _persisted.put(key, cur);
+    }
+
+    private boolean _needsCompaction(SPNodeKey key) {
+        final long jnlSize = _journalFile(key).length();
+        return (jnlSize > MIN_COMPACTION_SIZE) &&
+               (jnlSize > _snapshots.size(key) * COMPACTION_RATIO);
+    }
+
+    /**
+     * Writes a complete snapshot of the program, which has the given
+     * versions, and then discards the now redundant journal.  A journal that
+     * can't be deleted no longer matches the snapshot, so it is harmless.
+     */
+    private void _compact(ISPProgram prog, scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>> versions) throws IOException {
+        final SPNodeKey key = prog.getProgramKey();
+        final File jnl      = _journalFile(key);
+        _journaled.remove(key);
+        _snapshots.store(prog);
+        _snapshotVersions.put(key, versions);
+        if (jnl.exists() && !jnl.delete()) {
+            LOG.warning("Couldn't remove the journal " + jnl.getPath() + ", it will be overwritten");
+        }
+    }
+
+    /**
+     * Appends the records as a single length-prefixed, checksummed entry so
+     * that a partially written entry can be detected when replaying.  The
+     * first append after a compaction starts a new journal for the current
+     * snapshot.
+     */
+    private void _append(SPNodeKey key, List<NodeRecord> records) throws IOException {
+        final boolean start = !_journaled.contains(key);
+        final FileOutputStream fos = new FileOutputStream(_journalFile(key), !start);
+        try {
+            final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+            if (start) _writeEntry(dos, _snapshotVersions.get(key));
+            _writeEntry(dos, new ArrayList<NodeRecord>(records));
+            dos.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        _journaled.add(key);
+    }
+
+    @Override public synchronized void remove(SPNodeKey key) {
+        _snapshots.remove(key);
+        _persisted.remove(key);
+        _snapshotVersions.remove(key);
+        _journaled.remove(key);
+        final File jnl = _journalFile(key);
+        if (jnl.exists() && !jnl.delete()) {
+            LOG.warning("Couldn't remove the journal " + jnl.getPath() + ", it will be replayed on the next start");
+        }
+    }
+
+    @Override public long size(SPNodeKey key) {
+        final long size = _snapshots.size(key);
+        return (size < 0) ? size : size + _journalFile(key).length();
+    }
+
+    @Override public long getTotalStorage() {
+        long total = _snapshots.getTotalStorage();
+        final File[] jnls = _journalDir.listFiles();
+        if (jnls != null) {
+            for (File jnl : jnls) total = total + jnl.length();
+        }
+        return total;
+    }
+}
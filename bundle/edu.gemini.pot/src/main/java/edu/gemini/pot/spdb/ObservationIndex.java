@@ -0,0 +1,138 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains, for each program in the database, a map from observation number
+ * to observation so that looking up an observation by id doesn't require
+ * walking the program.  Each program's map is built on demand and discarded
+ * whenever the program's structure changes.  Programs are tracked as they are
+ * added to, replaced in and removed from the {@link ProgramManager}.
+ */
+final class ObservationIndex implements ProgramEventListener<ISPProgram> {
+
+    /**
+     * Index entry for a single program.  It listens for structure changes in
+     * the program and drops its observation map when they happen.  Structure
+     * change events are delivered while the program write lock is held, and
+     * the map is built while holding the read lock, so a map can never be
+     * computed from a structure that has since been changed.
+     */
+    private static final class Entry implements PropertyChangeListener {
+        final ISPProgram prog;
+        private volatile Map<Integer, ISPObservation> _obsMap;
+
+        Entry(ISPProgram prog) {
+            this.prog = prog;
+        }
+
+        @Override public void propertyChange(PropertyChangeEvent evt) {
+            _obsMap = null;
+        }
+
+        Map<Integer, ISPObservation> getObsMap() {
+            final Map<Integer, ISPObservation> res = _obsMap;
+            return (res == null) ? rebuildObsMap() : res;
+        }
+
+        Map<Integer, ISPObservation> rebuildObsMap() {
+            prog.getProgramReadLock();
+            try {
+                final Map<Integer, ISPObservation> res = new HashMap<>();
+                for (ISPObservation obs : prog.getAllObservations()) {
+                    res.put(obs.getObservationNumber(), obs);
+                }
+                final Map<Integer, ISPObservation> map = Collections.unmodifiableMap(res);
+                _obsMap = map;
+                return map;
+            } finally {
+                prog.returnProgramReadLock();
+            }
+        }
+    }
+
+    private final ProgramManager<ISPProgram> _progMan;
+    private final Map<SPNodeKey, Entry> _entries = new ConcurrentHashMap<>();
+
+    ObservationIndex(ProgramManager<ISPProgram> progMan) {
+        _progMan = progMan;
+        progMan.addListener(this);
+        for (ISPProgram prog : progMan.getPrograms()) _track(prog);
+    }
+
+    private void _track(ISPProgram prog) {
+        final Entry e = new Entry(prog);
+        prog.addStructureChangeListener(e);
+        final Entry old = _entries.put(prog.getProgramKey(), e);
+        if (old != null) old.prog.removeStructureChangeListener(old);
+    }
+
+    private void _untrack(ISPProgram prog) {
+        final Entry e = _entries.get(prog.getProgramKey());
+        if ((e != null) && (e.prog == prog)) {
+            _entries.remove(prog.getProgramKey());
+            prog.removeStructureChangeListener(e);
+        }
+    }
+
+    @Override public void programAdded(ProgramEvent<ISPProgram> pme) {
+        _track(pme.getNewProgram());
+    }
+
+    @Override public void programReplaced(ProgramEvent<ISPProgram> pme) {
+        _untrack(pme.getOldProgram());
+        _track(pme.getNewProgram());
+    }
+
+    @Override public void programRemoved(ProgramEvent<ISPProgram> pme) {
+        _untrack(pme.getOldProgram());
+    }
+
+    /**
+     * Finds the observation with the given number in the given program.
+     * Programs that aren't (or aren't yet) being tracked are simply searched.
+     * For tracked programs this is a map lookup, except that the map is
+     * rebuilt when the number isn't in it or the observation found has since
+     * been renumbered.
+     *
+     * @return matching observation, if any; <code>null</code> otherwise
+     */
+    ISPObservation lookup(ISPProgram prog, int obsNumber) {
+        final Entry e = _entries.get(prog.getProgramKey());
+        if ((e == null) || (e.prog != prog)) return _search(prog, obsNumber);
+
+        final ISPObservation obs = e.getObsMap().get(obsNumber);
+        if ((obs != null) && (obs.getObservationNumber() == obsNumber)) return obs;
+
+        // Observations may be renumbered without a structure change (for
+        // example when merging), so on a miss or stale match rebuild the map
+        // in place.  Later lookups of renumbered observations are then map
+        // lookups again.
+        return e.rebuildObsMap().get(obsNumber);
+    }
+
+    private static ISPObservation _search(ISPProgram prog, int obsNumber) {
+        for (ISPObservation obs : prog.getAllObservations()) {
+            if (obs.getObservationNumber() == obsNumber) return obs;
+        }
+        return null;
+    }
+
+    /**
+     * Stops tracking programs, removing all the listeners.
+     */
+    void shutdown() {
+        _progMan.removeListener(this);
+        for (Entry e : _entries.values()) e.prog.removeStructureChangeListener(e);
+        _entries.clear();
+    }
+}
@@ -3,17 +3,26 @@ package edu.gemini.pot.spdb;
 import edu.gemini.pot.sp.*;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 /**
  * The query runner implementation.  See
- * <code>{@link IDBQueryRunner}</code> for more details.
+ * <code>{@link IDBQueryRunner}</code> for more details.  Functors that
+ * implement {@link IDBParallelQueryFunctor} are run concurrently, one task per
+ * program, on the database's query pool.  All others are run sequentially on
+ * the calling thread.
  */
 final class QueryRunner implements IDBQueryRunner {
     private static final Logger LOG = Logger.getLogger(QueryRunner.class.getName());
@@ -35,6 +44,10 @@ final class QueryRunner implements IDBQueryRunner {
      * Runs a query on the available observations.
      */
     public <T extends IDBQueryFunctor> T queryObservations(T queryFunctor) {
+        if (queryFunctor instanceof IDBParallelQueryFunctor) {
+            return _doParallelQuery(_dataMan.getProgramManager().getPrograms(), ISPProgram::getAllObservations, queryFunctor);
+        }
+
         List<ISPObservation> lst = new LinkedList<>();
         for (ISPProgram prog : _dataMan.getProgramManager().getPrograms()) {
             lst.addAll(prog.getAllObservations());
@@ -47,6 +60,9 @@ final class QueryRunner implements IDBQueryRunner {
      */
     public <T extends IDBQueryFunctor> T queryPrograms(T queryFunctor) {
         List<ISPProgram> lst = _dataMan.getProgramManager().getPrograms();
+        if (queryFunctor instanceof IDBParallelQueryFunctor) {
+            return _doParallelQuery(lst, Collections::singletonList, queryFunctor);
+        }
         return _doQuery(lst, queryFunctor);
     }
 
@@ -55,6 +71,9 @@ final class QueryRunner implements IDBQueryRunner {
      */
     public <T extends IDBQueryFunctor> T queryNightlyPlans(T queryFunctor) {
         List<ISPNightlyRecord> lst = _dataMan.getNightlyPlanManager().getPrograms();
+        if (queryFunctor instanceof IDBParallelQueryFunctor) {
+            return _doParallelQuery(lst, Collections::singletonList, queryFunctor);
+        }
         return _doQuery(lst, queryFunctor);
     }
 
@@ -85,4 +104,79 @@ final class QueryRunner implements IDBQueryRunner {
         return queryFunctor;
     }
 
+    /**
+     * Runs a splittable query, applying a separate part of the functor to the
+     * nodes of each root (program or nightly plan) on the database's query
+     * pool.  Each part runs holding the read lock of its root.  When all the
+     * parts are done, they are merged into the original functor in root
+     * order.
+     *
+     * @param nodes extracts the nodes upon which to execute the functor
+     * from a root
+     */
+    <R extends ISPRootNode, T extends IDBQueryFunctor> T _doParallelQuery(
+            final List<R> roots,
+            final Function<? super R, ? extends List<? extends ISPNode>> nodes,
+            final T queryFunctor) {
+
+        final IDBParallelQueryFunctor pf = (IDBParallelQueryFunctor) queryFunctor;
+        final FunctorLogger.Handback hb  = _dataMan.functorLogger.logQueryStart(queryFunctor);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        try {
+            pf.init();
+
+            final List<IDBParallelQueryFunctor> parts = new ArrayList<>(roots.size());
+            final List<ForkJoinTask<?>> tasks         = new ArrayList<>(roots.size());
+            for (final R root : roots) {
+                final IDBParallelQueryFunctor part = pf.split();
+                parts.add(part);
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    if (failure.get() == null) {
+                        WithPriority.exec(part.getPriority(), () -> _runPart(root, nodes, part, hb, failure));
+                    }
+                }));
+            }
+
+            _dataMan.queryPool.invoke(new RecursiveAction() {
+                @Override protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+
+            final Exception ex = failure.get();
+            if (ex != null) throw ex;
+
+            pf.mergeResults(new ArrayList<IDBFunctor>(parts));
+            pf.finished();
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Problem running functor: " + queryFunctor, ex);
+            queryFunctor.setException(ex);
+        }
+        _dataMan.functorLogger.logQueryEnd(queryFunctor, hb);
+        return queryFunctor;
+    }
+
+    private <R extends ISPRootNode> void _runPart(
+            R root,
+            Function<? super R, ? extends List<? extends ISPNode>> nodes,
+            IDBParallelQueryFunctor part,
+            FunctorLogger.Handback hb,
+            AtomicReference<Exception> failure) {
+
+        final long start = System.currentTimeMillis();
+        root.getProgramReadLock();
+        try {
+            part.init();
+            final Iterator<? extends ISPNode> it = nodes.apply(root).iterator();
+            while (!part.isDone() && it.hasNext()) {
+                part.execute(_database, it.next(), _principals);
+            }
+        } catch (Exception ex) {
+            failure.compareAndSet(null, ex);
+        } finally {
+            root.returnProgramReadLock();
+        }
+        _dataMan.functorLogger.logProgramTime(hb, root, System.currentTimeMillis() - start);
+    }
 }
@@ -0,0 +1,100 @@
+package edu.gemini.pot.spdb;
+
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.SPCompositeChange;
+import edu.gemini.pot.sp.SPUtil;
+
+import java.io.Serializable;
+
+/**
+ * A cheap pre-filter for {@link IDBTriggerCondition}s.  The database only
+ * calls {@link IDBTriggerCondition#matches} for changes that pass the
+ * condition's filter, and uses the property name to index registered
+ * conditions so that most conditions are never even considered for a given
+ * change.
+ *
+ * <p>A filter may restrict the changed property, the type of the modified
+ * node and the type of the property value (either the old or the new value
+ * must be an instance).  Unset restrictions match anything.  Filters are
+ * immutable.
+ */
+public final class TriggerFilter implements Serializable {
+
+    /**
+     * A filter that accepts every change.
+     */
+    public static final TriggerFilter ANY = new TriggerFilter(null, null, null);
+
+    private final String propertyName;
+    private final Class<? extends ISPNode> nodeType;
+    private final Class<?> valueType;
+
+    private TriggerFilter(String propertyName, Class<? extends ISPNode> nodeType, Class<?> valueType) {
+        this.propertyName = propertyName;
+        this.nodeType     = nodeType;
+        this.valueType    = valueType;
+    }
+
+    /**
+     * Creates a filter that accepts only changes to the given property.
+     */
+    public static TriggerFilter forProperty(String propertyName) {
+        if (propertyName == null) throw new NullPointerException();
+        return new TriggerFilter(propertyName, null, null);
+    }
+
+    /**
+     * Creates a filter that accepts data object updates in which the old or
+     * new data object is an instance of the given class.
+     */
+    public static TriggerFilter forDataObject(Class<?> dataObjectType) {
+        return forProperty(SPUtil.getDataObjectPropertyName()).withValueType(dataObjectType);
+    }
+
+    /**
+     * Returns a copy of this filter that additionally requires the modified
+     * node to be an instance of <code>nodeType</code>.
+     */
+    public TriggerFilter withNodeType(Class<? extends ISPNode> nodeType) {
+        if (nodeType == null) throw new NullPointerException();
+        return new TriggerFilter(propertyName, nodeType, valueType);
+    }
+
+    /**
+     * Returns a copy of this filter that additionally requires the old or new
+     * property value to be an instance of <code>valueType</code>.
+     */
+    public TriggerFilter withValueType(Class<?> valueType) {
+        if (valueType == null) throw new NullPointerException();
+        return new TriggerFilter(propertyName, nodeType, valueType);
+    }
+
+    /**
+     * Gets the name of the property to which this filter is restricted, if
+     * any.
+     *
+     * @return property name, or <code>null</code> if any property matches
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    /**
+     * Determines whether the change passes the filter.
+     */
+    public boolean accepts(SPCompositeChange change) {
+        if ((propertyName != null) && !propertyName.equals(change.getPropertyName())) return false;
+        if ((nodeType != null) && !nodeType.isInstance(change.getModifiedNode())) return false;
+        return (valueType == null) ||
+                valueType.isInstance(change.getOldValue()) ||
+                valueType.isInstance(change.getNewValue());
+    }
+
+    @Override public String toString() {
+        return "TriggerFilter{" +
+                "propertyName=" + propertyName +
+                ", nodeType=" + ((nodeType == null) ? null : nodeType.getName()) +
+                ", valueType=" + ((valueType == null) ? null : valueType.getName()) +
+                '}';
+    }
+}
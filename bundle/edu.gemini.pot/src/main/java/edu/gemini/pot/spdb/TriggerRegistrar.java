@@ -8,28 +8,71 @@ import java.util.logging.Level;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles trigger registration (and execution).
+ *
+ * <p>Every composite change in every program passes through here, so matching
+ * must be cheap.  Conditions are indexed by the property name of their
+ * {@link TriggerFilter} and only those whose filter accepts a change are asked
+ * whether they match it.  The index is an immutable snapshot that is replaced
+ * whenever a trigger is registered or unregistered, so matching takes no
+ * locks.
+ *
+ * <p>Trigger actions run on a fixed size pool.  The thread firing the change
+ * holds the program lock, so it only queues the actions.  The queue is
+ * unbounded so that no action is dropped, a warning is logged when the
+ * backlog grows large.
  */
 final class TriggerRegistrar implements PropertyChangeListener, ProgramEventListener<ISPProgram> {
     private static final Logger LOG = Logger.getLogger(TriggerRegistrar.class.getName());
 
+    static final int POOL_SIZE  = 4;
+
+    // Backlog of pending actions above which a warning is logged.
+    static final int BACKLOG_WARNING_SIZE = 10000;
+
+    // Actions that take longer than this (in ms) are logged.
+    private static final long SLOW_ACTION_MS = 5000;
+
     private final ProgramManager<ISPProgram> _progMan;
-    private final ExecutorService _pool;
-    private Map<IDBTriggerCondition, List<TriggerReg>> _triggerMap = new HashMap<>();
+    private final ThreadPoolExecutor _pool;
+
+    // Guarded by this, and only used to rebuild the index.
+    private final Map<IDBTriggerCondition, List<TriggerReg>> _triggerMap = new HashMap<>();
+
+    private volatile Index _index = Index.EMPTY;
+
+    // Instrumentation
+    private final AtomicLong _actionCount     = new AtomicLong();
+    private final AtomicLong _failureCount    = new AtomicLong();
+    private final AtomicLong _maxBacklog      = new AtomicLong();
+    private final AtomicBoolean _backlogged   = new AtomicBoolean();
+    private final AtomicLong _totalActionMs   = new AtomicLong();
+    private final AtomicLong _maxActionMs     = new AtomicLong();
 
     /**
      * Constructs with the program manager.
      */
     TriggerRegistrar(ProgramManager<ISPProgram> programMan) {
         _progMan = programMan;
-        _pool = Executors.newCachedThreadPool();
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        _pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> new Thread(r, "ODB Trigger " + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.DiscardPolicy()); // only rejects after shutdown
+        _pool.allowCoreThreadTimeOut(true);
 
         // Listen to all the programs.
         List<ISPProgram> progs = programMan.getPrograms();
@@ -41,9 +84,65 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
         programMan.addListener(this);
     }
 
+    // A registered condition, its filter and its actions.
+    private static final class Entry {
+        final IDBTriggerCondition condition;
+        final TriggerFilter filter;
+        final List<TriggerReg> regs;
+
+        Entry(IDBTriggerCondition condition, TriggerFilter filter, List<TriggerReg> regs) {
+            this.condition = condition;
+            this.filter    = filter;
+            this.regs      = regs;
+        }
+    }
+
+    // Immutable snapshot of the registered conditions, indexed by property
+    // name.
+    private static final class Index {
+        static final Index EMPTY = new Index(Collections.emptyMap(), Collections.emptyList());
+
+        final Map<String, List<Entry>> byProperty;
+        final List<Entry> anyProperty;
+
+        Index(Map<String, List<Entry>> byProperty, List<Entry> anyProperty) {
+            this.byProperty  = byProperty;
+            this.anyProperty = anyProperty;
+        }
+
+        static Index build(Map<IDBTriggerCondition, List<TriggerReg>> triggerMap) {
+            final Map<String, List<Entry>> byProperty = new HashMap<>();
+            final List<Entry> anyProperty = new ArrayList<>();
+
+            for (Map.Entry<IDBTriggerCondition, List<TriggerReg>> me : triggerMap.entrySet()) {
+                final IDBTriggerCondition tc = me.getKey();
+                TriggerFilter filter = tc.getFilter();
+                if (filter == null) filter = TriggerFilter.ANY;
+
+                final Entry e = new Entry(tc, filter, Collections.unmodifiableList(new ArrayList<>(me.getValue())));
+                final String prop = filter.getPropertyName();
+                if (prop == null) {
+                    anyProperty.add(e);
+                } else {
+                    List<Entry> lst = byProperty.get(prop);
+                    if (lst == null) {
+                        lst = new ArrayList<>();
+                        byProperty.put(prop, lst);
+                    }
+                    lst.add(e);
+                }
+            }
+            return new Index(byProperty, anyProperty);
+        }
+
+        List<Entry> candidates(SPCompositeChange change) {
+            final List<Entry> lst = byProperty.get(change.getPropertyName());
+            return (lst == null) ? anyProperty : lst;
+        }
+    }
 
     public void register(IDBTriggerCondition condition, IDBTriggerAction action) {
-        LOG.log(Level.INFO, "Registering trigger condition: " + condition);
+        LOG.log(Level.INFO, "Registering trigger condition: " + condition + ", " + condition.getFilter());
         TriggerReg tr = new TriggerReg(condition, action);
         synchronized (this) {
             List<TriggerReg> actionList = _triggerMap.get(condition);
@@ -52,6 +151,7 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
                 _triggerMap.put(condition, actionList);
             }
             actionList.add(tr);
+            _index = Index.build(_triggerMap);
         }
     }
 
@@ -64,6 +164,7 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
                 actionList.remove(tr);
                 if (actionList.isEmpty())
                     _triggerMap.remove(condition);
+                _index = Index.build(_triggerMap);
             }
         }
     }
@@ -78,35 +179,41 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
         }
     }
 
-    /**
-     * Extracts the TriggerReg objects that are interested in
-     * handling the given composite change event.
-     *
-     * @return List of {@link TriggerEvent}
-     */
-    private synchronized List<TriggerEvent> _getMatchingRegs(SPCompositeChange change) {
-        List<TriggerEvent> res = null;
-
-        for (Map.Entry<IDBTriggerCondition, List<TriggerReg>> me : _triggerMap.entrySet()) {
+    private static List<TriggerEvent> _addMatches(List<Entry> entries, SPCompositeChange change, List<TriggerEvent> res) {
+        for (Entry e : entries) {
+            if (!e.filter.accepts(change)) continue;
 
-            IDBTriggerCondition tc = me.getKey();
-            Object handback = tc.matches(change);
+            Object handback = e.condition.matches(change);
             if (handback != null) {
                 if (res == null) res = new ArrayList<>();
-                List<TriggerReg> triggerRegList = me.getValue();
-                for (TriggerReg reg : triggerRegList) {
+                for (TriggerReg reg : e.regs) {
                     res.add(new TriggerEvent(reg, handback));
                 }
             }
         }
+        return res;
+    }
 
+    /**
+     * Extracts the TriggerReg objects that are interested in
+     * handling the given composite change event.
+     *
+     * @return List of {@link TriggerEvent}
+     */
+    private List<TriggerEvent> _getMatchingRegs(SPCompositeChange change) {
+        final Index index = _index;
+
+        List<TriggerEvent> res = null;
+        final List<Entry> candidates = index.candidates(change);
+        res = _addMatches(candidates, change, res);
+        if (candidates != index.anyProperty) res = _addMatches(index.anyProperty, change, res);
         return res;
     }
 
     /**
      * A Runnable used to execute a trigger action within a thread pool.
      */
-    private static class TriggerTask implements Runnable {
+    private class TriggerTask implements Runnable {
         private final SPCompositeChange change;
 
         private final IDBTriggerAction action;
@@ -121,30 +228,42 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
         }
 
         public void run() {
-
-            // Record the start time
-            long startTime = 0;
-            if (action.getClass().getName().contains("TooAction")) {
-                startTime = System.currentTimeMillis();
-                LOG.log(Level.WARNING, "Sending a ToO alert...");
-            }
-
-            action.doTriggerAction(change, handback);
-
-            // Record the end time and warn if it took too long.
-            if (startTime != 0) {
-                long curTime = System.currentTimeMillis();
-                LOG.log(Level.WARNING, "Sent ToO alert");
-
-                long elapsed = curTime - startTime;
-                if (elapsed > 5000) {
-                    LOG.log(Level.WARNING, "Long delay sending ToO alert: " + elapsed);
+            final boolean isToo = action.getClass().getName().contains("TooAction");
+            if (isToo) LOG.log(Level.WARNING, "Sending a ToO alert...");
+
+            final long startTime = System.currentTimeMillis();
+            try {
+                action.doTriggerAction(change, handback);
+            } catch (Exception ex) {
+                _failureCount.incrementAndGet();
+                LOG.log(Level.WARNING, "Trigger action " + action + " failed", ex);
+            } finally {
+                final long elapsed = System.currentTimeMillis() - startTime;
+                _actionCount.incrementAndGet();
+                _totalActionMs.addAndGet(elapsed);
+                _maxActionMs.accumulateAndGet(elapsed, Math::max);
+
+                if (isToo) LOG.log(Level.WARNING, "Sent ToO alert");
+
+                // Warn if it took too long.
+                if (elapsed > SLOW_ACTION_MS) {
+                    LOG.log(Level.WARNING, "Long delay running trigger action " + action + ": " + elapsed);
                 }
             }
-
         }
     }
 
+    /**
+     * Gets a summary of the trigger action statistics.
+     */
+    String getStatistics() {
+        final long count = _actionCount.get();
+        return String.format("trigger actions: %d (%d failed), avg %d ms, max %d ms, active %d, queued %d (max %d)",
+                count, _failureCount.get(),
+                (count == 0) ? 0 : _totalActionMs.get() / count, _maxActionMs.get(),
+                _pool.getActiveCount(), _pool.getQueue().size(), _maxBacklog.get());
+    }
+
     /**
      * Fires a composite event to registered listeners.  Passes the event
      * along to any parent(s) to notify their composite listeners.
@@ -155,7 +274,17 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
 
         // notify everyone
         for (TriggerEvent evt : actionList) {
-            _pool.submit(new TriggerTask(change, evt));
+            _pool.execute(new TriggerTask(change, evt));
+        }
+
+        final int backlog = _pool.getQueue().size();
+        _maxBacklog.accumulateAndGet(backlog, Math::max);
+        if (backlog > BACKLOG_WARNING_SIZE) {
+            if (_backlogged.compareAndSet(false, true)) {
+                LOG.warning("Trigger action backlog over " + BACKLOG_WARNING_SIZE + ": " + getStatistics());
+            }
+        } else {
+            _backlogged.set(false);
         }
     }
 
@@ -182,6 +311,7 @@ final class TriggerRegistrar implements PropertyChangeListener, ProgramEventList
      * Cleans up.
      */
     void shutdown() {
+        LOG.info(getStatistics());
         _pool.shutdownNow();
         _progMan.removeListener(this);
 
@@ -1,5 +1,6 @@
 package edu.gemini.pot.spdb.osgi;
 
+import edu.gemini.pot.spdb.DBLoadConfig;
 import edu.gemini.pot.spdb.DBLocalDatabase;
 import edu.gemini.pot.spdb.IDBDatabaseService;
 import edu.gemini.pot.spdb.IDBQueryRunner;
@@ -34,6 +35,24 @@ public class Activator implements BundleActivator {
      */
     public static final String BUNDLE_PROP_DIR = "edu.gemini.spdb.dir";
 
+    /**
+     * Bundle property that specifies how programs are persisted.
+     * @see DBLocalDatabase.Persistence
+     */
+    public static final String BUNDLE_PROP_PERSISTENCE = "edu.gemini.spdb.persistence";
+
+    /**
+     * Bundle property that specifies the number of threads used to load the
+     * database at startup.  Values greater than one enable parallel loading.
+     */
+    public static final String BUNDLE_PROP_LOAD_THREADS = "edu.gemini.spdb.load.threads";
+
+    /**
+     * Bundle property that specifies whether program files are read via
+     * memory-mapped buffers when loading in parallel.
+     */
+    public static final String BUNDLE_PROP_LOAD_MMAP = "edu.gemini.spdb.load.mmap";
+
     // Mutable state
     private DatabaseLoader loader;
 
@@ -52,7 +71,13 @@ public class Activator implements BundleActivator {
             } else {
                 dbDir = ExternalStorage$.MODULE$.getExternalDataFile(context, "spdb");
             }
-            loader = new DatabaseLoader(context, dbDir);
+            final DBLocalDatabase.Persistence persistence =
+                props.getEnum(BUNDLE_PROP_PERSISTENCE, DBLocalDatabase.Persistence.DEFAULT, DBLocalDatabase.Persistence.class);
+            final int threads = props.getInt(BUNDLE_PROP_LOAD_THREADS, 1);
+            final DBLoadConfig loadConfig = (threads > 1) ?
+                DBLoadConfig.parallel(threads, props.getBoolean(BUNDLE_PROP_LOAD_MMAP, false)) :
+                DBLoadConfig.SEQUENTIAL;
+            loader = new DatabaseLoader(context, dbDir, persistence, loadConfig);
         }
 
     }
@@ -72,16 +97,20 @@ public class Activator implements BundleActivator {
 
         private final BundleContext ctx;
         private final File dbDir;
+        private final DBLocalDatabase.Persistence persistence;
+        private final DBLoadConfig loadConfig;
 
         private State state;
         private IDBDatabaseService db;
         private ServiceRegistration<IDBDatabaseService> dbReg;
         private ServiceRegistration<IDBQueryRunner>     qrReg;
 
-        DatabaseLoader(BundleContext ctx, File dir) {
-            this.ctx   = ctx;
-            this.dbDir = dir;
-            this.state = State.loading;
+        DatabaseLoader(BundleContext ctx, File dir, DBLocalDatabase.Persistence persistence, DBLoadConfig loadConfig) {
+            this.ctx         = ctx;
+            this.dbDir       = dir;
+            this.persistence = persistence;
+            this.loadConfig  = loadConfig;
+            this.state       = State.loading;
 
             Thread t = new Thread(this, "DatabaseLoader");
             t.setDaemon(true);
@@ -139,7 +168,7 @@ public class Activator implements BundleActivator {
         public void run() {
             LOGGER.info("Starting local database on " + dbDir.getAbsolutePath());
             try {
-                setReady(DBLocalDatabase.create(dbDir));
+                setReady(DBLocalDatabase.create(dbDir, persistence, loadConfig));
             } catch (IOException ex) {
                 LOGGER.log(Level.SEVERE, "Could not start ODB on " + dbDir, ex);
                 try {
@@ -43,8 +43,17 @@ public final class ConfigBridge {
         return extractSequence(obs, options, map, false);
     }
 
+    /**
+     * Extracts the sequence of the given observation.  Sequences are cached
+     * while the observation is unchanged, so the sequence returned when no
+     * mapping is requested is shared and cannot be modified.
+     */
     public static ConfigSequence extractSequence(ISPObservation obs, Map<String, Object> options, ConfigValMap map, boolean filterMeta) {
-       return mapSequence(calculateSequence(obs, options, filterMeta), map);
+        // make sure that important default options are added (e.g. smartgcal)
+        final Map<String, Object> opts = ObservationCB.getDefaultSequenceOptions(options);
+        final ConfigSequence seq = SequenceCache.INSTANCE.get(obs, opts, filterMeta,
+                () -> calculateSequence(obs, opts, filterMeta));
+        return mapSequence(seq, map);
     }
 
     private static ConfigSequence mapSequence(ConfigSequence sequence, ConfigValMap map) {
@@ -63,9 +72,6 @@ public final class ConfigBridge {
     private static ConfigSequence calculateSequence(ISPObservation obs, Map<String, Object> options, boolean filterMeta) {
         ConfigSequence configSeq = new ConfigSequence();
 
-        // make sure that important default options are added (e.g. smartgcal)
-        options = ObservationCB.getDefaultSequenceOptions(options);
-
         // Get the config builder.
         IConfigBuilder cb;
         cb = (IConfigBuilder) obs.getClientData(IConfigBuilder.USER_OBJ_KEY);
@@ -0,0 +1,136 @@
+package edu.gemini.spModel.config;
+
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.SPObservationID;
+import edu.gemini.pot.sp.version.LifespanId;
+import edu.gemini.shared.util.VersionVector;
+import edu.gemini.spModel.config2.ConfigSequence;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide, bounded cache of expanded observation sequences.  Expanding
+ * a sequence requires running the config builders over the whole sequence
+ * tree, yet many services ask for the same sequence repeatedly while the
+ * observation is unchanged.
+ *
+ * <p>Entries are keyed by the observation node key along with the sequence
+ * options, and are only reused while the version digest of the observation
+ * subtree (see {@link ISPProgram#getVersionDigest}), the version of the
+ * program node itself and the observation id match.  The program node is
+ * included because the sequence contains program level information such as
+ * the proprietary period.  The cached sequences are unmodifiable so that they can be handed to
+ * any number of callers.
+ */
+final class SequenceCache {
+    static final int DEFAULT_SIZE = 500;
+
+    private static final class Key {
+        final SPNodeKey obsKey;
+        final boolean filterMeta;
+        final Map<String, Object> options;
+
+        Key(SPNodeKey obsKey, boolean filterMeta, Map<String, Object> options) {
+            this.obsKey     = obsKey;
+            this.filterMeta = filterMeta;
+            this.options    = options;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key that = (Key) o;
+            return (filterMeta == that.filterMeta) && obsKey.equals(that.obsKey) && options.equals(that.options);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(obsKey, filterMeta, options);
+        }
+    }
+
+    private static final class CacheObject {
+        final long digest;
+        final VersionVector<LifespanId, Integer> progVersions;
+        final SPObservationID obsId;
+        final ConfigSequence sequence;
+
+        CacheObject(long digest, VersionVector<LifespanId, Integer> progVersions, SPObservationID obsId, ConfigSequence sequence) {
+            this.digest       = digest;
+            this.progVersions = progVersions;
+            this.obsId        = obsId;
+            this.sequence     = sequence;
+        }
+
+        boolean matches(long digest, VersionVector<LifespanId, Integer> progVersions, SPObservationID obsId) {
+            return (this.digest == digest) && this.progVersions.equals(progVersions) && Objects.equals(this.obsId, obsId);
+        }
+    }
+
+    static final SequenceCache INSTANCE = new SequenceCache(DEFAULT_SIZE);
+
+    private final LinkedHashMap<Key, CacheObject> cache;
+
+    SequenceCache(final int cacheSize) {
+        if (cacheSize <= 0) throw new IllegalArgumentException("cacheSize = " + cacheSize);
+        cache = new LinkedHashMap<Key, CacheObject>((int) Math.ceil((cacheSize+1) / 0.75f), 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Key, CacheObject> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the sequence for the given observation, computing it with
+     * <code>calc</code> if there is no up-to-date cached copy.
+     *
+     * @param options complete sequence options, including defaults; they
+     * must not be modified afterwards
+     *
+     * @return an unmodifiable sequence
+     */
+    ConfigSequence get(ISPObservation obs, Map<String, Object> options, boolean filterMeta, Supplier<ConfigSequence> calc) {
+        final ISPProgram prog = obs.getProgram();
+        if (prog == null) return ConfigSequence.unmodifiable(calc.get());
+
+        final Key key                = new Key(obs.getNodeKey(), filterMeta, new HashMap<>(options));
+        final long digest            = prog.getVersionDigest(obs);
+        final VersionVector<LifespanId, Integer> progVersions = prog.getVersions(prog.getNodeKey());
+        final SPObservationID obsId  = obs.getObservationID();
+
+        synchronized (cache) {
+            final CacheObject co = cache.get(key);
+            if ((co != null) && co.matches(digest, progVersions, obsId)) return co.sequence;
+        }
+
+        // Expand the sequence without holding the cache lock.
+        final ConfigSequence res = ConfigSequence.unmodifiable(calc.get());
+
+        // Only cache the result if the observation and program didn't change
+        // while the sequence was being computed.
+        final CacheObject co = new CacheObject(digest, progVersions, obsId, res);
+        if (co.matches(prog.getVersionDigest(obs), prog.getVersions(prog.getNodeKey()), obs.getObservationID())) {
+            synchronized (cache) {
+                cache.put(key, co);
+            }
+        }
+        return res;
+    }
+
+    void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package edu.gemini.spModel.config2;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable {@link ConfigSequence} stored by column rather than by step.
+ * Each {@link ItemKey} in the sequence has a column holding the runs of steps
+ * over which its value doesn't change, so an item that is set once and never
+ * iterated costs a single entry regardless of the number of steps.  Single
+ * item lookups are a binary search in the column and need not create a
+ * {@link Config}, while the Configs for complete steps are only created on
+ * demand.
+ *
+ * <p>Created with {@link ConfigSequence#unmodifiable}.  All methods that
+ * would modify the sequence throw <code>UnsupportedOperationException</code>
+ * and the sequence may be shared between threads.
+ */
+final class ColumnarConfigSequence extends ConfigSequence {
+
+    // Sequences repeat the same handful of keys over and over, so share a
+    // single instance of each (up to a sanity limit).
+    private static final int MAX_INTERNED_KEYS = 10000;
+    private static final ConcurrentHashMap<ItemKey, ItemKey> KEYS = new ConcurrentHashMap<>();
+
+    private static ItemKey intern(ItemKey key) {
+        final ItemKey res = KEYS.get(key);
+        if (res != null) return res;
+        if (KEYS.size() >= MAX_INTERNED_KEYS) return key;
+        final ItemKey prev = KEYS.putIfAbsent(key, key);
+        return (prev == null) ? key : prev;
+    }
+
+    // The runs of values for a single item.  Run i starts at step starts[i]
+    // and lasts until the next run starts.  The item has no value before the
+    // first run.
+    private static final class Column {
+        final ItemKey key;
+        final int[] starts;
+        final Object[] values;
+
+        Column(ItemKey key, int[] starts, Object[] values) {
+            this.key    = key;
+            this.starts = starts;
+            this.values = values;
+        }
+
+        Object valueAt(int step) {
+            int i = Arrays.binarySearch(starts, step);
+            if (i < 0) i = -i - 2;
+            return (i < 0) ? null : values[i];
+        }
+
+        int runCount() {
+            return starts.length;
+        }
+
+        boolean presentAtStart() {
+            return starts[0] == 0;
+        }
+    }
+
+    private static final class ColumnBuilder {
+        private int[] starts = new int[1];
+        private Object[] values = new Object[1];
+        private int count;
+
+        void add(int step, Object value) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            starts[count] = step;
+            values[count] = value;
+            ++count;
+        }
+
+        Column build(ItemKey key) {
+            return new Column(key, Arrays.copyOf(starts, count), Arrays.copyOf(values, count));
+        }
+    }
+
+    private final int _size;
+    private final Column[] _columns;             // sorted by key
+    private final Map<ItemKey, Column> _columnMap;
+
+    ColumnarConfigSequence(ConfigSequence seq) {
+        // Each step of the compact view holds exactly the items that start a
+        // new run at that step.
+        final Config[] compact = seq.getCompactView();
+        final SortedMap<ItemKey, ColumnBuilder> builders = new TreeMap<>();
+        for (int step=0; step<compact.length; ++step) {
+            for (ItemEntry ie : compact[step].itemEntries()) {
+                ColumnBuilder b = builders.get(ie.getKey());
+                if (b == null) {
+                    b = new ColumnBuilder();
+                    builders.put(ie.getKey(), b);
+                }
+                b.add(step, ie.getItemValue());
+            }
+        }
+
+        _size      = compact.length;
+        _columns   = new Column[builders.size()];
+        _columnMap = new HashMap<>(builders.size() * 2);
+
+        int i = 0;
+        for (Map.Entry<ItemKey, ColumnBuilder> me : builders.entrySet()) {
+            final Column c = me.getValue().build(intern(me.getKey()));
+            _columns[i++] = c;
+            _columnMap.put(c.key, c);
+        }
+    }
+
+    private void checkStep(int step) {
+        if ((step < 0) || (step >= _size)) {
+            throw new IndexOutOfBoundsException("Step: " + step + ", Size: " + _size);
+        }
+    }
+
+    // Iterates over the steps, producing either complete Configs or just the
+    // changes from the previous step.
+    private final class StepIterator implements Iterator<Config> {
+        private final boolean complete;
+        private final int[] run = new int[_columns.length];
+        private final Config current = new DefaultConfig();
+        private int step;
+
+        StepIterator(boolean complete) {
+            this.complete = complete;
+        }
+
+        public boolean hasNext() {
+            return step < _size;
+        }
+
+        public Config next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            final Config delta = new DefaultConfig();
+            for (int i=0; i<_columns.length; ++i) {
+                final Column c = _columns[i];
+                final int r = run[i];
+                if ((r < c.runCount()) && (c.starts[r] == step)) {
+                    delta.putItem(c.key, c.values[r]);
+                    run[i] = r + 1;
+                }
+            }
+            ++step;
+
+            if (!complete) return delta;
+            current.putAll(delta);
+            return new DefaultConfig(current);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private Config[] steps(boolean complete) {
+        final Config[] res = new Config[_size];
+        final StepIterator it = new StepIterator(complete);
+        for (int i=0; i<_size; ++i) res[i] = it.next();
+        return res;
+    }
+
+    @Override public Config[] getAllSteps() {
+        return steps(true);
+    }
+
+    @Override public Config[] getCompactView() {
+        return steps(false);
+    }
+
+    @Override public Iterator<Config> iterator() {
+        return new StepIterator(true);
+    }
+
+    @Override public Iterator<Config> compactIterator() {
+        return new StepIterator(false);
+    }
+
+    @Override public Config getStep(int step) {
+        checkStep(step);
+        final Config res = new DefaultConfig();
+        for (Column c : _columns) {
+            final Object val = c.valueAt(step);
+            if (val != null) res.putItem(c.key, val);
+        }
+        return res;
+    }
+
+    @Override public Object getItemValue(int step, ItemKey key) {
+        checkStep(step);
+        final Column c = _columnMap.get(key);
+        return (c == null) ? null : c.valueAt(step);
+    }
+
+    @Override public Object[] getItemValueAtEachStep(ItemKey key) {
+        final Object[] res = new Object[_size];
+        final Column c = _columnMap.get(key);
+        if (c == null) return res;
+
+        for (int r=0; r<c.runCount(); ++r) {
+            final int end = (r + 1 < c.runCount()) ? c.starts[r + 1] : _size;
+            Arrays.fill(res, c.starts[r], end, c.values[r]);
+        }
+        return res;
+    }
+
+    @Override public Object[] getDistinctItemValues(ItemKey key) {
+        if (_size == 0) return new Object[0];
+
+        final Column c = _columnMap.get(key);
+        if (c == null) return new Object[] { null };
+
+        final Set<Object> s = new HashSet<>(Arrays.asList(c.values));
+        if (!c.presentAtStart()) s.add(null);
+        return s.toArray(new Object[s.size()]);
+    }
+
+    @Override public ItemKey[] getIteratedKeys() {
+        if (_size <= 1) return ItemKey.EMPTY_ARRAY;
+
+        final List<ItemKey> res = new ArrayList<>();
+        for (Column c : _columns) {
+            if ((c.runCount() > 1) || !c.presentAtStart()) res.add(c.key);
+        }
+        return res.toArray(ItemKey.EMPTY_ARRAY);
+    }
+
+    @Override public ItemKey[] getStaticKeys() {
+        if (_size <= 0) return ItemKey.EMPTY_ARRAY;
+
+        final List<ItemKey> res = new ArrayList<>();
+        for (Column c : _columns) {
+            if ((c.runCount() == 1) && c.presentAtStart()) res.add(c.key);
+        }
+        return res.toArray(ItemKey.EMPTY_ARRAY);
+    }
+
+    @Override public int indexMatching(Config template) {
+        final ItemEntry[] entries = template.itemEntries();
+        final Column[] cols = new Column[entries.length];
+        for (int i=0; i<entries.length; ++i) {
+            cols[i] = _columnMap.get(entries[i].getKey());
+            if (cols[i] == null) return -1;
+        }
+
+        for (int step=0; step<_size; ++step) {
+            boolean matches = true;
+            for (int i=0; matches && (i<entries.length); ++i) {
+                final Object val = cols[i].valueAt(step);
+                matches = (val != null) && val.equals(entries[i].getItemValue());
+            }
+            if (matches) return step;
+        }
+        return -1;
+    }
+
+    @Override public ConfigSequence filter(Predicate p) {
+        final List<Config> res = new ArrayList<>();
+        for (Iterator<Config> it = iterator(); it.hasNext(); ) {
+            final Config c = it.next();
+            if (p.matches(c)) res.add(c);
+        }
+        return new ConfigSequence(res.toArray(new Config[res.size()]));
+    }
+
+    @Override public ConfigSequence subSequence(int from, int to) {
+        final Config[] subconfigs = new Config[to - from];
+        for (int i=from; i<to; ++i) subconfigs[i-from] = getStep(i);
+        return new ConfigSequence(subconfigs);
+    }
+
+    @Override public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    @Override public int size() {
+        return _size;
+    }
+
+    @Override public void addStep(Config conf) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public void addStep(int step, Config conf) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public void removeStep(int step) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public void setStep(int step, Config conf) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Recipients of a serialized copy get an ordinary sequence.
+    private Object writeReplace() {
+        return new ConfigSequence(this);
+    }
+}
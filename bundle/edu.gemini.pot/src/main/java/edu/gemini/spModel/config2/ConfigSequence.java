@@ -71,6 +71,24 @@ public class ConfigSequence implements Serializable {
 
     public static final ConfigSequence EMPTY = new ConfigSequence();
 
+    /**
+     * Returns an unmodifiable copy of the given sequence.  Attempts to add,
+     * set or remove steps throw <code>UnsupportedOperationException</code>
+     * and, since the {@link Config}s returned by a sequence are always copies,
+     * the content can never change.  Unlike ordinary ConfigSequences, the
+     * returned sequence may be safely read by multiple threads.
+     *
+     * <p>The copy is stored by item rather than by step (see
+     * {@link ColumnarConfigSequence}), which is much more compact for long
+     * sequences.  Prefer {@link #getItemValue} and
+     * {@link #getItemValueAtEachStep} over fetching complete steps when only
+     * a few items are needed.
+     */
+    public static ConfigSequence unmodifiable(ConfigSequence seq) {
+        if (seq instanceof ColumnarConfigSequence) return seq;
+        return new ColumnarConfigSequence(seq);
+    }
+
     /**
      * Constructs an empty ConfigSequence.
      */
@@ -94,6 +112,12 @@ public class ConfigSequence implements Serializable {
      * Creates a ConfigSequence that is a copy of the given sequence.
      */
     public ConfigSequence(ConfigSequence copy) {
+        if (copy instanceof ColumnarConfigSequence) {
+            // Keeps no steps in _configs.
+            _configs.addAll(Arrays.asList(copy.getCompactView()));
+            return;
+        }
+
         _configs = new ArrayList<Config>(copy._configs);
 
         for (ListIterator<Config> lit=_configs.listIterator(); lit.hasNext(); ) {
@@ -228,8 +252,8 @@ public class ConfigSequence implements Serializable {
      * <code
      */
     public Object getItemValue(int step, ItemKey key) {
-        Config conf = getStep(step);
-        return conf.getItemValue(key);
+        _complete();
+        return _completeConfigs.get(step).getItemValue(key);
     }
 
     /**
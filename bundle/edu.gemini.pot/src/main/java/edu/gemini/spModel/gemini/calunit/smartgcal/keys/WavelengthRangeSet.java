@@ -16,6 +16,11 @@ import java.util.*;
  * Wavelength range sets store a set of non-overlapping ranges and a list of calibrations for each of these
  * ranges. Before adding a range it is verified that it does not overlap with any of the already existing
  * ranges in order to avoid disambiguities.
+ * <p>
+ * The ranges are kept sorted by their lower boundary. Since they don't overlap, they are sorted by their
+ * upper boundary as well, so both adding a range and looking up a wavelength are binary searches. Smart
+ * calibrations look up a wavelength for every GCAL step of every sequence that is expanded, so lookups don't
+ * allocate anything: the calibration lists handed out are shared, unmodifiable views.
  */
 public class WavelengthRangeSet implements Serializable {
 
@@ -25,13 +30,15 @@ public class WavelengthRangeSet implements Serializable {
     private final class RangeCalibrationTuple {
         private final WavelengthRange range;
         private final List<Calibration> calibrations;
+        private final List<Calibration> view;
         public RangeCalibrationTuple(WavelengthRange range) {
             this.range = range;
             this.calibrations = new ArrayList<Calibration>();
+            this.view = Collections.unmodifiableList(calibrations);
         }
     }
 
-    // set of range/calibration pairs
+    // set of range/calibration pairs, sorted by range
     private final List<RangeCalibrationTuple> ranges;
 
     /**
@@ -50,15 +57,21 @@ public class WavelengthRangeSet implements Serializable {
      * @param c
      */
     public void add(WavelengthRange range, Calibration c) {
-        RangeCalibrationTuple existing = findTuple(range);
-        if (existing == null) {
-            for (RangeCalibrationTuple t : ranges) {
-                if (range.getMin() < t.range.getMax() && range.getMax() >= t.range.getMin()) {
-                    throw new IllegalArgumentException("range " +  range + " overlaps with " + t.range);
-                }
+        // ranges are half-open, so the last range starting before the end of the new range is the only one
+        // that might overlap; all ranges before it end at or before its lower boundary
+        int i = lastStartingBefore(range.getMax(), false);
+        RangeCalibrationTuple existing = null;
+        if (i >= 0) {
+            RangeCalibrationTuple t = ranges.get(i);
+            if (t.range.equals(range)) {
+                existing = t;
+            } else if (range.getMin() < t.range.getMax()) {
+                throw new IllegalArgumentException("range " +  range + " overlaps with " + t.range);
             }
+        }
+        if (existing == null) {
             existing = new RangeCalibrationTuple(range);
-            ranges.add(existing);
+            ranges.add(i + 1, existing);
         }
         existing.calibrations.add(c);
     }
@@ -80,29 +93,37 @@ public class WavelengthRangeSet implements Serializable {
     /**
      * Finds the list of calibrations for a wavelength.
      * @param value
-     * @return
+     * @return an unmodifiable list, empty if there is no range containing the wavelength
      */
     public List<Calibration> findCalibrations(double value) {
         RangeCalibrationTuple t = findTuple(value);
         if (t != null) {
-            return t.calibrations;
+            return t.view;
         } else {
-            return new ArrayList<Calibration>();
+            return Collections.emptyList();
         }
     }
 
     /**
-     * Finds a range calibration pair for a range.
-     * @param r
-     * @return
+     * Finds the index of the last range with a lower boundary less than (or, if inclusive, equal to)
+     * the given value.
+     * @param value
+     * @param inclusive
+     * @return the index or -1 if there is no such range
      */
-    private RangeCalibrationTuple findTuple(WavelengthRange r) {
-        for (RangeCalibrationTuple t : ranges) {
-            if (t.range.equals(r)) {
-                return t;
+    private int lastStartingBefore(double value, boolean inclusive) {
+        int lo = 0;
+        int hi = ranges.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            double min = ranges.get(mid).range.getMin();
+            if (min < value || (inclusive && min == value)) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
             }
         }
-        return null;
+        return hi;
     }
 
     /**
@@ -111,8 +132,10 @@ public class WavelengthRangeSet implements Serializable {
      * @return
      */
     private RangeCalibrationTuple findTuple(double value) {
-        for (RangeCalibrationTuple t : ranges) {
-            if (value >= t.range.getMin() && value < t.range.getMax()) {
+        int i = lastStartingBefore(value, true);
+        if (i >= 0) {
+            RangeCalibrationTuple t = ranges.get(i);
+            if (value < t.range.getMax()) {
                 return t;
             }
         }
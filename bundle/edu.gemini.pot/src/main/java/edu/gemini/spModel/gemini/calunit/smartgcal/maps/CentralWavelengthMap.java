@@ -76,7 +76,7 @@ public abstract class CentralWavelengthMap extends BaseCalibrationMap {
         WavelengthRangeSet rangeSet = rangesMap.get(key);
         if(rangeSet == null) {
             // return empty list if we don't have any calibrations for this key
-            return new ArrayList<Calibration>();
+            return Collections.emptyList();
         }
         // if we have calibrations for this key get the ones for the given wavelength from the set
         return rangeSet.findCalibrations(wavelength);
@@ -2,29 +2,95 @@ package edu.gemini.spModel.obs;
 
 import edu.gemini.pot.client.SPDB;
 import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.SPNodeKeyLocks;
 import edu.gemini.pot.sp.SPNodeNotLocalException;
 import edu.gemini.pot.spdb.DBAbstractFunctor;
 import edu.gemini.pot.spdb.IDBDatabaseService;
 import edu.gemini.shared.util.GeminiRuntimeException;
+import edu.gemini.spModel.core.SPProgramID;
 import edu.gemini.spModel.event.ObsExecEvent;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
  * Wraps the {@link }ObsExecEventHandler} in a functor so that all the
  * work is performed in the database.
+ *
+ * <p>A batch of events may be handled with a single functor.  The events are
+ * grouped by program and each program's events are applied, in their original
+ * order, while holding the program write lock just once.
  */
 public final class ObsExecEventFunctor extends DBAbstractFunctor {
-    private final ObsExecEvent event;
+    private static final Logger LOG = Logger.getLogger(ObsExecEventFunctor.class.getName());
+
+    private final List<ObsExecEvent> events;
 
     public ObsExecEventFunctor(ObsExecEvent event) {
-        this.event = event;
+        this.events = new ArrayList<>(1);
+        this.events.add(event);
+    }
+
+    public ObsExecEventFunctor(List<ObsExecEvent> events) {
+        this.events = new ArrayList<>(events);
     }
 
     public void execute(IDBDatabaseService database, ISPNode node, Set<Principal> principals) {
-        ObsExecEventHandler.handle(event, database);
+        if (events.size() == 1) {
+            ObsExecEventHandler.handle(events.get(0), database);
+            return;
+        }
+
+        for (List<ObsExecEvent> progEvents : groupByProgram(events).values()) {
+            handleProgramEvents(progEvents, database);
+        }
+    }
+
+    // Groups the events by program, keeping the order of the events within
+    // each group.
+    private static Map<SPProgramID, List<ObsExecEvent>> groupByProgram(List<ObsExecEvent> events) {
+        final Map<SPProgramID, List<ObsExecEvent>> res = new LinkedHashMap<>();
+        for (ObsExecEvent evt : events) {
+            final SPProgramID pid = evt.getObsId().getProgramID();
+            List<ObsExecEvent> lst = res.get(pid);
+            if (lst == null) {
+                lst = new ArrayList<>();
+                res.put(pid, lst);
+            }
+            lst.add(evt);
+        }
+        return res;
+    }
+
+    private static void handleProgramEvents(List<ObsExecEvent> events, IDBDatabaseService database) {
+        final SPProgramID pid = events.get(0).getObsId().getProgramID();
+        final ISPProgram prog = database.lookupProgramByID(pid);
+
+        // The program write lock is reentrant, so the individual updates
+        // made by the handler don't have to wait for it again.
+        final SPNodeKey progKey = (prog == null) ? null : prog.getProgramKey();
+        if (progKey != null) SPNodeKeyLocks.instance.writeLock(progKey);
+        try {
+            for (ObsExecEvent evt : events) {
+                // One bad event shouldn't keep the rest from being recorded.
+                try {
+                    ObsExecEventHandler.handle(evt, database);
+                } catch (RuntimeException ex) {
+                    LOG.log(Level.WARNING, "Could not handle event " + evt, ex);
+                }
+            }
+        } finally {
+            if (progKey != null) SPNodeKeyLocks.instance.writeUnlock(progKey);
+        }
     }
 
     public static void handle(ObsExecEvent event, Set<Principal> principals)  {
@@ -40,4 +106,19 @@ public final class ObsExecEventFunctor extends DBAbstractFunctor {
         }
 
     }
+
+    /**
+     * Handles a batch of events in a single database functor.
+     *
+     * @param events events to handle, in the order in which they happened
+     */
+    public static void handleAll(List<ObsExecEvent> events, IDBDatabaseService db, Set<Principal> principals)  {
+        if (events.isEmpty()) return;
+        ObsExecEventFunctor func = new ObsExecEventFunctor(events);
+        try {
+            db.getQueryRunner(principals).execute(func, null);
+        } catch (SPNodeNotLocalException ex) {
+            throw GeminiRuntimeException.newException(ex);
+        }
+    }
 }
@@ -3,6 +3,7 @@ package edu.gemini.spModel.obs;
 import edu.gemini.spModel.obsclass.ObsClass;
 import edu.gemini.pot.sp.ISPObservation;
 import edu.gemini.pot.sp.ISPObservationContainer;
+import edu.gemini.pot.sp.ISPProgram;
 import edu.gemini.spModel.obslog.ObsLog;
 import edu.gemini.spModel.time.ObsTimeCharges;
 import edu.gemini.spModel.time.ObsTimes;
@@ -15,6 +16,22 @@ public final class ObsTimesService {
 
     private ObsTimesService() {}
 
+    // Transient client data key for the summed times of all the observations
+    // in a container.
+    private static final String ROLLUP_KEY = "ObsTimesRollup";
+
+    // Summed times along with the version digest of the container at the
+    // time they were computed.
+    private static final class Rollup {
+        final long digest;
+        final ObsTimes times;
+
+        Rollup(long digest, ObsTimes times) {
+            this.digest = digest;
+            this.times  = times;
+        }
+    }
+
     /**
      * Gets raw, uncorrected observation times as calculated from the events
      * received by the observation's {@link edu.gemini.spModel.obsrecord.ObsExecRecord} (if any).  These
@@ -88,6 +105,29 @@ public final class ObsTimesService {
      */
     public static ObsTimes getCorrectedObsTimes(ISPObservationContainer container) {
 
+        // The sum is cached on the container itself and is valid for as long
+        // as nothing in the container changes.
+        final ISPProgram prog = container.getProgram();
+        if (prog == null) return sumCorrectedObsTimes(container);
+
+        final long digest = prog.getVersionDigest(container);
+        final Object cached = container.getTransientClientData(ROLLUP_KEY);
+        if ((cached instanceof Rollup) && (((Rollup) cached).digest == digest)) {
+            return ((Rollup) cached).times;
+        }
+
+        final ObsTimes res = sumCorrectedObsTimes(container);
+
+        // Only cache the result if the container didn't change while the
+        // times were being added up.
+        if (prog.getVersionDigest(container) == digest) {
+            container.putTransientClientData(ROLLUP_KEY, new Rollup(digest, res));
+        }
+        return res;
+    }
+
+    private static ObsTimes sumCorrectedObsTimes(ISPObservationContainer container) {
+
         ObsTimeCharges charges = ObsTimeCharges.ZERO_CHARGES;
         long elapsedTime = 0;
 
@@ -23,6 +23,7 @@ import edu.gemini.spModel.util.SPTreeUtil;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,7 +59,8 @@ public enum PlannedTimeCalculator {
         Option<Config> prev = None.instance();
         List<PlannedTime.Step> steps = new ArrayList<PlannedTime.Step>();
         ConfigSequence cs = ConfigBridge.extractSequence(obs, null, ConfigValMapInstances.IDENTITY_MAP, false);
-        for (Config c : cs.getAllSteps()) {
+        for (Iterator<Config> it = cs.iterator(); it.hasNext(); ) {
+            Config c = it.next();
             ChargeClass stepChargeClass = stepChargeClass(obsChargeClass, c);
             boolean executed            = isExecuted(obsExecRecord, c);
             String obsType              = getObsType(c);
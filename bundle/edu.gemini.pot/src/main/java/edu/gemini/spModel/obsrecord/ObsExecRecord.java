@@ -49,6 +49,29 @@ public final class ObsExecRecord implements Serializable {
     private Dataset _tentativeDataset;
     private Config  _tentativeConfig;
 
+    // The most recently computed time charges and the arguments used to
+    // compute them.  A copy shares them with the record it was copied from
+    // until either one changes, so charges computed on the copies handed out
+    // by getDataObject() are reused by the following copies.
+    private static final class Charges {
+        private ObsQaRecord qa;
+        private ChargeClass chargeClass;
+        private ObsTimeCharges charges;
+
+        synchronized ObsTimeCharges get(ObsQaRecord qa, ChargeClass chargeClass) {
+            return ((charges != null) && (this.chargeClass == chargeClass) && qa.equals(this.qa)) ? charges : null;
+        }
+
+        synchronized void put(ObsQaRecord qa, ChargeClass chargeClass, ObsTimeCharges charges) {
+            this.qa          = qa;
+            this.chargeClass = chargeClass;
+            this.charges     = charges;
+        }
+    }
+
+    // Replaced (never cleared) whenever the events or datasets change.
+    private transient Charges _charges;
+
     /**
      * Constructs and empty ObsRecord, with no datasets, events, or
      * configurations.
@@ -68,6 +91,7 @@ public final class ObsExecRecord implements Serializable {
     public synchronized ObsExecRecord copy() {
         final ObsExecRecord that = new ObsExecRecord(new PrivateVisitList(_visits),
                                                      new CompressedConfigStore(_configStore));
+        that._charges = _charges();
 
         // Copy the datasets.
         for (Map.Entry<DatasetLabel, DatasetExecRecord> me : _datasets.entrySet()) {
@@ -339,6 +363,16 @@ public final class ObsExecRecord implements Serializable {
     public synchronized void addEvent(ObsExecEvent evt, Config config) {
         evt.doAction(new AddEventAction(config));
         _visits.add(evt);
+        _clearTimeCharges();
+    }
+
+    private synchronized void _clearTimeCharges() {
+        _charges = new Charges();
+    }
+
+    private synchronized Charges _charges() {
+        if (_charges == null) _charges = new Charges();
+        return _charges;
     }
 
     /**
@@ -392,14 +426,24 @@ public final class ObsExecRecord implements Serializable {
      * order to know to which category the bulk of the total time should be
      * associated.
      *
+     * <p>Each visit keeps running totals as events arrive, so the charges are
+     * cheap to compute.  The result for the most recent arguments is
+     * remembered until the record is next modified, also by its copies.
+     *
      * @param mainChargeClass the charge class to which the bulk of the
      * time should be charged
      *
      * @return total times which should be charged to the various categories
      * (see {@link ChargeClass})
      */
-    public ObsTimeCharges getTimeCharges(ObsQaRecord qa, ChargeClass mainChargeClass) {
-        return _visits.getTimeCharges(mainChargeClass, qa, _configStore);
+    public synchronized ObsTimeCharges getTimeCharges(ObsQaRecord qa, ChargeClass mainChargeClass) {
+        final Charges cache = _charges();
+        ObsTimeCharges res  = cache.get(qa, mainChargeClass);
+        if (res == null) {
+            res = _visits.getTimeCharges(mainChargeClass, qa, _configStore);
+            cache.put(qa, mainChargeClass, res);
+        }
+        return res;
     }
 
     /**
@@ -412,7 +456,7 @@ public final class ObsExecRecord implements Serializable {
      *
      * @return calculated (uncorrected) observing times for this observation
      */
-    public ObsTimes getTimes(ObsQaRecord qa, ChargeClass mainChargeClass) {
+    public synchronized ObsTimes getTimes(ObsQaRecord qa, ChargeClass mainChargeClass) {
         return new ObsTimes(getTotalTime(), getTimeCharges(qa, mainChargeClass));
     }
 
@@ -473,6 +517,7 @@ public final class ObsExecRecord implements Serializable {
             // Caller specified a config, so use it.
             _configStore.addConfigAndLabel(config, label);
         }
+        _clearTimeCharges();
     }
 
     /**
@@ -484,6 +529,7 @@ public final class ObsExecRecord implements Serializable {
     public synchronized void removeDatasetRecord(DatasetLabel label) {
         _datasets.remove(label);
         _configStore.remove(label);
+        _clearTimeCharges();
     }
 
 
@@ -28,16 +28,23 @@ import java.util.List;
 final class PrivateVisit implements Serializable {
     List<ObsExecEvent> _events = new ArrayList<ObsExecEvent>();
 
+    // Running totals of the visit's times, kept up to date as events are
+    // added.  Copied along with the events, recreated from the events on
+    // demand only for a deserialized visit.
+    private transient Ledger _ledger;
+
     PrivateVisit() {
     }
 
     PrivateVisit(PrivateVisit that) {
         // each event is immutable, no need to copy them
         _events = new ArrayList<ObsExecEvent>(that._events);
+        _ledger = new Ledger(that.ledger());
     }
 
     void add(ObsExecEvent evt) {
         _events.add(evt);
+        if (_ledger != null) _ledger.add(evt);
     }
 
     ObsExecEvent getFirstEvent() {
@@ -206,70 +213,117 @@ final class PrivateVisit implements Serializable {
         inv.nightTime = nighttime;
     }
 
-    VisitTimes getTimeCharges(ObsQaRecord qa,
-                              ConfigStore store) {
+    // The night time spent obtaining a completed dataset.  How it is charged
+    // depends upon the dataset's QA state and obs class, which may change
+    // without any new events.
+    private static final class DatasetTime {
+        final DatasetLabel label;
+        final long nightTime;
 
-        VisitTimes res = new VisitTimes();
-        if (_events.size() <= 1) return res;
+        DatasetTime(DatasetLabel label, long nightTime) {
+            this.label     = label;
+            this.nightTime = nightTime;
+        }
+    }
 
-        // First get the site.  If we can't figure out the site, then this is
-        // a non-standard observation and we'll ignore daytime.
-        Site site = divineSite();
-        EventData ed1 = new EventData(site);
-        ed1.setEvent(getFirstEvent());
-        EventData ed2 = new EventData(site);
-        ed2.updateToMatch(ed1);
+    // Time accounting for the events seen so far, independent of the QA
+    // state and obs class of the datasets.  Each event added to the visit
+    // only requires computing the interval since the previous event.
+    private final class Ledger {
+        private final EventData ed1;
+        private final EventData ed2;
+        private final EventInterval inv = new EventInterval();
+        private StartDatasetEvent start;
+
+        long daytime;        // non-charged time outside of the dark night
+        long unclassified;   // night time not spent obtaining a dataset
+        long overlapTime;    // non-charged time following an overlap event
+        final List<DatasetTime> datasets = new ArrayList<DatasetTime>();
+
+        Ledger() {
+            // If we can't figure out the site, then this is a non-standard
+            // observation and we'll ignore daytime.
+            final Site site = divineSite();
+            ed1 = new EventData(site);
+            ed2 = new EventData(site);
+            for (ObsExecEvent evt : _events) add(evt);
+        }
 
-        StartDatasetEvent start = null;
-        EventInterval inv = new EventInterval();
+        // Copies the totals of another visit with the same events.
+        Ledger(Ledger that) {
+            ed1 = new EventData(that.ed1.site);
+            ed1.updateToMatch(that.ed1);
+            ed2 = new EventData(that.ed2.site);
+            ed2.updateToMatch(that.ed2);
+            start        = that.start;
+            daytime      = that.daytime;
+            unclassified = that.unclassified;
+            overlapTime  = that.overlapTime;
+            datasets.addAll(that.datasets);
+        }
 
-        int sz = _events.size();
-        for (int i=1; i<sz && !(ed1.evt instanceof OverlapEvent); ++i) {
-            ObsExecEvent curEvt = _events.get(i);
+        void add(ObsExecEvent curEvt) {
+            if (ed1.evt == null) {
+                ed1.setEvent(curEvt);
+                ed2.updateToMatch(ed1);
+                return;
+            }
+
+            // All the time between the overlap event (if there is one) and
+            // the last event is counted as non-charged.
+            if (ed1.evt instanceof OverlapEvent) {
+                overlapTime = curEvt.getTimestamp() - ed1.evt.getTimestamp();
+                return;
+            }
 
             // compute the total, dark, and day times between the two events
             ed2.setEvent(curEvt);
             computeEventInterval(ed1, ed2, inv);
             ed1.updateToMatch(ed2);
 
-            // Add in the daytime to the non-charged column.
-            res.addClassifiedTime(ChargeClass.NONCHARGED, inv.getDaytime());
+            daytime += inv.getDaytime();
 
             // Now add in the nighttime for the event
             if ((curEvt instanceof EndDatasetEvent) && (start != null)) {
-                EndDatasetEvent end = (EndDatasetEvent) curEvt;
-                DatasetLabel label = end.getDatasetLabel();
-                if (!label.equals(start.getDataset().getLabel())) {
-                    continue;
-                }
-
-                final ObsClass obsClass = store.getObsClass(label);
-                final DatasetQaState qaState = qa.qaState(label);
-
-                // Charge for datasets that were in the PASS or
-                // some non-final state.  Don't charge for anything else.
-                if (DatasetQaState.PASS.equals(qaState) || !qaState.isFinal()) {
-                    res.addClassifiedTime(obsClass.getDefaultChargeClass(), inv.nightTime);
-                } else {
-                    res.addClassifiedTime(ChargeClass.NONCHARGED, inv.nightTime);
+                final DatasetLabel label = ((EndDatasetEvent) curEvt).getDatasetLabel();
+                if (label.equals(start.getDataset().getLabel())) {
+                    datasets.add(new DatasetTime(label, inv.nightTime));
                 }
             } else {
-                // Add the amount of time that passed during the night to the
-                // main charge class.
-                res.addUnclassifiedTime(inv.nightTime);
+                unclassified += inv.nightTime;
                 if (curEvt instanceof StartDatasetEvent) {
                     start = (StartDatasetEvent) curEvt;
                 }
             }
         }
+    }
+
+    private Ledger ledger() {
+        if (_ledger == null) _ledger = new Ledger();
+        return _ledger;
+    }
+
+    VisitTimes getTimeCharges(ObsQaRecord qa,
+                              ConfigStore store) {
+
+        final VisitTimes res = new VisitTimes();
+        if (_events.size() <= 1) return res;
+
+        final Ledger l = ledger();
+        res.addClassifiedTime(ChargeClass.NONCHARGED, l.daytime + l.overlapTime);
+        res.addUnclassifiedTime(l.unclassified);
 
-        // Add any overlapped time to NONCHARGED.  All the time between the
-        // overlap event (if there is one) and the last event is counted as
-        // non-charged.
-        if (ed1.evt instanceof OverlapEvent) {
-            ObsExecEvent curEvt = _events.get(sz-1);
-            long time = curEvt.getTimestamp() - ed1.evt.getTimestamp();
-            res.addClassifiedTime(ChargeClass.NONCHARGED, time);
+        for (DatasetTime dt : l.datasets) {
+            final ObsClass obsClass = store.getObsClass(dt.label);
+            final DatasetQaState qaState = qa.qaState(dt.label);
+
+            // Charge for datasets that were in the PASS or
+            // some non-final state.  Don't charge for anything else.
+            if (DatasetQaState.PASS.equals(qaState) || !qaState.isFinal()) {
+                res.addClassifiedTime(obsClass.getDefaultChargeClass(), dt.nightTime);
+            } else {
+                res.addClassifiedTime(ChargeClass.NONCHARGED, dt.nightTime);
+            }
         }
 
         return res;
@@ -32,6 +32,11 @@ public class BundleProperties {
         return value != null ? Boolean.valueOf(value) : defaultValue;
     }
 
+    public int getInt(String key, int defaultValue) {
+        String value = context.getProperty(key);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends Enum<T>> T getEnum(String key, T defaultValue, Class<T> enumType) {
         String value = context.getProperty(key);
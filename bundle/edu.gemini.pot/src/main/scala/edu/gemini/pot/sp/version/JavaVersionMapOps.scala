@@ -13,6 +13,8 @@ object JavaVersionMapOps {
   def getOrNull(m: VersionMap, k: SPNodeKey): NodeVersions  = m.get(k).orNull
   def getOrEmpty(m: VersionMap, k: SPNodeKey): NodeVersions = m.getOrElse(k, EmptyNodeVersions)
 
+  def digest(m: VersionMap): String = vmDigest(m)
+
   def isNewLocally(k: SPNodeKey, local: VersionMap, remote: VersionMap): Boolean =
     local.get(k).isDefined && remote.get(k).isEmpty
 
@@ -3,6 +3,7 @@ package edu.gemini.pot.sp
 import edu.gemini.shared.util.{VersionComparison, VersionVector}
 
 import java.nio.ByteBuffer
+import java.security.MessageDigest
 import java.util.UUID
 import java.util.zip.{Adler32, Checksum}
 
@@ -91,15 +92,26 @@ package object version {
     go(new Adler32, List(n))
   }
 
-  def vmChecksum(vm: VersionMap): Long = {
+  private def vmBytes(vm: VersionMap): Array[Byte] = {
     val keys = vm.keys.toArray.sorted
     val size = (0/:keys) { (size, k) => size + 16 + vm(k).clocks.size * 20 }
     val buf  = ByteBuffer.allocate(size)
 
     keys.foreach { key => putNodeVersions(buf, key, vm(key)) }
+    buf.array()
+  }
 
+  def vmChecksum(vm: VersionMap): Long = {
     val check = new Adler32()
-    check.update(buf.array())
+    check.update(vmBytes(vm))
     check.getValue
   }
+
+  /**
+   * Calculates a SHA-256 digest of the version map, as a hex string.  Unlike
+   * the checksum, two version maps with the same digest can be assumed to
+   * be equal.
+   */
+  def vmDigest(vm: VersionMap): String =
+    MessageDigest.getInstance("SHA-256").digest(vmBytes(vm)).map("%02x".format(_)).mkString
 }
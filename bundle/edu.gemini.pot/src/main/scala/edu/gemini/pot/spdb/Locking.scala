@@ -214,7 +214,7 @@ class Locking(odb: IDBDatabaseService) {
   def writeCopy[T](sum: ProgramSummoner, key: SPNodeKey, id: SPProgramID, f: ISPProgram => TransactionalResult[T]): Either[Failure, T] =
     writeLocking(key) {
       sum.summon(odb, key, id).right.flatMap { prog =>
-        val progCopy = odb.getFactory.copyWithSameKeys(prog)
+        val progCopy = odb.getFactory.copyWithSameKeysSharingData(prog)
         val res = f(progCopy)
         if (res.commit) put(progCopy, res.value)
         else Right(res.value)
@@ -0,0 +1,63 @@
+package edu.gemini.pot.sp.test;
+
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.SPNodeKeyLocks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Measures lock/unlock throughput of {@link SPNodeKeyLocks} with many threads
+ * working on a set of program keys, which is the access pattern of the ODB
+ * when functors, the storage manager and clients work concurrently.
+ *
+ * <pre>
+ * SPNodeKeyLocksBenchmark [threads] [keys] [seconds] [writePercent]
+ * </pre>
+ */
+public final class SPNodeKeyLocksBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int threads      = (args.length > 0) ? Integer.parseInt(args[0]) : 2 * Runtime.getRuntime().availableProcessors();
+        final int keyCount     = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        final int seconds      = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        final int writePercent = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+
+        final SPNodeKey[] keys = new SPNodeKey[keyCount];
+        for (int i=0; i<keyCount; ++i) keys[i] = new SPNodeKey();
+
+        final SPNodeKeyLocks locks = SPNodeKeyLocks.instance;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        final ExecutorService ex = Executors.newFixedThreadPool(threads);
+        final List<Future<Long>> fs = new ArrayList<>();
+        for (int t=0; t<threads; ++t) {
+            fs.add(ex.submit(() -> {
+                final ThreadLocalRandom r = ThreadLocalRandom.current();
+                long ops = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i=0; i<1000; ++i) {
+                        final SPNodeKey key = keys[r.nextInt(keyCount)];
+                        if (r.nextInt(100) < writePercent) {
+                            locks.writeLock(key);
+                            locks.writeUnlock(key);
+                        } else {
+                            locks.readLock(key);
+                            locks.readUnlock(key);
+                        }
+                    }
+                    ops += 1000;
+                }
+                return ops;
+            }));
+        }
+
+        long total = 0;
+        for (Future<Long> f : fs) total += f.get();
+        ex.shutdown();
+
+        System.out.println(String.format("%d threads, %d keys, %d%% writes: %,d lock/unlock pairs/s (%d keys still registered)",
+                threads, keyCount, writePercent, total / seconds, locks.size()));
+    }
+}
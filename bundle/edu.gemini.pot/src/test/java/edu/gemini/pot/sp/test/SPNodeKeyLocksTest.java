@@ -0,0 +1,135 @@
+package edu.gemini.pot.sp.test;
+
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.sp.SPNodeKeyLocks;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the read/write semantics of the program key locks.
+ */
+public final class SPNodeKeyLocksTest {
+    private static final SPNodeKeyLocks LOCKS = SPNodeKeyLocks.instance;
+
+    @Test public void testReentrant() {
+        final SPNodeKey key = new SPNodeKey();
+
+        LOCKS.writeLock(key);
+        LOCKS.writeLock(key);
+        LOCKS.readLock(key);
+        assertTrue(LOCKS.isWriteLockHeld(key));
+
+        LOCKS.readUnlock(key);
+        LOCKS.writeUnlock(key);
+        assertTrue(LOCKS.isWriteLockHeld(key));
+
+        LOCKS.writeUnlock(key);
+        assertFalse(LOCKS.isWriteLockHeld(key));
+    }
+
+    @Test public void testWriteLockHeldByOtherThread() throws Exception {
+        final SPNodeKey key = new SPNodeKey();
+        LOCKS.writeLock(key);
+        try {
+            final ExecutorService ex = Executors.newSingleThreadExecutor();
+            try {
+                assertFalse(ex.submit(() -> LOCKS.isWriteLockHeld(key)).get());
+
+                // Another thread cannot read while we hold the write lock.
+                final Future<?> f = ex.submit(() -> {
+                    LOCKS.readLock(key);
+                    LOCKS.readUnlock(key);
+                });
+                try {
+                    f.get(100, TimeUnit.MILLISECONDS);
+                    fail("read lock acquired while write locked");
+                } catch (TimeoutException expected) {
+                    // ok
+                }
+                LOCKS.writeUnlock(key);
+                f.get(10, TimeUnit.SECONDS);
+            } finally {
+                ex.shutdown();
+            }
+        } finally {
+            if (LOCKS.isWriteLockHeld(key)) LOCKS.writeUnlock(key);
+        }
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testUnlockWithoutLock() {
+        LOCKS.readUnlock(new SPNodeKey());
+    }
+
+    @Test public void testMutualExclusion() throws Exception {
+        final SPNodeKey key   = new SPNodeKey();
+        final int threads     = 8;
+        final int iterations  = 10000;
+        final int[] counter   = new int[1];
+
+        final ExecutorService ex = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> fs = new ArrayList<>();
+            for (int t=0; t<threads; ++t) {
+                fs.add(ex.submit(() -> {
+                    for (int i=0; i<iterations; ++i) {
+                        LOCKS.writeLock(key);
+                        try {
+                            ++counter[0];
+                        } finally {
+                            LOCKS.writeUnlock(key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : fs) f.get();
+        } finally {
+            ex.shutdown();
+        }
+
+        assertEquals(threads * iterations, counter[0]);
+        assertFalse(LOCKS.isWriteLockHeld(key));
+    }
+
+    // Entries are dropped once the last holder unlocks.  Other tests may be
+    // using the locks at the same time, so only this test's keys are counted.
+    @Test public void testEntriesRemoved() throws Exception {
+        final int threads = 8;
+        final List<SPNodeKey> keys = new ArrayList<>();
+        for (int i=0; i<1000; ++i) keys.add(new SPNodeKey());
+
+        final ExecutorService ex = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> fs = new ArrayList<>();
+            for (int t=0; t<threads; ++t) {
+                fs.add(ex.submit(() -> {
+                    final ThreadLocalRandom r = ThreadLocalRandom.current();
+                    for (int i=0; i<100000; ++i) {
+                        final SPNodeKey key = keys.get(r.nextInt(keys.size()));
+                        if (r.nextBoolean()) {
+                            LOCKS.writeLock(key);
+                            LOCKS.readLock(key);
+                            LOCKS.readUnlock(key);
+                            LOCKS.writeUnlock(key);
+                        } else {
+                            LOCKS.readLock(key);
+                            LOCKS.readUnlock(key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : fs) f.get();
+        } finally {
+            ex.shutdown();
+        }
+
+        int registered = 0;
+        for (SPNodeKey key : keys) if (LOCKS.isRegistered(key)) ++registered;
+        assertEquals(0, registered);
+    }
+}
@@ -0,0 +1,100 @@
+package edu.gemini.pot.spdb.test;
+
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.spdb.DBLoadConfig;
+import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.spModel.gemini.obscomp.SPProgram;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that sequential and parallel loading produce the same database, in
+ * particular when two files contain the same program.
+ */
+public final class DBLoadTest {
+
+    private static final DBLoadConfig[] CONFIGS = {
+        DBLoadConfig.SEQUENTIAL,
+        DBLoadConfig.parallel(4, false),
+        DBLoadConfig.parallel(4, true),
+    };
+
+    private static final int PROGRAM_COUNT = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SPNodeKey dupKey = new SPNodeKey();
+    private final List<SPNodeKey> keys = new ArrayList<>();
+
+    private static IDBDatabaseService open(File root, DBLoadConfig config) throws Exception {
+        return DBLocalDatabase.create(root, DBLocalDatabase.Persistence.snapshot, config);
+    }
+
+    private static File dbDir(File root) {
+        return DBLocalDatabase.getVersionedDatabaseDir(root);
+    }
+
+    private static void store(File root, SPNodeKey key, String title) throws Exception {
+        final IDBDatabaseService db = open(root, DBLoadConfig.SEQUENTIAL);
+        final ISPProgram prog = db.getFactory().createProgram(EmptyNodeInitializer.INSTANCE, key, null);
+        final SPProgram dataObj = new SPProgram();
+        dataObj.setTitle(title);
+        prog.setDataObject(dataObj);
+        db.put(prog);
+        db.checkpoint();
+        db.getDBAdmin().shutdown();
+    }
+
+    private static String getTitle(ISPProgram prog) {
+        return prog.getDataObject().getTitle();
+    }
+
+    // Creates a database with PROGRAM_COUNT programs plus two copies of
+    // another program, titled after the files that contain them.
+    private File populate() throws Exception {
+        final File root = folder.newFolder();
+        for (int i=0; i<PROGRAM_COUNT; ++i) {
+            if (keys.size() == i) keys.add(new SPNodeKey());
+            store(root, keys.get(i), keys.get(i).toString());
+        }
+
+        // Write "b" first so that file age and file name disagree.
+        for (String title : new String[] { "b", "a" }) {
+            final File scratch = folder.newFolder();
+            store(scratch, dupKey, title);
+            final File src = new File(dbDir(scratch), dupKey.toString() + ".sp");
+            Files.copy(src.toPath(), new File(dbDir(root), title + ".sp").toPath());
+        }
+        return root;
+    }
+
+    @Test
+    public void testSameProgramsInEveryMode() throws Exception {
+        for (DBLoadConfig config : CONFIGS) {
+            final IDBDatabaseService db = open(populate(), config);
+            try {
+                for (SPNodeKey key : keys) {
+                    final ISPProgram prog = db.lookupProgram(key);
+                    assertNotNull(config.toString(), prog);
+                    assertEquals(config.toString(), key.toString(), getTitle(prog));
+                }
+
+                // The first file in name order wins.
+                assertEquals(config.toString(), "a", getTitle(db.lookupProgram(dupKey)));
+            } finally {
+                db.getDBAdmin().shutdown();
+            }
+        }
+    }
+}
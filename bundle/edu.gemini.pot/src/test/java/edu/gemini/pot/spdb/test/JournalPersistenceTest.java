@@ -0,0 +1,147 @@
+package edu.gemini.pot.spdb.test;
+
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.SPNodeKey;
+import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.spModel.gemini.obscomp.SPProgram;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips programs through a database using journal persistence.
+ */
+public final class JournalPersistenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IDBDatabaseService open() throws Exception {
+        return DBLocalDatabase.create(folder.getRoot(), DBLocalDatabase.Persistence.journal);
+    }
+
+    private File journalFile(SPNodeKey key) {
+        final File dbDir = DBLocalDatabase.getVersionedDatabaseDir(folder.getRoot());
+        return new File(new File(dbDir, "journal"), key.toString() + ".jnl");
+    }
+
+    private static void setTitle(ISPProgram prog, String title) {
+        final SPProgram dataObj = new SPProgram();
+        dataObj.setTitle(title);
+        prog.setDataObject(dataObj);
+    }
+
+    private static String getTitle(ISPProgram prog) {
+        return prog.getDataObject().getTitle();
+    }
+
+    @Test
+    public void testReplayDataObjectEdits() throws Exception {
+        IDBDatabaseService db = open();
+        final ISPProgram prog = db.getFactory().createProgram(EmptyNodeInitializer.INSTANCE, new SPNodeKey(), null);
+        setTitle(prog, "first");
+        db.put(prog);
+
+        final SPNodeKey key = prog.getProgramKey();
+        setTitle(prog, "second");
+        db.checkpoint();
+        setTitle(prog, "third");
+        db.getDBAdmin().shutdown();
+
+        // Only the data object edits should have been journaled.
+        assertTrue(journalFile(key).exists());
+
+        db = open();
+        final ISPProgram reloaded = db.lookupProgram(key);
+        assertNotNull(reloaded);
+        assertEquals("third", getTitle(reloaded));
+        assertEquals(prog.getVersions(), reloaded.getVersions());
+        db.getDBAdmin().shutdown();
+    }
+
+    @Test
+    public void testStructureChangeCompacts() throws Exception {
+        IDBDatabaseService db = open();
+        final ISPProgram prog = db.getFactory().createProgram(EmptyNodeInitializer.INSTANCE, new SPNodeKey(), null);
+        setTitle(prog, "first");
+        db.put(prog);
+
+        final SPNodeKey key = prog.getProgramKey();
+        setTitle(prog, "second");
+        db.checkpoint();
+        assertTrue(journalFile(key).exists());
+
+        final ISPObservation obs = db.getFactory().createObservation(prog, -1, EmptyNodeInitializer.INSTANCE, null);
+        prog.addObservation(obs);
+        db.checkpoint();
+        assertFalse(journalFile(key).exists());
+        db.getDBAdmin().shutdown();
+
+        db = open();
+        final ISPProgram reloaded = db.lookupProgram(key);
+        assertEquals("second", getTitle(reloaded));
+        assertEquals(1, reloaded.getAllObservations().size());
+        db.getDBAdmin().shutdown();
+    }
+
+    // Leaves the journal written before a compaction in place, as if it
+    // couldn't be deleted.
+    private ISPProgram compactKeepingStaleJournal(IDBDatabaseService db) throws Exception {
+        final ISPProgram prog = db.getFactory().createProgram(EmptyNodeInitializer.INSTANCE, new SPNodeKey(), null);
+        setTitle(prog, "first");
+        db.put(prog);
+
+        final File jnl = journalFile(prog.getProgramKey());
+        setTitle(prog, "second");
+        db.checkpoint();
+        final File stale = folder.newFile();
+        Files.copy(jnl.toPath(), stale.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        setTitle(prog, "third");
+        prog.addObservation(db.getFactory().createObservation(prog, -1, EmptyNodeInitializer.INSTANCE, null));
+        db.checkpoint();
+        assertFalse(jnl.exists());
+
+        Files.copy(stale.toPath(), jnl.toPath());
+        return prog;
+    }
+
+    @Test
+    public void testStaleJournalIsNotReplayed() throws Exception {
+        IDBDatabaseService db = open();
+        final SPNodeKey key = compactKeepingStaleJournal(db).getProgramKey();
+        db.getDBAdmin().shutdown();
+
+        db = open();
+        final ISPProgram reloaded = db.lookupProgram(key);
+        assertEquals("third", getTitle(reloaded));
+        assertEquals(1, reloaded.getAllObservations().size());
+        assertFalse(journalFile(key).exists());
+        db.getDBAdmin().shutdown();
+    }
+
+    @Test
+    public void testStaleJournalIsOverwritten() throws Exception {
+        IDBDatabaseService db = open();
+        final ISPProgram prog = compactKeepingStaleJournal(db);
+        final SPNodeKey key = prog.getProgramKey();
+        setTitle(prog, "fourth");
+        db.checkpoint();
+        db.getDBAdmin().shutdown();
+
+        db = open();
+        final ISPProgram reloaded = db.lookupProgram(key);
+        assertEquals("fourth", getTitle(reloaded));
+        assertEquals(1, reloaded.getAllObservations().size());
+        assertEquals(prog.getVersions(), reloaded.getVersions());
+        db.getDBAdmin().shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package edu.gemini.pot.spdb.test;
+
+import edu.gemini.pot.sp.*;
+import edu.gemini.spModel.core.SPBadIDException;
+import edu.gemini.spModel.core.SPProgramID;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that observations found by id track structure changes and program
+ * replacement.
+ */
+public final class ObservationIndexTest extends SpdbBaseTestCase {
+
+    private static final SPProgramID PROG_ID;
+
+    static {
+        try {
+            PROG_ID = SPProgramID.toProgramID("GS-2016A-Q-1");
+        } catch (SPBadIDException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private ISPProgram _createProgram() throws Exception {
+        final ISPProgram prog = getDatabase().getFactory().createProgram(
+                EmptyNodeInitializer.INSTANCE, new SPNodeKey(), PROG_ID);
+        recordProgram(prog);
+        return prog;
+    }
+
+    private ISPObservation _createObs(ISPProgram prog) throws Exception {
+        return getDatabase().getFactory().createObservation(prog, -1, EmptyNodeInitializer.INSTANCE, null);
+    }
+
+    private ISPObservation _lookup(int obsNumber) throws Exception {
+        return getDatabase().lookupObservationByID(new SPObservationID(PROG_ID, obsNumber));
+    }
+
+    @Test public void testStructureChanges() throws Exception {
+        final ISPProgram prog = _createProgram();
+
+        final ISPObservation obs1 = _createObs(prog);
+        prog.addObservation(obs1);
+        final int num1 = obs1.getObservationNumber();
+        assertSame(obs1, _lookup(num1));
+
+        // Observations inside groups are found as well.
+        final ISPGroup grp = getDatabase().getFactory().createGroup(prog, EmptyNodeInitializer.INSTANCE, null);
+        final ISPObservation obs2 = _createObs(prog);
+        grp.addObservation(obs2);
+        prog.addGroup(grp);
+        final int num2 = obs2.getObservationNumber();
+        assertSame(obs2, _lookup(num2));
+
+        prog.removeObservation(obs1);
+        assertNull(_lookup(num1));
+        assertSame(obs2, _lookup(num2));
+
+        grp.removeObservation(obs2);
+        assertNull(_lookup(num2));
+    }
+
+    @Test public void testRenumber() throws Exception {
+        final ISPProgram prog = _createProgram();
+        final ISPObservation obs = _createObs(prog);
+        prog.addObservation(obs);
+        final int oldNum = obs.getObservationNumber();
+        assertSame(obs, _lookup(oldNum));
+
+        // Renumbering doesn't change the program structure.
+        final int newNum = oldNum + 100;
+        obs.setObservationNumber(newNum);
+        assertSame(obs, _lookup(newNum));
+        assertNull(_lookup(oldNum));
+
+        // And back again, now that the map has been rebuilt.
+        obs.setObservationNumber(oldNum);
+        assertSame(obs, _lookup(oldNum));
+        assertNull(_lookup(newNum));
+    }
+
+    @Test public void testReplaceProgram() throws Exception {
+        final ISPProgram prog0 = _createProgram();
+        final ISPObservation obs0 = _createObs(prog0);
+        prog0.addObservation(obs0);
+        final int num = obs0.getObservationNumber();
+        assertSame(obs0, _lookup(num));
+
+        final ISPProgram prog1 = getDatabase().getFactory().createProgram(
+                EmptyNodeInitializer.INSTANCE, prog0.getProgramKey(), PROG_ID);
+        getDatabase().put(prog1);
+        assertNull(_lookup(num));
+
+        final ISPObservation obs1 = _createObs(prog1);
+        prog1.addObservation(obs1);
+        assertSame(obs1, _lookup(obs1.getObservationNumber()));
+
+        getDatabase().remove(prog1);
+        assertNull(_lookup(obs1.getObservationNumber()));
+    }
+}
@@ -0,0 +1,98 @@
+package edu.gemini.pot.spdb.test;
+
+import edu.gemini.pot.sp.*;
+import edu.gemini.pot.spdb.*;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that parallel query functors are split per program and merged.
+ */
+public final class ParallelQueryTest extends SpdbBaseTestCase {
+
+    private static class KeyFunctor extends DBAbstractQueryFunctor {
+        final List<SPNodeKey> keys = new ArrayList<>();
+
+        @Override public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+            keys.add(node.getNodeKey());
+        }
+    }
+
+    private static final class ParallelKeyFunctor extends KeyFunctor implements IDBParallelQueryFunctor {
+        int parts;
+        boolean finished;
+
+        @Override public IDBParallelQueryFunctor split() {
+            return new ParallelKeyFunctor();
+        }
+
+        @Override public void mergeResults(Collection<IDBFunctor> functorCollection) {
+            for (IDBFunctor f : functorCollection) keys.addAll(((ParallelKeyFunctor) f).keys);
+            parts = functorCollection.size();
+        }
+
+        @Override public void finished() {
+            finished = true;
+        }
+    }
+
+    private static final class FailingFunctor extends DBAbstractQueryFunctor implements IDBParallelQueryFunctor {
+        @Override public void execute(IDBDatabaseService db, ISPNode node, Set<Principal> principals) {
+            throw new IllegalStateException("failed");
+        }
+
+        @Override public IDBParallelQueryFunctor split() {
+            return new FailingFunctor();
+        }
+
+        @Override public void mergeResults(Collection<IDBFunctor> functorCollection) {
+            fail("should not merge failed parts");
+        }
+    }
+
+    private IDBQueryRunner _runner() {
+        return getDatabase().getQueryRunner(Collections.<Principal>emptySet());
+    }
+
+    private void _createPrograms() throws Exception {
+        final ISPFactory fact = getDatabase().getFactory();
+        for (int i=0; i<10; ++i) {
+            final ISPProgram prog = createProgram();
+            for (int j=0; j<=i; ++j) {
+                prog.addObservation(fact.createObservation(prog, -1, EmptyNodeInitializer.INSTANCE, null));
+            }
+        }
+    }
+
+    @Test public void testPrograms() throws Exception {
+        _createPrograms();
+
+        final KeyFunctor seq      = _runner().queryPrograms(new KeyFunctor());
+        final ParallelKeyFunctor par = _runner().queryPrograms(new ParallelKeyFunctor());
+
+        assertEquals(10, par.parts);
+        assertTrue(par.finished);
+        assertEquals(seq.keys, par.keys);
+    }
+
+    @Test public void testObservations() throws Exception {
+        _createPrograms();
+
+        final KeyFunctor seq      = _runner().queryObservations(new KeyFunctor());
+        final ParallelKeyFunctor par = _runner().queryObservations(new ParallelKeyFunctor());
+
+        assertEquals(55, seq.keys.size());
+        assertEquals(seq.keys, par.keys);
+    }
+
+    @Test public void testFailure() throws Exception {
+        _createPrograms();
+
+        final FailingFunctor f = _runner().queryPrograms(new FailingFunctor());
+        assertTrue(f.getException() instanceof IllegalStateException);
+    }
+}
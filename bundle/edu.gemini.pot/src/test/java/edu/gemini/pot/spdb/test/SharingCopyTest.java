@@ -0,0 +1,56 @@
+package edu.gemini.pot.spdb.test;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.spModel.gemini.obscomp.SPProgram;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a program copy sharing data objects with the original can be
+ * updated independently of it.
+ */
+public final class SharingCopyTest extends SpdbBaseTestCase {
+
+    private static void setTitle(ISPProgram prog, String title) {
+        final SPProgram dataObj = new SPProgram();
+        dataObj.setTitle(title);
+        prog.setDataObject(dataObj);
+    }
+
+    private static String getTitle(ISPProgram prog) {
+        return prog.getDataObject().getTitle();
+    }
+
+    @Test public void testIndependentUpdates() throws Exception {
+        final ISPFactory fact = getDatabase().getFactory();
+        final ISPProgram prog = createProgram();
+        setTitle(prog, "original");
+        prog.addObservation(fact.createObservation(prog, -1, EmptyNodeInitializer.INSTANCE, null));
+
+        final ISPProgram copy = fact.copyWithSameKeysSharingData(prog);
+        assertEquals(prog.getProgramKey(), copy.getProgramKey());
+        assertEquals(prog.getVersions(), copy.getVersions());
+        assertEquals("original", getTitle(copy));
+
+        // Updating the copy doesn't touch the original.
+        setTitle(copy, "copy");
+        assertEquals("original", getTitle(prog));
+        assertEquals("copy", getTitle(copy));
+
+        // Mutating a fetched data object touches neither.
+        final SPProgram dataObj = (SPProgram) copy.getDataObject();
+        dataObj.setTitle("mutated");
+        assertEquals("copy", getTitle(copy));
+        assertEquals("original", getTitle(prog));
+
+        // The structure is duplicated.
+        final ISPObservation obs = prog.getAllObservations().get(0);
+        final ISPObservation obsCopy = copy.getAllObservations().get(0);
+        assertNotSame(obs, obsCopy);
+        assertEquals(obs.getNodeKey(), obsCopy.getNodeKey());
+        assertSame(copy, obsCopy.getParent());
+    }
+}
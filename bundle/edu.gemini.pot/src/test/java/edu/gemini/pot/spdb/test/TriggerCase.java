@@ -6,6 +6,7 @@ package edu.gemini.pot.spdb.test;
 import edu.gemini.pot.sp.*;
 import edu.gemini.pot.spdb.IDBTriggerAction;
 import edu.gemini.pot.spdb.IDBTriggerCondition;
+import edu.gemini.pot.spdb.TriggerFilter;
 import edu.gemini.spModel.data.ISPDataObject;
 import edu.gemini.spModel.pio.ParamSet;
 import edu.gemini.spModel.pio.PioFactory;
@@ -19,6 +20,7 @@ import java.util.logging.Level;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -303,4 +305,35 @@ public class TriggerCase extends SpdbBaseTestCase {
         _assertMessages(new String[] {"message1", "message2"});
      }
 
+    /**
+     * A condition that only counts the changes it is asked to match.
+     */
+    public static class FilteredTriggerCondition implements IDBTriggerCondition {
+        final AtomicInteger matchCount = new AtomicInteger();
+
+        public Object matches(SPCompositeChange change) {
+            matchCount.incrementAndGet();
+            return null;
+        }
+
+        @Override public TriggerFilter getFilter() {
+            return TriggerFilter.forDataObject(TriggerDataObject.class).withNodeType(ISPObsComponent.class);
+        }
+    }
+
+    @Test public void testFilter() throws Exception {
+        final FilteredTriggerCondition cond = new FilteredTriggerCondition();
+        getDatabase().registerTrigger(cond, new TestTriggerAction());
+
+        // Conditions are matched synchronously, so no need to wait.
+        _prog.setDataObject(new ProgramDataObject());
+        assertEquals(0, cond.matchCount.get());
+
+        _triggerComp.setDataObject(_triggerComp.getDataObject());
+        assertEquals(1, cond.matchCount.get());
+
+        getDatabase().unregisterTrigger(cond, new TestTriggerAction());
+        _triggerComp.setDataObject(_triggerComp.getDataObject());
+        assertEquals(1, cond.matchCount.get());
+    }
 }
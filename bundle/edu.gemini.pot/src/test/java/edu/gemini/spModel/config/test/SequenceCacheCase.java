@@ -0,0 +1,78 @@
+package edu.gemini.spModel.config.test;
+
+import edu.gemini.pot.sp.ISPObservation;
+import edu.gemini.spModel.config.ConfigBridge;
+import edu.gemini.spModel.config.map.ConfigValMapInstances;
+import edu.gemini.spModel.config2.ConfigSequence;
+import edu.gemini.spModel.config2.DefaultConfig;
+import edu.gemini.spModel.dataflow.GsaAspect;
+import edu.gemini.spModel.gemini.obscomp.SPProgram;
+import edu.gemini.spModel.obs.SPObservation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that extracted sequences are reused only while the observation is
+ * unchanged.
+ */
+public class SequenceCacheCase extends CBTestBase {
+
+    private ISPObservation testObs;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        testObs = createObservation();
+        testProg.addObservation(testObs);
+    }
+
+    @After
+    public void tearDown() {
+        super.tearDown();
+    }
+
+    private ConfigSequence extract() {
+        return ConfigBridge.extractSequence(testObs, null, ConfigValMapInstances.IDENTITY_MAP);
+    }
+
+    @Test
+    public void testReuse() {
+        final ConfigSequence seq = extract();
+        assertSame(seq, extract());
+
+        // Different options are cached separately.
+        assertNotSame(seq, ConfigBridge.extractSequence(testObs, null, ConfigValMapInstances.IDENTITY_MAP, true));
+        assertSame(seq, extract());
+    }
+
+    @Test
+    public void testModified() {
+        final ConfigSequence seq = extract();
+
+        final SPObservation dataObj = (SPObservation) testObs.getDataObject();
+        dataObj.setTitle("modified");
+        testObs.setDataObject(dataObj);
+
+        assertNotSame(seq, extract());
+    }
+
+    @Test
+    public void testProgramModified() {
+        final ConfigSequence seq = extract();
+
+        // The sequence includes the program's proprietary period.
+        final SPProgram dataObj = (SPProgram) testProg.getDataObject();
+        dataObj.setGsaAspect(new GsaAspect(true, 999, GsaAspect.Visibility.PRIVATE));
+        testProg.setDataObject(dataObj);
+
+        assertNotSame(seq, extract());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() {
+        extract().addStep(new DefaultConfig());
+    }
+}
@@ -6,7 +6,11 @@ import edu.gemini.spModel.config2.Config;
 import edu.gemini.spModel.config2.ItemKey;
 import edu.gemini.spModel.config2.DefaultConfig;
 
-import java.util.Iterator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
 
 public class ConfigSequenceTest extends TestCase {
 
@@ -620,4 +624,102 @@ public class ConfigSequenceTest extends TestCase {
         seq = _seq.subSequence(0, _seq.size());
         assertEquals(3, seq.size());
     }
+
+    public void testUnmodifiable() {
+        ConfigSequence seq = ConfigSequence.unmodifiable(_seq);
+        assertEquals(3, seq.size());
+        assertEquals(_seq.getStep(2), seq.getStep(2));
+
+        try {
+            seq.addStep(_config0);
+            fail("modified an unmodifiable sequence");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        try {
+            seq.removeStep(0);
+            fail("modified an unmodifiable sequence");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+
+        // Changes to the original don't show up in the copy.
+        _seq.removeStep(2);
+        assertEquals(3, seq.size());
+
+        // The Configs returned are copies.
+        seq.getStep(0).putItem(_newKey1, "x");
+        assertNull(seq.getItemValue(0, _newKey1));
+    }
+
+    private static Set<ItemKey> keySet(ItemKey[] keys) {
+        return new HashSet<ItemKey>(Arrays.asList(keys));
+    }
+
+    private static Set<Object> valueSet(Object[] vals) {
+        return new HashSet<Object>(Arrays.asList(vals));
+    }
+
+    private static List<Config> toList(Iterator<Config> it) {
+        List<Config> res = new ArrayList<Config>();
+        while (it.hasNext()) res.add(it.next());
+        return res;
+    }
+
+    private void assertSameContent(ConfigSequence expected, ConfigSequence actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertTrue(Arrays.equals(expected.getAllSteps(), actual.getAllSteps()));
+        assertTrue(Arrays.equals(expected.getCompactView(), actual.getCompactView()));
+        assertEquals(toList(expected.iterator()), toList(actual.iterator()));
+        assertEquals(toList(expected.compactIterator()), toList(actual.compactIterator()));
+        assertEquals(keySet(expected.getIteratedKeys()), keySet(actual.getIteratedKeys()));
+        assertEquals(keySet(expected.getStaticKeys()), keySet(actual.getStaticKeys()));
+
+        ItemKey[] keys = { _nochangeKey, _changeKey, _newKey1, _newKey2, new ItemKey("ocs:missing") };
+        for (ItemKey key : keys) {
+            assertTrue(Arrays.equals(expected.getItemValueAtEachStep(key), actual.getItemValueAtEachStep(key)));
+            assertEquals(valueSet(expected.getDistinctItemValues(key)), valueSet(actual.getDistinctItemValues(key)));
+            for (int step=0; step<expected.size(); ++step) {
+                assertEquals(expected.getItemValue(step, key), actual.getItemValue(step, key));
+            }
+        }
+        for (int step=0; step<expected.size(); ++step) {
+            assertEquals(expected.getStep(step), actual.getStep(step));
+            assertEquals(expected.indexMatching(expected.getStep(step)), actual.indexMatching(actual.getStep(step)));
+        }
+    }
+
+    public void testColumnar() throws Exception {
+        assertSameContent(_emptySeq, ConfigSequence.unmodifiable(_emptySeq));
+        assertSameContent(_seq, ConfigSequence.unmodifiable(_seq));
+
+        // A value that changes and then changes back.
+        ConfigSequence seq = new ConfigSequence(_seq);
+        seq.addStep(_config0);
+        assertSameContent(seq, ConfigSequence.unmodifiable(seq));
+
+        ConfigSequence col = ConfigSequence.unmodifiable(seq);
+        assertSame(col, ConfigSequence.unmodifiable(col));
+        assertSameContent(seq, new ConfigSequence(col));
+        assertSameContent(seq.subSequence(1, 3), col.subSequence(1, 3));
+
+        Config template = new DefaultConfig();
+        template.putItem(_newKey1, "new1");
+        assertEquals(seq.indexMatching(template), col.indexMatching(template));
+        assertEquals(seq.match(template), col.match(template));
+        template.putItem(_newKey2, "new1");
+        assertEquals(-1, col.indexMatching(template));
+
+        // Serialized copies are ordinary, modifiable sequences.
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(col);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        ConfigSequence copy = (ConfigSequence) ois.readObject();
+        assertSameContent(seq, copy);
+        copy.addStep(_config1);
+        assertEquals(seq.size() + 1, copy.size());
+    }
 }
@@ -0,0 +1,67 @@
+package edu.gemini.spModel.obsrecord;
+
+import edu.gemini.pot.sp.ISPObsExecLog;
+import edu.gemini.pot.sp.SPObservationID;
+import edu.gemini.spModel.config2.DefaultConfig;
+import edu.gemini.spModel.core.SPProgramID;
+import edu.gemini.spModel.dataset.Dataset;
+import edu.gemini.spModel.dataset.DatasetLabel;
+import edu.gemini.spModel.event.*;
+import edu.gemini.spModel.obslog.ObsExecLog;
+import edu.gemini.spModel.obslog.ObsLog;
+import edu.gemini.spModel.test.SpModelTestBase;
+import edu.gemini.spModel.time.ChargeClass;
+import edu.gemini.spModel.time.ObsTimeCharges;
+
+/**
+ * Tests that the time charges survive the copies made when reading the
+ * observing log through {@link ISPObsExecLog#getDataObject()}.
+ */
+public final class ObsExecLogChargesTest extends SpModelTestBase {
+    private static final long MIN = 60 * 1000;
+
+    // 2016-03-15 04:00 UTC, in the middle of the night at Gemini South
+    private static final long T0 = 1458014400000L;
+
+    public void setUp() throws Exception {
+        super.setUp(SPProgramID.toProgramID("GS-2016A-Q-1"));
+        if (getObs().getObsExecLog() == null) {
+            getObs().setObsExecLog(getFactory().createObsExecLog(getProgram(), null));
+        }
+    }
+
+    private void addEvents(ObsExecEvent... evts) {
+        final ISPObsExecLog node = getObs().getObsExecLog();
+        final ObsExecLog log = (ObsExecLog) node.getDataObject();
+        for (ObsExecEvent evt : evts) log.getRecord().addEvent(evt, new DefaultConfig());
+        node.setDataObject(log);
+    }
+
+    private ObsTimeCharges charges() {
+        final ObsLog log = ObsLog.getIfExists(getObs());
+        return log.getExecRecord().getTimeCharges(log.getQaRecord(), ChargeClass.PARTNER);
+    }
+
+    public void testChargesSurviveGetDataObject() throws Exception {
+        final SPObservationID obsId = getObs().getObservationID();
+        final DatasetLabel label    = new DatasetLabel(obsId, 1);
+        addEvents(
+            new StartVisitEvent(T0, obsId),
+            new StartDatasetEvent(T0 + MIN, new Dataset(label, "S20160315S0001", T0 + MIN)),
+            new EndDatasetEvent(T0 + 5 * MIN, label));
+
+        // Each read is a fresh copy of the data object, but they share the
+        // charges computed by the first one.
+        final ObsTimeCharges c0 = charges();
+        assertEquals(MIN, c0.getTime(ChargeClass.PARTNER));
+        assertEquals(4 * MIN, c0.getTime(ChargeClass.PROGRAM));
+        assertSame(c0, charges());
+
+        // Until the log changes.
+        addEvents(new EndVisitEvent(T0 + 6 * MIN, obsId));
+        final ObsTimeCharges c1 = charges();
+        assertEquals(2 * MIN, c1.getTime(ChargeClass.PARTNER));
+        assertEquals(4 * MIN, c1.getTime(ChargeClass.PROGRAM));
+        assertSame(c1, charges());
+    }
+}
@@ -0,0 +1,140 @@
+package edu.gemini.spModel.obsrecord;
+
+import edu.gemini.pot.sp.SPObservationID;
+import edu.gemini.spModel.config2.DefaultConfig;
+import edu.gemini.spModel.dataset.Dataset;
+import edu.gemini.spModel.dataset.DatasetLabel;
+import edu.gemini.spModel.dataset.DatasetQaRecord;
+import edu.gemini.spModel.dataset.DatasetQaState;
+import edu.gemini.spModel.event.*;
+import edu.gemini.spModel.time.ChargeClass;
+import edu.gemini.spModel.time.ObsTimeCharges;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the time accounting in {@link ObsExecRecord}.
+ */
+public final class ObsExecRecordTest {
+    private static final long MIN = 60 * 1000;
+
+    // 2016-03-15 04:00 UTC, in the middle of the night at Gemini South
+    private static final long T0 = 1458014400000L;
+
+    private SPObservationID obsId;
+    private DatasetLabel label;
+
+    @Before
+    public void setUp() throws Exception {
+        obsId = new SPObservationID("GS-2016A-Q-1-2");
+        label = new DatasetLabel(obsId, 1);
+    }
+
+    private ObsExecEvent[] events() {
+        final Dataset dataset = new Dataset(label, "S20160315S0001", T0 + MIN);
+        return new ObsExecEvent[] {
+            new StartVisitEvent(T0, obsId),
+            new StartDatasetEvent(T0 + MIN, dataset),
+            new EndDatasetEvent(T0 + 5 * MIN, label),
+            new EndVisitEvent(T0 + 6 * MIN, obsId),
+        };
+    }
+
+    private static void assertCharges(long partner, long program, long noncharged, ObsTimeCharges c) {
+        assertEquals(partner,    c.getTime(ChargeClass.PARTNER));
+        assertEquals(program,    c.getTime(ChargeClass.PROGRAM));
+        assertEquals(noncharged, c.getTime(ChargeClass.NONCHARGED));
+    }
+
+    @Test
+    public void testChargesFollowEvents() {
+        final ObsExecRecord rec = new ObsExecRecord();
+        final ObsQaRecord qa    = new ObsQaRecord();
+
+        final ObsExecEvent[] evts = events();
+        rec.addEvent(evts[0], null);
+        rec.addEvent(evts[1], new DefaultConfig());
+        assertCharges(MIN, 0, 0, rec.getTimeCharges(qa, ChargeClass.PARTNER));
+
+        rec.addEvent(evts[2], null);
+        assertCharges(MIN, 4 * MIN, 0, rec.getTimeCharges(qa, ChargeClass.PARTNER));
+
+        rec.addEvent(evts[3], null);
+        assertCharges(2 * MIN, 4 * MIN, 0, rec.getTimeCharges(qa, ChargeClass.PARTNER));
+        assertEquals(6 * MIN, rec.getTotalTime());
+    }
+
+    @Test
+    public void testChargesFollowQaState() {
+        final ObsExecRecord rec = new ObsExecRecord();
+        for (ObsExecEvent evt : events()) rec.addEvent(evt, new DefaultConfig());
+
+        final ObsQaRecord pass = new ObsQaRecord();
+        assertCharges(2 * MIN, 4 * MIN, 0, rec.getTimeCharges(pass, ChargeClass.PARTNER));
+
+        final ObsQaRecord fail = pass.updated(new DatasetQaRecord(label, DatasetQaState.FAIL, ""));
+        assertCharges(2 * MIN, 0, 4 * MIN, rec.getTimeCharges(fail, ChargeClass.PARTNER));
+        assertCharges(2 * MIN, 4 * MIN, 0, rec.getTimeCharges(pass, ChargeClass.PARTNER));
+    }
+
+    @Test
+    public void testOutOfOrderEvents() {
+        final ObsExecEvent[] evts = events();
+
+        final ObsExecRecord inOrder = new ObsExecRecord();
+        for (ObsExecEvent evt : evts) inOrder.addEvent(evt, new DefaultConfig());
+
+        final ObsExecRecord outOfOrder = new ObsExecRecord();
+        outOfOrder.addEvent(evts[0], null);
+        outOfOrder.addEvent(evts[3], null);
+        outOfOrder.addEvent(evts[1], new DefaultConfig());
+        outOfOrder.addEvent(evts[2], null);
+
+        final ObsQaRecord qa = new ObsQaRecord();
+        assertEquals(inOrder.getTotalTime(), outOfOrder.getTotalTime());
+        assertEquals(inOrder.getTimeCharges(qa, ChargeClass.PARTNER), outOfOrder.getTimeCharges(qa, ChargeClass.PARTNER));
+    }
+
+    @Test
+    public void testOverlap() {
+        final ObsExecEvent[] evts = events();
+        final ObsExecRecord rec = new ObsExecRecord();
+        rec.addEvent(evts[0], null);
+        rec.addEvent(evts[1], new DefaultConfig());
+        rec.addEvent(new OverlapEvent(T0 + 2 * MIN, obsId), null);
+        rec.addEvent(evts[2], null);
+        rec.addEvent(evts[3], null);
+
+        final ObsQaRecord qa = new ObsQaRecord();
+        assertCharges(2 * MIN, 0, 4 * MIN, rec.getTimeCharges(qa, ChargeClass.PARTNER));
+
+        // A copy shares the charges until it changes.
+        final ObsExecRecord copy = rec.copy();
+        assertSame(rec.getTimeCharges(qa, ChargeClass.PARTNER), copy.getTimeCharges(qa, ChargeClass.PARTNER));
+        copy.addEvent(new StartVisitEvent(T0 + 10 * MIN, obsId), null);
+        assertCharges(2 * MIN, 0, 4 * MIN, rec.getTimeCharges(qa, ChargeClass.PARTNER));
+        assertCharges(2 * MIN, 0, 4 * MIN, copy.getTimeCharges(qa, ChargeClass.PARTNER));
+    }
+
+    @Test
+    public void testCopyKeepsTotals() {
+        final ObsExecEvent[] evts = events();
+        final ObsExecRecord rec = new ObsExecRecord();
+        rec.addEvent(evts[0], null);
+        rec.addEvent(evts[1], new DefaultConfig());
+
+        // The copy continues from the running totals of the original.
+        final ObsExecRecord copy = rec.copy();
+        copy.addEvent(evts[2], null);
+        copy.addEvent(evts[3], null);
+
+        final ObsExecRecord all = new ObsExecRecord();
+        for (ObsExecEvent evt : evts) all.addEvent(evt, new DefaultConfig());
+
+        final ObsQaRecord qa = new ObsQaRecord();
+        assertEquals(all.getTimeCharges(qa, ChargeClass.PARTNER), copy.getTimeCharges(qa, ChargeClass.PARTNER));
+        assertCharges(MIN, 0, 0, rec.getTimeCharges(qa, ChargeClass.PARTNER));
+    }
+}
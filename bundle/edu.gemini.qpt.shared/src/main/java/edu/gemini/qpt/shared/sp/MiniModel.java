@@ -1,6 +1,7 @@
 package edu.gemini.qpt.shared.sp;
 
 import edu.gemini.ags.api.AgsMagnitude;
+import edu.gemini.pot.sp.SPBadIDException;
 import edu.gemini.pot.sp.SPObservationID;
 import edu.gemini.pot.spdb.IDBQueryRunner;
 import edu.gemini.spModel.core.*;
@@ -49,19 +50,22 @@ public class MiniModel {
     private final long timestamp = System.currentTimeMillis();
     private final Map<SPProgramID, ProgramExclusion> programExclusions;
     private final Map<SPObservationID, ObsExclusion> obsExclusions;
+    private final Map<SPProgramID, String> programVersions;
 
     private MiniModel(Site site,
                       SortedSet<Prog> programs,
                       SortedSet<String> misconfiguredObservations,
                       SortedSet<String> allSemesters,
                       Map<SPProgramID, ProgramExclusion> programExclusions,
-                      Map<SPObservationID, ObsExclusion> obsExclusions) {
+                      Map<SPObservationID, ObsExclusion> obsExclusions,
+                      Map<SPProgramID, String> programVersions) {
         this.site = site;
         this.programs = Collections.unmodifiableSortedSet(new TreeSet<>(programs));
         this.misconfiguredObservations = Collections.unmodifiableSortedSet(new TreeSet<>(misconfiguredObservations));
         this.allSemesters = Collections.unmodifiableSortedSet(new TreeSet<>(allSemesters));
         this.programExclusions = Collections.unmodifiableMap(programExclusions);
         this.obsExclusions = Collections.unmodifiableMap(obsExclusions);
+        this.programVersions = Collections.unmodifiableMap(programVersions);
         SortedSet<Obs> accum = new TreeSet<>();
         for (Prog prog: programs) accum.addAll(prog.getFullObsSet());
         allObservations = Collections.unmodifiableSortedSet(accum);
@@ -186,7 +190,55 @@ public class MiniModel {
                 result.getMisconfiguredObservations(),
                 result.getAllSemesters(),
                 result.getProgramExclusions(),
-                result.getObsExclusions());
+                result.getObsExclusions(),
+                result.getProgramVersions());
+    }
+
+    /**
+     * Creates a mini model by patching a previous one with the result of a functor that was
+     * executed with the previous program versions (see {@link ObsQueryFunctor#setKnownVersions(Map)}).
+     * Unchanged programs are taken from the previous model, changed ones from the result and all
+     * others are dropped.
+     * @param previous model that the functor's known versions were taken from
+     * @param peer database the functor was executed on
+     * @param result executed functor
+     * @return model with the unchanged programs of the previous one and the changed programs of the result
+     */
+    public static MiniModel newInstanceFromDelta(MiniModel previous, Peer peer, ObsQueryFunctor result) {
+        final Set<SPProgramID> unchanged = result.getUnchangedPrograms();
+
+        final SortedSet<Prog> programs = new TreeSet<>(result.getProgramSet());
+        for (Prog prog : previous.programs) {
+            if (unchanged.contains(prog.getProgramId())) programs.add(prog);
+        }
+
+        final SortedSet<String> misconfiguredObservations = new TreeSet<>(result.getMisconfiguredObservations());
+        for (String obsId : previous.misconfiguredObservations) {
+            try {
+                if (unchanged.contains(new SPObservationID(obsId).getProgramID())) misconfiguredObservations.add(obsId);
+            } catch (SPBadIDException ex) {
+                // can't tell which program it belongs to, it will be reported again if still relevant
+            }
+        }
+
+        final Map<SPProgramID, ProgramExclusion> programExclusions = new TreeMap<>(result.getProgramExclusions());
+        for (Map.Entry<SPProgramID, ProgramExclusion> e : previous.programExclusions.entrySet()) {
+            if (unchanged.contains(e.getKey())) programExclusions.put(e.getKey(), e.getValue());
+        }
+
+        final Map<SPObservationID, ObsExclusion> obsExclusions = new TreeMap<>(result.getObsExclusions());
+        for (Map.Entry<SPObservationID, ObsExclusion> e : previous.obsExclusions.entrySet()) {
+            if (unchanged.contains(e.getKey().getProgramID())) obsExclusions.put(e.getKey(), e.getValue());
+        }
+
+        return new MiniModel(
+                peer.site,
+                programs,
+                misconfiguredObservations,
+                result.getAllSemesters(),
+                programExclusions,
+                obsExclusions,
+                result.getProgramVersions());
     }
 
     private static MiniModel newInstance(KeyChain kc, Peer peer, ObsQueryFunctor functor) throws IOException, TimeoutException {
@@ -230,4 +282,12 @@ public class MiniModel {
     public Map<SPProgramID, ProgramExclusion> getProgramExclusions() {
         return programExclusions;
     }
+
+    /**
+     * Version digests of the programs in this model, to be passed to the functor that gets
+     * the changes for the next model.
+     */
+    public Map<SPProgramID, String> getProgramVersions() {
+        return programVersions;
+    }
 }
@@ -2,11 +2,13 @@ package edu.gemini.qpt.shared.sp;
 
 import edu.gemini.ags.api.*;
 import edu.gemini.pot.sp.*;
+import edu.gemini.pot.sp.version.JavaVersionMapOps;
 import edu.gemini.pot.spdb.DBAbstractQueryFunctor;
 import edu.gemini.pot.spdb.IDBDatabaseService;
 import edu.gemini.shared.util.TimeValue;
 import edu.gemini.shared.util.immutable.ApplyOp;
 import edu.gemini.shared.util.immutable.DefaultImList;
+import edu.gemini.shared.util.immutable.ImList;
 import edu.gemini.shared.util.immutable.Option;
 import edu.gemini.spModel.core.SPProgramID;
 import edu.gemini.spModel.core.Semester;
@@ -64,7 +66,6 @@ import java.security.Principal;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import scala.collection.JavaConversions;
 
 /**
  * Query functor that generates the sp mini-model snapshot.
@@ -84,6 +85,11 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
     private final SortedSet<String> allSemesters = new TreeSet<>();
     private final Map<SPProgramID, ProgramExclusion> programExclusions = new TreeMap<>();
     private final Map<SPObservationID, ObsExclusion> obsExclusions = new TreeMap<>();
+    private final Map<SPProgramID, String> programVersions = new TreeMap<>();
+    private final SortedSet<SPProgramID> unchangedPrograms = new TreeSet<>();
+
+    // Version digests of the programs the client already has, see setKnownVersions
+    private Map<SPProgramID, String> knownVersions = Collections.emptyMap();
 
     private final Site site;
     private final Calendar date;
@@ -168,6 +174,17 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
         this.magTable = magTable;
     }
 
+    /**
+     * Sets the version digests of the programs the client already has, as returned by
+     * {@link #getProgramVersions()} in a previous query with the same parameters.  Programs
+     * whose version didn't change are not collected again but listed in
+     * {@link #getUnchangedPrograms()} instead, so that the client can keep its copy.
+     * @param knownVersions version digests by program id
+     */
+    public void setKnownVersions(Map<SPProgramID, String> knownVersions) {
+        this.knownVersions = new HashMap<>(knownVersions);
+    }
+
     @SuppressWarnings("unchecked")
     public void execute(IDBDatabaseService db, ISPNode progNode, Set<Principal> principals) {
         try {
@@ -233,6 +250,14 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
                 }
             }
 
+            // -- skip programs the client already has in this version
+            final String version = JavaVersionMapOps.digest(programShell.getVersions());
+            if (version.equals(knownVersions.get(id))) {
+                programVersions.put(id, version);
+                unchangedPrograms.add(id);
+                return;
+            }
+
             // -- Get the science band and times
             final int band;
             long plannedTime = 0;
@@ -297,13 +322,16 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
             List<Group> groupList = new ArrayList<>();
             List<Note> noteList = new ArrayList<>();
 
+            // Analyze all the observations at once before collecting them.
+            final Map<SPNodeKey, ImList<AgsAnalysis>> agsAnalyses = agsAnalyses(programShell);
+
             // Now collect its direct obs children.
             List<Obs> obsList = new ArrayList<>();
             for (ISPNode rn: programShell.getChildren()) {
 
                 if (rn instanceof ISPObservation) {
 
-                    Obs obs = getObs(prog, (ISPObservation) rn, null);
+                    Obs obs = getObs(prog, (ISPObservation) rn, null, agsAnalyses);
                     addObsIfOk(obsList, obs);
 
                 } else if (rn instanceof ISPGroup) {
@@ -319,7 +347,7 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
 
                         if (rn2 instanceof ISPObservation) {
 
-                            Obs obs = getObs(prog, (ISPObservation) rn2, miniGroup);
+                            Obs obs = getObs(prog, (ISPObservation) rn2, miniGroup, agsAnalyses);
                             addObsIfOk(groupObservations, obs);
 
                         } else {
@@ -351,6 +379,7 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
             // Finish constructing the program.
             prog.setChildren(obsList, groupList, noteList);
             programSet.add(prog);
+            programVersions.put(id, version);
 
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Trouble in functor.", e);
@@ -768,7 +797,7 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
     }
 
     @SuppressWarnings("unchecked")
-    private Obs getObs(Prog info, ISPObservation obsShell, Group group) throws RemoteException {
+    private Obs getObs(Prog info, ISPObservation obsShell, Group group, Map<SPNodeKey, ImList<AgsAnalysis>> agsAnalyses) throws RemoteException {
 
         // Collect obs info
         SPObservation obs = (SPObservation) obsShell.getDataObject();
@@ -849,24 +878,9 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
         SPObservation.Priority priority = obs.getPriority() != null ? obs.getPriority() : SPObservation.Priority.DEFAULT;
 
 
-        // Construct the AgsAnalyses for this observation under the following conditions:
-        // 1. IF the system property is not set or is set to true, and
-        // 2. IF the observation needs a guide star.
-        List<AgsAnalysis> analysis = new ArrayList<>();
-
-        if (CalculateAgsAnalysis && SPObservation.needsGuideStar(obsShell)) {
-            Option<ObsContext> ctxOpt = ObsContext.create(obsShell);
-            if (!ctxOpt.isEmpty()) {
-                ObsContext ctx = ctxOpt.getValue();
-
-                // Perform the analysis.
-                scala.Option<AgsStrategy> strategyOption = AgsRegistrar.currentStrategy(ctx);
-                if (strategyOption.isDefined()) {
-                    AgsStrategy strategy = strategyOption.get();
-                    analysis.addAll(JavaConversions.asJavaList(strategy.analyze(ctx, magTable)));
-                }
-            }
-        }
+        // AgsAnalyses calculated for this observation, if any (see agsAnalyses).
+        ImList<AgsAnalysis> analysis = agsAnalyses.get(obsShell.getNodeKey());
+        if (analysis == null) analysis = DefaultImList.create();
 
 
         // create new Obs object based on information collected
@@ -893,12 +907,49 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
             hasLGS(obsShell),
             hasAO(obsShell),
             usesAverageParallacticAngle(obsShell),
-            DefaultImList.create(analysis),
+            analysis,
             obs.getSchedulingBlock()
         );
 
     }
 
+    /**
+     * Constructs the AgsAnalyses for the observations in the program under the following conditions:
+     * 1. IF the system property is not set or is set to true, and
+     * 2. IF the observation is of a relevant class and status, and
+     * 3. IF the observation needs a guide star.
+     * The observations are analyzed in a single batch, which evaluates them in parallel and reuses the analyses of
+     * unchanged observations from previous queries.
+     */
+    private Map<SPNodeKey, ImList<AgsAnalysis>> agsAnalyses(ISPProgram programShell) throws RemoteException {
+        final Map<SPNodeKey, ImList<AgsAnalysis>> res = new HashMap<>();
+        if (!CalculateAgsAnalysis) return res;
+
+        final List<SPNodeKey> keys = new ArrayList<>();
+        final List<ObsContext> ctxs = new ArrayList<>();
+        for (ISPObservation obsShell : programShell.getAllObservations()) {
+            final ObsClass obsClass = ObsClassService.lookupObsClass(obsShell);
+            if (obsClass == null || !relevantObsClasses.contains(obsClass)) continue;
+
+            final ObservationStatus obsStatus = ObservationStatus.computeFor(obsShell);
+            if (obsStatus == null || !relevantObsStatuses.contains(obsStatus)) continue;
+
+            if (!SPObservation.needsGuideStar(obsShell)) continue;
+
+            final Option<ObsContext> ctxOpt = ObsContext.create(obsShell);
+            if (ctxOpt.isEmpty()) continue;
+
+            keys.add(obsShell.getNodeKey());
+            ctxs.add(ctxOpt.getValue());
+        }
+
+        final List<List<AgsAnalysis>> analyses = AgsBatch.analyzeForJava(ctxs, magTable);
+        for (int i = 0; i < keys.size(); ++i) {
+            res.put(keys.get(i), DefaultImList.create(analyses.get(i)));
+        }
+        return res;
+    }
+
     public static boolean isRollover(ISPProgram programShell) throws RemoteException {
         try {
             return ((SPProgram) programShell.getDataObject()).getRolloverStatus();
@@ -934,6 +985,20 @@ public class ObsQueryFunctor extends DBAbstractQueryFunctor implements Iterable<
         return obsExclusions;
     }
 
+    /**
+     * Version digests of the programs that are in the program set or unchanged.
+     */
+    public Map<SPProgramID, String> getProgramVersions() {
+        return programVersions;
+    }
+
+    /**
+     * Programs that were skipped because the client already has them in their current version.
+     */
+    public SortedSet<SPProgramID> getUnchangedPrograms() {
+        return unchangedPrograms;
+    }
+
 }
 
 
@@ -0,0 +1,127 @@
+package edu.gemini.qpt.shared.sp
+
+import edu.gemini.pot.sp.SPObservationID
+import edu.gemini.qpt.shared.sp.ServerExclusion.{ObsExclusion, ProgramExclusion}
+import edu.gemini.qpt.shared.util.ObsBuilder
+import edu.gemini.spModel.core.{Peer, ProgramType, Semester, Site, SPProgramID}
+import edu.gemini.spModel.obs.ObservationStatus
+import edu.gemini.spModel.obsclass.ObsClass
+import org.specs2.mutable.Specification
+
+import scala.collection.JavaConverters._
+
+/**
+ * Tests creating mini models from program deltas.
+ */
+object MiniModelSpec extends Specification {
+
+  val peer = new Peer("localhost", 8443, Site.GS)
+
+  val P1 = SPProgramID.toProgramID("GS-2016A-Q-1")
+  val P2 = SPProgramID.toProgramID("GS-2016A-Q-2")
+  val P3 = SPProgramID.toProgramID("GS-2016A-Q-3")
+  val P4 = SPProgramID.toProgramID("GS-2016A-Q-4")
+
+  def obsId(pid: SPProgramID, n: Int): SPObservationID = new SPObservationID(pid, n)
+
+  def prog(pid: SPProgramID, obsNumbers: Int*): Prog = {
+    val p   = new Prog(pid)
+    val obs = obsNumbers.map(n => ObsBuilder(prog = p, obsNumber = n).apply)
+    p.setChildren(obs.asJava, java.util.Collections.emptyList[Group](), java.util.Collections.emptyList[Note]())
+    p
+  }
+
+  // A functor with the given results, as if it had been executed by the database.
+  def result(
+      programs:          Seq[Prog]                               = Nil,
+      unchanged:         Seq[SPProgramID]                        = Nil,
+      misconfigured:     Seq[SPObservationID]                    = Nil,
+      programExclusions: Map[SPProgramID, ProgramExclusion]      = Map.empty,
+      obsExclusions:     Map[SPObservationID, ObsExclusion]      = Map.empty,
+      versions:          Map[SPProgramID, String]                = Map.empty): ObsQueryFunctor = {
+
+    val f = new ObsQueryFunctor(Site.GS,
+      new java.util.HashSet[Semester](),
+      new java.util.ArrayList[ProgramType](),
+      new java.util.HashSet[ObsClass](),
+      new java.util.HashSet[ObservationStatus](),
+      true, true, null)
+
+    f.getProgramSet.addAll(programs.asJava)
+    f.getUnchangedPrograms.addAll(unchanged.asJava)
+    f.getMisconfiguredObservations.addAll(misconfigured.map(_.toString).asJava)
+    f.getProgramExclusions.putAll(programExclusions.asJava)
+    f.getObsExclusions.putAll(obsExclusions.asJava)
+    f.getProgramVersions.putAll(versions.asJava)
+    f.getAllSemesters.add("2016A")
+    f
+  }
+
+  def obsIds(m: MiniModel): Set[String] =
+    m.getAllObservations.asScala.map(_.getObsId).toSet
+
+  val previous = MiniModel.newInstanceFromExecuted(peer, result(
+    programs          = List(prog(P1, 1, 2), prog(P2, 1), prog(P3, 1)),
+    misconfigured     = List(obsId(P1, 2), obsId(P2, 1), obsId(P3, 1)),
+    programExclusions = Map(P4 -> ProgramExclusion.MARKED_COMPLETE),
+    obsExclusions     = Map(obsId(P1, 3) -> ObsExclusion.EXCLUDED_STATUS, obsId(P2, 2) -> ObsExclusion.EXCLUDED_STATUS, obsId(P3, 2) -> ObsExclusion.EXCLUDED_CLASS),
+    versions          = Map(P1 -> "v1", P2 -> "v2", P3 -> "v3")
+  ))
+
+  // P1 is unchanged, P2 was edited and P3 is now marked complete.
+  val delta = MiniModel.newInstanceFromDelta(previous, peer, result(
+    programs          = List(prog(P2, 1, 3)),
+    unchanged         = List(P1),
+    misconfigured     = List(obsId(P2, 3)),
+    programExclusions = Map(P3 -> ProgramExclusion.MARKED_COMPLETE, P4 -> ProgramExclusion.MARKED_COMPLETE),
+    obsExclusions     = Map(obsId(P2, 1) -> ObsExclusion.EXCLUDED_STATUS),
+    versions          = Map(P1 -> "v1", P2 -> "v2'")
+  ))
+
+  "MiniModel.newInstanceFromDelta" should {
+
+    "keep unchanged programs and take changed ones from the result" in {
+      val progs = delta.getPrograms.asScala.toList
+      progs.map(_.getProgramId) must_== List(P1, P2)
+      progs.head must beTheSameAs(previous.getPrograms.first)
+      obsIds(delta) must_== Set(
+        Obs.createObsId(progs(0), 1), Obs.createObsId(progs(0), 2),
+        Obs.createObsId(progs(1), 1), Obs.createObsId(progs(1), 3))
+    }
+
+    "drop programs that were removed or are now excluded" in {
+      delta.getPrograms.asScala.exists(_.getProgramId == P3) must beFalse
+      delta.getProgramExclusions.asScala must_== Map(P3 -> ProgramExclusion.MARKED_COMPLETE, P4 -> ProgramExclusion.MARKED_COMPLETE)
+    }
+
+    "carry over misconfigured observations of unchanged programs only" in {
+      delta.getMisconfiguredObservations.asScala must_== Set(obsId(P1, 2).toString, obsId(P2, 3).toString)
+    }
+
+    "carry over observation exclusions of unchanged programs only" in {
+      delta.getObsExclusions.asScala must_== Map(
+        obsId(P1, 3) -> ObsExclusion.EXCLUDED_STATUS,
+        obsId(P2, 1) -> ObsExclusion.EXCLUDED_STATUS)
+    }
+
+    "take the program versions from the result" in {
+      delta.getProgramVersions.asScala must_== Map(P1 -> "v1", P2 -> "v2'")
+    }
+
+    "return an equal model if nothing changed" in {
+      val same = MiniModel.newInstanceFromDelta(previous, peer, result(
+        unchanged         = List(P1, P2, P3),
+        programExclusions = Map(P4 -> ProgramExclusion.MARKED_COMPLETE),
+        versions          = Map(P1 -> "v1", P2 -> "v2", P3 -> "v3")
+      ))
+
+      same.getPrograms                  must_== previous.getPrograms
+      obsIds(same)                      must_== obsIds(previous)
+      same.getMisconfiguredObservations must_== previous.getMisconfiguredObservations
+      same.getProgramExclusions         must_== previous.getProgramExclusions
+      same.getObsExclusions             must_== previous.getObsExclusions
+      same.getProgramVersions           must_== previous.getProgramVersions
+      same.getAllSemesters              must_== previous.getAllSemesters
+    }
+  }
+}
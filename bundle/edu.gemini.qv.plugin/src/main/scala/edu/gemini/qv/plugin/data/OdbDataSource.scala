@@ -20,6 +20,11 @@ import scala.swing.Swing._
 /** Logging. */
 object OdbDataSource {
   val LOG = Logger.getLogger(OdbDataSource.getClass.getName)
+
+  /** Maximum time between two full refreshes.  The program data computed by the ODB doesn't
+    * only depend on the program versions (e.g. it also depends on the current date), so every
+    * now and then we get everything again instead of just the changed programs. */
+  val FullRefreshInterval = 30 * 60 * 1000L
 }
 
 /**
@@ -29,6 +34,11 @@ class OdbDataSource(val peer: Peer, mt: MagnitudeTable) extends DataSource {
 
   def site = peer.site
 
+  // The last model, the query parameters it was created for and the time of the last full
+  // refresh; as long as the parameters don't change the next refresh only needs to get the
+  // programs that changed since then
+  private var last: Option[(List[Any], MiniModel, Long)] = None
+
   /**
    * Initiates refresh of data and update in the background.
    *
@@ -52,6 +62,14 @@ class OdbDataSource(val peer: Peer, mt: MagnitudeTable) extends DataSource {
     val javaTypes = new java.util.ArrayList[ProgramType](); selectedTypes.foreach(javaTypes.add)
     val functor = new ObsQueryFunctor(peer.site, javaSemesters, javaTypes, javaClasses, javaStatuses, !includeCompletedPrograms, !includeInactivePrograms, mt)
 
+    val params   = List(selectedSemesters, selectedTypes, selectedClasses, selectedStatuses, includeCompletedPrograms, includeInactivePrograms)
+    val now      = System.currentTimeMillis
+    val (previous, fullRefreshTime) = synchronized {
+      last.collect { case (p, m, t) if p == params && now - t < FullRefreshInterval => (Option(m), t) }
+          .getOrElse((Option.empty[MiniModel], now))
+    }
+    previous.foreach(m => functor.setKnownVersions(m.getProgramVersions))
+
     // create and initiate db read operation
     val c = {
       val b = TrpcClient(peer)
@@ -59,7 +77,9 @@ class OdbDataSource(val peer: Peer, mt: MagnitudeTable) extends DataSource {
     }
     val f = c future { r =>
       val result = r[IDBQueryRunner].queryPrograms(functor)
-      val model = MiniModel.newInstanceFromExecuted(peer, result)
+      val model = previous.fold(MiniModel.newInstanceFromExecuted(peer, result))(MiniModel.newInstanceFromDelta(_, peer, result))
+      LOG.info(s"  >>> ${result.getProgramSet.size} programs changed, ${result.getUnchangedPrograms.size} unchanged")
+      synchronized { last = Some((params, model, fullRefreshTime)) }
       val obs = model.getAllObservations
       // transform from mutable java to immutable scala set
       val sObs = scala.collection.JavaConversions.asScalaSet[Obs](obs).toSet
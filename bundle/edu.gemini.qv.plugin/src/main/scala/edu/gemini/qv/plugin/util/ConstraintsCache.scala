@@ -133,18 +133,24 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
     nights.map(_.moonCalculator)
 
     // do calculations for each "folded" obs, i.e. for each position
-    // this can be done in parallel!
-    foldedObs.par.foreach(obs => {                                   // work on observation groups in parallel!
-      val target = targetFor(nights, peer, obs)
-      calculatePosSemester(nights, target, obs, foldedMap(obs))
+    val folded  = foldedObs.toVector
+    val targets = folded.par.map(targetFor(nights, peer, _)).seq
 
-      // update progress, we've calculated all constraints for obs.size observations for all nights in the semester
+    // sample all positions together night by night, this shares the sun and moon calculations for each sample time
+    // between all the targets; sampling and solving the constraints are both done in parallel
+    val perNight = nights.map(n => {
+      val tcs = TargetCalculator.forTargets(n.site, targets, n.scienceTime, TimeUtils.minutes(10), parallel = true)
+      val res = folded.indices.par.map(i => calculatePosNight(n, tcs(i), folded(i))).seq.toVector
+
+      // update progress, we've calculated all constraints for all observations for this night
       Swing.onEDT({
-        constraints.foreach(c => publish(ConstraintCalculationProgress(c, foldedMap(obs).size * nights.size)))
+        constraints.foreach(c => publish(ConstraintCalculationProgress(c, observations.size)))
       })
-
+      res
     })
 
+    folded.indices.foreach(i => calculatePosSemester(nights, perNight.map(_(i)), folded(i), foldedMap(folded(i))))
+
     onEDT(constraints.map(c => {
       publish(ConstraintCalculationEnd(c, 0))
     }))
@@ -152,10 +158,9 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
   }
 
 
-  private def calculatePosSemester(nights: Seq[Night], target: SkycalcTarget, foldedObs: Obs, obs: Set[Obs]): Unit = {
+  private def calculatePosSemester(nights: Seq[Night], cc: Seq[(Solution, Solution, Solution, Double, Double)], foldedObs: Obs, obs: Set[Obs]): Unit = {
 
-    // calculate all constraints on a per-night basis and then concatenate the results
-    val cc = nights.map(n => calculatePosNight(n, target, foldedObs))
+    // the constraints were calculated on a per-night basis, concatenate the results
     val ah = cc.map(_._1).reduce(_ add _)
     val sb = cc.map(_._2).reduce(_ add _)
     val el = cc.map(_._3).reduce(_ add _)
@@ -177,13 +182,12 @@ class ConstraintsCache(allNights: Seq[Night]) extends Publisher {
 
   }
 
-  private def calculatePosNight(night: Night, target: SkycalcTarget, o: Obs): (Solution, Solution, Solution, Double, Double) = {
+  private def calculatePosNight(night: Night, tc: TargetCalculator, o: Obs): (Solution, Solution, Solution, Double, Double) = {
 
     import edu.gemini.spModel.gemini.obscomp.SPSiteQuality.ElevationConstraintType._
 
-    // restrict all calculations to time between nautical twilights (science time)
+    // all calculations are restricted to time between nautical twilights (science time)
     val bounds = night.scienceTime
-    val tc = TargetCalculator(night.site, target, bounds, TimeUtils.minutes(10))
 
     // return a tuple with all values of interest
     (
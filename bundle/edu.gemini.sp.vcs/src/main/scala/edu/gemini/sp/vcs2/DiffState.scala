@@ -2,12 +2,24 @@ package edu.gemini.sp.vcs2
 
 import edu.gemini.pot.sp.{ISPProgram, SPNodeKey}
 import edu.gemini.pot.sp.version.VersionMap
+import edu.gemini.spModel.rich.pot.sp._
 
 /** Groups the information required to calculate a
-  * [[edu.gemini.sp.vcs2.ProgramDiff]]. */
-case class DiffState(progKey: SPNodeKey, vm: VersionMap, removed: Set[SPNodeKey])
+  * [[edu.gemini.sp.vcs2.ProgramDiff]].
+  *
+  * @param digests subtree version digests (see `ISPProgram.getVersionDigest`)
+  *                for the nodes with children, used to skip comparing
+  *                subtrees that are identical in both copies of the program.
+  *                If empty, the entire program is compared.
+  */
+case class DiffState(progKey: SPNodeKey, vm: VersionMap, removed: Set[SPNodeKey], digests: Map[SPNodeKey, Long] = Map.empty)
 
 object DiffState {
   def apply(p: ISPProgram): DiffState =
-    DiffState(p.getProgramKey, p.getVersions, removedKeys(p))
+    DiffState(p.getProgramKey, p.getVersions, removedKeys(p), versionDigests(p))
+
+  def versionDigests(p: ISPProgram): Map[SPNodeKey, Long] =
+    p.fold(Map.empty[SPNodeKey, Long]) { (m, n) =>
+      if (n.children.isEmpty) m else m + (n.key -> p.getVersionDigest(n))
+    }
 }
@@ -6,8 +6,6 @@ import edu.gemini.sp.vcs2.MergeNode._
 import edu.gemini.spModel.obs.ObservationStatus
 import edu.gemini.spModel.rich.pot.sp._
 
-import scala.collection.JavaConverters._
-
 import scalaz._
 import Scalaz._
 
@@ -96,10 +94,14 @@ object ProgramDiff {
     * @param removed `Set` of all node keys that are not present in the
     *                other instance of the program
     *
+    * @param digests subtree version digests of the other instance of the
+    *                program, if known.  Subtrees whose digest matches the
+    *                local digest are identical and are not walked.
+    *
     * @return `ProgramDiff` describing differences between the two program
     *         instances
     */
-  def compare(p: ISPProgram, vm: VersionMap, removed: Set[SPNodeKey]): ProgramDiff = {
+  def compare(p: ISPProgram, vm: VersionMap, removed: Set[SPNodeKey], digests: Map[SPNodeKey, Long] = Map.empty): ProgramDiff = {
     def versionDiffers(k: SPNodeKey): Boolean =
       vm.get(k).forall(_ =/= p.getVersions(k))
 
@@ -113,9 +115,17 @@ object ProgramDiff {
 
     def nodeDiffers(n: ISPNode): Boolean = presentDiffers(n.key)
 
+    // Matching digests mean the same keys, versions and structure on both
+    // sides, so nothing in the subtree can differ or have been removed.
+    def sameSubtree(r: ISPNode): Boolean =
+      digests.get(r.key).exists(_ == p.getVersionDigest(r))
+
     // Present differences in in-use nodes rooted at r.
     def presentDiffs(r: ISPNode, in: List[ObsStatusPair]): (Tree[MergeNode], List[ObsStatusPair]) =
       r match {
+        case _ if sameSubtree(r) =>
+          (unmodified(r).leaf, in)
+
         case o: ISPObservation =>
           // Observations are atomic.  If anything differs at all in either
           // version copy the entire observation.
@@ -155,14 +165,13 @@ object ProgramDiff {
     val (update, pairs) = presentDiffs(p, Nil)
     val plan            = MergePlan(update, missingDiffs(vmOnlyKeys ++ deletedKeys))
 
-    val allObs          = new ObservationIterator(p).asScala
-    val maxObs          = if (allObs.isEmpty) none else some(allObs.maxBy(_.getObservationNumber).getObservationNumber)
+    val maxObs          = some(p.getMaxObservationNumber).filter(_ >= 0)
 
     ProgramDiff(plan, pairs, maxObs)
   }
 
   def compare(p: ISPProgram, vs: DiffState): ProgramDiff =
-    compare(p, vs.vm, vs.removed)
+    compare(p, vs.vm, vs.removed, vs.digests)
 
   /** A serializable ProgramDiff.  Required because MergePlan is not serializalbe
     * because scalaz.Tree is not serializable. */
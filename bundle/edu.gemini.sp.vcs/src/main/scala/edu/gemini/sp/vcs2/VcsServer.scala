@@ -50,7 +50,9 @@ class VcsServer(odb: IDBDatabaseService) { vs =>
     * the value is returned as the result of the action.  The `update` takes a
     * copy of the program and the value returned by `evaluate` and mutates the
     * copy.  If successful, the copy replaces the current version of the program
-    * in the database.
+    * in the database.  The copy shares the data objects of the current version
+    * (see `ISPFactory.copyWithSameKeysSharingData`) so that its cost doesn't
+    * depend on the size of the science data in the program.
     *
     * @param id program id
     * @param user authentication
@@ -70,7 +72,7 @@ class VcsServer(odb: IDBDatabaseService) { vs =>
     managed(id, user, writeLock, writeUnlock) { prog =>
       evaluate(prog) >>= { a =>
         if (filter(a)) {
-          val cp = odb.getFactory.copyWithSameKeys(prog)
+          val cp = odb.getFactory.copyWithSameKeysSharingData(prog)
           update(odb.getFactory, cp, a) >> putProg(cp).as(a).liftVcs
         } else {
           VcsAction(a)
@@ -155,4 +155,21 @@ class ProgramDiffTest extends JUnitSuite {
 
     new MergePropertyTest(mkDiffs).checkAllProperties(props)
   }
+
+  @Test
+  def testDigestDiffProperties(): Unit = {
+    // Pruning identical subtrees by digest must find the same differences as
+    // a full comparison.
+    def mkDiffs(f: ISPFactory, s: ISPProgram, l: ISPProgram, r: ISPProgram): ProgramDiff = {
+      val full   = ProgramDiff.compare(r, l.getVersions, removedKeys(l))
+      val pruned = ProgramDiff.compare(r, DiffState(l))
+      assert(modifiedKeys(full.plan) == modifiedKeys(pruned.plan))
+      assert(full.plan.delete == pruned.plan.delete)
+      assert(full.obsStatus.toSet == pruned.obsStatus.toSet)
+      assert(full.maxObsNumber == pruned.maxObsNumber)
+      pruned
+    }
+
+    new MergePropertyTest(mkDiffs).checkAllProperties(props)
+  }
 }
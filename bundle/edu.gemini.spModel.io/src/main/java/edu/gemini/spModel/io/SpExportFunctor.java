@@ -3,6 +3,7 @@
 //
 package edu.gemini.spModel.io;
 
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.security.Principal;
 import java.util.Set;
@@ -10,14 +11,20 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPRootNode;
 import edu.gemini.pot.spdb.IDBDatabaseService;
 
 import edu.gemini.pot.spdb.DBAbstractFunctor;
-import edu.gemini.spModel.io.impl.PioSpXmlWriter;
+import edu.gemini.spModel.io.impl.PioSpXmlStreamWriter;
 
 /**
  * Database functor used to create an XML string for a program without
  * requiring the client to perform a series of remote method calls.
+ *
+ * <p>When run in the database's own VM (for example for the nightly XML
+ * backups), the functor may instead be given an output stream to which the
+ * XML is written as it is generated, so that the document is never held in
+ * memory.
  */
 public class SpExportFunctor extends DBAbstractFunctor {
     private static final long serialVersionUID = 1L;
@@ -27,30 +34,50 @@ public class SpExportFunctor extends DBAbstractFunctor {
     private String _xml;
     private String _problem;
 
+    // Not sent over the wire: a functor executed remotely always returns
+    // the XML as a string.
+    private transient OutputStream _out;
+
     /**
      * Constructs an SpExportFunctor with no export control.
      */
     public SpExportFunctor() {
     }
 
+    /**
+     * Constructs an SpExportFunctor that writes the XML to the given stream
+     * rather than returning it as a string, if executed locally.  The stream
+     * is not closed.
+     */
+    public SpExportFunctor(OutputStream out) {
+        _out = out;
+    }
+
     public void execute(IDBDatabaseService database, ISPNode node, Set<Principal> principals) {
-        StringWriter writer = new StringWriter();
-        PioSpXmlWriter outXml = new PioSpXmlWriter(writer);
+        if (!(node instanceof ISPRootNode)) {
+            _problem = "Only programs and nightly records may be exported.";
+            return;
+        }
+
+        final PioSpXmlStreamWriter outXml = new PioSpXmlStreamWriter();
         try {
-            outXml.printDocument(node);
+            if (_out != null) {
+                outXml.write((ISPRootNode) node, _out);
+            } else {
+                final StringWriter writer = new StringWriter();
+                outXml.write((ISPRootNode) node, writer);
+                _xml = writer.toString();
+            }
         } catch (Exception ex) {
             LOG.log(Level.WARNING, "Problem exporting program.", ex);
             _problem = "internal error exporting program, please check database logs";
-            return;
         }
-
-        _problem = outXml.getProblemDescription();
-        _xml = writer.toString();
     }
 
     /**
      * Gets the program document that was exported, assuming the export was
-     * successful, otherwise returns <code>null</code>.
+     * successful and was not written to an output stream, otherwise returns
+     * <code>null</code>.
      */
     public String getXmlProgram() {
         return _xml;
@@ -0,0 +1,132 @@
+package edu.gemini.spModel.io.app;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.memImpl.MemSerializer;
+import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.spModel.io.impl.PioSpBinaryCodec;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+
+/**
+ * Compares the size and encode/decode time of the legacy java.io program
+ * serialization against the binary PIO format, with and without compression,
+ * over the program files (<code>.sp</code> / <code>.pl</code>) in a database
+ * directory.  Optionally converts the files to the binary format.
+ *
+ * <pre>
+ * BinaryFormatBenchmarkApp dbDir [iterations] [outDir]
+ * </pre>
+ */
+public final class BinaryFormatBenchmarkApp {
+
+    private static final FileFilter PROGRAM_FILES = new FileFilter() {
+        @Override public boolean accept(File f) {
+            final String name = f.getName();
+            return f.isFile() && (name.endsWith(".sp") || name.endsWith(".pl"));
+        }
+    };
+
+    private interface Format {
+        String name();
+        byte[] encode(ISPRootNode node) throws Exception;
+        ISPRootNode decode(byte[] bytes) throws Exception;
+    }
+
+    private static final class Totals {
+        final String name;
+        long bytes;
+        long encodeNanos;
+        long decodeNanos;
+
+        Totals(String name) {
+            this.name = name;
+        }
+
+        String format(long baseBytes) {
+            return String.format("%-20s %12d bytes (%5.1f%%)  encode %8d ms  decode %8d ms",
+                    name, bytes, 100.0 * bytes / baseBytes, encodeNanos / 1000000, decodeNanos / 1000000);
+        }
+    }
+
+    private static Format javaFormat() {
+        final MemSerializer ser = new MemSerializer();
+        return new Format() {
+            @Override public String name() { return "java.io"; }
+            @Override public byte[] encode(ISPRootNode node) throws Exception { return ser.store(node); }
+            @Override public ISPRootNode decode(byte[] bytes) throws Exception { return (ISPRootNode) ser.load(bytes); }
+        };
+    }
+
+    private static Format binaryFormat(final ISPFactory fact, final boolean compress) {
+        final PioSpBinaryCodec codec = new PioSpBinaryCodec(compress);
+        return new Format() {
+            @Override public String name() { return compress ? "binary (deflate)" : "binary"; }
+            @Override public byte[] encode(ISPRootNode node) throws Exception { return codec.store(node); }
+            @Override public ISPRootNode decode(byte[] bytes) throws Exception { return codec.load(fact, bytes); }
+        };
+    }
+
+    private static void measure(Format f, Totals t, ISPRootNode node, int iterations) throws Exception {
+        byte[] bytes = null;
+
+        final long time0 = System.nanoTime();
+        for (int i=0; i<iterations; ++i) bytes = f.encode(node);
+        final long time1 = System.nanoTime();
+        for (int i=0; i<iterations; ++i) f.decode(bytes);
+        final long time2 = System.nanoTime();
+
+        t.bytes       += bytes.length;
+        t.encodeNanos += (time1 - time0) / iterations;
+        t.decodeNanos += (time2 - time1) / iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: BinaryFormatBenchmarkApp dbDir [iterations] [outDir]");
+            System.exit(1);
+        }
+
+        final File dbDir     = new File(args[0]);
+        final int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        final File outDir    = (args.length > 2) ? new File(args[2]) : null;
+
+        final File[] files = dbDir.listFiles(PROGRAM_FILES);
+        if (files == null) {
+            System.err.println("Not a directory: " + dbDir);
+            System.exit(1);
+        }
+        Arrays.sort(files);
+
+        final IDBDatabaseService db = DBLocalDatabase.createTransient();
+        final ISPFactory fact       = db.getFactory();
+        final PioSpBinaryCodec conv = new PioSpBinaryCodec(true);
+
+        final Format[] formats = { javaFormat(), binaryFormat(fact, false), binaryFormat(fact, true) };
+        final Totals[] totals  = new Totals[formats.length];
+        for (int i=0; i<formats.length; ++i) totals[i] = new Totals(formats[i].name());
+
+        int count = 0;
+        for (File f : files) {
+            final ISPRootNode node;
+            try {
+                node = conv.load(fact, f);
+            } catch (Exception ex) {
+                System.err.println("Skipping " + f.getName() + ": " + ex);
+                continue;
+            }
+
+            for (int i=0; i<formats.length; ++i) measure(formats[i], totals[i], node, iterations);
+            if (outDir != null) conv.store(node, new File(outDir, f.getName()));
+            ++count;
+        }
+
+        System.out.println(String.format("%d programs, %d iterations each", count, iterations));
+        for (Totals t : totals) System.out.println(t.format(totals[0].bytes));
+
+        db.getDBAdmin().shutdown();
+    }
+}
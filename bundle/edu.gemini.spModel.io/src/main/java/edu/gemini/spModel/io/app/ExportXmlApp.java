@@ -24,7 +24,6 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.security.Principal;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
@@ -172,20 +171,15 @@ public class ExportXmlApp {
                 System.out.println(String.format("Exporting (db %2d) %s to %s", _dbNum, humanReadable, dest));
 
 
-                SpExportFunctor functor = new SpExportFunctor();
-                functor = _db.getQueryRunner(_user).execute(functor, node);
-
-                String msg = functor.getProblem();
-                String xml = functor.getXmlProgram();
-                if (msg != null || xml == null) {
-                    LOG.warning("Error writing " + dest + ": " + msg);
-                    return;
-                }
-
+                // Stream the XML straight to the file rather than building
+                // the whole document in memory.
+                String msg;
                 FileOutputStream fout = new FileOutputStream(dest);
                 BufferedOutputStream bos = new BufferedOutputStream(fout);
                 try {
-                    bos.write(xml.getBytes(Charset.forName("UTF-8")));
+                    SpExportFunctor functor = new SpExportFunctor(bos);
+                    functor = _db.getQueryRunner(_user).execute(functor, node);
+                    msg = functor.getProblem();
                 } finally {
                     try {
                         bos.flush();
@@ -198,6 +192,12 @@ public class ExportXmlApp {
                         LOG.log(Level.SEVERE, "Trouble closing output to " + dest, ex);
                     }
                 }
+
+                if (msg != null) {
+                    LOG.warning("Error writing " + dest + ": " + msg);
+                    if (!dest.delete()) LOG.warning("Could not remove " + dest);
+                    return;
+                }
             } catch (Exception e) {
                 LOG.log(Level.SEVERE, "Export of " + humanReadable + " failed", e);
                 SimpleEmailer.appendLine("Export of " + humanReadable + " failed: " + e);
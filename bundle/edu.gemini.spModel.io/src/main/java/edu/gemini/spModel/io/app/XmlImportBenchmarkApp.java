@@ -0,0 +1,122 @@
+package edu.gemini.spModel.io.app;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.spdb.DBLocalDatabase;
+import edu.gemini.pot.spdb.IDBDatabaseService;
+import edu.gemini.spModel.io.impl.PioSpXmlParser;
+import edu.gemini.spModel.pio.xml.PioXmlUtil;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+
+/**
+ * Compares importing exported program XML files by streaming them through
+ * {@link PioSpXmlParser#parseDocument(File)} against reading each complete
+ * PIO document first and handing it to
+ * {@link PioSpXmlParser#parseDocument(edu.gemini.spModel.pio.PioNode)}.
+ * Reports the throughput of each approach over the <code>.xml</code> files
+ * in a directory along with the peak heap usage while importing them.
+ *
+ * <pre>
+ * XmlImportBenchmarkApp xmlDir [iterations]
+ * </pre>
+ */
+public final class XmlImportBenchmarkApp {
+
+    private static final FileFilter XML_FILES = new FileFilter() {
+        @Override public boolean accept(File f) {
+            return f.isFile() && f.getName().endsWith(".xml");
+        }
+    };
+
+    private interface Import {
+        String name();
+        void parse(PioSpXmlParser parser, File f) throws Exception;
+    }
+
+    private static final Import STREAMING = new Import() {
+        @Override public String name() { return "streaming"; }
+        @Override public void parse(PioSpXmlParser parser, File f) throws Exception {
+            parser.parseDocument(f);
+        }
+    };
+
+    private static final Import DOCUMENT = new Import() {
+        @Override public String name() { return "document"; }
+        @Override public void parse(PioSpXmlParser parser, File f) throws Exception {
+            parser.parseDocument(PioXmlUtil.read(f));
+        }
+    };
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    private static void measure(Import imp, ISPFactory fact, File[] files, long totalBytes, int iterations) throws Exception {
+        final PioSpXmlParser parser = new PioSpXmlParser(fact);
+
+        resetPeakHeap();
+        final long start = System.nanoTime();
+        for (int i=0; i<iterations; ++i) {
+            for (File f : files) imp.parse(parser, f);
+        }
+        final long nanos = System.nanoTime() - start;
+
+        final double seconds = nanos / 1e9;
+        System.out.println(String.format("%-10s %8.1f programs/s  %8.2f MB/s  peak heap %6d MB",
+                imp.name(),
+                files.length * iterations / seconds,
+                totalBytes * iterations / seconds / (1024 * 1024),
+                peakHeap() / (1024 * 1024)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: XmlImportBenchmarkApp xmlDir [iterations]");
+            System.exit(1);
+        }
+
+        final File xmlDir    = new File(args[0]);
+        final int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+
+        final File[] files = xmlDir.listFiles(XML_FILES);
+        if (files == null) {
+            System.err.println("Not a directory: " + xmlDir);
+            System.exit(1);
+        }
+        Arrays.sort(files);
+
+        long totalBytes = 0;
+        for (File f : files) totalBytes += f.length();
+
+        final IDBDatabaseService db = DBLocalDatabase.createTransient();
+        final ISPFactory fact       = db.getFactory();
+
+        System.out.println(String.format("%d programs, %d MB, %d iterations each", files.length, totalBytes / (1024 * 1024), iterations));
+
+        // Warm up both paths once before measuring.
+        for (Import imp : new Import[] { STREAMING, DOCUMENT }) {
+            final PioSpXmlParser parser = new PioSpXmlParser(fact);
+            for (File f : files) imp.parse(parser, f);
+        }
+
+        for (Import imp : new Import[] { STREAMING, DOCUMENT }) measure(imp, fact, files, totalBytes, iterations);
+
+        db.getDBAdmin().shutdown();
+    }
+}
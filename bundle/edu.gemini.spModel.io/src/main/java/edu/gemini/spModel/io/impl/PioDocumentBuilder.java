@@ -21,13 +21,22 @@ public final class PioDocumentBuilder {
     private static final Logger LOG = Logger.getLogger(PioDocumentBuilder.class.getName());
 
     public Document toDocument(ISPProgram program)  {
+        return toDocument(program, true);
+    }
+
+    /**
+     * Creates a document for the program, optionally retaining the program
+     * password.  The password should only be kept when the document is used
+     * to store the program rather than export it.
+     */
+    public Document toDocument(ISPProgram program, boolean stripPassword)  {
         PioFactory factory = new PioXmlFactory();
         Document doc = factory.createDocument();
 
         _addContainer(factory, doc, program, doc);
 
         // Don't want to write the password, if present.
-        _stripPassword(doc);
+        if (stripPassword) _stripPassword(doc);
 
         doc.addContainer(VersionVectorPio.toContainer(factory, program.getVersions()));
 
@@ -78,6 +87,22 @@ public final class PioDocumentBuilder {
     // Add a container element. The node should be the one corresponding to the data object.
     // The new element will be added under the given parent element.
     private void _addContainer(PioFactory factory, Document doc, ISPNode node, ContainerParent parent) {
+        Container container = toContainer(factory, node);
+
+        // Add elements for the user objects
+        //_addUserObjects(factory, node, container);
+
+        parent.addContainer(container);
+
+        // Add elements for the sub-nodes
+        _addSubNodes(factory, doc, node, container);
+    }
+
+    /**
+     * Creates the container for a single node, holding the param sets for
+     * the node's data object and conflicts but none of the node's children.
+     */
+    Container toContainer(PioFactory factory, ISPNode node) {
         ISPDataObject dataObject = node.getDataObject();
 
         Container container = factory.createContainer("", "", "");
@@ -103,13 +128,7 @@ public final class PioDocumentBuilder {
             }
         }
 
-        // Add elements for the user objects
-        //_addUserObjects(factory, node, container);
-
-        parent.addContainer(container);
-
-        // Add elements for the sub-nodes
-        _addSubNodes(factory, doc, node, container);
+        return container;
     }
 
 
@@ -168,13 +187,20 @@ public final class PioDocumentBuilder {
     // Removes the science program password.
     private void _stripPassword(Document doc) {
         List containerList = doc.getContainers();
-        PioPath path = new PioPath("Science Program/programPassword");
         for (Iterator it=containerList.iterator(); it.hasNext(); ) {
-            Container container = (Container) it.next();
-            PioNode node = container.lookupNode(path);
-            if (node == null) continue;
-            PioNodeParent parent = node.getParent();
-            parent.removeChild(node);
+            stripPassword((Container) it.next());
         }
     }
+
+    /**
+     * Removes the science program password from a program container, if
+     * present.
+     */
+    static void stripPassword(Container container) {
+        PioPath path = new PioPath("Science Program/programPassword");
+        PioNode node = container.lookupNode(path);
+        if (node == null) return;
+        PioNodeParent parent = node.getParent();
+        parent.removeChild(node);
+    }
 }
@@ -0,0 +1,117 @@
+package edu.gemini.spModel.io.impl;
+
+import edu.gemini.pot.sp.ISPFactory;
+import edu.gemini.pot.sp.ISPNightlyRecord;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.pot.sp.memImpl.MemSerializer;
+import edu.gemini.spModel.pio.Document;
+import edu.gemini.spModel.pio.binary.PioBinaryUtil;
+import edu.gemini.spModel.pio.xml.PioXmlFactory;
+
+import java.io.*;
+
+/**
+ * Reads and writes programs and nightly records in the compact binary PIO
+ * format.  Programs are converted to the same PIO document used for XML
+ * export (node keys and kinds, data objects as param sets, conflicts and the
+ * version map) and written with {@link PioBinaryUtil}.  Reading goes through
+ * the {@link PioSpXmlParser}, so the usual document migrations are applied to
+ * programs written by older versions of the software.
+ *
+ * <p>Files written with the legacy java.io serialization format are still
+ * readable via {@link #load(ISPFactory, File)}, which sniffs the format.  This
+ * provides the migration path for existing databases: load with
+ * <code>load</code>, store with <code>store</code>.
+ */
+public final class PioSpBinaryCodec {
+
+    // java.io.ObjectOutputStream stream magic number
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    private final boolean _compress;
+
+    /**
+     * @param compress whether to deflate the encoded documents
+     */
+    public PioSpBinaryCodec(boolean compress) {
+        _compress = compress;
+    }
+
+    private static Document toDocument(ISPRootNode node) {
+        final PioDocumentBuilder builder = new PioDocumentBuilder();
+        if (node instanceof ISPProgram) {
+            return builder.toDocument((ISPProgram) node, false);
+        } else if (node instanceof ISPNightlyRecord) {
+            return builder.toDocument((ISPNightlyRecord) node);
+        } else {
+            throw new IllegalArgumentException("Unexpected root node: " + node.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes the given program or nightly record to the stream, holding the
+     * program read lock while the document is created.  The stream is not
+     * closed.
+     */
+    public void store(ISPRootNode node, OutputStream os) throws IOException {
+        final Document doc;
+        node.getProgramReadLock();
+        try {
+            doc = toDocument(node);
+        } finally {
+            node.returnProgramReadLock();
+        }
+        PioBinaryUtil.write(doc, os, _compress);
+    }
+
+    public byte[] store(ISPRootNode node) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        store(node, baos);
+        return baos.toByteArray();
+    }
+
+    public void store(ISPRootNode node, File file) throws IOException {
+        final OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            store(node, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Reads a program or nightly record written by {@link #store}, creating
+     * the nodes with the given factory.
+     */
+    public ISPRootNode load(ISPFactory factory, InputStream is) throws Exception {
+        final Document doc = PioBinaryUtil.read(is, new PioXmlFactory());
+        return new PioSpXmlParser(factory).parseDocument(doc);
+    }
+
+    public ISPRootNode load(ISPFactory factory, byte[] bytes) throws Exception {
+        return load(factory, new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Reads a program or nightly record from the given file, which may be in
+     * either the binary PIO format or the legacy java.io serialization
+     * format.
+     */
+    public ISPRootNode load(ISPFactory factory, File file) throws Exception {
+        final InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            is.mark(2);
+            final int magic = (is.read() << 8) | is.read();
+            is.reset();
+
+            if (magic == JAVA_SERIALIZATION_MAGIC) {
+                return (ISPRootNode) new MemSerializer().load(is);
+            } else {
+                return load(factory, is);
+            }
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -23,14 +23,27 @@ import edu.gemini.spModel.obs.SPObservation;
 import edu.gemini.spModel.obscomp.SPGroup;
 import edu.gemini.spModel.obscomp.SPNote;
 import edu.gemini.spModel.pio.*;
+import edu.gemini.spModel.pio.xml.PioXmlFactory;
 import edu.gemini.spModel.pio.xml.PioXmlUtil;
 import edu.gemini.spModel.seqcomp.InstrumentSequenceSync;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
+/**
+ * Creates programs and nightly records from their SP XML.
+ *
+ * <p>Documents read from a file or reader are parsed as they stream in.  For
+ * a program that is up to date, nodes are created as their XML is read and
+ * PIO containers are only built for one observation at a time, so the
+ * complete document is never held in memory.  Older programs that require
+ * document-wide migration are read in full and then parsed.
+ */
 public final class PioSpXmlParser {
 
     private static final Logger LOG = Logger.getLogger(PioSpXmlParser.class.getName());
@@ -181,11 +194,21 @@ public final class PioSpXmlParser {
     }
 
     public ISPRootNode parseDocument(File file) throws Exception {
-        return parseDocument(PioXmlUtil.read(file));
+        final Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            return parseDocument(reader);
+        } finally {
+            reader.close();
+        }
     }
 
     public ISPRootNode parseDocument(Reader reader) throws Exception {
-        return parseDocument(PioXmlUtil.read(reader));
+        final XMLStreamReader xml = PioXmlUtil.createStreamReader(reader);
+        try {
+            return _streamDocument(xml);
+        } finally {
+            xml.close();
+        }
     }
 
     public ISPRootNode parseDocument(PioNode doc) throws Exception {
@@ -242,6 +265,77 @@ public final class PioSpXmlParser {
             }
         }
 
+        return _finishDocument(root, p1Container, versions);
+    }
+
+    // Parse a document as it is read.  An up-to-date program is built node
+    // by node while anything else at the top level is small enough to read
+    // completely.  If the program needs document-wide migration, give up on
+    // streaming and read the entire document instead.
+    private ISPRootNode _streamDocument(XMLStreamReader xml) throws Exception {
+        if (!_nextChildElement(xml)) throw new PioParseException("Missing document element");
+
+        // Top-level containers that have been read completely so far.
+        final List<Container> read = new ArrayList<Container>();
+
+        Container p1Container = null;
+        scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>> versions = JavaVersionMapOps.emptyVersionMap();
+        ISPRootNode root = null;
+        Document doc = null;
+
+        while (_nextChildElement(xml)) {
+            if (doc != null) {
+                doc.addContainer((Container) PioXmlUtil.readElement(xml));
+                continue;
+            }
+
+            final Container shell = (Container) PioXmlUtil.readStartElement(xml);
+            if (SpIOTags.PROGRAM.equalsIgnoreCase(shell.getKind()) && !To2016A.isPre2016A(shell)) {
+                root = _streamProgram(xml, shell);
+                continue;
+            }
+
+            final Container c = (Container) PioXmlUtil.readElement(xml);
+            final String kind = c.getKind();
+            if (SpIOTags.PROGRAM.equalsIgnoreCase(kind)) {
+                // An old program to be migrated.
+                doc = new PioXmlFactory().createDocument();
+                for (Container r : read) doc.addContainer(r);
+                doc.addContainer(c);
+            } else if (SpIOTags.PHASE1.equalsIgnoreCase(kind)) {
+                p1Container = c;
+            } else if (VersionVectorPio.kind().equalsIgnoreCase(kind)) {
+                versions = VersionVectorPio.toVersions(c);
+            } else if (kind.equals(SpIOTags.NIGHTLY_PLAN)) {
+                root = _makeNightlyRecordNode(c, c.getName(), key(c));
+            } else {
+                throw new RuntimeException(String.format("Could not parse top-level container '%s'", kind));
+            }
+            read.add(c);
+        }
+
+        return (doc == null) ? _finishDocument(root, p1Container, versions) : _parseDocument(doc);
+    }
+
+    // Advances to the start of the next child of the current element,
+    // returning false if the current element ends first.
+    private static boolean _nextChildElement(XMLStreamReader xml) throws XMLStreamException {
+        while (xml.hasNext()) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    return true;
+                case XMLStreamConstants.END_ELEMENT:
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    // Adds the program's other top-level information once all its nodes
+    // have been created.
+    private ISPRootNode _finishDocument(ISPRootNode root, Container p1Container, scala.collection.immutable.Map<SPNodeKey, VersionVector<LifespanId, Integer>> versions) throws Exception {
         if (!(root instanceof ISPProgram)) return root;
         final ISPProgram prog = (ISPProgram) root;
         if (p1Container != null) {
@@ -342,7 +436,35 @@ public final class PioSpXmlParser {
         // Map the child containers into ISPNode.
         final List<ISPNode> children = parseChildren(program, container);
 
-        // Now put together the subtree rooted at this node.
+        return _buildContainerNode(program, container, children);
+    }
+
+    // Parse the container element at which the reader is positioned, reading
+    // it a child at a time.  Param sets are collected in the given container,
+    // which initially holds just the element's attributes.  Observations are
+    // migrated as a whole so they are read completely and then parsed.
+    private ISPNode _streamContainer(ISPProgram program, XMLStreamReader xml, Container shell) throws Exception {
+        if (SpIOTags.OBSERVATION.equals(shell.getKind())) {
+            return _parseContainer(program, (Container) PioXmlUtil.readElement(xml));
+        }
+
+        final List<ISPNode> children = new ArrayList<ISPNode>();
+        while (_nextChildElement(xml)) {
+            final PioNode child = PioXmlUtil.readStartElement(xml);
+            if (child instanceof Container) {
+                final ISPNode n = _streamContainer(program, xml, (Container) child);
+                if (n != null) children.add(n);
+            } else {
+                shell.addParamSet((ParamSet) PioXmlUtil.readElement(xml));
+            }
+        }
+
+        return _buildContainerNode(program, shell, children);
+    }
+
+    // Put together the subtree rooted at the container's node, given the
+    // nodes for its child containers.
+    private ISPNode _buildContainerNode(ISPProgram program, Container container, List<ISPNode> children) throws Exception {
         final ISPNode node = _makeContainerNode(program, container, children);
         if (node == null) return null;  // no longer using this node
 
@@ -449,6 +571,42 @@ public final class PioSpXmlParser {
         return p;
     }
 
+    // Create and return a program node for the container element at which the
+    // reader is positioned, creating its descendants as they are read.  The
+    // given container initially holds just the element's attributes.
+    private ISPProgram _streamProgram(XMLStreamReader xml, Container shell) throws Exception {
+        final String progIdStr = shell.getName();
+        final SPProgramID progId;
+        if (progIdStr != null && progIdStr.length() != 0) {
+            progId = SPProgramID.toProgramID(progIdStr);
+        } else {
+            progId = null;
+        }
+        final ISPProgram p = _factory.createProgram(key(shell), progId);
+
+        // The program's own param sets come before its child containers.
+        boolean paramSetsAdded = false;
+        final List<ISPNode> children = new ArrayList<ISPNode>();
+        while (_nextChildElement(xml)) {
+            final PioNode child = PioXmlUtil.readStartElement(xml);
+            if (child instanceof Container) {
+                if (!paramSetsAdded) {
+                    addParamSets(p, shell);
+                    paramSetsAdded = true;
+                }
+                final ISPNode n = _streamContainer(p, xml, (Container) child);
+                if (n != null) children.add(n);
+            } else if (!paramSetsAdded) {
+                shell.addParamSet((ParamSet) PioXmlUtil.readElement(xml));
+            } else {
+                throw new PioParseException("Program param set follows its child containers");
+            }
+        }
+        if (!paramSetsAdded) addParamSets(p, shell);
+        p.setChildren(children);
+        return p;
+    }
+
     // Create and return a nightly plan node with the given id and key.
     // Note that the caller has to add it to the database at some point.
     private ISPNightlyRecord _makeNightlyRecordNode(Container c, String progIdStr, SPNodeKey nodeKey) throws Exception {
@@ -0,0 +1,193 @@
+package edu.gemini.spModel.io.impl;
+
+import edu.gemini.pot.sp.ISPContainerNode;
+import edu.gemini.pot.sp.ISPNode;
+import edu.gemini.pot.sp.ISPProgram;
+import edu.gemini.pot.sp.ISPRootNode;
+import edu.gemini.spModel.pio.Container;
+import edu.gemini.spModel.pio.PioFactory;
+import edu.gemini.spModel.pio.xml.PioXmlFactory;
+import edu.gemini.spModel.pio.xml.PioXmlUtil;
+import org.dom4j.Attribute;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes the SP XML for a program or nightly record directly to a stream.
+ * The output is the same document that {@link PioSpXmlWriter} produces, but
+ * it is written node by node with StAX rather than by first building a
+ * {@link edu.gemini.spModel.pio.Document} for the whole program and then
+ * formatting it with dom4j.  Only the PIO container for the node currently
+ * being written is held in memory, so exporting a large program costs little
+ * more than the output buffer.
+ *
+ * <p>The program read lock is held while the document is written so that
+ * the export is a consistent snapshot.
+ */
+public final class PioSpXmlStreamWriter {
+    private static final String ENCODING = "UTF-8";
+    private static final String INDENT   = "  ";
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final boolean _stripPassword;
+
+    /**
+     * Creates a writer that omits the program password, as is appropriate
+     * for exports.
+     */
+    public PioSpXmlStreamWriter() {
+        this(true);
+    }
+
+    public PioSpXmlStreamWriter(boolean stripPassword) {
+        _stripPassword = stripPassword;
+    }
+
+    /**
+     * Writes the document for the given program or nightly record to the
+     * output stream in UTF-8.  The stream is flushed but not closed.
+     */
+    public void write(ISPRootNode root, OutputStream out) throws XMLStreamException {
+        final XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(out, ENCODING);
+        try {
+            _write(root, xml);
+        } finally {
+            xml.close();
+        }
+    }
+
+    /**
+     * Writes the document for the given program or nightly record to the
+     * writer.  The writer is flushed but not closed.
+     */
+    public void write(ISPRootNode root, Writer out) throws XMLStreamException {
+        final XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(out);
+        try {
+            _write(root, xml);
+        } finally {
+            xml.close();
+        }
+    }
+
+    private void _write(ISPRootNode root, XMLStreamWriter xml) throws XMLStreamException {
+        final PioDocumentBuilder builder = new PioDocumentBuilder();
+        final PioFactory factory = new PioXmlFactory();
+
+        root.getProgramReadLock();
+        try {
+            xml.writeStartDocument(ENCODING, "1.0");
+            _newline(xml, 0);
+            xml.writeDTD("<!DOCTYPE document PUBLIC \"" + PioXmlFactory.DEFAULT_PUBLIC_ID + "\" \"" +
+                    PioXmlFactory.DEFAULT_SYSTEM_ID + "\">");
+            _newline(xml, 0);
+            xml.writeStartElement("document");
+
+            _writeNode(builder, factory, root, xml, 1);
+
+            if (root instanceof ISPProgram) {
+                final Container vv = VersionVectorPio.toContainer(factory, ((ISPProgram) root).getVersions());
+                _writeElement(PioXmlUtil.toElement(vv), xml, 1);
+            }
+
+            _newline(xml, 0);
+            xml.writeEndElement();
+            _newline(xml, 0);
+            xml.writeEndDocument();
+            xml.flush();
+        } finally {
+            root.returnProgramReadLock();
+        }
+    }
+
+    // Writes the container for the node, with the containers for all its
+    // descendants nested inside.
+    private void _writeNode(PioDocumentBuilder builder, PioFactory factory, ISPNode node, XMLStreamWriter xml, int depth) throws XMLStreamException {
+        final Container container = builder.toContainer(factory, node);
+        if (_stripPassword && (node instanceof ISPProgram)) {
+            PioDocumentBuilder.stripPassword(container);
+        }
+
+        final Element element = PioXmlUtil.toElement(container);
+        _newline(xml, depth);
+        xml.writeStartElement(element.getQualifiedName());
+        _writeAttributes(element, xml);
+        for (Iterator<?> it = element.elementIterator(); it.hasNext(); ) {
+            _writeElement((Element) it.next(), xml, depth + 1);
+        }
+
+        if (node instanceof ISPContainerNode) {
+            final List<? extends ISPNode> children = ((ISPContainerNode) node).getChildren();
+            if (children != null) {
+                for (ISPNode child : children) {
+                    _writeNode(builder, factory, child, xml, depth + 1);
+                }
+            }
+        }
+
+        _newline(xml, depth);
+        xml.writeEndElement();
+    }
+
+    // Writes a complete dom4j element.  Elements with child elements are
+    // indented, elements with only text are written on a single line.
+    private static void _writeElement(Element element, XMLStreamWriter xml, int depth) throws XMLStreamException {
+        _newline(xml, depth);
+        if (element.nodeCount() == 0) {
+            xml.writeEmptyElement(element.getQualifiedName());
+            _writeAttributes(element, xml);
+            return;
+        }
+
+        xml.writeStartElement(element.getQualifiedName());
+        _writeAttributes(element, xml);
+
+        boolean hasElements = false;
+        for (Iterator<?> it = element.nodeIterator(); it.hasNext(); ) {
+            final Node n = (Node) it.next();
+            switch (n.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    hasElements = true;
+                    _writeElement((Element) n, xml, depth + 1);
+                    break;
+                case Node.TEXT_NODE:
+                    // Drop the whitespace between child elements.
+                    if (!element.elements().isEmpty() && n.getText().trim().isEmpty()) break;
+                    xml.writeCharacters(n.getText());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    xml.writeCData(n.getText());
+                    break;
+                case Node.COMMENT_NODE:
+                    xml.writeComment(n.getText());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (hasElements) _newline(xml, depth);
+        xml.writeEndElement();
+    }
+
+    private static void _writeAttributes(Element element, XMLStreamWriter xml) throws XMLStreamException {
+        for (Iterator<?> it = element.attributeIterator(); it.hasNext(); ) {
+            final Attribute a = (Attribute) it.next();
+            xml.writeAttribute(a.getQualifiedName(), a.getValue());
+        }
+    }
+
+    private static void _newline(XMLStreamWriter xml, int depth) throws XMLStreamException {
+        final StringBuilder buf = new StringBuilder("\n");
+        for (int i=0; i<depth; ++i) buf.append(INDENT);
+        xml.writeCharacters(buf.toString());
+    }
+}
@@ -18,9 +18,11 @@ import java.util.logging.Level;
 import edu.gemini.pot.sp.ISPNightlyRecord;
 import edu.gemini.pot.sp.ISPProgram;
 import edu.gemini.pot.sp.ISPNode;
-import edu.gemini.spModel.pio.Document;
-import edu.gemini.spModel.pio.xml.PioXmlUtil;
 
+/**
+ * Writes the SP XML for a program or nightly record, streaming it with a
+ * {@link PioSpXmlStreamWriter}.
+ */
 public class PioSpXmlWriter {
     private static final Logger LOG = Logger.getLogger(PioSpXmlWriter.class.getName());
 
@@ -78,10 +80,8 @@ public class PioSpXmlWriter {
      * Write a program document
      */
     public boolean printDocument(ISPProgram prog) {
-        Document doc = new PioDocumentBuilder().toDocument(prog);
-
         try {
-            PioXmlUtil.write(doc, _writer);
+            new PioSpXmlStreamWriter().write(prog, _writer);
             _writer.close();
         } catch (Exception ex) {
             LOG.log(Level.WARNING, "problem writting science program", ex);
@@ -95,10 +95,8 @@ public class PioSpXmlWriter {
      * Write a program document
      */
     public boolean printDocument(ISPNightlyRecord record) {
-        Document doc = new PioDocumentBuilder().toDocument(record);
-
         try {
-            PioXmlUtil.write(doc, _writer);
+            new PioSpXmlStreamWriter().write(record, _writer);
             _writer.close();
         } catch (Exception ex) {
             LOG.log(Level.WARNING, "problem writing the nightly record", ex);
@@ -0,0 +1,61 @@
+package edu.gemini.spModel.io.impl
+
+import java.io.{StringReader, StringWriter}
+
+import edu.gemini.pot.sp.{ISPProgram, SPComponentType}
+import edu.gemini.spModel.io.impl.migration.MigrationTest
+import edu.gemini.spModel.obslog.ObsExecLog
+import edu.gemini.spModel.pio.Container
+import edu.gemini.spModel.pio.xml.PioXmlUtil
+import org.junit.Assert._
+import org.junit.Test
+
+import scala.collection.JavaConverters._
+
+// Round tripping a program through the binary format should produce the same
+// program as round tripping it through XML.
+class PioSpBinaryCodecTest extends MigrationTest {
+
+  private def programXml(p: ISPProgram): String = {
+    val c = new PioDocumentBuilder().toDocument(p).getContainers.get(0).asInstanceOf[Container]
+    PioXmlUtil.toElement(c).asXML
+  }
+
+  // Make sure the fixture exercises sequences, targets and the obs log.
+  private def checkFixture(p: ISPProgram): Unit = {
+    val obs = p.getAllObservations.asScala
+    assertTrue(obs.exists(o => Option(o.getSeqComponent).exists(!_.getSeqComponents.isEmpty)))
+    assertTrue(obs.exists(_.getObsComponents.asScala.exists(_.getType == SPComponentType.TELESCOPE_TARGETENV)))
+    assertTrue(obs.exists(o => Option(o.getObsExecLog).exists(!_.getDataObject.asInstanceOf[ObsExecLog].isEmpty)))
+  }
+
+  private def roundTrip(programName: String): Unit =
+    withTestProgram(programName, { (odb, p0) =>
+      checkFixture(p0)
+
+      // The XML path
+      val sw = new StringWriter()
+      assertTrue(new PioSpXmlWriter(sw).printDocument(p0))
+      val viaXml = new PioSpXmlParser(odb.getFactory).parseDocument(new StringReader(sw.toString))
+
+      List(false, true).foreach { compress =>
+        val codec = new PioSpBinaryCodec(compress)
+        (viaXml, codec.load(odb.getFactory, codec.store(p0))) match {
+          case (p1: ISPProgram, p2: ISPProgram) =>
+            assertEquals(programXml(p0), programXml(p2))
+            assertEquals(programXml(p1), programXml(p2))
+            assertEquals(p0.getVersions, p2.getVersions)
+          case _                                =>
+            fail("expecting science programs")
+        }
+      }
+    })
+
+  @Test
+  def testObsLogProgram(): Unit =
+    roundTrip("/edu/gemini/spModel/io/impl/migration/to2016A/datasetMigration.xml")
+
+  @Test
+  def testTemplateProgram(): Unit =
+    roundTrip("/edu/gemini/spModel/io/impl/migration/to2015A/GS-2014A-Q-999.xml")
+}
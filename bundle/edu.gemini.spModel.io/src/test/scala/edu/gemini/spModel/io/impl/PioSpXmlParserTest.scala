@@ -0,0 +1,37 @@
+package edu.gemini.spModel.io.impl
+
+import java.io.{StringReader, StringWriter}
+
+import edu.gemini.pot.sp.ISPProgram
+import edu.gemini.spModel.io.impl.migration.MigrationTest
+import edu.gemini.spModel.pio.Container
+import edu.gemini.spModel.pio.xml.PioXmlUtil
+import org.junit.Assert._
+import org.junit.Test
+
+// Streaming a current program should produce the same nodes as parsing it
+// from a complete PIO document.
+class PioSpXmlParserTest extends MigrationTest {
+
+  private def programXml(p: ISPProgram): String = {
+    val c = new PioDocumentBuilder().toDocument(p).getContainers.get(0).asInstanceOf[Container]
+    PioXmlUtil.toElement(c).asXML
+  }
+
+  @Test
+  def testStreamingMatchesDocument(): Unit =
+    withTestProgram("/edu/gemini/spModel/io/impl/migration/to2016A/GN-2016A-Q-1.xml", { (odb, p0) =>
+      val sw = new StringWriter()
+      new PioSpXmlWriter(sw).printDocument(p0)
+      val xml = sw.toString
+
+      val parser = new PioSpXmlParser(odb.getFactory)
+      (parser.parseDocument(PioXmlUtil.read(xml)), parser.parseDocument(new StringReader(xml))) match {
+        case (p1: ISPProgram, p2: ISPProgram) =>
+          assertEquals(programXml(p0), programXml(p2))
+          assertEquals(programXml(p1), programXml(p2))
+        case _                                =>
+          fail("expecting science programs")
+      }
+    })
+}
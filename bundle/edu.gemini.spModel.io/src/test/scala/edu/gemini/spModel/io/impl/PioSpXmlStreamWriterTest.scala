@@ -0,0 +1,31 @@
+package edu.gemini.spModel.io.impl
+
+import java.io.{ByteArrayOutputStream, InputStreamReader, ByteArrayInputStream}
+
+import edu.gemini.spModel.io.impl.migration.MigrationTest
+import edu.gemini.spModel.pio.xml.PioXmlUtil
+import org.junit.Assert._
+import org.junit.Test
+
+// The streamed document should be the same one that is built in memory.
+class PioSpXmlStreamWriterTest extends MigrationTest {
+
+  private def checkSameDocument(programName: String): Unit =
+    withTestProgram(programName, { (_, p) =>
+      val expected = PioXmlUtil.toElement(new PioDocumentBuilder().toDocument(p)).asXML
+
+      val bos = new ByteArrayOutputStream()
+      new PioSpXmlStreamWriter().write(p, bos)
+      val streamed = PioXmlUtil.read(new InputStreamReader(new ByteArrayInputStream(bos.toByteArray), "UTF-8"))
+
+      assertEquals(expected, PioXmlUtil.toElement(streamed).asXML)
+    })
+
+  @Test
+  def testTemplates(): Unit =
+    checkSameDocument("/edu/gemini/spModel/io/impl/migration/to2015B/GS-2015B-T-1.xml")
+
+  @Test
+  def testObservations(): Unit =
+    checkSameDocument("/edu/gemini/spModel/io/impl/migration/to2016A/GN-2016A-Q-1.xml")
+}
@@ -0,0 +1,362 @@
+package edu.gemini.spModel.pio.binary;
+
+import edu.gemini.spModel.pio.*;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Utility class for reading and writing a compact binary representation of
+ * PIO documents.  It is the binary counterpart of
+ * {@link edu.gemini.spModel.pio.xml.PioXmlUtil}: the same document, container,
+ * param set and param tree is written, but as tagged records with variable
+ * length integers and an inline string table so that the many repeated
+ * names, kinds and values are written only once.
+ *
+ * <p>A stream starts with a magic number, the format version and a flags
+ * byte indicating whether the remainder is deflate compressed.  Readers
+ * reject versions newer than {@link #FORMAT_VERSION}, so the layout may be
+ * changed in the future by bumping the version and keeping a reader for the
+ * old one.
+ */
+public final class PioBinaryUtil {
+
+    /** Identifies a binary PIO stream ("PIOB"). */
+    public static final int MAGIC = 0x50494f42;
+
+    /** The current version of the binary layout. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_COMPRESSED = 0x01;
+
+    // Node tags.
+    private static final int TAG_DOCUMENT  = 1;
+    private static final int TAG_CONTAINER = 2;
+    private static final int TAG_PARAMSET  = 3;
+    private static final int TAG_PARAM     = 4;
+
+    // String references.  A string is written either as NULL_STRING, as a new
+    // string (which, if not too long, is added to the table), or as a
+    // reference to a previously written string.
+    private static final int NULL_STRING  = 0;
+    private static final int NEW_STRING   = 1;
+    private static final int STRING_INDEX = 2;
+
+    // Strings longer than this aren't interned since they are unlikely to
+    // repeat and would just bloat the table.
+    private static final int MAX_INTERNED_LENGTH = 128;
+
+    // ParamSet flags.
+    private static final int PS_NOT_EDITABLE = 0x01;
+    private static final int PS_NOT_PUBLIC   = 0x02;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private PioBinaryUtil() {
+        // defeat instantiation
+    }
+
+    /**
+     * Writes the given document to the stream.  The stream is flushed but not
+     * closed.
+     *
+     * @param compress whether to deflate the encoded document
+     */
+    public static void write(Document doc, OutputStream os, boolean compress) throws IOException {
+        final DataOutputStream header = new DataOutputStream(os);
+        header.writeInt(MAGIC);
+        header.writeByte(FORMAT_VERSION);
+        header.writeByte(compress ? FLAG_COMPRESSED : 0);
+        header.flush();
+
+        if (compress) {
+            final DeflaterOutputStream dos = new DeflaterOutputStream(os, new Deflater(Deflater.BEST_SPEED), 64 * 1024);
+            final Encoder w = new Encoder(new BufferedOutputStream(dos, 64 * 1024));
+            w.writeNode(doc);
+            w.out.flush();
+            dos.finish();
+        } else {
+            final Encoder w = new Encoder(new BufferedOutputStream(os, 64 * 1024));
+            w.writeNode(doc);
+            w.out.flush();
+        }
+        os.flush();
+    }
+
+    public static byte[] toBytes(Document doc, boolean compress) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        write(doc, baos, compress);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Reads a document from the stream, creating the nodes with the given
+     * factory.  The stream is not closed.
+     *
+     * @throws PioParseException if the stream is not a binary PIO document or
+     * is of an unsupported version
+     */
+    public static Document read(InputStream is, PioFactory factory) throws IOException, PioParseException {
+        final DataInputStream header = new DataInputStream(is);
+        if (header.readInt() != MAGIC) throw new PioParseException("Not a binary PIO document");
+
+        final int version = header.readUnsignedByte();
+        if (version > FORMAT_VERSION) {
+            throw new PioParseException("Unsupported binary PIO format version: " + version);
+        }
+
+        final int flags = header.readUnsignedByte();
+        final InputStream body = ((flags & FLAG_COMPRESSED) != 0) ? new InflaterInputStream(is) : is;
+        final Decoder r = new Decoder(new BufferedInputStream(body, 64 * 1024), factory);
+
+        final PioNode node = r.readNode();
+        if (!(node instanceof Document)) throw new PioParseException("Expected a document");
+        return (Document) node;
+    }
+
+    public static Document fromBytes(byte[] bytes, PioFactory factory) throws IOException, PioParseException {
+        return read(new ByteArrayInputStream(bytes), factory);
+    }
+
+    private static final class Encoder {
+        final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        Encoder(OutputStream os) {
+            out = new DataOutputStream(os);
+        }
+
+        void writeVarInt(int i) throws IOException {
+            while ((i & ~0x7F) != 0) {
+                out.writeByte((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            out.writeByte(i);
+        }
+
+        // Zig-zag encoding so that small negative numbers (-1 is the
+        // common "unset" sequence) are short.
+        void writeSignedVarInt(int i) throws IOException {
+            writeVarInt((i << 1) ^ (i >> 31));
+        }
+
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(NULL_STRING);
+                return;
+            }
+
+            final Integer index = strings.get(s);
+            if (index != null) {
+                writeVarInt(STRING_INDEX + index);
+                return;
+            }
+
+            final byte[] bs = s.getBytes(UTF8);
+            writeVarInt(NEW_STRING);
+            writeVarInt(bs.length);
+            out.write(bs);
+            if (s.length() <= MAX_INTERNED_LENGTH) strings.put(s, strings.size());
+        }
+
+        void writeChildren(PioNodeParent parent) throws IOException {
+            final List<?> children = parent.getChildren();
+            writeVarInt(children.size());
+            for (Object child : children) writeNode((PioNode) child);
+        }
+
+        void writeNode(PioNode node) throws IOException {
+            if (node instanceof Container) {
+                final Container c = (Container) node;
+                final Version v   = c.getVersion();
+                writeVarInt(TAG_CONTAINER);
+                writeString(c.getKind());
+                writeString(c.getType());
+                writeString(c.getSubtype());
+                writeString(c.getName());
+                writeString((v == null) ? null : v.toString());
+                writeString(c.getKey());
+                writeSignedVarInt(c.getSequence());
+                writeChildren(c);
+            } else if (node instanceof ParamSet) {
+                final ParamSet ps = (ParamSet) node;
+                int flags = 0;
+                if (!ps.isEditable())     flags |= PS_NOT_EDITABLE;
+                if (!ps.isPublicAccess()) flags |= PS_NOT_PUBLIC;
+                writeVarInt(TAG_PARAMSET);
+                writeString(ps.getName());
+                writeString(ps.getKind());
+                writeString(ps.getId());
+                writeString(ps.getReferenceId());
+                writeVarInt(flags);
+                writeSignedVarInt(ps.getSequence());
+                writeChildren(ps);
+            } else if (node instanceof Param) {
+                final Param p = (Param) node;
+                final List<String> values = p.getValues();
+                writeVarInt(TAG_PARAM);
+                writeString(p.getName());
+                writeString(p.getUnits());
+                writeVarInt(values.size());
+                for (String value : values) writeString(value);
+            } else if (node instanceof Document) {
+                writeVarInt(TAG_DOCUMENT);
+                writeChildren((Document) node);
+            } else {
+                throw new IllegalArgumentException("Unexpected PIO node: " + node.getClass().getName());
+            }
+        }
+    }
+
+    private static final class Decoder {
+        private final DataInputStream in;
+        private final PioFactory factory;
+        private final List<String> strings = new ArrayList<String>();
+
+        Decoder(InputStream is, PioFactory factory) {
+            this.in      = new DataInputStream(is);
+            this.factory = factory;
+        }
+
+        int readVarInt() throws IOException {
+            int res   = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 28) throw new IOException("Malformed variable length integer");
+                b = in.readUnsignedByte();
+                res |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return res;
+        }
+
+        int readSignedVarInt() throws IOException {
+            final int i = readVarInt();
+            return (i >>> 1) ^ -(i & 1);
+        }
+
+        String readString() throws IOException {
+            final int ref = readVarInt();
+            switch (ref) {
+                case NULL_STRING:
+                    return null;
+                case NEW_STRING:
+                    final byte[] bs = new byte[readVarInt()];
+                    in.readFully(bs);
+                    final String s = new String(bs, UTF8);
+                    if (s.length() <= MAX_INTERNED_LENGTH) strings.add(s);
+                    return s;
+                default:
+                    final int index = ref - STRING_INDEX;
+                    if (index >= strings.size()) throw new IOException("Bad string reference: " + index);
+                    return strings.get(index);
+            }
+        }
+
+        PioNode readNode() throws IOException, PioParseException {
+            final int tag = readVarInt();
+            switch (tag) {
+                case TAG_DOCUMENT:    return readDocument();
+                case TAG_CONTAINER:   return readContainer();
+                case TAG_PARAMSET:    return readParamSet();
+                case TAG_PARAM:       return readParam();
+                default:
+                    throw new PioParseException("Unexpected node tag: " + tag);
+            }
+        }
+
+        private Document readDocument() throws IOException, PioParseException {
+            final Document doc = factory.createDocument();
+            final int count = readVarInt();
+            for (int i=0; i<count; ++i) {
+                final PioNode child = readNode();
+                if (!(child instanceof Container)) throw new PioParseException("Documents may only contain containers");
+                doc.addContainer((Container) child);
+            }
+            return doc;
+        }
+
+        private Container readContainer() throws IOException, PioParseException {
+            final String kind    = readString();
+            final String type    = readString();
+            final String subtype = readString();
+            final String name    = readString();
+            final String version = readString();
+            final String key     = readString();
+            final int sequence   = readSignedVarInt();
+
+            final Container c = factory.createContainer(kind, type, (version == null) ? "" : version);
+            if (subtype != null) c.setSubtype(subtype);
+            if (name != null) c.setName(name);
+            if (key != null) c.setKey(key);
+            if (sequence != -1) c.setSequence(sequence);
+
+            final int count = readVarInt();
+            for (int i=0; i<count; ++i) {
+                final PioNode child = readNode();
+                if (child instanceof Container) {
+                    c.addContainer((Container) child);
+                } else if (child instanceof ParamSet) {
+                    c.addParamSet((ParamSet) child);
+                } else {
+                    throw new PioParseException("Containers may only contain containers and param sets");
+                }
+            }
+            return c;
+        }
+
+        private ParamSet readParamSet() throws IOException, PioParseException {
+            final String name  = readString();
+            final String kind  = readString();
+            final String id    = readString();
+            final String refId = readString();
+            final int flags    = readVarInt();
+            final int sequence = readSignedVarInt();
+
+            final ParamSet ps = factory.createParamSet(name);
+            if (kind != null) ps.setKind(kind);
+            if (id != null) ps.setId(id);
+            if (refId != null) ps.setReferenceId(refId);
+            if ((flags & PS_NOT_EDITABLE) != 0) ps.setEditable(false);
+            if ((flags & PS_NOT_PUBLIC) != 0) ps.setPublicAccess(false);
+            if (sequence != -1) ps.setSequence(sequence);
+
+            final int count = readVarInt();
+            for (int i=0; i<count; ++i) {
+                final PioNode child = readNode();
+                if (child instanceof Param) {
+                    ps.addParam((Param) child);
+                } else if (child instanceof ParamSet) {
+                    ps.addParamSet((ParamSet) child);
+                } else {
+                    throw new PioParseException("Param sets may only contain params and param sets");
+                }
+            }
+            return ps;
+        }
+
+        private Param readParam() throws IOException {
+            final Param p = factory.createParam(readString());
+            final String units = readString();
+            if (units != null) p.setUnits(units);
+
+            final int count = readVarInt();
+            if (count == 1) {
+                p.setValue(readString());
+            } else if (count > 1) {
+                final List<String> values = new ArrayList<String>(count);
+                for (int i=0; i<count; ++i) values.add(readString());
+                p.setValues(values);
+            }
+            return p;
+        }
+    }
+}
@@ -13,6 +13,10 @@ import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 
 /**
@@ -22,6 +26,14 @@ import java.io.*;
 public final class PioXmlUtil {
     private static final Logger LOG = Logger.getLogger(PioXmlUtil.class.getName());
 
+    // Stream readers skip the DTD.  It only supplies attribute defaults that
+    // the PIO implementation assumes anyway.
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
     private PioXmlUtil() {
         // defeat instantiation
     }
@@ -112,6 +124,99 @@ public final class PioXmlUtil {
         return sw.toString();
     }
 
+    /**
+     * Creates a StAX reader suitable for reading PIO documents a piece at a
+     * time with {@link #readStartElement} and {@link #readElement}.
+     */
+    public static XMLStreamReader createStreamReader(Reader rdr) throws PioXmlException {
+        try {
+            synchronized (INPUT_FACTORY) {
+                return INPUT_FACTORY.createXMLStreamReader(rdr);
+            }
+        } catch (XMLStreamException ex) {
+            throw PioXmlException.newException(ex);
+        }
+    }
+
+    /**
+     * Creates the PIO node for the element at which the reader is positioned
+     * with its attributes but none of its content.  The reader is not
+     * advanced.
+     *
+     * @throws PioXmlException if the reader isn't positioned at the start of
+     * a PIO element
+     */
+    public static PioNode readStartElement(XMLStreamReader rdr) throws PioXmlException {
+        return _toPioNode(_startElement(rdr));
+    }
+
+    /**
+     * Reads the complete element at which the reader is positioned, including
+     * all of its content, into a PIO node.  The reader is left positioned at
+     * the end of the element.  Whitespace-only text is dropped, as it is by
+     * {@link #read(Reader)}.
+     *
+     * @throws PioXmlException if the reader isn't positioned at the start of
+     * a PIO element, or if the element can't be read
+     */
+    public static PioNode readElement(XMLStreamReader rdr) throws PioXmlException {
+        try {
+            return _toPioNode(_readElement(rdr));
+        } catch (XMLStreamException ex) {
+            LOG.log(Level.WARNING, "Problem reading the element", ex);
+            throw PioXmlException.newException(ex);
+        }
+    }
+
+    private static PioNode _toPioNode(Element e) throws PioXmlException {
+        if (!(e instanceof PioNodeElement)) {
+            throw new PioXmlException("Not a PIO element: " + e.getName());
+        }
+        return ((PioNodeElement) e).getPioNode();
+    }
+
+    private static Element _startElement(XMLStreamReader rdr) throws PioXmlException {
+        if (!rdr.isStartElement()) {
+            throw new PioXmlException("Not positioned at the start of an element");
+        }
+        final Element e = PioXmlDocumentFactory.INSTANCE.createElement(rdr.getLocalName());
+        for (int i=0; i<rdr.getAttributeCount(); ++i) {
+            e.addAttribute(rdr.getAttributeLocalName(i), rdr.getAttributeValue(i));
+        }
+        return e;
+    }
+
+    private static Element _readElement(XMLStreamReader rdr) throws XMLStreamException, PioXmlException {
+        final Element e = _startElement(rdr);
+        StringBuilder text = null;
+        while (true) {
+            switch (rdr.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    _addText(e, text);
+                    text = null;
+                    e.add(_readElement(rdr));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (text == null) text = new StringBuilder();
+                    text.append(rdr.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    _addText(e, text);
+                    return e;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void _addText(Element e, StringBuilder text) {
+        if (text == null) return;
+        final String s = text.toString();
+        if (!s.trim().isEmpty()) e.addText(s);
+    }
+
     public static Element toElement(PioNode node) {
         return ((PioNodeImpl) node).getElement();
     }
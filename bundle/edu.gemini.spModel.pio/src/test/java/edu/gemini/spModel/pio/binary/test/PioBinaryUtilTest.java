@@ -0,0 +1,82 @@
+package edu.gemini.spModel.pio.binary.test;
+
+import edu.gemini.spModel.pio.*;
+import edu.gemini.spModel.pio.binary.PioBinaryUtil;
+import edu.gemini.spModel.pio.xml.PioXmlFactory;
+import edu.gemini.spModel.pio.xml.PioXmlUtil;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Test cases for the {@link PioBinaryUtil} class.
+ */
+public class PioBinaryUtilTest extends TestCase {
+
+    public PioBinaryUtilTest(String name) {
+        super(name);
+    }
+
+    private PioFactory _fact;
+    private Document _doc;
+
+    public void setUp() {
+        _fact = new PioXmlFactory();
+        _doc  = _fact.createDocument();
+
+        final Container prog = _fact.createContainer("program", "Program", "2009A-1");
+        prog.setName("GS-2016A-Q-1");
+        prog.setKey("f6e3c1a0-7b1e-4c5c-9a0e-1a2b3c4d5e6f");
+        _doc.addContainer(prog);
+
+        final ParamSet ps = _fact.createParamSet("Science Program");
+        ps.setKind("dataObj");
+        Pio.addParam(_fact, ps, "title", "A title with ünïcödé");
+        final Param units = _fact.createParam("exposureTime");
+        units.setUnits("seconds");
+        units.setValue("30.0");
+        ps.addParam(units);
+        final Param multi = _fact.createParam("offsets");
+        multi.setValues(Arrays.asList("0.0", "1.5", "-1.5"));
+        ps.addParam(multi);
+
+        final ParamSet child = _fact.createParamSet("note");
+        child.setEditable(false);
+        child.setPublicAccess(false);
+        child.setSequence(3);
+        child.setId("n1");
+        ps.addParamSet(child);
+
+        final ParamSet ref = _fact.createParamSet("noteRef");
+        ref.setReferenceId("n1");
+        ps.addParamSet(ref);
+        prog.addParamSet(ps);
+
+        final Container obs = _fact.createContainer("observation", "Observation", "2014A-1");
+        obs.setSequence(0);
+        prog.addContainer(obs);
+    }
+
+    private void roundTrip(boolean compress) throws Exception {
+        final byte[] bytes = PioBinaryUtil.toBytes(_doc, compress);
+        final Document doc = PioBinaryUtil.fromBytes(bytes, _fact);
+        assertEquals(PioXmlUtil.toXmlString(_doc), PioXmlUtil.toXmlString(doc));
+    }
+
+    public void testRoundTrip() throws Exception {
+        roundTrip(false);
+    }
+
+    public void testCompressedRoundTrip() throws Exception {
+        roundTrip(true);
+    }
+
+    public void testRejectsNonBinary() throws Exception {
+        try {
+            PioBinaryUtil.fromBytes("<document/>".getBytes("UTF-8"), _fact);
+            fail("read an XML document");
+        } catch (PioParseException ex) {
+            // okay
+        }
+    }
+}
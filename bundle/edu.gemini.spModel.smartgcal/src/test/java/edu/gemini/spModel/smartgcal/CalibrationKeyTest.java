@@ -94,4 +94,46 @@ public class CalibrationKeyTest {
         }
     }
 
+    @Test
+    public void canAddAdjacentRanges() {
+        WavelengthRangeSet rangeSet = new WavelengthRangeSet();
+        rangeSet.add(new WavelengthRange(20.0d, 30.0d), null);
+        // ranges are half-open, so ranges ending or starting at the boundaries of an existing range don't overlap
+        rangeSet.add(new WavelengthRange(30.0d, 40.0d), null);
+        rangeSet.add(new WavelengthRange(10.0d, 20.0d), null);
+
+        Assert.assertEquals(new WavelengthRange(10.0d, 20.0d), rangeSet.findRange(19.9d));
+        Assert.assertEquals(new WavelengthRange(20.0d, 30.0d), rangeSet.findRange(20.0d));
+        Assert.assertEquals(new WavelengthRange(30.0d, 40.0d), rangeSet.findRange(30.0d));
+    }
+
+    @Test
+    public void canFindRangesAddedInAnyOrder() {
+        WavelengthRangeSet rangeSet = new WavelengthRangeSet();
+        WavelengthRange[] ranges = {
+            new WavelengthRange(50.0d, 60.0d),
+            new WavelengthRange(10.0d, 20.0d),
+            new WavelengthRange(30.0d, 40.0d),
+            new WavelengthRange(20.0d, 30.0d)
+        };
+        for (WavelengthRange range : ranges) {
+            rangeSet.add(range, null);
+        }
+        // adding to an existing range is not an overlap
+        rangeSet.add(new WavelengthRange(30.0d, 40.0d), null);
+
+        Assert.assertEquals(ranges[1], rangeSet.findRange(10.0d));
+        Assert.assertEquals(ranges[3], rangeSet.findRange(29.9d));
+        Assert.assertEquals(ranges[2], rangeSet.findRange(30.0d));
+        Assert.assertEquals(ranges[0], rangeSet.findRange(59.9d));
+        Assert.assertNull(rangeSet.findRange(9.9d));
+        Assert.assertNull(rangeSet.findRange(45.0d));
+        Assert.assertNull(rangeSet.findRange(60.0d));
+
+        Assert.assertEquals(1, rangeSet.findCalibrations(15.0d).size());
+        Assert.assertEquals(2, rangeSet.findCalibrations(35.0d).size());
+        Assert.assertTrue(rangeSet.findCalibrations(45.0d).isEmpty());
+        Assert.assertSame(rangeSet.findCalibrations(31.0d), rangeSet.findCalibrations(39.0d));
+    }
+
 }
@@ -0,0 +1,145 @@
+package edu.gemini.spModel.smartgcal;
+
+import edu.gemini.spModel.gemini.calunit.smartgcal.Calibration;
+import edu.gemini.spModel.gemini.calunit.smartgcal.CalibrationFile;
+import edu.gemini.spModel.gemini.calunit.smartgcal.CalibrationMap;
+import edu.gemini.spModel.gemini.calunit.smartgcal.ConfigurationKey;
+import edu.gemini.spModel.gemini.calunit.smartgcal.Version;
+import edu.gemini.spModel.gemini.calunit.smartgcal.keys.WavelengthRange;
+import edu.gemini.spModel.gemini.calunit.smartgcal.maps.CentralWavelengthMap;
+import edu.gemini.spModel.gemini.gmos.InstGmosNorth;
+import edu.gemini.spModel.gemini.gmos.InstGmosSouth;
+import edu.gemini.spModel.smartgcal.repository.CalibrationResourceRepository;
+
+import java.util.*;
+
+/**
+ * Measures central wavelength lookups in the GMOS-N and GMOS-S calibration
+ * tables, comparing the binary search done by the calibration maps against a
+ * linear scan of the same ranges, which is how they used to be searched.
+ * The tables are read with {@link CalibrationMapReader} as they are in
+ * production, and the lookups use random keys of each table with random
+ * wavelengths across the GMOS range, so some of them miss.
+ *
+ * <pre>
+ * CentralWavelengthBenchmark [lookups] [rounds]
+ * </pre>
+ */
+public final class CentralWavelengthBenchmark {
+
+    private static final double MIN_WAVELENGTH = 300.0;
+    private static final double MAX_WAVELENGTH = 1200.0;
+
+    // The ranges of a key in the order in which they were added, searched
+    // linearly.
+    private static final class LinearRangeSet {
+        private final List<WavelengthRange> ranges = new ArrayList<>();
+        private final List<List<Calibration>> calibrations = new ArrayList<>();
+
+        void add(WavelengthRange range, Calibration c) {
+            int i = ranges.indexOf(range);
+            if (i < 0) {
+                ranges.add(range);
+                calibrations.add(new ArrayList<>());
+                i = ranges.size() - 1;
+            }
+            calibrations.get(i).add(c);
+        }
+
+        List<Calibration> find(double value) {
+            for (int i=0; i<ranges.size(); ++i) {
+                final WavelengthRange r = ranges.get(i);
+                if (value >= r.getMin() && value < r.getMax()) return calibrations.get(i);
+            }
+            return new ArrayList<>();
+        }
+    }
+
+    // Fills in the calibration map and, on the side, the linear range sets
+    // for the same keys.
+    private static final class RecordingMap implements CalibrationMap {
+        private final CalibrationMap map;
+        private final Map<ConfigurationKey, LinearRangeSet> linear = new HashMap<>();
+
+        RecordingMap(CalibrationMap map) {
+            this.map = map;
+        }
+
+        @Override public Set<ConfigurationKey> createConfig(Properties properties) { return map.createConfig(properties); }
+        @Override public Calibration createCalibration(Properties properties) { return map.createCalibration(properties); }
+        @Override public ConfigurationKey.Values[] getKeyValueNames() { return map.getKeyValueNames(); }
+        @Override public ConfigurationKey.Values[] getCalibrationValueNames() { return map.getCalibrationValueNames(); }
+        @Override public List<Calibration> get(ConfigurationKey key) { return map.get(key); }
+        @Override public List<Calibration> get(ConfigurationKey key, Double wavelength) { return map.get(key, wavelength); }
+        @Override public Version getVersion() { return map.getVersion(); }
+
+        @Override public Calibration put(ConfigurationKey key, Properties properties, Calibration calibration) {
+            final Calibration res = map.put(key, properties, calibration);
+            final WavelengthRange range = WavelengthRange.parse(properties.getProperty(CentralWavelengthMap.WAVELENGTH_RANGE_NAME));
+            linear.computeIfAbsent(key, k -> new LinearRangeSet()).add(range, calibration);
+            return res;
+        }
+    }
+
+    private static RecordingMap load(String instrument, Calibration.Type type) throws Exception {
+        final CalibrationFile file = new CalibrationResourceRepository().getCalibrationFile(type, instrument);
+        final RecordingMap map = new RecordingMap(CalibrationMapFactory.createEmpty(instrument, file.getVersion()));
+        final CalibrationMapReader reader = new CalibrationMapReader(map);
+        reader.read(file.getData().getBytes());
+        if (reader.hasErrors()) throw new RuntimeException("could not read " + instrument + " " + type + ": " + reader.getErrors());
+        return map;
+    }
+
+    private static void run(String instrument, Calibration.Type type, int lookups, int rounds) throws Exception {
+        final RecordingMap rm = load(instrument, type);
+
+        final List<ConfigurationKey> allKeys = new ArrayList<>(rm.linear.keySet());
+        int maxRanges = 0;
+        for (LinearRangeSet s : rm.linear.values()) maxRanges = Math.max(maxRanges, s.ranges.size());
+
+        final Random r = new Random(42);
+        final ConfigurationKey[] keys    = new ConfigurationKey[lookups];
+        final LinearRangeSet[] sets      = new LinearRangeSet[lookups];
+        final double[] wavelengths       = new double[lookups];
+        for (int i=0; i<lookups; ++i) {
+            keys[i]        = allKeys.get(r.nextInt(allKeys.size()));
+            sets[i]        = rm.linear.get(keys[i]);
+            wavelengths[i] = MIN_WAVELENGTH + r.nextDouble() * (MAX_WAVELENGTH - MIN_WAVELENGTH);
+        }
+
+        // Both searches must find the same calibrations.
+        for (int i=0; i<lookups; ++i) {
+            if (!rm.get(keys[i], wavelengths[i]).equals(sets[i].find(wavelengths[i]))) {
+                throw new RuntimeException("lookups differ for " + keys[i] + " at " + wavelengths[i]);
+            }
+        }
+
+        long linearNs = Long.MAX_VALUE;
+        long binaryNs = Long.MAX_VALUE;
+        long found    = 0;
+        for (int round=0; round<rounds; ++round) {
+            long start = System.nanoTime();
+            for (int i=0; i<lookups; ++i) found += sets[i].find(wavelengths[i]).size();
+            linearNs = Math.min(linearNs, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i=0; i<lookups; ++i) found += rm.get(keys[i], wavelengths[i]).size();
+            binaryNs = Math.min(binaryNs, System.nanoTime() - start);
+        }
+
+        System.out.println(String.format("%-6s %-5s %,7d keys, up to %3d ranges: linear %7.1f ns/lookup, binary %7.1f ns/lookup (%d)",
+                instrument, type, allKeys.size(), maxRanges,
+                (double) linearNs / lookups, (double) binaryNs / lookups, found));
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int lookups = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        final int rounds  = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        for (String instrument : new String[] { InstGmosNorth.SP_TYPE.readableStr, InstGmosSouth.SP_TYPE.readableStr }) {
+            for (Calibration.Type type : new Calibration.Type[] { Calibration.Type.ARC, Calibration.Type.FLAT }) {
+                run(instrument, type, lookups, rounds);
+            }
+        }
+    }
+}
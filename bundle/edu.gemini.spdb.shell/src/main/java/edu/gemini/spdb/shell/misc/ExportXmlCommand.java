@@ -8,7 +8,9 @@ import edu.gemini.spModel.util.DBProgramInfo;
 import edu.gemini.spModel.util.DBProgramListFunctor;
 
 import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.security.Principal;
 import java.util.Collections;
 import java.util.List;
@@ -80,21 +82,27 @@ public final class ExportXmlCommand {
         final File file = new File(dest, fileName(root) + ".xml");
         System.out.println("Exporting to " + file);
         try {
-            final SpExportFunctor functor = db.getQueryRunner(user).execute(new SpExportFunctor(), root);
-            final String msg = functor.getProblem();
-            final String xml = functor.getXmlProgram();
-            if (msg != null || xml == null) {
-                System.out.println("Error writing " + file + ": " + msg);
-                return;
-            }
-            final FileOutputStream fOut = new FileOutputStream(file);
+            final String msg;
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
             try {
-                fOut.write(xml.getBytes());
+                msg = db.getQueryRunner(user).execute(new SpExportFunctor(out), root).getProblem();
             } finally {
-                fOut.close();
+                out.close();
+            }
+            if (msg != null) {
+                System.out.println("Error writing " + file + ": " + msg);
+                _remove(file);
             }
         } catch (Exception e) {
             e.printStackTrace();
+            _remove(file);
+        }
+    }
+
+    // Removes a partially written export.
+    private static void _remove(File file) {
+        if (file.exists() && !file.delete()) {
+            System.out.println("Could not remove " + file);
         }
     }
 }
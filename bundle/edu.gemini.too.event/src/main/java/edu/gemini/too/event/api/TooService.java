@@ -36,4 +36,21 @@ public interface TooService {
      * the given time
      */
     List<TooEvent> events(TooTimestamp since);
+
+    /**
+     * Like {@link #events}, but if there are no visible events since the
+     * given time the call waits until one arrives or until the timeout
+     * expires.  Clients can call this method in a loop to receive events as
+     * soon as they happen without repeatedly polling.  The service may wait
+     * for less time than requested, or not at all when too many clients are
+     * already waiting.
+     *
+     * @param since events before and on this timestamp are filtered from the
+     *              results
+     * @param timeoutMs maximum time to wait for an event, in milliseconds
+     *
+     * @return all TooEvents known to the service that have happened since the
+     * given time, which will be empty only if the timeout expired
+     */
+    List<TooEvent> awaitEvents(TooTimestamp since, long timeoutMs);
 }
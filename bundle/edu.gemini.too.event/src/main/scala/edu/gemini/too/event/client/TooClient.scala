@@ -1,30 +1,63 @@
 package edu.gemini.too.event.client
 
-import edu.gemini.too.event.api.{TooTimestamp, TooService, TooPublisher}
+import edu.gemini.too.event.api.{TooEvent, TooTimestamp, TooService, TooPublisher}
 import edu.gemini.util.trpc.client.TrpcClient
 
-import java.util.{Timer, TimerTask}
 import java.util.logging.{Level, Logger}
 
 import scala.collection.JavaConverters._
 import scalaz._
 import edu.gemini.util.security.auth.keychain.KeyChain
 
+object TooClient {
+  /** How long each request waits on the server for new events. */
+  val AwaitMs = 60 * 1000L
+
+  // Allow for the server's wait plus some slack before giving up on a
+  // connection.
+  private val ReadTimeoutMs = (AwaitMs + 30 * 1000L).toInt
+}
+
 /**
- * Polls a remote TooService at a given host and port.
+ * Subscribes to ToO events from a remote TooService at a given host and port.
+ * The client keeps a request outstanding with the service, which answers as
+ * soon as there is a new event (or after `TooClient.AwaitMs` if nothing
+ * happens).  Events are therefore published within moments of the trigger on
+ * the server.  If the service can't be reached, the client waits
+ * `pollPeriodMs` before trying again.  Services that predate `awaitEvents`
+ * are polled every `pollPeriodMs` instead.
  */
 class TooClient(kc: KeyChain, dbHost: String, dbPort: Int, pollPeriodMs: Long) extends TooPublisher {
+  import TooClient._
+
   private val LOG = Logger.getLogger(classOf[TooClient].getName)
 
-  private val task = new TimerTask {
+  private class Subscription extends Thread("ToO events from %s:%d".format(dbHost, dbPort)) {
+    setDaemon(true)
+
+    @volatile var running = true
+
     var timestamp = Option.empty[TooTimestamp]
     var exception = Option.empty[Exception] // sorry, trying to avoid an exception per poll when the dbHost is down
 
-    private def call[T](op: TooService => T): Option[T] = {
+    // Whether the service supports awaitEvents.  Older services don't, in
+    // which case we fall back to polling `events` every `pollPeriodMs`.
+    var longPoll = true
+
+    private def invoke[T](op: TooService => T): Exception \/ T = {
+      val remoteService = TrpcClient(dbHost, dbPort, TrpcClient.ConnectTimeout, ReadTimeoutMs)
+                            .withSlowCallWarning(ReadTimeoutMs)
+                            .withKeyChain(kc)
 
-      val remoteService = TrpcClient(dbHost, dbPort).withKeyChain(kc)
+      remoteService { remote => op(remote[TooService]) }
+    }
 
-      (remoteService { remote => op(remote[TooService]) }) match {
+    private def call[T](op: TooService => T): Option[T] =
+      report(invoke(op))
+
+    // Logs the first of a run of failures, and the recovery afterwards.
+    private def report[T](res: Exception \/ T): Option[T] =
+      res match {
         case \/-(t)  =>
           exception foreach { _ =>
             LOG.info("Good news, now successfully polling %s:%d for ToO events.".format(dbHost, dbPort))
@@ -43,41 +76,74 @@ class TooClient(kc: KeyChain, dbHost: String, dbPort: Int, pollPeriodMs: Long) e
           }
           None
       }
-    }
 
     private def initTimestamp() {
       timestamp = timestamp orElse call(_.lastEventTimestamp())
     }
 
-    def run() {
+    private def fetch(since: TooTimestamp): Option[java.util.List[TooEvent]] =
+      if (!longPoll) call(_.events(since))
+      else invoke(_.awaitEvents(since, AwaitMs)) match {
+        case -\/(_: NoSuchMethodException) =>
+          LOG.info("%s:%d doesn't support waiting for ToO events, falling back to polling.".format(dbHost, dbPort))
+          longPoll = false
+          call(_.events(since))
+        case res                          =>
+          report(res)
+      }
+
+    // Fetches the next events and publishes them, returning whether to
+    // wait `pollPeriodMs` before asking again.  That is the case if the
+    // service can't be reached, if we're polling, or if the service answered
+    // early without events (as it does when too many clients are waiting).
+    private def poll(): Boolean = {
       initTimestamp()
-      timestamp foreach { since =>
-        call(_.events(since)) foreach { lst =>
-            lst.asScala foreach { evt =>
-              timestamp = Some(evt.timestamp)
-              publish(evt)
-            }
+      val start = System.currentTimeMillis
+      val res   = timestamp flatMap fetch
+      res foreach { lst =>
+        lst.asScala foreach { evt =>
+          timestamp = Some(evt.timestamp)
+          if (running) publish(evt)
+        }
+      }
+
+      def answeredEarly = res.exists(_.isEmpty) && (System.currentTimeMillis - start < AwaitMs / 2)
+      res.isEmpty || !longPoll || answeredEarly
+    }
+
+    override def run() {
+      while (running) {
+        if (poll() && running) {
+          try {
+            Thread.sleep(pollPeriodMs)
+          } catch {
+            case _: InterruptedException => // stopped
+          }
         }
       }
     }
   }
 
-  private var timer = Option.empty[Timer]
+  private var subscription = Option.empty[Subscription]
 
   def start() {
     synchronized {
-      if (timer.isEmpty) {
+      if (subscription.isEmpty) {
         LOG.info("Start polling %s:%d for ToO events.".format(dbHost, dbPort))
-        timer = Some(new Timer)
-        timer foreach { _.schedule(task, 0, pollPeriodMs)}
+        val s = new Subscription
+        subscription = Some(s)
+        s.start()
       }
     }
   }
 
   def stop() {
     synchronized {
-      timer foreach { _.cancel() }
-      timer = None
+      subscription foreach { s =>
+        s.running = false
+        s.interrupt()
+      }
+      subscription = None
       LOG.info("Stop polling %s:%d for ToO events.".format(dbHost, dbPort))
     }
   }
@@ -1,6 +1,6 @@
 package edu.gemini.too.event.service
 
-import edu.gemini.pot.spdb.IDBTriggerCondition
+import edu.gemini.pot.spdb.{TriggerFilter, IDBTriggerCondition}
 import edu.gemini.pot.sp.{ISPObservation, SPUtil, SPCompositeChange}
 import edu.gemini.spModel.obs.{ObservationStatus, SPObservation}
 import edu.gemini.spModel.obs.ObsPhase2Status.ON_HOLD
@@ -35,4 +35,9 @@ object TooCondition extends IDBTriggerCondition {
 
     def matches(change: SPCompositeChange): ISPObservation =
       triggeredObservation(change).orNull
+
+    private val filter: TriggerFilter =
+      TriggerFilter.forDataObject(classOf[SPObservation]).withNodeType(classOf[ISPObservation])
+
+    override def getFilter(): TriggerFilter = filter
 }
\ No newline at end of file
@@ -11,37 +11,85 @@ import edu.gemini.too.event.api.{TooEvent, TooService => TooServiceApi, TooPubli
 import edu.gemini.util.security.permission.ProgramPermission
 import edu.gemini.util.security.policy.ImplicitPolicy
 
+import scala.annotation.tailrec
 import scala.collection.JavaConverters._
 import scala.concurrent.ops.spawn
 import java.security.Principal
+import java.util.concurrent.atomic.AtomicInteger
 
 
 object TooService {
   val DefaultEventRetentionTime = 30 * 60 * 1000
+
+  /** Maximum time that a call to `awaitEvents` is parked waiting for an
+    * event. */
+  val MaxAwaitTime = 60 * 1000L
+
+  /** Maximum number of `awaitEvents` calls parked at any one time.  Further
+    * callers get an immediate answer, as with `events`. */
+  val DefaultMaxAwaiting = 64
 }
 
 /**
  * The TooService is notified by the database whenever the TooCondition matches
  * a change event.  It creates a correspond TooEvent, publishes it to any local
  * subscribers and holds on to it (for a limited time) in case remote clients
- * should poll for updates.
+ * should poll for updates.  Remote clients waiting in `awaitEvents` are woken
+ * as soon as a new event arrives.
  *
  * @param eventRetentionTime minimum tme that ToO events will be kept
+ * @param maxAwaiting maximum number of remote clients parked in `awaitEvents`
  */
-class TooService(db: IDBDatabaseService, val site: Site, val eventRetentionTime: Long = TooService.DefaultEventRetentionTime) extends IDBTriggerAction with ProgramEventListener[ISPProgram] with TooPublisher { outer =>
-  private var timestamp                    = TooTimestamp.now
-  private var recentEvents: List[TooEvent] = Nil
+class TooService(db: IDBDatabaseService, val site: Site, val eventRetentionTime: Long = TooService.DefaultEventRetentionTime, val maxAwaiting: Int = TooService.DefaultMaxAwaiting) extends IDBTriggerAction with ProgramEventListener[ISPProgram] with TooPublisher { outer =>
+  private var timestamp                              = TooTimestamp.now
+  @volatile private var recentEvents: List[TooEvent] = Nil
+  private val awaiting                               = new AtomicInteger(0)
 
   def lastEventTimestamp: TooTimestamp = synchronized { timestamp }
 
+  private def newestEvent: Option[TooTimestamp] =
+    recentEvents.headOption.map(_.timestamp)
+
+  // Waits until there is an event newer than `since` or the deadline passes,
+  // returning whether there is a newer event.
+  private def awaitNewer(since: TooTimestamp, deadline: Long): Boolean = synchronized {
+    def newer = newestEvent.exists(_ > since)
+    var remaining = deadline - System.currentTimeMillis
+    while (!newer && remaining > 0) {
+      wait(remaining)
+      remaining = deadline - System.currentTimeMillis
+    }
+    newer
+  }
+
+  protected def isVisible(ps: java.util.Set[Principal], evt: TooEvent): Boolean =
+    ImplicitPolicy.forJava.hasPermission(db, ps, new ProgramPermission.Read(evt.report.getObservationId.getProgramID))
+
   def serviceApi(ps: java.util.Set[Principal]): TooServiceApi =
     new TooServiceApi {
 
-      def events(since: TooTimestamp): java.util.List[TooEvent] = {
-        def isVisible(evt: TooEvent): Boolean =
-          ImplicitPolicy.forJava.hasPermission(db, ps, new ProgramPermission.Read(evt.report.getObservationId.getProgramID))
-
-        (recentEvents takeWhile { _.timestamp > since} filter { isVisible }).reverse.asJava
+      def events(since: TooTimestamp): java.util.List[TooEvent] =
+        (recentEvents takeWhile { _.timestamp > since} filter { isVisible(ps, _) }).reverse.asJava
+
+      def awaitEvents(since: TooTimestamp, timeoutMs: Long): java.util.List[TooEvent] = {
+        val deadline = System.currentTimeMillis + (timeoutMs min TooService.MaxAwaitTime)
+
+        // Events that the caller can't see still wake us up, so keep waiting
+        // for events newer than the newest one checked so far.
+        @tailrec def go(checked: TooTimestamp): java.util.List[TooEvent] = {
+          val newest  = newestEvent.filter(_ > checked).getOrElse(checked)
+          val visible = events(since)
+          if (!visible.isEmpty || !awaitNewer(newest, deadline)) visible
+          else go(newest)
+        }
+
+        // Don't let waiting clients tie up an unbounded number of threads.
+        if (awaiting.incrementAndGet() > maxAwaiting) {
+          awaiting.decrementAndGet()
+          events(since)
+        } else {
+          try go(since) finally awaiting.decrementAndGet()
+        }
       }
 
       def lastEventTimestamp: TooTimestamp =
@@ -66,6 +114,7 @@ class TooService(db: IDBDatabaseService, val site: Site, val eventRetentionTime:
     synchronized {
       recentEvents = events ++ (recentEvents filter { _.timestamp > cutoff })
       timestamp    = time
+      if (events.nonEmpty) notifyAll()
     }
 
     if (obsList.size > 0) spawn {
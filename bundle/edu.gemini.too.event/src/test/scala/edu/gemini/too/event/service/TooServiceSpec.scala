@@ -0,0 +1,92 @@
+package edu.gemini.too.event.service
+
+import edu.gemini.pot.sp.SPNodeKey
+import edu.gemini.pot.spdb.DBLocalDatabase
+import edu.gemini.spModel.core.{Site, SPProgramID}
+import edu.gemini.too.event.api.TooEvent
+
+import org.specs2.mutable.SpecificationWithJUnit
+
+import java.security.Principal
+import java.util.Collections
+
+class TooServiceSpec extends SpecificationWithJUnit {
+  sequential
+
+  // A service with a single observation whose events everybody can see.
+  class Env(maxAwaiting: Int = TooService.DefaultMaxAwaiting) {
+    val odb  = DBLocalDatabase.createTransient()
+    val prog = odb.getFactory.createProgram(new SPNodeKey(), SPProgramID.toProgramID("GS-2016A-Q-1"))
+    odb.put(prog)
+
+    val obs  = odb.getFactory.createObservation(prog, null)
+    prog.addObservation(obs)
+
+    val service = new TooService(odb, Site.GS, TooService.DefaultEventRetentionTime, maxAwaiting) {
+      override protected def isVisible(ps: java.util.Set[Principal], evt: TooEvent): Boolean = true
+    }
+
+    val api = service.serviceApi(Collections.emptySet[Principal]())
+
+    // Make sure the next event is strictly newer than anything before it.
+    def trigger(): Unit = {
+      Thread.sleep(5)
+      service.doTriggerAction(null, obs)
+    }
+
+    def shutdown(): Unit = odb.getDBAdmin.shutdown()
+  }
+
+  def withEnv[T](maxAwaiting: Int = TooService.DefaultMaxAwaiting)(f: Env => T): T = {
+    val env = new Env(maxAwaiting)
+    try f(env) finally env.shutdown()
+  }
+
+  def timed[T](f: => T): (T, Long) = {
+    val start = System.currentTimeMillis
+    val res   = f
+    (res, System.currentTimeMillis - start)
+  }
+
+  "awaitEvents" should {
+    "return immediately if there are already newer events" in withEnv() { env =>
+      val since = env.service.lastEventTimestamp
+      env.trigger()
+
+      val (evts, ms) = timed(env.api.awaitEvents(since, 10000))
+      evts.size must_== 1
+      ms must be_<(5000L)
+    }
+
+    "return nothing once the timeout expires" in withEnv() { env =>
+      env.trigger()
+      val since = env.service.lastEventTimestamp
+
+      val (evts, ms) = timed(env.api.awaitEvents(since, 200))
+      evts.isEmpty must beTrue
+      ms must be_>=(200L)
+    }
+
+    "wake up as soon as a new event arrives" in withEnv() { env =>
+      val since = env.service.lastEventTimestamp
+      new Thread() {
+        override def run(): Unit = {
+          Thread.sleep(200)
+          env.trigger()
+        }
+      }.start()
+
+      val (evts, ms) = timed(env.api.awaitEvents(since, 10000))
+      evts.size must_== 1
+      ms must be_<(5000L)
+    }
+
+    "not wait when too many clients are already waiting" in withEnv(0) { env =>
+      val since = env.service.lastEventTimestamp
+
+      val (evts, ms) = timed(env.api.awaitEvents(since, 10000))
+      evts.isEmpty must beTrue
+      ms must be_<(5000L)
+    }
+  }
+}
@@ -38,40 +38,86 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
     private Date cachedDate;
     private boolean cachedCalculateMoon;
 
+    // Results that depend only on the time (and site), shared by all objects
+    // calculated for the same date.
+    private final DoubleRef jdut = new DoubleRef();
+    private final DoubleRef sid = new DoubleRef();
+    private final DoubleRef curepoch = new DoubleRef();
+    private final DoubleRef ramoon = new DoubleRef();
+    private final DoubleRef decmoon = new DoubleRef();
+    private final DoubleRef distmoon = new DoubleRef();
+    private final DoubleRef toporasun = new DoubleRef();
+    private final DoubleRef topodecsun = new DoubleRef();
+
     public ImprovedSkyCalc(final Site site) {
         hoursLongitude = -site.longitude/15.;
         degreesLatitude = site.latitude;
         siteAltitude = site.altitude;
     }
 
+    /**
+     * Calculates the circumstances of the given object at the given time.
+     * The time, sun and moon calculations are reused when consecutive calls
+     * are for the same date, so calculating many objects at one time and
+     * then moving on to the next time is considerably cheaper than the
+     * reverse.
+     */
     public void calculate(final WorldCoords obj, final Date date, final boolean calculateMoon) {
 
     	// Early exit if the parameters haven't changed.
-    	if (obj.equals(cachedCoordinates) &&
-    		date.equals(cachedDate) &&
-    		calculateMoon == cachedCalculateMoon)
+    	final boolean sameTime = date.equals(cachedDate) && (calculateMoon == cachedCalculateMoon);
+    	if (sameTime && obj.equals(cachedCoordinates))
     		return;
 
-    	cachedCoordinates = obj;
-    	cachedDate = date;
-    	cachedCalculateMoon = calculateMoon;
-
-        final DateTime dateTime = new DateTime(date);
-        final DoubleRef jdut = new DoubleRef();
-        final DoubleRef sid = new DoubleRef();
-        final DoubleRef curepoch = new DoubleRef();
+    	if (!sameTime) {
+    		// Forget the object until the time has been updated.
+    		cachedCoordinates = null;
+    		cachedDate = null;
+    		setTime(date, calculateMoon);
+    		cachedDate = date;
+    		cachedCalculateMoon = calculateMoon;
+    	}
 
-        setup_time_place(dateTime, hoursLongitude, jdut, sid, curepoch);
+    	cachedCoordinates = obj;
 
         final double objra = obj.getRaDeg()/15;
         final double objdec = obj.getDecDeg();
         final double objepoch = 2000.;
 
-        getCircumstances(objra, objdec, objepoch, curepoch.d, sid.d, degreesLatitude, jdut, calculateMoon);
+        getCircumstances(objra, objdec, objepoch, curepoch.d, sid.d, degreesLatitude, calculateMoon);
+    }
+
+    private void setTime(final Date date, final boolean calculateMoon) {
+        final DateTime dateTime = new DateTime(date);
+        setup_time_place(dateTime, hoursLongitude, jdut, sid, curepoch);
+
+		if (calculateMoon) {
+
+			final DoubleRef georamoon = new DoubleRef();
+			final DoubleRef geodecmoon = new DoubleRef();
+			final DoubleRef geodistmoon = new DoubleRef();
+			final DoubleRef rasun = new DoubleRef();
+			final DoubleRef decsun = new DoubleRef();
+			final DoubleRef distsun = new DoubleRef();
+			final DoubleRef x = new DoubleRef();
+			final DoubleRef y = new DoubleRef();
+			final DoubleRef z = new DoubleRef();
+			final DoubleRef az = new DoubleRef();
+			final double elevsea = siteAltitude;
+
+			accusun(jdut.d,sid.d,degreesLatitude,rasun,decsun,distsun, toporasun,topodecsun,x,y,z);
+			sunAltitude=altit(topodecsun.d,(sid.d-toporasun.d),degreesLatitude,az, new DoubleRef() /* [out] parang, ignored */);
+
+			accumoon(jdut.d,degreesLatitude,sid.d,elevsea,georamoon,geodecmoon,geodistmoon, ramoon,decmoon,distmoon);
+			lunarElevation=altit(decmoon.d,(sid.d-ramoon.d),degreesLatitude,az, new DoubleRef()  /* [out] parang, ignored */);
+
+			lunarPhaseAngle = DEG_IN_RADIAN * subtend(ramoon.d,decmoon.d,toporasun.d,topodecsun.d);
+			lunarIlluminatedFraction=(float) (0.5*(1.-cos(subtend(ramoon.d,decmoon.d,rasun.d,decsun.d))));
+		}
     }
 
     private void getCircumstances(double objra, double objdec, double objepoch,
-                                  double curep, double sid, double lat, DoubleRef jdut, boolean calculateMoon) {
+                                  double curep, double sid, double lat, boolean calculateMoon) {
 
         final double ha, alt;
         final DoubleRef az = new DoubleRef();
@@ -92,32 +138,9 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
 
 		if (calculateMoon) {
 
-			final DoubleRef ramoon = new DoubleRef();
-			final DoubleRef decmoon= new DoubleRef();
-			final DoubleRef distmoon = new DoubleRef();
-			final DoubleRef georamoon = new DoubleRef();
-			final DoubleRef geodecmoon = new DoubleRef();
-			final DoubleRef geodistmoon = new DoubleRef();
-			final DoubleRef rasun = new DoubleRef();
-			final DoubleRef decsun = new DoubleRef();
-			final DoubleRef distsun = new DoubleRef();
-			final DoubleRef x = new DoubleRef();
-			final DoubleRef y = new DoubleRef();
-			final DoubleRef z = new DoubleRef();
-			final DoubleRef toporasun = new DoubleRef();
-			final DoubleRef topodecsun = new DoubleRef();
-			final double elevsea = siteAltitude;
-
-			accusun(jdut.d,sid,degreesLatitude,rasun,decsun,distsun, toporasun,topodecsun,x,y,z);
-			sunAltitude=altit(topodecsun.d,(sid-toporasun.d),degreesLatitude,az, new DoubleRef() /* [out] parang, ignored */);
-
-			accumoon(jdut.d,degreesLatitude,sid,elevsea,georamoon,geodecmoon,geodistmoon, ramoon,decmoon,distmoon);
-			lunarElevation=altit(decmoon.d,(sid-ramoon.d),degreesLatitude,az, new DoubleRef()  /* [out] parang, ignored */);
-
 			// Sky brightness
 			lunarSkyBrightness = null;
 			lunarDistance = DEG_IN_RADIAN * subtend(ramoon.d,decmoon.d,objra,objdec);
-			lunarPhaseAngle = DEG_IN_RADIAN * subtend(ramoon.d,decmoon.d,toporasun.d,topodecsun.d);
 			if(lunarElevation > -2.) {
 				if((lunarElevation > 0.) && (altitude > 0.5) && (sunAltitude < -9.)) {
 				  lunarSkyBrightness =
@@ -126,7 +149,6 @@ public final class ImprovedSkyCalc extends ImprovedSkyCalcMethods {
 				}
 			}
 			totalSkyBrightness = sb(180. - lunarPhaseAngle, lunarDistance, 90 - lunarElevation, 90 - altitude, 90 - sunAltitude);
-			lunarIlluminatedFraction=(float) (0.5*(1.-cos(subtend(ramoon.d,decmoon.d,rasun.d,decsun.d))));
 
 		}
     }
@@ -9,7 +9,7 @@ trait Calculator {
 
   val times: Vector[Long]
   def toIndex(t: Long): Int
-  val values: Vector[Vector[Double]]
+  def values: Vector[Vector[Double]]
 
   lazy val start = times.head
   lazy val end = times.last
@@ -18,7 +18,7 @@ trait Calculator {
   /** True if the values for the given time are covered by this target. */
   def isDefinedAt(t: Long) = t >= start && t <= end
   def value(field: Int, ix: Int) = values(field)(ix)
-  def valueAt(field: Int, t: Long) = values(field)(toIndex(t))
+  def valueAt(field: Int, t: Long) = value(field, toIndex(t))
   def timedValues(field: Int) = times.zip(values(field))
 
   def min(field: Int): Double = values(field).min
@@ -111,12 +111,12 @@ trait LinearInterpolatingCalculator extends Calculator {
   override def valueAt(field: Int, t: Long): Double = {
     val ix = toIndex(t)
     val t0 = times(ix)
-    val v0 = values(field)(ix)
+    val v0 = value(field, ix)
     if (t0 == t || ix == samples-1) v0
     else {
       val t1 = times(ix+1)
       // require(t0 <= t && t < t1)
-      val v1 = values(field)(ix+1)
+      val v1 = value(field, ix+1)
       val v = v0 + (t - t0).toDouble/(t1 - t0) * (v1 - v0)
       // require((v0 >= v1 && v0 >= v && v >= v1) || (v0 < v1 && v0 <= v && v <= v1))
       v
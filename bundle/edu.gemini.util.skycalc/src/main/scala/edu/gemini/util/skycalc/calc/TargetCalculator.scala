@@ -1,9 +1,8 @@
 package edu.gemini.util.skycalc.calc
 
 import edu.gemini.spModel.core.Site
-import edu.gemini.skycalc.{TimeUtils, ImprovedSkyCalc}
+import edu.gemini.skycalc.TimeUtils
 import edu.gemini.util.skycalc.SkycalcTarget
-import java.util.Date
 import edu.gemini.util.skycalc.calc.TargetCalculator.Fields
 
 /**
@@ -16,6 +15,8 @@ import edu.gemini.util.skycalc.calc.TargetCalculator.Fields
  * </ul>
  * If in doubt use {@link isDefinedAt} to make sure that values for a given time are actually calculated before
  * accessing them, otherwise an out of bounds exception will be thrown.
+ * Values are held in primitive columns, one per field; the `values` vectors required by [[Calculator]] are only
+ * created if asked for.
  */
 trait TargetCalculator extends Calculator {
   require(site == Site.GN || site == Site.GS)
@@ -23,10 +24,38 @@ trait TargetCalculator extends Calculator {
   val site: Site
   val target: SkycalcTarget
 
-  val values: Vector[Vector[Double]] = calculate()
+  /** The calculated values, one column per field (indexed by the field id) with a value for each sample time.
+    * The arrays are shared and must not be modified, so they are only accessible within this package. */
+  private[calc] lazy val columns: Array[Array[Double]] = calculate()
+
+  lazy val values: Vector[Vector[Double]] = columns.map(c => Vector(c: _*)).toVector
 
   import Fields._
 
+  override def value(field: Int, ix: Int): Double = columns(field)(ix)
+  override def timedValues(field: Int) = times.zip(columns(field))
+
+  override def min(field: Int): Double = {
+    val c = columns(field)
+    var m = c(0)
+    for (ix <- 1 until c.length) m = if (m <= c(ix)) m else c(ix)
+    m
+  }
+
+  override def max(field: Int): Double = {
+    val c = columns(field)
+    var m = c(0)
+    for (ix <- 1 until c.length) m = if (m >= c(ix)) m else c(ix)
+    m
+  }
+
+  override def mean(field: Int): Double = {
+    val c = columns(field)
+    var sum = 0.0
+    for (ix <- 0 until c.length) sum += c(ix)
+    sum / samples
+  }
+
   // ==  Gets the first of all calculated values for a given field, use this if only one value was calculated. ==
   lazy val elevation: Double = valueAt(Elevation.id, start)
   lazy val azimuth: Double = valueAt(Azimuth.id, start)
@@ -69,30 +98,37 @@ trait TargetCalculator extends Calculator {
   // If the target is visible during the scheduled time, return the weighted mean parallactic angle as Some(angle in degrees).
   // Otherwise, the target is not visible, so return None.
   lazy val weightedMeanParallacticAngle: Option[Double] = {
-    val (weightedAngles, weights) = values(ParallacticAngle.id).zip(times).zip(values(Airmass.id)).map {
-      case ((angle, t), airmass) =>
-        // Wrap negative angles as per Andy's comment in OCSADV-16.
-        val normalizedAngle = {
-          if (angle < 0) {
-            val normalizingFactor = {
-              val dec = target.positionAt(t).getDecDeg
-              if (dec - site.latitude < -10) 0
-              else if (dec - site.latitude < 10) 180
-              else 360
-            }
-            angle + normalizingFactor
+    val angles    = columns(ParallacticAngle.id)
+    val airmasses = columns(Airmass.id)
+
+    var weightedSum = 0.0
+    var weightedAngleSum = 0.0
+    for (ix <- 0 until samples) {
+      val angle   = angles(ix)
+      val airmass = airmasses(ix)
+
+      // Wrap negative angles as per Andy's comment in OCSADV-16.
+      val normalizedAngle = {
+        if (angle < 0) {
+          val normalizingFactor = {
+            val dec = target.positionAt(times(ix)).getDecDeg
+            if (dec - site.latitude < -10) 0
+            else if (dec - site.latitude < 10) 180
+            else 360
           }
-          else angle
+          angle + normalizingFactor
         }
+        else angle
+      }
 
-        //val weight = if (airmass <= 1.0) 0.0 else 1.6 * math.pow(airmass - 1.0, 0.6)
-        val weight = if (airmass <= 1.0) 0.0 else math.pow(airmass - 1.0, 1.3)
-        (normalizedAngle * weight, weight)
-    }.unzip
+      //val weight = if (airmass <= 1.0) 0.0 else 1.6 * math.pow(airmass - 1.0, 0.6)
+      val weight = if (airmass <= 1.0) 0.0 else math.pow(airmass - 1.0, 1.3)
+      weightedAngleSum += normalizedAngle * weight
+      weightedSum += weight
+    }
 
-    val weightedSum = weights.sum
     if (weightedSum == 0) None
-    else Some(weightedAngles.sum / weightedSum)
+    else Some(weightedAngleSum / weightedSum)
   }
 
   def hourAngleAt(t: Long): Double = valueAt(HourAngle.id, t)
@@ -109,45 +145,8 @@ trait TargetCalculator extends Calculator {
    * Calculates all values for the given times.
    * @return
    */
-  protected def calculate() = {
-    val skycalc = new ImprovedSkyCalc(site)
-
-    // prepare temporary data structure
-    val values = Array (
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples),
-      new Array[Double](samples)
-    )
-    // fill temporary data structure with calculated values
-    for (ix <- 0 to samples-1) {
-      val t = times(ix)
-      skycalc.calculate(target.positionAt(t), new Date(t), true)
-      values(Elevation.id)(ix) = skycalc.getAltitude
-      values(Azimuth.id)(ix) = skycalc.getAzimuth
-      values(Airmass.id)(ix) = skycalc.getAirmass
-      values(LunarDistance.id)(ix) = skycalc.getLunarDistance
-      values(ParallacticAngle.id)(ix) = skycalc.getParallacticAngle
-      values(HourAngle.id)(ix) = skycalc.getHourAngle
-      values(SkyBrightness.id)(ix) = skycalc.getTotalSkyBrightness.doubleValue
-    }
-
-    // turn into immutable data structure
-    Vector(
-      // IMPORTANT: Make sure the order reflects the id values of the field enums!
-      Vector(values(Elevation.id):_*),
-      Vector(values(Azimuth.id):_*),
-      Vector(values(Airmass.id):_*),
-      Vector(values(LunarDistance.id):_*),
-      Vector(values(ParallacticAngle.id):_*),
-      Vector(values(HourAngle.id):_*),
-      Vector(values(SkyBrightness.id):_*)
-    )
-
-  }
+  protected def calculate(): Array[Array[Double]] =
+    TargetSampler.sample(site, Vector(target), times).head
 }
 
 case class IntervalTargetCalculator(site: Site, target: SkycalcTarget, defined: Interval, rate: Long) extends FixedRateCalculator with LinearInterpolatingCalculator with TargetCalculator
@@ -173,5 +172,32 @@ object TargetCalculator {
   def apply(site: Site, target: SkycalcTarget, times: Vector[Long]): TargetCalculator = {
     new SampleTargetCalculator(site, target, times)
   }
+
+  /**
+   * Creates calculators for many targets over the same interval.  The values for all of the targets are calculated
+   * together by a [[TargetSampler]] (optionally in parallel) the first time any of the calculators is used.
+   */
+  def forTargets(site: Site, targets: Seq[SkycalcTarget], defined: Interval, rate: Long, parallel: Boolean): Vector[TargetCalculator] = {
+    lazy val columns: Vector[Array[Array[Double]]] = TargetSampler.sample(site, targets.toVector, calcs.head.times, parallel)
+    lazy val calcs: Vector[TargetCalculator] = targets.toVector.zipWithIndex.map { case (t, i) =>
+      new IntervalTargetCalculator(site, t, defined, rate) {
+        override protected def calculate() = columns(i)
+      }
+    }
+    calcs
+  }
+
+  /**
+   * Creates calculators for many targets at the same sample times.  The values for all of the targets are calculated
+   * together by a [[TargetSampler]] (optionally in parallel) the first time any of the calculators is used.
+   */
+  def forTargets(site: Site, targets: Seq[SkycalcTarget], times: Vector[Long], parallel: Boolean): Vector[TargetCalculator] = {
+    lazy val columns: Vector[Array[Array[Double]]] = TargetSampler.sample(site, targets.toVector, times, parallel)
+    targets.toVector.zipWithIndex.map { case (t, i) =>
+      new SampleTargetCalculator(site, t, times) {
+        override protected def calculate() = columns(i)
+      }
+    }
+  }
 }
 
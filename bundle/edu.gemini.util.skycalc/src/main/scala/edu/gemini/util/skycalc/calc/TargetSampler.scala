@@ -0,0 +1,54 @@
+package edu.gemini.util.skycalc.calc
+
+import edu.gemini.spModel.core.Site
+import edu.gemini.skycalc.ImprovedSkyCalc
+import edu.gemini.util.skycalc.SkycalcTarget
+import edu.gemini.util.skycalc.calc.TargetCalculator.Fields._
+import java.util.Date
+
+/**
+ * Calculates the target values for many targets at the same sample times.
+ * All targets are calculated for one time before moving on to the next, which lets {@see ImprovedSkyCalc} reuse
+ * the time, sun and moon calculations for every target at that time.  Results are primitive columns indexed by
+ * target, field id and sample, in that order.
+ */
+object TargetSampler {
+
+  /**
+   * Calculates the values for the given targets at the given times.  If `parallel` is set the targets are split
+   * into one group per available processor and the groups are calculated concurrently.
+   */
+  def sample(site: Site, targets: IndexedSeq[SkycalcTarget], times: IndexedSeq[Long], parallel: Boolean = false): Vector[Array[Array[Double]]] = {
+    val procs = Runtime.getRuntime.availableProcessors()
+    if (parallel && procs > 1 && targets.size > 1) {
+      val groupSize = Math.ceil(targets.size.toDouble / procs).toInt
+      targets.grouped(groupSize).toVector.par.map(sampleSerial(site, _, times)).seq.flatten
+    } else {
+      sampleSerial(site, targets, times)
+    }
+  }
+
+  private def sampleSerial(site: Site, targets: IndexedSeq[SkycalcTarget], times: IndexedSeq[Long]): Vector[Array[Array[Double]]] = {
+    val skycalc = new ImprovedSkyCalc(site)
+    val ts      = times.toArray
+    val res     = Vector.fill(targets.size)(Array.ofDim[Double](TargetCalculator.Fields.maxId, ts.length))
+
+    for (ix <- ts.indices) {
+      val t    = ts(ix)
+      val date = new Date(t)
+      for (j <- targets.indices) {
+        skycalc.calculate(targets(j).positionAt(t), date, true)
+        val values = res(j)
+        values(Elevation.id)(ix)        = skycalc.getAltitude
+        values(Azimuth.id)(ix)          = skycalc.getAzimuth
+        values(Airmass.id)(ix)          = skycalc.getAirmass
+        values(LunarDistance.id)(ix)    = skycalc.getLunarDistance
+        values(ParallacticAngle.id)(ix) = skycalc.getParallacticAngle
+        values(HourAngle.id)(ix)        = skycalc.getHourAngle
+        values(SkyBrightness.id)(ix)    = skycalc.getTotalSkyBrightness.doubleValue
+      }
+    }
+
+    res
+  }
+}
@@ -48,6 +48,26 @@ class TargetCalculatorTest {
     assertEquals(37, target.minElevation, 1)
   }
 
+  @Test def calculatesManyTargets(): Unit = {
+    val t = TimeUtils.time(2014, 3, 1, 20, 0, Site.GN.timezone)
+    val interval = Interval(t, t + TimeUtils.hours(4))
+    val targets = (0 until 10).map(i => SiderealTarget(new WorldCoords(i * 36.0, i * 9.0 - 45)))
+
+    def check(calcs: Vector[TargetCalculator]): Unit = {
+      assertEquals(targets.size, calcs.size)
+      targets.zip(calcs) foreach { case (c, many) =>
+        val single = TargetCalculator(Site.GN, c, interval, TimeUtils.minutes(5))
+        assertEquals(single.times, many.times)
+        assertEquals(single.values, many.values)
+        assertEquals(single.maxElevation, many.maxElevation, 0)
+        assertEquals(single.weightedMeanParallacticAngle, many.weightedMeanParallacticAngle)
+      }
+    }
+
+    check(TargetCalculator.forTargets(Site.GN, targets, interval, TimeUtils.minutes(5), parallel = false))
+    check(TargetCalculator.forTargets(Site.GN, targets, interval, TimeUtils.minutes(5), parallel = true))
+  }
+
   // === this is for performance trimming purposes, not an actual test case
 
   @Ignore
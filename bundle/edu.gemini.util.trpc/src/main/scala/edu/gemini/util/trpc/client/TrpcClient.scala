@@ -21,7 +21,7 @@ import System.currentTimeMillis
 
 object TrpcClient {
   private val Log  = JLogger.getLogger(classOf[TrpcClient].getName)
-  private val Warn = 1000 // transactions > this many ms get a warning log
+  private val Warn = 1000L // transactions > this many ms get a warning log (by default)
 
   val ConnectTimeout = 20 * 1000
   val ReadTimeout    = 0
@@ -30,10 +30,15 @@ object TrpcClient {
      def verify(s: String, sslSession: SSLSession) = true
   }
 
-  class ClientBuilder(host: String, port: Int, connectTimeout: Int, readTimeout: Int) {
+  class ClientBuilder(host: String, port: Int, connectTimeout: Int, readTimeout: Int, warnMs: Long = Warn) {
+
+    /** Only log a warning for calls that take longer than `ms`, for clients
+      * that expect slow calls (e.g., long polling). */
+    def withSlowCallWarning(ms: Long): ClientBuilder =
+      new ClientBuilder(host, port, connectTimeout, readTimeout, ms)
 
     def withKeys(keys: Set[Key]): TrpcClient = 
-      new TrpcClient(host, port, connectTimeout, readTimeout, keys)
+      new TrpcClient(host, port, connectTimeout, readTimeout, keys, warnMs)
 
     def withoutKeys: TrpcClient = 
       withKeys(Set())
@@ -63,7 +68,7 @@ object TrpcClient {
 
 }
 
-class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTimeout: Int, keys: Set[Key]) {
+class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTimeout: Int, keys: Set[Key], warnMs: Long) {
   import TrpcClient._
 
   /**
@@ -150,7 +155,7 @@ class TrpcClient private (host: String, port: Int, connectTimeout: Int, readTime
           }
         } finally {
           val elapsed = currentTimeMillis - start
-          val level = if (elapsed > Warn) Level.WARNING else Level.FINE
+          val level = if (elapsed > warnMs) Level.WARNING else Level.FINE
           if (Log.isLoggable(level))
             Log.log(level, "%s on %s:%d took %d ms.".format(method, host, port, elapsed))
         }
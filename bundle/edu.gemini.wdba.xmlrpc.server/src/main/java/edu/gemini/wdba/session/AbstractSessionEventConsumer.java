@@ -7,7 +7,9 @@ package edu.gemini.wdba.session;
 import edu.gemini.spModel.event.ExecEvent;
 import edu.gemini.wdba.glue.api.WdbaGlueException;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +21,11 @@ import java.util.logging.Logger;
  * It is assumed that there will be several different "services" interested
  * in the events coming out of the seqexec and tcc.  This class provides
  * a base class for easy construction of those consumers.
+ * <p>
+ * Events are handled in arrival order by a single thread.  Whenever the
+ * thread wakes up it takes every event that has been queued so far and hands
+ * them to {@link #doMsgUpdates} together, so that consumers may handle bursts
+ * of events more cheaply than one at a time.
  *
   */
 public abstract class AbstractSessionEventConsumer implements ISessionEventListener, Runnable {
@@ -26,26 +33,95 @@ public abstract class AbstractSessionEventConsumer implements ISessionEventListe
     private static final Logger LOG = Logger.getLogger(AbstractSessionEventConsumer.class.getName());
 
     private EventQueue _evq = null;
-    private boolean _done = false;
+    private volatile boolean _done = false;
+
+    /**
+     * Queue statistics, useful for checking that the consumer is keeping up
+     * with the incoming events.
+     */
+    public static final class Statistics {
+        /** Number of events waiting to be handled. */
+        public final int queueDepth;
+
+        /** Largest number of events that have been waiting at once. */
+        public final int maxQueueDepth;
+
+        /** Number of events handled so far. */
+        public final long handledCount;
+
+        /** Number of batches in which the handled events were processed. */
+        public final long batchCount;
+
+        /** Mean time between queuing and finishing handling an event. */
+        public final long meanLatencyMs;
+
+        /** Longest time between queuing and finishing handling an event. */
+        public final long maxLatencyMs;
+
+        private Statistics(int queueDepth, int maxQueueDepth, long handledCount, long batchCount, long totalLatencyMs, long maxLatencyMs) {
+            this.queueDepth    = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.handledCount  = handledCount;
+            this.batchCount    = batchCount;
+            this.meanLatencyMs = (handledCount == 0) ? 0 : totalLatencyMs / handledCount;
+            this.maxLatencyMs  = maxLatencyMs;
+        }
+
+        @Override public String toString() {
+            return String.format("queue depth=%d (max %d), handled=%d in %d batches, latency mean=%dms max=%dms",
+                    queueDepth, maxQueueDepth, handledCount, batchCount, meanLatencyMs, maxLatencyMs);
+        }
+    }
 
     /**
      * Internal class to handle queuing of events for this thread
     **/
     private class EventQueue {
         private LinkedList<ExecEvent> _list = new LinkedList<ExecEvent>();
+        private LinkedList<Long> _times = new LinkedList<Long>();
+
+        private int _maxDepth;
+        private long _handled;
+        private long _batches;
+        private long _totalLatency;
+        private long _maxLatency;
 
         // Add an event and notify listeners
         private synchronized void add(ExecEvent ev) {
             _list.addFirst(ev);
+            _times.addFirst(System.currentTimeMillis());
+            _maxDepth = Math.max(_maxDepth, _list.size());
             notifyAll();
         }
 
-        // Remove an event from the end
-        private synchronized ExecEvent remove() throws InterruptedException {
+        // Remove all the events, oldest first, recording their queue times
+        // in <code>times</code>.
+        private synchronized List<ExecEvent> removeAll(List<Long> times) throws InterruptedException {
             while (_list.isEmpty())
                 wait();
 
-            return _list.removeLast();
+            final List<ExecEvent> res = new ArrayList<ExecEvent>(_list.size());
+            while (!_list.isEmpty()) {
+                res.add(_list.removeLast());
+                times.add(_times.removeLast());
+            }
+            return res;
+        }
+
+        // Record that the events queued at the given times were handled.
+        private synchronized void handled(List<Long> times) {
+            final long now = System.currentTimeMillis();
+            for (long t : times) {
+                final long latency = now - t;
+                _totalLatency += latency;
+                _maxLatency    = Math.max(_maxLatency, latency);
+            }
+            _handled += times.size();
+            ++_batches;
+        }
+
+        private synchronized Statistics statistics() {
+            return new Statistics(_list.size(), _maxDepth, _handled, _batches, _totalLatency, _maxLatency);
         }
     }
 
@@ -63,6 +139,34 @@ public abstract class AbstractSessionEventConsumer implements ISessionEventListe
      */
     protected abstract void doMsgUpdate(ExecEvent ev) throws WdbaGlueException;
 
+    /**
+     * Handles all the events that arrived since the last call, in arrival
+     * order.  By default each event is passed to {@link #doMsgUpdate} in
+     * turn.  Consumers that can do better by handling the events together
+     * may override this method, but must preserve the relative order of the
+     * events of any one observation.
+     *
+     * @param evs events to handle, oldest first; never empty
+     * @throws WdbaGlueException
+     */
+    protected void doMsgUpdates(List<ExecEvent> evs) throws WdbaGlueException {
+        for (ExecEvent ev : evs) {
+            try {
+                doMsgUpdate(ev);
+            } catch (WdbaGlueException ex) {
+                LOG.severe("Logging the service exception from the thread!");
+                LOG.log(Level.SEVERE,  ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the current queue statistics.
+     */
+    public Statistics getStatistics() {
+        return _evq.statistics();
+    }
+
     /**
      * Method implementing <code>ISessionEventListener</code>.   The events are placed on the queue and
      * handled by this thread.
@@ -81,9 +185,11 @@ public abstract class AbstractSessionEventConsumer implements ISessionEventListe
     public void run() {
         // Remove from queue and run
         while (!_done) {
+            final List<Long> times = new ArrayList<Long>();
             try {
-                ExecEvent se = _evq.remove();
-                doMsgUpdate(se);
+                List<ExecEvent> evs = _evq.removeAll(times);
+                if (evs.size() > 1) LOG.fine("Handling " + evs.size() + " queued events");
+                doMsgUpdates(evs);
             } catch (WdbaGlueException ex) {
                 LOG.severe("Logging the service exception from the thread!");
                 LOG.log(Level.SEVERE,  ex.getMessage(), ex);
@@ -92,6 +198,8 @@ public abstract class AbstractSessionEventConsumer implements ISessionEventListe
                 return;
             } catch (Exception ex) {
                 LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            } finally {
+                if (!times.isEmpty()) _evq.handled(times);
             }
         }
     }
@@ -19,6 +19,11 @@ import edu.gemini.wdba.session.ISessionEventProducer;
 import edu.gemini.wdba.session.OneLineLogFormatter;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -26,6 +31,10 @@ import java.util.logging.Logger;
 
 /**
  * This class responds to session events and updates the database as needed.
+ * Events that arrive together are written together: the nightly record is
+ * updated once for all the sequences that were started, and the observation
+ * events are applied in a single database functor that locks each program
+ * just once (see {@link ObsExecEventFunctor#handleAll}).
  */
 public class DBUpdateService extends AbstractSessionEventConsumer {
     private static final Logger LOG = Logger.getLogger(DBUpdateService.class.getName());
@@ -65,6 +74,12 @@ public class DBUpdateService extends AbstractSessionEventConsumer {
     // Add the given obs id to nightly log, creating the log if necessary
     // for the current night.
     private void _addToNightlyRecord(SPObservationID obsId) {
+        _addToNightlyRecord(Collections.singleton(obsId));
+    }
+
+    // Add the given obs ids to nightly log, creating the log if necessary
+    // for the current night.
+    private void _addToNightlyRecord(Set<SPObservationID> obsIds) {
         final Site site = _context.getSite();
 
         SPProgramID recordId = NightlyProgIdGenerator.getProgramID(NightlyProgIdGenerator.PLAN_ID_PREFIX, site);
@@ -79,10 +94,12 @@ public class DBUpdateService extends AbstractSessionEventConsumer {
         }
 
         NightlyRecord nightlyRecord = (NightlyRecord) nightlyRecordNode.getDataObject();
-        nightlyRecord.addObservation(obsId);
+        for (SPObservationID obsId : obsIds) nightlyRecord.addObservation(obsId);
         nightlyRecordNode.setDataObject(nightlyRecord);
 
-        LOG.info("Added observation ID to nightly plan: " + obsId.stringValue());
+        for (SPObservationID obsId : obsIds) {
+            LOG.info("Added observation ID to nightly plan: " + obsId.stringValue());
+        }
     }
 
     public void doMsgUpdate(ExecEvent evt) throws WdbaGlueException {
@@ -100,4 +117,36 @@ public class DBUpdateService extends AbstractSessionEventConsumer {
             LOG.log(Level.INFO, ex.getMessage(), ex);
         }
     }
+
+    @Override
+    protected void doMsgUpdates(List<ExecEvent> evts) throws WdbaGlueException {
+        if (evts.size() == 1) {
+            doMsgUpdate(evts.get(0));
+            return;
+        }
+
+        final Set<SPObservationID> started = new LinkedHashSet<SPObservationID>();
+        final List<ObsExecEvent> obsEvents = new ArrayList<ObsExecEvent>();
+        for (ExecEvent evt : evts) {
+            if (evt instanceof StartSequenceEvent) started.add(((ObsExecEvent) evt).getObsId());
+            if (evt instanceof ObsExecEvent) obsEvents.add((ObsExecEvent) evt);
+        }
+
+        try {
+            if (!started.isEmpty()) _addToNightlyRecord(started);
+        } catch (Throwable ex) {
+            LOG.log(Level.INFO, ex.getMessage(), ex);
+        }
+
+        try {
+            if (!obsEvents.isEmpty()) {
+                WdbaDatabaseAccessService dbAccess = _context.getWdbaDatabaseAccessService();
+                ObsExecEventFunctor.handleAll(obsEvents, dbAccess.getDatabase(), _context.user);
+            }
+        } catch (Throwable ex) {
+            LOG.log(Level.INFO, ex.getMessage(), ex);
+        }
+
+        LOG.fine("Applied " + evts.size() + " events; " + getStatistics());
+    }
 }
@@ -0,0 +1,80 @@
+package edu.gemini.wdba.session;
+
+import edu.gemini.spModel.event.ExecEvent;
+import edu.gemini.spModel.event.StartIdleEvent;
+import edu.gemini.wdba.glue.api.WdbaGlueException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that queued events are handed to the consumer together and in order.
+ */
+public final class AbstractSessionEventConsumerTest {
+
+    private static final class Producer implements ISessionEventProducer {
+        private final List<ISessionEventListener> listeners = new ArrayList<ISessionEventListener>();
+
+        public void addSessionEventListener(ISessionEventListener listener) {
+            listeners.add(listener);
+        }
+
+        public void removeSessionEventListener(ISessionEventListener listener) {
+            listeners.remove(listener);
+        }
+
+        public void fireEvent(ExecEvent evt) {
+            for (ISessionEventListener l : listeners) l.sessionUpdate(evt);
+        }
+    }
+
+    private static final class Consumer extends AbstractSessionEventConsumer {
+        final List<List<ExecEvent>> batches = new ArrayList<List<ExecEvent>>();
+
+        Consumer(ISessionEventProducer ssp) {
+            super(ssp);
+        }
+
+        protected void doMsgUpdate(ExecEvent ev) throws WdbaGlueException {
+            fail("events should be handled in batches");
+        }
+
+        protected void doMsgUpdates(List<ExecEvent> evs) throws WdbaGlueException {
+            synchronized (batches) {
+                batches.add(new ArrayList<ExecEvent>(evs));
+                batches.notifyAll();
+            }
+            stop();
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        final Producer p = new Producer();
+        final Consumer c = new Consumer(p);
+
+        final List<ExecEvent> events = new ArrayList<ExecEvent>();
+        for (int i=0; i<10; ++i) {
+            final ExecEvent evt = new StartIdleEvent(i, "idle " + i);
+            events.add(evt);
+            p.fireEvent(evt);
+        }
+        assertEquals(10, c.getStatistics().queueDepth);
+
+        final Thread t = new Thread(c, "Test Consumer");
+        t.start();
+        t.join(10000);
+
+        assertEquals(1, c.batches.size());
+        assertEquals(events, c.batches.get(0));
+
+        final AbstractSessionEventConsumer.Statistics stats = c.getStatistics();
+        assertEquals(0, stats.queueDepth);
+        assertEquals(10, stats.maxQueueDepth);
+        assertEquals(10, stats.handledCount);
+        assertEquals(1, stats.batchCount);
+    }
+}
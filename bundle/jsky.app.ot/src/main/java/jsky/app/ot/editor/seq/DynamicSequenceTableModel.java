@@ -3,7 +3,6 @@ package jsky.app.ot.editor.seq;
 import edu.gemini.pot.sp.SPNodeKey;
 import edu.gemini.shared.util.StringUtil;
 import edu.gemini.spModel.config.MetaDataConfig;
-import edu.gemini.spModel.config2.Config;
 import edu.gemini.spModel.config2.ConfigSequence;
 import edu.gemini.spModel.config2.ItemKey;
 import edu.gemini.spModel.dataflow.GsaSequenceEditor;
@@ -175,8 +174,8 @@ public final class DynamicSequenceTableModel extends AbstractTableModel {
         return _iteratedKeys.length;
     }
 
-    private boolean isGcal(final Config config) {
-        final String type = (String) config.getItemValue(OBS_TYPE_KEY);
+    private boolean isGcal(final int step) {
+        final String type = (String) _sequence.getItemValue(step, OBS_TYPE_KEY);
         return InstConstants.FLAT_OBSERVE_TYPE.equals(type) ||
                InstConstants.ARC_OBSERVE_TYPE.equals(type);
     }
@@ -185,11 +184,11 @@ public final class DynamicSequenceTableModel extends AbstractTableModel {
         if (_sequence == null) return null;
         if (_sequence.size() == 0) return null;
 
-        final Config config = _sequence.getStep(rowIndex);
+        // Look up just the one item rather than copying the whole step.
         final ItemKey   key = _iteratedKeys[columnIndex];
         if (key.getParent() == null) return null;
-        if (!isGcal(config) && "calibration".equals(key.getParent().toString())) return "";
-        Object    val = config.getItemValue(key);
+        if (!isGcal(rowIndex) && "calibration".equals(key.getParent().toString())) return "";
+        Object    val = _sequence.getItemValue(rowIndex, key);
 
         if (OBS_CLASS_KEY.equals(key)) {
             String classStr = (String) val;